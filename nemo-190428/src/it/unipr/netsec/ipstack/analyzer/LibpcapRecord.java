@@ -33,9 +33,15 @@ public class LibpcapRecord {
 	/** Actual length of packet [32bit] */
 	int orig_len=0;
 	
-	/** Packet data */
+	/** Buffer containing the packet data */
 	byte[] data=null;
 
+	/** Offset of the packet data within the buffer */
+	int data_off=0;
+
+	/** Number of octets of packet data */
+	int data_len=0;
+
 	
 	private static byte[] INT32_BUFFER=new byte[4];
 	
@@ -73,7 +79,22 @@ public class LibpcapRecord {
 		this.ts_sec=ts_sec;
 		this.ts_usec=ts_usec;
 		data=pkt.getBytes();
-		orig_len=data.length;
+		data_len=orig_len=data.length;
+	}
+	
+	/** Creates a new Libpcap record.
+	 * The buffer is not copied, so it must not be modified while the record is used.
+	 * @param ts_sec timestamp seconds
+	 * @param ts_usec timestamp microseconds
+	 * @param buf the buffer containing the packet
+	 * @param off the offset within the buffer
+	 * @param len the packet length */
+	public LibpcapRecord(long ts_sec, long ts_usec, byte[] buf, int off, int len) {
+		this.ts_sec=ts_sec;
+		this.ts_usec=ts_usec;
+		data=buf;
+		data_off=off;
+		data_len=orig_len=len;
 	}
 	
 	/** Gets timestamp seconds.
@@ -97,7 +118,11 @@ public class LibpcapRecord {
 	/** Gets packet data.
 	 * @return the byte array containing the packet */
 	public byte[] getPacketData() {
-		return data;
+		if (data_off==0 && data_len==data.length) return data;
+		// else
+		byte[] pkt_data=new byte[data_len];
+		System.arraycopy(data,data_off,pkt_data,0,data_len);
+		return pkt_data;
 	}
 	
 	/** Reads the packet record from an InputStream.
@@ -109,6 +134,8 @@ public class LibpcapRecord {
 		int incl_len=(int)readInt32(is);
 		orig_len=(int)readInt32(is);
 		data=new byte[incl_len];
+		data_off=0;
+		data_len=incl_len;
 		int len=is.read(data);
 		if (len!=incl_len) throw new IOException("Too few bytes availables ("+len+"<"+incl_len+")");
 		return 16+len;
@@ -120,10 +147,10 @@ public class LibpcapRecord {
 	public int write(OutputStream os) throws IOException {	
 		writeInt32(os,ts_sec);
 		writeInt32(os,ts_usec);
-		writeInt32(os,data.length);
+		writeInt32(os,data_len);
 		writeInt32(os,orig_len);
-		os.write(data);
-		return 16+data.length;
+		os.write(data,data_off,data_len);
+		return 16+data_len;
 	}
 
 	@Override
@@ -133,7 +160,7 @@ public class LibpcapRecord {
 		//sb.append("ts_usec: "+ts_usec+"\n");
 		//sb.append("incl_len: "+incl_len+"\n");
 		//sb.append("orig_len: "+orig_len+"\n");
-		sb.append(DateFormat.formatHHmmssSSS(getTimestamp())).append(" ").append("len="+data.length+"/"+orig_len);
+		sb.append(DateFormat.formatHHmmssSSS(getTimestamp())).append(" ").append("len="+data_len+"/"+orig_len);
 		return sb.toString();
 	}
 }
@@ -5,6 +5,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.zoolu.util.ByteArrayPool;
 import org.zoolu.util.Clock;
 
 import it.unipr.netsec.ipstack.net.Packet;
@@ -24,6 +25,9 @@ public class LibpcapTrace {
 	/** start time in nanoseconds */
 	long start_nanosecs=0;
 
+	/** Clock */
+	Clock clock=Clock.getDefaultClock();
+
 	
 	/** Create a new trace.
 	 * @param type the interface type (see types in class {@link it.unipr.netsec.ipstack.analyzer.LibpcapHeader LibpcapHeader})
@@ -39,13 +43,20 @@ public class LibpcapTrace {
 	/** Adds a new packet to the trace.
 	 * @param pkt the packet to be added */
 	public void add(Packet pkt) {
-		long t_usecs=((Clock.getDefaultClock().nanoTime()-start_nanosecs)+start_millisecs*1000000)/1000;
+		long t_usecs=((clock.nanoTime()-start_nanosecs)+start_millisecs*1000000)/1000;
+		// the packet is serialized into a pooled buffer, that is released once the record has been written
+		ByteArrayPool pool=ByteArrayPool.getDefaultPool();
+		byte[] buf=pool.get(pkt.getPacketLength());
 		try {
-			new LibpcapRecord(t_usecs/1000000,t_usecs%1000000,pkt).write(out);
+			int len=pkt.getBytes(buf,0);
+			new LibpcapRecord(t_usecs/1000000,t_usecs%1000000,buf,0,len).write(out);
 		}
 		catch (IOException e) {
 			e.printStackTrace();
 		}
+		finally {
+			pool.release(buf);
+		}
 	}
 	
 	
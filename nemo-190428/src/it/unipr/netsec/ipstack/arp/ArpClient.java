@@ -77,12 +77,18 @@ public class ArpClient {
 	/** Retransmission timer */ 
 	Timer retransmission_timer=null;
 
+	/** Whether the retransmission timeout of the current attempt has expired */ 
+	boolean attempt_expired=false;
+
 	/** ARP table */
 	Hashtable<Ip4Address,ArpRecord> arp_table=null;
 	
 	/** ARP table timeout in milliseconds, that is the amount of time that a mapping is cached with the local ARP table */
 	long arp_table_timeout;
 
+	/** Clock */
+	Clock clock=Clock.getDefaultClock();
+
 
 	
 	/** Creates a new ARP client.
@@ -108,6 +114,8 @@ public class ArpClient {
 	 * It sends an ARP request for the given IP address and captures the ARP response.
 	 * <p>
 	 * This is a blocking method. It waits for a response and returns only when a response is received or the maximum number of attempts occurred. 
+	 * If the clock executes timers in the caller thread (e.g. when a virtual clock is used and this method is called
+	 * by a timer callback), the other timers are executed while waiting (see {@link Clock#waitUntil(Object, Clock.Condition)}).
 	 * @param target_ip_addr the target IP address
 	 * @return the requested Ethernet address, or <i>null</i> in case of failure */
 	public synchronized EthAddress request(Ip4Address target_ip_addr) {
@@ -123,15 +131,22 @@ public class ArpClient {
 					processTimeout(t);				
 				}	
 			};
+			Clock.Condition response_or_timeout=new Clock.Condition() {
+				@Override
+				public boolean isSatisfied() {
+					return target_eth_addr!=null || attempt_expired;
+				}
+			};
 			while (target_eth_addr==null && remaining_attempts>0) {
+				attempt_expired=false;
 				arp_interface.send(arp_pkt,EthAddress.BROADCAST_ADDRESS);
 				if (DEBUG) debug("request(): who-has "+target_ip_addr+"? tell "+local_ip_addr);
-				retransmission_timer=Clock.getDefaultClock().newTimer(RETRANSMISSION_TIMEOUT,0,this_timer_listener);
+				retransmission_timer=clock.newTimer(RETRANSMISSION_TIMEOUT,0,this_timer_listener);
 				retransmission_timer.start(true);
 				remaining_attempts--;
 				// wait for the response
 				synchronized (target_ip_addr) {
-					if (target_eth_addr==null) try { target_ip_addr.wait(); } catch (InterruptedException e) {}
+					try { clock.waitUntil(target_ip_addr,response_or_timeout); } catch (InterruptedException e) {}
 				}
 			}
 		}
@@ -158,7 +173,7 @@ public class ArpClient {
 		}
 		if (arp_table!=null && arp_table.containsKey(target_ip_addr)) {
 			ArpRecord record=arp_table.get(target_ip_addr);
-			if ((record.getTime()+arp_table_timeout)>Clock.getDefaultClock().currentTimeMillis()) {
+			if ((record.getTime()+arp_table_timeout)>clock.currentTimeMillis()) {
 				eth_addr=record.getAddress();
 				if (DEBUG) debug("lookup(): from ARP table: "+eth_addr);
 			}
@@ -167,7 +182,7 @@ public class ArpClient {
 		if (eth_addr==null) {
 			eth_addr=request(target_ip_addr);
 			if (DEBUG) debug("lookup(): from network: "+eth_addr);
-			if (eth_addr!=null && arp_table!=null && arp_table_timeout>0) arp_table.put(target_ip_addr,new ArpRecord(eth_addr,Clock.getDefaultClock().currentTimeMillis()));
+			if (eth_addr!=null && arp_table!=null && arp_table_timeout>0) arp_table.put(target_ip_addr,new ArpRecord(eth_addr,clock.currentTimeMillis()));
 		}
 		return eth_addr;
 	}
@@ -200,6 +215,7 @@ public class ArpClient {
 	/** Processes retransmission timeout. */
 	protected void processTimeout(Timer t) {
 		synchronized (target_ip_addr) {
+			attempt_expired=true;
 			target_ip_addr.notifyAll();
 		}
 	}
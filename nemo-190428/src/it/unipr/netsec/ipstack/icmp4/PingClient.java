@@ -82,6 +82,9 @@ public class PingClient {
 	/** Departure times, for computing the RTTs */
 	long[] departure_time=new long[BACKLOGGED_DEPARTURES];
 
+	/** Clock */
+	Clock clock=Clock.getDefaultClock();
+
 	
 	/** Creates a runs a ping session.
 	 * @param ip_layer IP layer
@@ -108,7 +111,7 @@ public class PingClient {
 		this.ping_time=ping_time;
 		this.out=out;
 		println("PING "+target_ip_addr+" "+echo_data.length+" bytes of data:");
-		start_time=Clock.getDefaultClock().currentTimeMillis();
+		start_time=clock.currentTimeMillis();
 		this_icmp_listener=new IcmpLayerListener() {
 			@Override
 			public void onReceivedIcmpMessage(IcmpLayer icmp_layer, Ip4Packet ip_pkt) {
@@ -119,7 +122,7 @@ public class PingClient {
 					//System.out.println("DEBUG: PingClinet: ICMP Echo reply: id="+icmp_echo_reply.getIdentifier()+" sqn="+icmp_echo_reply.getSequenceNumber());
 					if (icmp_echo_reply.getIdentifier()==echo_id) {
 						int sqn=icmp_echo_reply.getSequenceNumber();
-						long now=Clock.getDefaultClock().currentTimeMillis();
+						long now=clock.currentTimeMillis();
 						long rtt_time=now-departure_time[sqn%BACKLOGGED_DEPARTURES];
 						last_time=now-start_time;
 						println(""+icmp_echo_reply.getEchoData().length+" bytes from "+icmp_msg.getSourceAddress()+": icmp_sqn="+icmp_echo_reply.getSequenceNumber()+" ttl="+ip_pkt.getTTL()+" time="+rtt_time+" ms");
@@ -133,12 +136,12 @@ public class PingClient {
 		
 		/*for (int sqn=0; sqn<count; sqn++) {
 			IcmpEchoRequestMessage icmp_echo_request=new IcmpEchoRequestMessage(ip_layer.getSourceAddress(target_ip_addr),target_ip_addr,echo_id,sqn,echo_data);
-			SystemUtils.log(LoggerLevel.DEBUG,"Ping: ICMP Echo request at time "+Clock.getDefaultClock().currentTimeMillis()+": id="+icmp_echo_request.getIdentifier()+" sqn="+icmp_echo_request.getSequenceNumber());
+			SystemUtils.log(LoggerLevel.DEBUG,"Ping: ICMP Echo request at time "+clock.currentTimeMillis()+": id="+icmp_echo_request.getIdentifier()+" sqn="+icmp_echo_request.getSequenceNumber());
 			ip_layer.send(icmp_echo_request.toIp4Packet());
-			Clock.getDefaultClock().sleep(start_time+(sqn+1)*ping_time-Clock.getDefaultClock().currentTimeMillis());
+			clock.sleep(start_time+(sqn+1)*ping_time-clock.currentTimeMillis());
 		}		
 		// sleep extra time before ending
-		Clock.getDefaultClock().sleep(2*ping_time);
+		clock.sleep(2*ping_time);
 		ip_layer.removeListener(this_ip_listener);
 		*/
 		ping(0,count);
@@ -152,8 +155,8 @@ public class PingClient {
 		if (count==0) return;
 		// else
 		IcmpEchoRequestMessage icmp_echo_request=new IcmpEchoRequestMessage(icmp_layer.getSourceAddress(target_ip_addr),target_ip_addr,echo_id,sqn,echo_data);
-		//SystemUtils.log(LoggerLevel.DEBUG,"Ping: ICMP Echo request at time "+Clock.getDefaultClock().currentTimeMillis()+": id="+icmp_echo_request.getIdentifier()+" sqn="+icmp_echo_request.getSequenceNumber());
-		long now=Clock.getDefaultClock().currentTimeMillis();
+		//SystemUtils.log(LoggerLevel.DEBUG,"Ping: ICMP Echo request at time "+clock.currentTimeMillis()+": id="+icmp_echo_request.getIdentifier()+" sqn="+icmp_echo_request.getSequenceNumber());
+		long now=clock.currentTimeMillis();
 		departure_time[sqn%BACKLOGGED_DEPARTURES]=now;
 		icmp_layer.send(icmp_echo_request);
 		req_count++;
@@ -165,9 +168,9 @@ public class PingClient {
 					ping(sqn+1,count-1);
 				}
 			};
-			//Clock.getDefaultClock().newTimer(ping_time,0,timer_listener).start();
+			//clock.newTimer(ping_time,0,timer_listener).start();
 			long next_time=(sqn+1)*ping_time+start_time-now;
-			Clock.getDefaultClock().newTimer(next_time,0,timer_listener).start();
+			clock.newTimer(next_time,0,timer_listener).start();
 		}
 		else {
 			// wait a while before ending
@@ -176,11 +179,11 @@ public class PingClient {
 				public void onTimeout(Timer t) {
 					icmp_layer.removeListener(this_icmp_listener);
 					println("\n--- "+target_ip_addr+" ping statistics ---");
-					if (last_time<0) last_time=Clock.getDefaultClock().currentTimeMillis()-start_time;
+					if (last_time<0) last_time=clock.currentTimeMillis()-start_time;
 					println(""+req_count+" packets transmitted, "+reply_count+" received, "+((req_count-reply_count)*100/(double)req_count)+"% packet loss, total time "+last_time+"ms");
 				}
 			};
-			Clock.getDefaultClock().newTimer(CLEARING_TIME,0,timer_listener).start();
+			clock.newTimer(CLEARING_TIME,0,timer_listener).start();
 		}
 	}
 	
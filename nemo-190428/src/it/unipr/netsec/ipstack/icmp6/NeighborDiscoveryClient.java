@@ -85,12 +85,18 @@ public class NeighborDiscoveryClient {
 	/** Retransmission timer */ 
 	Timer retransmission_timer=null;
 
+	/** Whether the retransmission timeout of the current attempt has expired */ 
+	boolean attempt_expired=false;
+
 	/** ARP table */
 	Hashtable<Ip6Address,ArpRecord> arp_table=null;
 	
 	/** ARP table timeout in milliseconds, that is the amount of time that a mapping is cached with the local ARP table */
 	long arp_table_timeout;
 
+	/** Clock */
+	Clock clock=Clock.getDefaultClock();
+
 
 	
 	/** Creates a new Neighbor Discovery client.
@@ -117,6 +123,8 @@ public class NeighborDiscoveryClient {
 	 * It sends a ICMP6 Neighbor Solicitation request for the given IP address and captures the Neighbor Advertisement response.
 	 * <p>
 	 * This is a blocking method. It waits for a response and returns only when a response is received or the maximum number of attempts occurred. 
+	 * If the clock executes timers in the caller thread (e.g. when a virtual clock is used and this method is called
+	 * by a timer callback), the other timers are executed while waiting (see {@link Clock#waitUntil(Object, Clock.Condition)}).
 	 * @param target_ip_addr the target IP address
 	 * @return the requested Ethernet address, or <i>null</i> in case of failure */
 	public synchronized EthAddress request(Ip6Address target_ip_addr) {
@@ -133,15 +141,22 @@ public class NeighborDiscoveryClient {
 					processTimeout(t);				
 				}	
 			};
+			Clock.Condition response_or_timeout=new Clock.Condition() {
+				@Override
+				public boolean isSatisfied() {
+					return target_eth_addr!=null || attempt_expired;
+				}
+			};
 			while (target_eth_addr==null && remaining_attempts>0) {
+				attempt_expired=false;
 				ip_interface.send(ns_msg.toIp6Packet(),ns_msg.getDestAddress());
 				if (DEBUG) debug("request(): who-has "+target_ip_addr+"? tell "+ip_addr);
-				retransmission_timer=Clock.getDefaultClock().newTimer(RETRANSMISSION_TIMEOUT,0,this_timer_listener);
+				retransmission_timer=clock.newTimer(RETRANSMISSION_TIMEOUT,0,this_timer_listener);
 				retransmission_timer.start(true);
 				remaining_attempts--;
 				// wait for the response
 				synchronized (target_ip_addr) {
-					if (target_eth_addr==null) try { target_ip_addr.wait(); } catch (InterruptedException e) {}
+					try { clock.waitUntil(target_ip_addr,response_or_timeout); } catch (InterruptedException e) {}
 				}
 			}
 		}
@@ -168,7 +183,7 @@ public class NeighborDiscoveryClient {
 		}
 		if (arp_table!=null && arp_table.containsKey(target_ip_addr)) {
 			ArpRecord record=arp_table.get(target_ip_addr);
-			if ((record.getTime()+arp_table_timeout)>Clock.getDefaultClock().currentTimeMillis()) {
+			if ((record.getTime()+arp_table_timeout)>clock.currentTimeMillis()) {
 				eth_addr=record.getAddress();
 				if (DEBUG) debug("lookup(): from ARP table: "+eth_addr);
 			}
@@ -177,7 +192,7 @@ public class NeighborDiscoveryClient {
 		if (eth_addr==null) {
 			eth_addr=request(target_ip_addr);
 			if (DEBUG) debug("lookup(): from network: "+eth_addr);
-			if (eth_addr!=null && arp_table!=null && arp_table_timeout>0) arp_table.put(target_ip_addr,new ArpRecord(eth_addr,Clock.getDefaultClock().currentTimeMillis()));
+			if (eth_addr!=null && arp_table!=null && arp_table_timeout>0) arp_table.put(target_ip_addr,new ArpRecord(eth_addr,clock.currentTimeMillis()));
 		}
 		return eth_addr;
 	}
@@ -188,7 +203,7 @@ public class NeighborDiscoveryClient {
 	 * @param eth_addr the corresponding Ethernet address */
 	public void put(Ip6Address ip_addr, EthAddress eth_addr) {
 		if (DEBUG) debug("put(): "+ip_addr+" is-at "+eth_addr);
-		arp_table.put(ip_addr,new ArpRecord(eth_addr,Clock.getDefaultClock().currentTimeMillis()));
+		arp_table.put(ip_addr,new ArpRecord(eth_addr,clock.currentTimeMillis()));
 	}
 
 	
@@ -229,6 +244,7 @@ public class NeighborDiscoveryClient {
 	/** Processes retransmission timeout. */
 	protected void processTimeout(Timer t) {
 		synchronized (target_ip_addr) {
+			attempt_expired=true;
 			target_ip_addr.notifyAll();
 		}
 	}
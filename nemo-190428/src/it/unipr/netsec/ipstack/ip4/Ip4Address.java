@@ -23,12 +23,13 @@ package it.unipr.netsec.ipstack.ip4;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.Arrays;
-
 import it.unipr.netsec.ipstack.util.IpAddressUtils;
 
 
 /** Internet Protocol version 4 (IPv4) address.
+ * <p>
+ * The address is stored as a 32-bit integer, so that comparison and hashing do not loop over bytes.
+ * The array of bytes is created only when requested through {@link #getBytes()}.
  */
 public class Ip4Address implements IpAddress {
 
@@ -51,8 +52,11 @@ public class Ip4Address implements IpAddress {
 	public static final Ip4Address ADDR_MDNS_MULTICAST=new Ip4Address("224.0.0.251");
 
 		
-	/** The IP address */
-	byte[] addr=null;
+	/** The IP address, most significant byte first */
+	int addr;
+
+	/** The IP address as array of bytes (created on demand) */
+	volatile byte[] bytes=null;
 
 	/** The string IP address (cached) */
 	String str_addr=null;
@@ -61,35 +65,45 @@ public class Ip4Address implements IpAddress {
 	/** Creates a new address.
 	 * @param iaddr address */
 	public Ip4Address(InetAddress iaddr) {
-		this.addr=iaddr.getAddress();
+		this(iaddr.getAddress(),0);
 	}
 	
 	/** Creates a new address.
 	 * @param str_addr the string address */
 	public Ip4Address(String str_addr) {
-		this.addr=IpAddressUtils.stringIp4AddressToBytes(str_addr);
+		this(IpAddressUtils.stringIp4AddressToBytes(str_addr),0);
 		this.str_addr=str_addr;
 	}
 	
 	/** Creates a new address.
 	 * @param addr the address */
 	public Ip4Address(byte[] addr) {
-		this.addr=new byte[4];
-		System.arraycopy(addr,0,this.addr,0,4);
+		this(addr,0);
 	}
 	
 	/** Creates a new address.
 	 * @param buf byte array containing the address
 	 * @param off the offset within the buffer */
 	public Ip4Address(byte[] buf, int off) {
-		addr=new byte[4];
-		System.arraycopy(buf,off,addr,0,4);
+		addr=(buf[off]&0xff)<<24 | (buf[off+1]&0xff)<<16 | (buf[off+2]&0xff)<<8 | (buf[off+3]&0xff);
+	}
+	
+	/** Creates a new address.
+	 * @param addr the address as 32-bit integer, most significant byte first */
+	public Ip4Address(int addr) {
+		this.addr=addr;
+	}
+	
+	/** Gets the address as integer.
+	 * @return the 32-bit address, most significant byte first */
+	public int toInt() {
+		return addr;
 	}
 	
 	@Override
 	public InetAddress toInetAddress() {
 		try {
-			return Inet4Address.getByAddress(addr);
+			return Inet4Address.getByAddress(getBytes());
 		}
 		catch (UnknownHostException e) {
 			throw new RuntimeException(e.getMessage());
@@ -108,37 +122,54 @@ public class Ip4Address implements IpAddress {
 		else
 			if (o instanceof String) ip_addr=new Ip4Address((String)o);
 			else
-				if (o instanceof byte[]) ip_addr=new Ip4Address((byte[])o);
+				if (o instanceof byte[]) {
+					if (((byte[])o).length!=4) return false;
+					// else
+					ip_addr=new Ip4Address((byte[])o);
+				}
 				else
 					return false;
-		return Arrays.equals(addr,ip_addr.addr);
+		return addr==ip_addr.addr;
 	}
 	
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(getBytes());
+		return addr;
 	}
 	
 	@Override
 	public String toString() {
-		if (str_addr==null) str_addr=IpAddressUtils.bytesToStringIp4Address(addr);
+		if (str_addr==null) str_addr=IpAddressUtils.bytesToStringIp4Address(getBytes());
 		return str_addr;
 	}
 	
+	/** Gets the address as array of bytes.
+	 * The returned array is shared and must not be modified.
+	 * @return the 4-byte address */
 	@Override
 	public byte[] getBytes() {
-		return addr;
+		byte[] buf=bytes;
+		if (buf==null) {
+			buf=new byte[4];
+			getBytes(buf,0);
+			bytes=buf;
+		}
+		return buf;
 	}
 
 	@Override
 	public int getBytes(byte[] buf, int off) {
-		System.arraycopy(addr,0,buf,off,4);
+		buf[off]=(byte)(addr>>24);
+		buf[off+1]=(byte)(addr>>16);
+		buf[off+2]=(byte)(addr>>8);
+		buf[off+3]=(byte)addr;
 		return 4;
 	}
 	
 	@Override
 	public boolean isMulticast() {
-		return ADDR_BROADCAST.equals(this) || Ip4Prefix.PREFIX_MULTICAST.contains(this);
+		// broadcast address 255.255.255.255, or multicast prefix 224.0.0.0/4
+		return addr==-1 || (addr&0xf0000000)==0xe0000000;
 	}
 
 	/*@Override
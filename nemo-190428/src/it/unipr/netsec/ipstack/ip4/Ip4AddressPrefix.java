@@ -20,9 +20,6 @@
 package it.unipr.netsec.ipstack.ip4;
 
 
-import it.unipr.netsec.ipstack.util.IpAddressUtils;
-
-
 /** Internet Protocol version 4 (IPv4) address with prefix length.
  * <p>
  * It extends class {@link Ip4Address} by simply adding prefix length information.
@@ -68,7 +65,7 @@ public class Ip4AddressPrefix extends Ip4Address implements IpAddressPrefix {
 	 * @param ip_addr IP address
 	 * @param prefix_len prefix length */
 	public Ip4AddressPrefix(Ip4Address ip_addr, int prefix_len) {
-		super(ip_addr.addr);
+		super(ip_addr.toInt());
 		this.prefix_len=prefix_len;
 	}
 	
@@ -79,10 +76,7 @@ public class Ip4AddressPrefix extends Ip4Address implements IpAddressPrefix {
 	
 	@Override
 	public Ip4Prefix getPrefix() {
-		byte[] prefix_mask=IpAddressUtils.prefixLengthToMask(prefix_len);
-		byte[] prefix_addr=new byte[prefix_mask.length];
-		for (int i=0; i<prefix_addr.length; i++) prefix_addr[i]=(byte)(addr[i]&prefix_mask[i]);
-		return new Ip4Prefix(prefix_addr,0,prefix_len);
+		return new Ip4Prefix(new Ip4Address(addr&Ip4Prefix.prefixLengthToIntMask(prefix_len)),prefix_len);
 	}
 	
 	@Override
@@ -108,7 +108,9 @@ public class Ip4EthInterface extends NetInterface {
 					dst_eth_addr=arp_client.lookup((Ip4Address)dest_addr);
 				}
 				if (dst_eth_addr!=null) {
-					EthPacket eth_packet=new EthPacket(eth_interface.getAddresses()[0],dst_eth_addr,EthPacket.ETH_IP4,ip_pkt.getBytes());
+					EthPacket eth_packet=new EthPacket(eth_interface.getAddresses()[0],dst_eth_addr,EthPacket.ETH_IP4,null);
+					// the serialized IP packet is not used elsewhere, so it is passed without being copied
+					eth_packet.setPayload(ip_pkt.getBytes());
 					eth_interface.send(eth_packet,dst_eth_addr);
 					if (DEBUG) debug("send(): IP packet sent to "+dst_eth_addr);
 				}
@@ -124,7 +126,7 @@ public class Ip4EthInterface extends NetInterface {
 	private void processIncomingPacket(NetInterface ni, Packet pkt) {
 		EthPacket eth_pkt=(EthPacket)pkt;
 		if (eth_pkt.getType()==EthPacket.ETH_IP4) {
-			Ip4Packet ip_pkt=Ip4Packet.parseIp4Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength());
+			Ip4Packet ip_pkt=Ip4Packet.parseIp4Packet(eth_pkt);
 			if (DEBUG)
 				if (!DEBUG_SUPPRESS_SSH_OUTPUT || ip_pkt.getProto()!=Ip4Packet.IPPROTO_TCP || (ByteUtils.twoBytesToInt(ip_pkt.getPayloadBuffer(),ip_pkt.getPayloadOffset())!=22 && ByteUtils.twoBytesToInt(ip_pkt.getPayloadBuffer(),ip_pkt.getPayloadOffset()+2)!=22)) 
 					debug("processIncomingPacket(): IP packet: "+ip_pkt);
@@ -29,6 +29,7 @@ import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.NetInterface;
 import it.unipr.netsec.ipstack.net.Node;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
 import it.unipr.netsec.ipstack.routing.Route;
 import it.unipr.netsec.ipstack.routing.RoutingTable;
 
@@ -153,6 +154,7 @@ public class Ip4Node extends Node {
 		//don't forward multicast packets
 		if (dest_addr.isMulticast()) {
 			if (DEBUG) debug("processForwardingPacket(): multicast packets are not forwarded");
+			if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
 			return;			
 		}
 		// else
@@ -160,6 +162,7 @@ public class Ip4Node extends Node {
 		int ttl=ip_pkt.getTTL();
 		if (ttl<=1) {
 			if (DEBUG) debug("processForwardingPacket(): TTL<1, packet discarded");
+			if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
 			// send ICMP Time Exceeded
 			Address dst_addr=ip_pkt.getSourceAddress();
 			Address src_addr=getSourceAddress(dst_addr);
@@ -168,20 +171,24 @@ public class Ip4Node extends Node {
 		}
 		// else	
 		ip_pkt.setTTL(ttl-1);
-		sendPacket(ip_pkt);
+		sendPacket(ip_pkt,true);
 	}
 	
 	@Override
-	public void sendPacket(Packet pkt) {
+	protected void sendPacket(Packet pkt, boolean forwarded) {
 		if (DEBUG) debug("sendPacket(): "+pkt);
 		IpAddress dest_addr=(IpAddress)pkt.getDestAddress();
 		if (dest_addr.isMulticast()) {
+			if (TrafficCounters.ENABLED) {
+				if (forwarded) counters.forwarded(pkt.getPacketLength());
+				else counters.sent(pkt.getPacketLength());
+			}
 			for (NetInterface ni: net_interfaces) {
 				if (DEBUG) debug("sendPacket(): forwarding packet through interface "+ni+" to "+dest_addr);
 				ni.send(pkt,dest_addr);	
 			}			
 		}
-		else super.sendPacket(pkt);
+		else super.sendPacket(pkt,forwarded);
 	}
 
 }
@@ -24,6 +24,8 @@ import it.unipr.netsec.ipstack.ethernet.EthPacket;
 import it.unipr.netsec.ipstack.net.DataPacket;
 import it.unipr.netsec.ipstack.util.Checksum;
 
+import java.nio.ByteBuffer;
+
 
 /** Internet Protocol version 4 (IPv4) packet (RFC 791).
   */
@@ -341,8 +343,8 @@ public class Ip4Packet extends DataPacket {
 		while ((index-off)%4!=0) buf[index++]=0; //OPT_PAD
 		//Ip4Address.stringToBytes(src_addr,buf,index); index+=4; // SRC_ADDR
 		//Ip4Address.stringToBytes(dst_addr,buf,index); index+=4; // DST_ADDR
-		System.arraycopy(((Ip4Address)src_addr).getBytes(),0,buf,index,4); index+=4; // SRC_ADDR
-		System.arraycopy(((Ip4Address)dst_addr).getBytes(),0,buf,index,4); index+=4; // DST_ADDR
+		index+=((Ip4Address)src_addr).getBytes(buf,index); // SRC_ADDR
+		index+=((Ip4Address)dst_addr).getBytes(buf,index); // DST_ADDR
 		if (data_len>0) System.arraycopy(data_buf,data_off,buf,off+20,data_len);
 
 		// compute the checksum
@@ -354,6 +356,38 @@ public class Ip4Packet extends DataPacket {
 	}
 
 	
+	/** Writes this packet into a byte buffer, at its current position.
+	 * The payload is put directly from the payload buffer, without intermediate arrays (e.g. for writing into a direct buffer).
+	 * @param buf the buffer where the packet is written
+	 * @return the packet length */
+	public int getBytes(ByteBuffer buf) {
+		int off=buf.position();
+		int hlen=options_len/4 + 5;
+		int total_len=hlen*4+data_len;
+		buf.put((byte)((VERSION<<4)|(hlen&0x0f))); // V + HLEN
+		buf.put((byte)tos); // TOS
+		buf.putShort((short)total_len); // LEN
+		buf.putShort((short)id); // ID
+		buf.put((byte)((dont_fragment?0x40:0x00) | (more_fragments?0x20:0x00) | ((fragment_off&0x1f00)>>8))); // FLAGS + FRAG OFF
+		buf.put((byte)(fragment_off&0x00ff)); // FRAG OFF
+		buf.put((byte)ttl); // TTL
+		buf.put((byte)proto); // PROTO
+		buf.putShort((short)0); // CHECKSUM 0
+		if (options_buf!=null) buf.put(options_buf,options_off,options_len);
+		else for (int i=0; i<options_len; i++) buf.put((byte)0);
+		while ((buf.position()-off)%4!=0) buf.put((byte)0); //OPT_PAD
+		buf.putInt(((Ip4Address)src_addr).toInt()); // SRC_ADDR
+		buf.putInt(((Ip4Address)dst_addr).toInt()); // DST_ADDR
+		if (data_len>0) buf.put(data_buf,data_off,data_len);
+
+		// compute the checksum
+		checksum=Checksum.checksum(buf,off,hlen*4);
+		buf.putShort(off+IPH_OFF_CHKSUM,(short)checksum);
+		
+		return total_len;
+	}
+
+	
 	/** Parses the given raw data (array of bytes) for an IPv4 packet.
 	 * @param buf the buffer containing the IP packet
 	 * @return the IP packet */
@@ -368,6 +402,17 @@ public class Ip4Packet extends DataPacket {
 	 * @param maxlen maximum number of bytes that can be processed
 	 * @return the IP packet */
 	public static Ip4Packet parseIp4Packet(byte[] buffer, int offset, int maxlen) {
+		return parseIp4Packet(buffer,offset,maxlen,false);
+	}
+
+	
+	/** Parses the given raw data (array of bytes) for an IPv4 packet.
+	 * @param buffer the buffer containing the IP packet
+	 * @param offset the offset within the buffer
+	 * @param maxlen maximum number of bytes that can be processed
+	 * @param share whether the payload of the new packet refers directly to the given buffer, that must not be modified afterwards
+	 * @return the IP packet */
+	private static Ip4Packet parseIp4Packet(byte[] buffer, int offset, int maxlen, boolean share) {
 		int version=(buffer[offset]&0xf0)>>4;
 		if (version!=4) new RuntimeException("Wrong IP version: "+version);
 		int hdr_len=(buffer[offset]&0x0f)<<2; // *4
@@ -394,7 +439,12 @@ public class Ip4Packet extends DataPacket {
 		int data_off=offset+hdr_len;
 		int data_len=pkt_len-hdr_len;
 		if (data_len>maxlen) new RuntimeException("Length field exceeds the number of available bytes");
-		Ip4Packet ip_packet=new Ip4Packet(src_addr,dst_addr,proto,data_buf,data_off,data_len);
+		Ip4Packet ip_packet;
+		if (share) {
+			ip_packet=new Ip4Packet(src_addr,dst_addr,proto,null,0,0);
+			ip_packet.setPayload(data_buf,data_off,data_len);
+		}
+		else ip_packet=new Ip4Packet(src_addr,dst_addr,proto,data_buf,data_off,data_len);
 		ip_packet.setTOS(tos);
 		ip_packet.setID(id);
 		ip_packet.setDontFragmentFlag(dont_fragment);
@@ -408,10 +458,11 @@ public class Ip4Packet extends DataPacket {
 
 	
 	/** Parses an Ethernet packet for an IP packet.
+	 * The payload of the IP packet is not copied, but it is shared with the Ethernet packet.
 	 * @param eth_pkt Ethernet packet containing the IP packet
 	 * @return the IP packet */
 	public static Ip4Packet parseIp4Packet(EthPacket eth_pkt) {
-		return parseIp4Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength());
+		return parseIp4Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength(),true);
 	}
 
 		
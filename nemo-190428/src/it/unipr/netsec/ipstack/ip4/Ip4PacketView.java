@@ -0,0 +1,235 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package it.unipr.netsec.ipstack.ip4;
+
+
+import java.nio.ByteBuffer;
+
+import it.unipr.netsec.ipstack.net.PacketView;
+import it.unipr.netsec.ipstack.util.Checksum;
+
+
+/** Flyweight view of an IPv4 packet stored in a {@link ByteBuffer}.
+ * <p>
+ * Header fields are decoded on demand. Changes of TTL and addresses are written in place,
+ * and the header checksum is incrementally updated (RFC 1624).
+ */
+public class Ip4PacketView extends PacketView {
+
+	/** IP header offset of TOS field */
+	private static final int IPH_OFF_TOS=1;
+	/** IP header offset of packet length field */
+	private static final int IPH_OFF_PLEN=2;
+	/** IP header offset of fragment identifier field */
+	private static final int IPH_OFF_ID=4;
+	/** IP header offset of TTL field */
+	private static final int IPH_OFF_TTL=8;
+	/** IP header offset of protocol field */
+	private static final int IPH_OFF_PROTO=9;
+	/** IP header offset of checksum field */
+	private static final int IPH_OFF_CHKSUM=10;
+	/** IP header offset of src address */
+	private static final int IPH_OFF_SRC=12;
+	/** IP header offset of dest address */
+	private static final int IPH_OFF_DST=16;
+
+	
+	/** Creates an empty view. */
+	public Ip4PacketView() {
+	}
+
+	/** Creates a new view.
+	 * @param buf the buffer containing the packet
+	 * @param off the offset of the packet within the buffer */
+	public Ip4PacketView(ByteBuffer buf, int off) {
+		super(buf,off);
+	}
+
+	@Override
+	public Ip4PacketView wrap(ByteBuffer buf, int off) {
+		super.wrap(buf,off);
+		return this;
+	}
+
+	/** Gets the IP version.
+	 * @return the version field (4 for a valid IPv4 packet) */
+	public int getVersion() {
+		return getByte(0)>>4;
+	}
+
+	/** Gets the header length.
+	 * @return the length of the IP header, including options */
+	public int getHeaderLength() {
+		return (getByte(0)&0x0f)<<2;
+	}
+
+	@Override
+	public int getPacketLength() {
+		return getWord(IPH_OFF_PLEN);
+	}
+
+	/** Gets the TOS.
+	 * @return the type of service */
+	public int getTOS() {
+		return getByte(IPH_OFF_TOS);
+	}
+
+	/** Gets the packet id.
+	 * @return the identification field */
+	public int getID() {
+		return getWord(IPH_OFF_ID);
+	}
+
+	/** Gets the TTL.
+	 * @return the time to live */
+	public int getTTL() {
+		return getByte(IPH_OFF_TTL);
+	}
+
+	/** Sets the TTL.
+	 * The header checksum is updated accordingly.
+	 * @param ttl the time to live */
+	public void setTTL(int ttl) {
+		setHeaderWord(IPH_OFF_TTL,((ttl&0xff)<<8)|getProto());
+	}
+
+	/** Decrements the TTL.
+	 * @return the new TTL */
+	public int decrementTTL() {
+		int ttl=getTTL()-1;
+		setTTL(ttl);
+		return ttl;
+	}
+
+	/** Gets the protocol.
+	 * @return the payload type */
+	public int getProto() {
+		return getByte(IPH_OFF_PROTO);
+	}
+
+	/** Gets the header checksum.
+	 * @return the checksum field */
+	public int getChecksum() {
+		return getWord(IPH_OFF_CHKSUM);
+	}
+
+	/** Whether the header checksum is correct.
+	 * @return <i>true</i> if correct */
+	public boolean isChecksumValid() {
+		int hlen=getHeaderLength();
+		int sum=0;
+		for (int i=0; i<hlen; i+=2) sum+=getWord(i);
+		while ((sum>>16)!=0) sum=(sum&0xffff)+(sum>>16);
+		return sum==0xffff;
+	}
+
+	/** Gets the source address.
+	 * @return a new address */
+	public Ip4Address getSourceAddress() {
+		return new Ip4Address(getAddress(IPH_OFF_SRC));
+	}
+
+	/** Sets the source address.
+	 * The header checksum is updated accordingly.
+	 * @param addr the new address */
+	public void setSourceAddress(Ip4Address addr) {
+		setAddress(IPH_OFF_SRC,addr);
+	}
+
+	/** Whether the source address is equal to a given address.
+	 * @param addr the address
+	 * @return <i>true</i> if equal */
+	public boolean hasSourceAddress(Ip4Address addr) {
+		return getAddress(IPH_OFF_SRC)==addr.toInt();
+	}
+
+	/** Gets the destination address.
+	 * @return a new address */
+	public Ip4Address getDestAddress() {
+		return new Ip4Address(getAddress(IPH_OFF_DST));
+	}
+
+	/** Sets the destination address.
+	 * The header checksum is updated accordingly.
+	 * @param addr the new address */
+	public void setDestAddress(Ip4Address addr) {
+		setAddress(IPH_OFF_DST,addr);
+	}
+
+	/** Whether the destination address is equal to a given address.
+	 * @param addr the address
+	 * @return <i>true</i> if equal */
+	public boolean hasDestAddress(Ip4Address addr) {
+		return getAddress(IPH_OFF_DST)==addr.toInt();
+	}
+
+	/** Gets the payload offset.
+	 * @return the offset of the payload within the buffer */
+	public int getPayloadOffset() {
+		return off+getHeaderLength();
+	}
+
+	/** Gets the payload length.
+	 * @return the length of the payload */
+	public int getPayloadLength() {
+		return getPacketLength()-getHeaderLength();
+	}
+
+	@Override
+	public Ip4Packet toPacket() {
+		if (buf.hasArray()) return Ip4Packet.parseIp4Packet(buf.array(),buf.arrayOffset()+off,getPacketLength());
+		// else
+		return Ip4Packet.parseIp4Packet(getBytes());
+	}
+
+	/** Reads an address.
+	 * @param i the position of the address
+	 * @return the 32-bit address */
+	private int getAddress(int i) {
+		return (getWord(i)<<16) | getWord(i+2);
+	}
+
+	/** Writes an address, updating the header checksum.
+	 * @param i the position of the address
+	 * @param addr the address */
+	private void setAddress(int i, Ip4Address addr) {
+		int a=addr.toInt();
+		setHeaderWord(i,a>>>16);
+		setHeaderWord(i+2,a&0xffff);
+	}
+
+	/** Writes a 16-bit word of the header, updating the header checksum.
+	 * @param i the position of the word
+	 * @param value the new value */
+	private void setHeaderWord(int i, int value) {
+		int old_value=getWord(i);
+		if (old_value==value) return;
+		// else
+		setWord(i,value);
+		setWord(IPH_OFF_CHKSUM,Checksum.updateChecksum(getWord(IPH_OFF_CHKSUM),old_value,value));
+	}
+
+	@Override
+	public String toString() {
+		return "IP "+getSourceAddress()+" > "+getDestAddress()+" ttl="+getTTL()+" proto="+getProto()+" datalen="+getPayloadLength();
+	}
+
+}
@@ -20,8 +20,6 @@
 package it.unipr.netsec.ipstack.ip4;
 
 
-import org.zoolu.util.ByteUtils;
-
 import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.util.IpAddressUtils;
 
@@ -29,6 +27,9 @@ import it.unipr.netsec.ipstack.util.IpAddressUtils;
 /** Internet Protocol version 4 (IPv4) network prefix.
  * <p>
  * Only prefix bits can be non-zeros.
+ * <p>
+ * The prefix mask is computed once as 32-bit integer, so that testing whether an address belongs to the prefix
+ * is a single AND and compare.
  */
 public class Ip4Prefix implements IpPrefix {
 
@@ -45,6 +46,9 @@ public class Ip4Prefix implements IpPrefix {
 	/** Prefix length */
 	int prefix_len;
 	
+	/** Prefix mask, as 32-bit integer */
+	int mask;
+	
 	
 	/** Creates a new prefix.
 	 * @param addr_and_prefix the address and prefix */
@@ -78,11 +82,19 @@ public class Ip4Prefix implements IpPrefix {
 	 * @param ip_addr IP address
 	 * @param prefix_len prefix length */
 	public Ip4Prefix(Ip4Address ip_addr, int prefix_len) {
+		if (prefix_len<0 || prefix_len>32) throw new RuntimeException("Invalid prefix length: "+prefix_len);
+		// else
 		this.ip_addr=ip_addr;
 		this.prefix_len=prefix_len;
-		byte[] addr=ip_addr.getBytes();
-		byte[] mask=IpAddressUtils.prefixLengthToMask(prefix_len);
-		for (int i=0; i<4; i++) if ((addr[i]&(mask[i]^0xff)&0xff)!=0) throw new RuntimeException("Invalid prefix address: "+ip_addr+"/"+prefix_len);
+		this.mask=prefixLengthToIntMask(prefix_len);
+		if ((ip_addr.toInt()&~mask)!=0) throw new RuntimeException("Invalid prefix address: "+ip_addr+"/"+prefix_len);
+	}
+	
+	/** Gets the prefix mask for a given prefix length, as integer.
+	 * @param len the prefix length
+	 * @return the 32-bit mask */
+	static int prefixLengthToIntMask(int len) {
+		return len==0? 0 : -1<<(32-len);
 	}
 	
 	@Override
@@ -103,10 +115,7 @@ public class Ip4Prefix implements IpPrefix {
 	/** Gets the subnet's broadcast address.
 	 * @return the address */
 	public Ip4Address getSubnetBroadcastAddress() {
-		byte[] mask=IpAddressUtils.prefixLengthToMask(prefix_len);
-		byte[] addr=ByteUtils.copy(getBytes());
-		for (int i=0; i<addr.length; i++) addr[i]|=mask[i]^0xff;
-		return new Ip4Address(addr);
+		return new Ip4Address(ip_addr.toInt()|~mask);
 	}
 	
 	/** Whether a given address matches this prefix.
@@ -122,13 +131,7 @@ public class Ip4Prefix implements IpPrefix {
 		}
 		if (!(addr instanceof Ip4Address)) return false;
 		// else
-		Ip4Address target_ip_addr=(Ip4Address)addr;
-		byte[] prefix_mask=IpAddressUtils.prefixLengthToMask(prefix_len);
-		byte[] prefix_addr=ip_addr.getBytes();
-		byte[] target_addr=target_ip_addr.getBytes();
-		for (int i=0; i<target_addr.length; i++) if ((target_addr[i]&prefix_mask[i])!=prefix_addr[i]) return false;
-		// else
-		return true;
+		return (((Ip4Address)addr).toInt()&mask)==ip_addr.toInt();
 	}
 	
 	@Override
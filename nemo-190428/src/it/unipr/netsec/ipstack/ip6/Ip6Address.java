@@ -23,7 +23,6 @@ package it.unipr.netsec.ipstack.ip6;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.Arrays;
 
 import it.unipr.netsec.ipstack.ip4.IpAddress;
 import it.unipr.netsec.ipstack.util.IpAddressUtils;
@@ -32,6 +31,9 @@ import it.unipr.netsec.ipstack.util.IpAddressUtils;
 /** Internet Protocol version 6 (IPv6) address.
  * <p>
  * The host-id part of the address (the suffix) is not required to be all zeros; non-zero suffix is simply ignored.
+ * <p>
+ * The address is stored as two 64-bit integers, so that comparison and hashing do not loop over bytes.
+ * The array of bytes is created only when requested through {@link #getBytes()}.
  */
 public class Ip6Address implements IpAddress {
 
@@ -50,8 +52,14 @@ public class Ip6Address implements IpAddress {
 	/** Multicast DNS  */
 	public static final Ip6Address ADDR_MDNS_MULTICAST=new Ip6Address("ff02::fb");
 	
-	/** The IP address */
-	byte[] addr=null;	
+	/** The most significant 64 bits of the IP address */
+	long hi;
+	
+	/** The least significant 64 bits of the IP address */
+	long lo;
+
+	/** The IP address as array of bytes (created on demand) */
+	volatile byte[] bytes=null;
 	
 	/** The string IP address (cached) */
 	String str_addr=null;
@@ -60,40 +68,60 @@ public class Ip6Address implements IpAddress {
 	/** Creates a new address.
 	 * @param iaddr address */
 	public Ip6Address(InetAddress iaddr) {
-		this.addr=iaddr.getAddress();
+		this(iaddr.getAddress(),0);
 	}
 	
 	/** Creates a new address.
 	 * @param str_addr the string address */
 	public Ip6Address(String str_addr) {
-		this.addr=IpAddressUtils.stringIp6AddressToBytes(str_addr);
+		this(IpAddressUtils.stringIp6AddressToBytes(str_addr),0);
 		this.str_addr=str_addr;
 	}
 	
 	/** Creates a new address.
 	 * @param buf byte array containing the address */
 	public Ip6Address(byte[] buf) {
-		this.addr=new byte[16];
-		System.arraycopy(buf,0,this.addr,0,16);
+		this(buf,0);
 	}
 	
 	/** Creates a new address.
 	 * @param buf byte array containing the address
 	 * @param off the offset within the buffer */
 	public Ip6Address(byte[] buf, int off) {
-		this.addr=new byte[16];
-		System.arraycopy(buf,off,this.addr,0,16);
+		hi=bytesToLong(buf,off);
+		lo=bytesToLong(buf,off+8);
+	}
+	
+	/** Creates a new address.
+	 * @param hi the most significant 64 bits of the address
+	 * @param lo the least significant 64 bits of the address */
+	public Ip6Address(long hi, long lo) {
+		this.hi=hi;
+		this.lo=lo;
+	}
+	
+	/** Gets the most significant 64 bits of the address.
+	 * @return the high-order bits, most significant byte first */
+	public long getHighBits() {
+		return hi;
+	}
+	
+	/** Gets the least significant 64 bits of the address.
+	 * @return the low-order bits, most significant byte first */
+	public long getLowBits() {
+		return lo;
 	}
 	
 	/*protected Ip6Address(Ip6Address ip_addr) {
 		this.str_addr=ip_addr.str_addr;
-		this.addr=ip_addr.addr;
+		this.hi=ip_addr.hi;
+		this.lo=ip_addr.lo;
 	}*/
 	
 	@Override
 	public InetAddress toInetAddress() {
 		try {
-			return Inet6Address.getByAddress(addr);
+			return Inet6Address.getByAddress(getBytes());
 		}
 		catch (UnknownHostException e) {
 			throw new RuntimeException(e.getMessage());
@@ -107,38 +135,54 @@ public class Ip6Address implements IpAddress {
 		else
 			if (o instanceof String) ip_addr=new Ip6Address((String)o);
 			else
-				if (o instanceof byte[]) ip_addr=new Ip6Address((byte[])o);
+				if (o instanceof byte[]) {
+					if (((byte[])o).length!=16) return false;
+					// else
+					ip_addr=new Ip6Address((byte[])o);
+				}
 				else
 					return false;
-		return Arrays.equals(addr,ip_addr.addr);
+		return hi==ip_addr.hi && lo==ip_addr.lo;
 	}
 	
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(getBytes());
+		long h=hi^lo;
+		return (int)(h^(h>>>32));
 	}
 
 	
 	@Override
 	public String toString() {
-		if (str_addr==null) str_addr=IpAddressUtils.bytesToStringIp6Address(addr);
+		if (str_addr==null) str_addr=IpAddressUtils.bytesToStringIp6Address(getBytes());
 		return str_addr;
 	}
 	
+	/** Gets the address as array of bytes.
+	 * The returned array is shared and must not be modified.
+	 * @return the 16-byte address */
 	@Override
 	public byte[] getBytes() {
-		return addr;
+		byte[] buf=bytes;
+		if (buf==null) {
+			buf=new byte[16];
+			getBytes(buf,0);
+			bytes=buf;
+		}
+		return buf;
 	}
 
 	@Override
 	public int getBytes(byte[] buf, int off) {
-		System.arraycopy(addr,0,buf,off,16);
+		longToBytes(hi,buf,off);
+		longToBytes(lo,buf,off+8);
 		return 16;
 	}
 
 	@Override
 	public boolean isMulticast() {
-		return Ip6Prefix.PREFIX_MULTICAST.contains(this);
+		// multicast prefix ff00::/8
+		return (hi>>>56)==0xff;
 	}
 
 	/*@Override
@@ -150,5 +194,26 @@ public class Ip6Address implements IpAddress {
 	public int length() {
 		return 16;
 	}
+	
+	/** Reads 8 bytes as a 64-bit integer, most significant byte first.
+	 * @param buf the buffer
+	 * @param off the offset within the buffer
+	 * @return the integer value */
+	static long bytesToLong(byte[] buf, int off) {
+		long n=0;
+		for (int i=0; i<8; i++) n=(n<<8)|(buf[off+i]&0xff);
+		return n;
+	}
+	
+	/** Writes a 64-bit integer as 8 bytes, most significant byte first.
+	 * @param n the integer value
+	 * @param buf the buffer
+	 * @param off the offset within the buffer */
+	static void longToBytes(long n, byte[] buf, int off) {
+		for (int i=7; i>=0; i--) {
+			buf[off+i]=(byte)n;
+			n>>>=8;
+		}
+	}
 
 }
@@ -66,7 +66,7 @@ public class Ip6AddressPrefix extends Ip6Address implements IpAddressPrefix {
 	 * @param ip_addr IP address
 	 * @param prefix_len prefix length */
 	public Ip6AddressPrefix(Ip6Address ip_addr, int prefix_len) {
-		super(ip_addr.addr);
+		super(ip_addr.hi,ip_addr.lo);
 		this.prefix_len=prefix_len;
 	}
 
@@ -77,10 +77,9 @@ public class Ip6AddressPrefix extends Ip6Address implements IpAddressPrefix {
 
 	@Override
 	public Ip6Prefix getPrefix() {
-		byte[] prefix_mask=Ip6Prefix.prefixMask(prefix_len);
-		byte[] prefix_addr=new byte[prefix_mask.length];
-		for (int i=0; i<prefix_addr.length; i++) prefix_addr[i]=(byte)(addr[i]&prefix_mask[i]);
-		return new Ip6Prefix(prefix_addr,0,prefix_len);
+		long mask_hi=Ip6Prefix.prefixLengthToLongMask(prefix_len);
+		long mask_lo=Ip6Prefix.prefixLengthToLongMask(prefix_len-64);
+		return new Ip6Prefix(new Ip6Address(hi&mask_hi,lo&mask_lo),prefix_len);
 	}
 
 	@Override
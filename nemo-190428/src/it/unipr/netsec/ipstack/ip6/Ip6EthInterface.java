@@ -121,7 +121,9 @@ public class Ip6EthInterface extends NetInterface {
 				if (dest_ip_addr.isMulticast()) dst_eth_addr=new EthMulticastAddress(dest_ip_addr);
 				else dst_eth_addr=nd_client.lookup(dest_ip_addr);
 				if (dst_eth_addr==null) dst_eth_addr=EthAddress.BROADCAST_ADDRESS;
-				EthPacket eth_packet=new EthPacket(eth_interface.getAddresses()[0],dst_eth_addr,EthPacket.ETH_IP6,ip_pkt.getBytes());
+				EthPacket eth_packet=new EthPacket(eth_interface.getAddresses()[0],dst_eth_addr,EthPacket.ETH_IP6,null);
+				// the serialized IP packet is not used elsewhere, so it is passed without being copied
+				eth_packet.setPayload(ip_pkt.getBytes());
 				eth_interface.send(eth_packet,dst_eth_addr);
 				if (DEBUG) debug("send(): IP packet ("+ip_pkt.getPayloadType()+") sent to "+dst_eth_addr);
 			}
@@ -134,7 +136,7 @@ public class Ip6EthInterface extends NetInterface {
 		EthPacket eth_pkt=(EthPacket)pkt;
 		//if (DEBUG) debug("processIncomingPacket(): Ethernet packet: "+eth_pkt);
 		if (eth_pkt.getType()==EthPacket.ETH_IP6) {
-			Ip6Packet ip_pkt=Ip6Packet.parseIp6Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength());
+			Ip6Packet ip_pkt=Ip6Packet.parseIp6Packet(eth_pkt);
 			if (DEBUG) debug("processIncomingPacket(): IP packet: "+ip_pkt);
 			// learn the Ethernet address of the source of ICMPv6 Neighbor Solicitation message
 			if (ip_pkt.getPayloadType()==Ip6Packet.IPPROTO_ICMP6) {
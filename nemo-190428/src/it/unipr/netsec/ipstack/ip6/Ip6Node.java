@@ -37,6 +37,7 @@ import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.NetInterface;
 import it.unipr.netsec.ipstack.net.Node;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
 import it.unipr.netsec.ipstack.routing.Route;
 import it.unipr.netsec.ipstack.routing.RoutingTable;
 
@@ -192,6 +193,7 @@ public class Ip6Node extends Node {
 		//don't forward multicast packets
 		if (((IpAddress)ip_pkt.getDestAddress()).isMulticast()) {
 			if (DEBUG) debug("processForwardingPacket(): multicast packets are not forwarded");
+			if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
 			return;			
 		}
 		// else
@@ -199,6 +201,7 @@ public class Ip6Node extends Node {
 		int hop_limit=ip_pkt.getHopLimit();
 		if (hop_limit<=1) {
 			if (DEBUG) debug("processForwardingPacket(): hop_limit<1, packet discarded");
+			if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
 			// send ICMP Time Exceeded
 			Ip6Address dst_addr=(Ip6Address)ip_pkt.getSourceAddress();
 			Ip6Address src_addr=getSourceAddress(dst_addr);
@@ -209,20 +212,24 @@ public class Ip6Node extends Node {
 		ip_pkt.setHopLimit(hop_limit-1);
 		// process IPv6 Hop-By-Hop Options header
 		// TODO
-		sendPacket(ip_pkt);
+		sendPacket(ip_pkt,true);
 	}
 
 	@Override
-	public void sendPacket(Packet pkt) {
+	protected void sendPacket(Packet pkt, boolean forwarded) {
 		if (DEBUG) debug("sendPacket(): "+pkt);
 		IpAddress dest_addr=(IpAddress)pkt.getDestAddress();
 		if (dest_addr.isMulticast()) {
+			if (TrafficCounters.ENABLED) {
+				if (forwarded) counters.forwarded(pkt.getPacketLength());
+				else counters.sent(pkt.getPacketLength());
+			}
 			for (NetInterface ni: net_interfaces) {
 				if (DEBUG) debug("sendPacket(): forwarding packet through interface "+ni+" to "+dest_addr);
 				ni.send(pkt,dest_addr);	
 			}			
 		}
-		else super.sendPacket(pkt);
+		else super.sendPacket(pkt,forwarded);
 	}
 
 }
@@ -29,6 +29,7 @@ import it.unipr.netsec.ipstack.ip6.exthdr.HopByHopOptionsHeader;
 import it.unipr.netsec.ipstack.ip6.exthdr.RoutingHeader;
 import it.unipr.netsec.ipstack.net.DataPacket;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import org.zoolu.util.ByteUtils;
@@ -298,10 +299,10 @@ public class Ip6Packet extends DataPacket {
 		buf[index++]=(byte)(next_header);
 		buf[index++]=(byte)(hop_limit);
 		//Ip6Address.stringToBytes(getSourceAddress(),buf,index);
-		System.arraycopy(((Ip6Address)src_addr).getBytes(),0,buf,index,16);
+		((Ip6Address)src_addr).getBytes(buf,index);
 		index+=16;
 		//Ip6Address.stringToBytes(getDestAddress(),buf,index);
-		System.arraycopy(((Ip6Address)dst_addr).getBytes(),0,buf,index,16);
+		((Ip6Address)dst_addr).getBytes(buf,index);
 		index+=16;		
 		// extension headers
 		if (ext_hdrs!=null && ext_hdrs.size()>0) {
@@ -318,6 +319,35 @@ public class Ip6Packet extends DataPacket {
 	}
 
 	
+	/** Writes this packet into a byte buffer, at its current position.
+	 * The payload is put directly from the payload buffer, without intermediate arrays (e.g. for writing into a direct buffer).
+	 * @param buf the buffer where the packet is written
+	 * @return the packet length */
+	public int getBytes(ByteBuffer buf) {
+		// basic header
+		int off=buf.position();
+		buf.put((byte)((VERSION<<4)|((traffic_class&0xf0)>>4)));
+		buf.put((byte)(((traffic_class&0x0f)<<4)|((flow_label&0xf0000)>>16)));
+		buf.put((byte)((flow_label&0xff00)>>8));
+		buf.put((byte)(flow_label&0xff));
+		int payload_len=getPacketLength()-40;
+		buf.putShort((short)payload_len);
+		int next_header=(ext_hdrs!=null && ext_hdrs.size()>0)? ext_hdrs.get(0).getHeaderType() : payload_type;
+		buf.put((byte)(next_header));
+		buf.put((byte)(hop_limit));
+		buf.putLong(((Ip6Address)src_addr).getHighBits()).putLong(((Ip6Address)src_addr).getLowBits());
+		buf.putLong(((Ip6Address)dst_addr).getHighBits()).putLong(((Ip6Address)dst_addr).getLowBits());
+		// extension headers
+		if (ext_hdrs!=null && ext_hdrs.size()>0) {
+			ext_hdrs.get(ext_hdrs.size()-1).setNextHdr(payload_type);
+			for (ExtensionHeader eh : ext_hdrs) eh.getBytes(buf);
+		}
+		// payload
+		if (data_len>0) buf.put(data_buf,data_off,data_len);
+		return buf.position()-off;
+	}
+
+	
 	/** Parses the given raw data (array of bytes) for an IPv6 packet.
 	 * @param buf the buffer containing the IP packet
 	 * @return the IP packet */
@@ -332,6 +362,17 @@ public class Ip6Packet extends DataPacket {
 	 * @param maxlen maximum number of bytes that can be processed
 	 * @return the IP packet */
 	public static Ip6Packet parseIp6Packet(byte[] buf, int off, int maxlen) {
+		return parseIp6Packet(buf,off,maxlen,false);
+	}
+
+	
+	/** Parses the given raw data (array of bytes) for an IPv6 packet.
+	 * @param buf the buffer containing the IP packet
+	 * @param off the offset within the buffer
+	 * @param maxlen maximum number of bytes that can be processed
+	 * @param share whether the payload of the new packet refers directly to the given buffer, that must not be modified afterwards
+	 * @return the IP packet */
+	private static Ip6Packet parseIp6Packet(byte[] buf, int off, int maxlen, boolean share) {
 		// basic header
 		int version=(buf[off]&0xf0)>>4;
 		if (version!=6) throw new RuntimeException("Wrong IPv6 version field ("+version+")");
@@ -393,7 +434,12 @@ public class Ip6Packet extends DataPacket {
 		int payload_type=next_header;
 		if (DEBUG) SystemUtils.log(LoggerLevel.DEBUG,"Ip6Packet: parseIp6Packet(): payload_type: "+payload_type);
 		// create packet
-		Ip6Packet pkt=new Ip6Packet(src_addr,dst_addr,payload_type,data_buf,data_off,data_len);
+		Ip6Packet pkt;
+		if (share) {
+			pkt=new Ip6Packet(src_addr,dst_addr,payload_type,null,0,0);
+			pkt.setPayload(data_buf,data_off,data_len);
+		}
+		else pkt=new Ip6Packet(src_addr,dst_addr,payload_type,data_buf,data_off,data_len);
 		pkt.setTrafficClass(traffic_class);
 		pkt.setFlowLabel(flow_label);
 		pkt.setHopLimit(hop_limit);
@@ -403,10 +449,21 @@ public class Ip6Packet extends DataPacket {
 
 		
 	/** Parses an Ethernet packet for an IP packet.
+	 * The payload of the IP packet is not copied, but it is shared with the Ethernet packet.
 	 * @param eth_pkt Ethernet packet containing the IP packet
 	 * @return the IP packet */
 	public static Ip6Packet parseIp6Packet(EthPacket eth_pkt) {
-		return parseIp6Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength());
+		return parseIp6Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength(),true);
+	}
+
+	/** Gets a copy of this packet.
+	 * The list of extension headers is copied, while the payload buffer is shared with this packet.
+	 * @return the new packet */
+	@Override
+	public Object clone() {
+		Ip6Packet pkt=(Ip6Packet)super.clone();
+		if (ext_hdrs!=null) pkt.ext_hdrs=new ArrayList<ExtensionHeader>(ext_hdrs);
+		return pkt;
 	}
 
 	
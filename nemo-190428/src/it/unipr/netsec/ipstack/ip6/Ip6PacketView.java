@@ -0,0 +1,313 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package it.unipr.netsec.ipstack.ip6;
+
+
+import java.nio.ByteBuffer;
+
+import it.unipr.netsec.ipstack.ip6.exthdr.ExtensionHeader;
+import it.unipr.netsec.ipstack.ip6.exthdr.RoutingHeader;
+import it.unipr.netsec.ipstack.net.PacketView;
+
+
+/** Flyweight view of an IPv6 packet stored in a {@link ByteBuffer}.
+ * <p>
+ * Header fields and extension headers are decoded on demand.
+ * Changes of hop limit, addresses, and SRH segments left are written in place.
+ */
+public class Ip6PacketView extends PacketView {
+
+	/** IP header offset of payload length field */
+	private static final int IPH_OFF_PLEN=4;
+	/** IP header offset of next header field */
+	private static final int IPH_OFF_NEXT_HDR=6;
+	/** IP header offset of hop limit field */
+	private static final int IPH_OFF_HOP_LIMIT=7;
+	/** IP header offset of src address */
+	private static final int IPH_OFF_SRC=8;
+	/** IP header offset of dest address */
+	private static final int IPH_OFF_DST=24;
+	/** IP header length */
+	private static final int IPH_LEN=40;
+	
+	/** SRH offset of the first segment */
+	private static final int SRH_OFF_SEGMENTS=8;
+
+	
+	/** Creates an empty view. */
+	public Ip6PacketView() {
+	}
+
+	/** Creates a new view.
+	 * @param buf the buffer containing the packet
+	 * @param off the offset of the packet within the buffer */
+	public Ip6PacketView(ByteBuffer buf, int off) {
+		super(buf,off);
+	}
+
+	@Override
+	public Ip6PacketView wrap(ByteBuffer buf, int off) {
+		super.wrap(buf,off);
+		return this;
+	}
+
+	/** Gets the IP version.
+	 * @return the version field (6 for a valid IPv6 packet) */
+	public int getVersion() {
+		return getByte(0)>>4;
+	}
+
+	/** Gets the traffic class.
+	 * @return the traffic class */
+	public int getTrafficClass() {
+		return (getWord(0)>>4)&0xff;
+	}
+
+	/** Gets the flow label.
+	 * @return the flow label */
+	public int getFlowLabel() {
+		return ((getByte(1)&0x0f)<<16) | getWord(2);
+	}
+
+	@Override
+	public int getPacketLength() {
+		return IPH_LEN+getWord(IPH_OFF_PLEN);
+	}
+
+	/** Gets the next header field of the IPv6 header.
+	 * @return the type of the first extension header, or the payload type if there are no extension headers */
+	public int getNextHdr() {
+		return getByte(IPH_OFF_NEXT_HDR);
+	}
+
+	/** Gets the hop limit.
+	 * @return the hop limit */
+	public int getHopLimit() {
+		return getByte(IPH_OFF_HOP_LIMIT);
+	}
+
+	/** Sets the hop limit.
+	 * @param hop_limit the hop limit */
+	public void setHopLimit(int hop_limit) {
+		setByte(IPH_OFF_HOP_LIMIT,hop_limit);
+	}
+
+	/** Decrements the hop limit.
+	 * @return the new hop limit */
+	public int decrementHopLimit() {
+		int hop_limit=getHopLimit()-1;
+		setHopLimit(hop_limit);
+		return hop_limit;
+	}
+
+	/** Gets the source address.
+	 * @return a new address */
+	public Ip6Address getSourceAddress() {
+		return getAddress(IPH_OFF_SRC);
+	}
+
+	/** Sets the source address.
+	 * @param addr the new address */
+	public void setSourceAddress(Ip6Address addr) {
+		setAddress(IPH_OFF_SRC,addr);
+	}
+
+	/** Whether the source address is equal to a given address.
+	 * @param addr the address
+	 * @return <i>true</i> if equal */
+	public boolean hasSourceAddress(Ip6Address addr) {
+		return hasAddress(IPH_OFF_SRC,addr);
+	}
+
+	/** Gets the destination address.
+	 * @return a new address */
+	public Ip6Address getDestAddress() {
+		return getAddress(IPH_OFF_DST);
+	}
+
+	/** Sets the destination address.
+	 * @param addr the new address */
+	public void setDestAddress(Ip6Address addr) {
+		setAddress(IPH_OFF_DST,addr);
+	}
+
+	/** Whether the destination address is equal to a given address.
+	 * @param addr the address
+	 * @return <i>true</i> if equal */
+	public boolean hasDestAddress(Ip6Address addr) {
+		return hasAddress(IPH_OFF_DST,addr);
+	}
+
+	/** Gets the position of an extension header.
+	 * @param type the extension header type
+	 * @return the offset of the extension header within the packet, or -1 if not present */
+	public int getExtHdrOffset(int type) {
+		int next_hdr=getNextHdr();
+		int i=IPH_LEN;
+		while (isExtHdr(next_hdr)) {
+			if (next_hdr==type) return i;
+			// else
+			int len=extHdrLength(next_hdr,i);
+			next_hdr=getByte(i);
+			i+=len;
+		}
+		return -1;
+	}
+
+	/** Whether the packet has a given extension header.
+	 * @param type the extension header type
+	 * @return <i>true</i> if present */
+	public boolean hasExtHdr(int type) {
+		return getExtHdrOffset(type)>=0;
+	}
+
+	/** Gets the payload type.
+	 * @return the type of the header that follows the IPv6 header and all extension headers */
+	public int getPayloadType() {
+		int next_hdr=getNextHdr();
+		int i=IPH_LEN;
+		while (isExtHdr(next_hdr)) {
+			int len=extHdrLength(next_hdr,i);
+			next_hdr=getByte(i);
+			i+=len;
+		}
+		return next_hdr;
+	}
+
+	/** Gets the position of the Segment Routing Header (SRH).
+	 * @return the offset of the SRH within the packet, or -1 if not present */
+	public int getSrhOffset() {
+		int i=getExtHdrOffset(ExtensionHeader.ROUTING_HDR);
+		if (i<0 || getByte(i+2)!=RoutingHeader.TYPE_SRH) return -1;
+		// else
+		return i;
+	}
+
+	/** Gets the segments left field of the SRH.
+	 * @param srh_off the offset of the SRH within the packet
+	 * @return the segments left */
+	public int getSegmentLeft(int srh_off) {
+		return getByte(srh_off+3);
+	}
+
+	/** Sets the segments left field of the SRH.
+	 * @param srh_off the offset of the SRH within the packet
+	 * @param segment_left the segments left */
+	public void setSegmentLeft(int srh_off, int segment_left) {
+		setByte(srh_off+3,segment_left);
+	}
+
+	/** Gets the clean-up flag of the SRH.
+	 * @param srh_off the offset of the SRH within the packet
+	 * @return the clean-up flag */
+	public boolean getCleanupFlag(int srh_off) {
+		return (getByte(srh_off+5)&0x80)==0x80;
+	}
+
+	/** Gets a segment of the SRH.
+	 * @param srh_off the offset of the SRH within the packet
+	 * @param i the index of the segment
+	 * @return a new address */
+	public Ip6Address getSegmentAt(int srh_off, int i) {
+		return getAddress(srh_off+SRH_OFF_SEGMENTS+16*i);
+	}
+
+	/** Sets the destination address to a segment of the SRH.
+	 * The segment is copied in place.
+	 * @param srh_off the offset of the SRH within the packet
+	 * @param i the index of the segment */
+	public void setDestAddressToSegment(int srh_off, int i) {
+		int segment_off=srh_off+SRH_OFF_SEGMENTS+16*i;
+		for (int k=0; k<16; k++) setByte(IPH_OFF_DST+k,getByte(segment_off+k));
+	}
+
+	@Override
+	public Ip6Packet toPacket() {
+		if (buf.hasArray()) return Ip6Packet.parseIp6Packet(buf.array(),buf.arrayOffset()+off,getPacketLength());
+		// else
+		return Ip6Packet.parseIp6Packet(getBytes());
+	}
+
+	/** Reads an address.
+	 * @param i the position of the address
+	 * @return a new address */
+	private Ip6Address getAddress(int i) {
+		return new Ip6Address(getLong(i),getLong(i+8));
+	}
+
+	/** Writes an address.
+	 * @param i the position of the address
+	 * @param addr the address */
+	private void setAddress(int i, Ip6Address addr) {
+		setLong(i,addr.getHighBits());
+		setLong(i+8,addr.getLowBits());
+	}
+
+	/** Whether the address at a given position is equal to a given address.
+	 * @param i the position of the address
+	 * @param addr the address
+	 * @return <i>true</i> if equal */
+	private boolean hasAddress(int i, Ip6Address addr) {
+		return getLong(i)==addr.getHighBits() && getLong(i+8)==addr.getLowBits();
+	}
+
+	/** Gets a 64-bit integer in network byte order.
+	 * @param i the position within the packet
+	 * @return the value */
+	private long getLong(int i) {
+		return ((long)((getWord(i)<<16)|getWord(i+2))<<32) | (((getWord(i+4)<<16)|getWord(i+6))&0xffffffffL);
+	}
+
+	/** Sets a 64-bit integer in network byte order.
+	 * @param i the position within the packet
+	 * @param value the new value */
+	private void setLong(int i, long value) {
+		setWord(i,(int)(value>>>48));
+		setWord(i+2,(int)(value>>>32));
+		setWord(i+4,(int)(value>>>16));
+		setWord(i+6,(int)value);
+	}
+
+	/** Whether a given type is an extension header that can be skipped.
+	 * @param type the header type
+	 * @return <i>true</i> if it is an extension header */
+	private static boolean isExtHdr(int type) {
+		return type==ExtensionHeader.HOP_OPTIONS_HDR || type==ExtensionHeader.ROUTING_HDR || type==ExtensionHeader.FRAGMENT_HDR || type==ExtensionHeader.DST_OPTIONS_HDR || type==ExtensionHeader.AUTH_HDR;
+	}
+
+	/** Gets the length of an extension header.
+	 * @param type the extension header type
+	 * @param i the offset of the extension header within the packet
+	 * @return the length */
+	private int extHdrLength(int type, int i) {
+		if (type==ExtensionHeader.FRAGMENT_HDR) return 8;
+		// else
+		if (type==ExtensionHeader.AUTH_HDR) return (getByte(i+1)+2)*4;
+		// else
+		return (getByte(i+1)+1)*8;
+	}
+
+	@Override
+	public String toString() {
+		return "IP "+getSourceAddress()+" > "+getDestAddress()+" hop_limit="+getHopLimit()+" proto="+getPayloadType()+" datalen="+(getPacketLength()-IPH_LEN);
+	}
+
+}
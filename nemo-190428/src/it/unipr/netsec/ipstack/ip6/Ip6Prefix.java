@@ -28,6 +28,9 @@ import it.unipr.netsec.ipstack.net.Address;
 /** Internet Protocol version 6 (IPv6) network prefix.
  * <p>
  * Only prefix bits can be non-zeros.
+ * <p>
+ * The prefix mask is computed once as two 64-bit integers, so that testing whether an address belongs to the prefix
+ * is two ANDs and compares.
  */
 public class Ip6Prefix implements IpPrefix {
 	
@@ -43,8 +46,11 @@ public class Ip6Prefix implements IpPrefix {
 	/** Prefix length */
 	int prefix_len;
 
-	/** Prefix mask */
-	byte[] prefix_mask=null;
+	/** Most significant 64 bits of the prefix mask */
+	long mask_hi;
+
+	/** Least significant 64 bits of the prefix mask */
+	long mask_lo;
 
 	
 	/** Creates a new prefix.
@@ -80,11 +86,20 @@ public class Ip6Prefix implements IpPrefix {
 	 * @param ip_addr IP address
 	 * @param prefix_len prefix length */
 	public Ip6Prefix(Ip6Address ip_addr, int prefix_len) {
+		if (prefix_len<0 || prefix_len>128) throw new RuntimeException("Invalid prefix length: "+prefix_len);
+		// else
 		this.ip_addr=ip_addr;
 		this.prefix_len=prefix_len;
-		byte[] addr=ip_addr.getBytes();
-		byte[] mask=prefixMask(prefix_len);
-		for (int i=0; i<16; i++) if ((addr[i]&(mask[i]^0xff)&0xff)!=0) throw new RuntimeException("Invalid prefix address: "+ip_addr+"/"+prefix_len);
+		this.mask_hi=prefixLengthToLongMask(prefix_len);
+		this.mask_lo=prefixLengthToLongMask(prefix_len-64);
+		if ((ip_addr.hi&~mask_hi)!=0 || (ip_addr.lo&~mask_lo)!=0) throw new RuntimeException("Invalid prefix address: "+ip_addr+"/"+prefix_len);
+	}
+	
+	/** Gets the 64-bit mask with a given number of leading ones.
+	 * @param len the number of leading ones; values less than 0 or greater than 64 are treated as 0 and 64, respectively
+	 * @return the 64-bit mask */
+	static long prefixLengthToLongMask(int len) {
+		return len<=0? 0L : len>=64? -1L : -1L<<(64-len);
 	}
 		
 	@Override
@@ -124,13 +139,8 @@ public class Ip6Prefix implements IpPrefix {
 		}
 		if (!(addr instanceof Ip6Address)) return false;
 		// else
-		Ip6Address target_ip_addr=(Ip6Address)addr;		
-		byte[] prefix_mask=prefixMask(prefix_len);
-		byte[] prefix_addr=ip_addr.getBytes();
-		byte[] target_addr=target_ip_addr.getBytes();
-		for (int i=0; i<target_addr.length; i++) if ((target_addr[i]&prefix_mask[i])!=prefix_addr[i]) return false;
-		// else
-		return true;
+		Ip6Address target_ip_addr=(Ip6Address)addr;
+		return (target_ip_addr.hi&mask_hi)==ip_addr.hi && (target_ip_addr.lo&mask_lo)==ip_addr.lo;
 	}
 	
 	@Override
@@ -21,6 +21,10 @@ package it.unipr.netsec.ipstack.ip6.exthdr;
 
 
 
+import java.nio.ByteBuffer;
+
+
+
 /** A generic IPv6 extension header.
  */
 public class ExtensionHeader {
@@ -162,6 +166,15 @@ public class ExtensionHeader {
 	}
 
 	
+	/** Writes the extension header into a byte buffer, at its current position.
+	 * @param buf the buffer where the extension header is written
+	 * @return the extension header length */
+	public int getBytes(ByteBuffer buf) {
+		buf.put(this.buf,this.off,this.len);
+		return this.len;
+	}
+
+	
 	/** Gets a the extension header in a byte array.
 	 * @return a new byte array containing the extension header */
 	public byte[] getBytes() {
@@ -22,16 +22,18 @@ package it.unipr.netsec.ipstack.link;
 
 import it.unipr.netsec.ipstack.ethernet.EthPacket;
 import it.unipr.netsec.ipstack.ip4.Ip4Address;
-import it.unipr.netsec.ipstack.ip4.Ip4Packet;
+import it.unipr.netsec.ipstack.ip4.Ip4PacketView;
 import it.unipr.netsec.ipstack.ip4.SocketAddress;
-import it.unipr.netsec.ipstack.ip6.Ip6Packet;
-import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.ip6.Ip6PacketView;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.SocketException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 
 import org.zoolu.util.Flags;
 import org.zoolu.util.LoggerLevel;
@@ -40,6 +42,13 @@ import org.zoolu.util.SystemUtils;
 
 
 /** Hub that interconnects a set of Ethernet over UDP tunnels.
+ * <p>
+ * By default, each received frame is sent to all other endpoints.
+ * In <i>learning</i> mode, the hub works as a learning switch: it learns the endpoint of each source MAC address, and
+ * sends a unicast frame only to the endpoint of its destination MAC address, flooding only broadcast and multicast frames,
+ * and frames with unknown destination. Learned addresses expire if no frame is received from them for a given aging time.
+ * <p>
+ * Received frames are inspected in place within the receiver buffer, without decoding them into packet objects.
  */
 public class EthTunnelHub {
 
@@ -58,6 +67,9 @@ public class EthTunnelHub {
 	/** Default maximum number of endpoints */
 	private static int DEFAULT_SWITCH_SIZE=32;
 
+	/** Default aging time of learned MAC addresses, in milliseconds */
+	public static long DEFAULT_AGING_TIME=300000;
+
 	/** Receiver buffer size */
 	private static final int BUFFER_SIZE=8000;
 
@@ -67,8 +79,26 @@ public class EthTunnelHub {
 	/** Maximum number of connected endpoints */
 	int max_endpoints;
 	
-	/** Active endpoints attached to this hub */
-	ArrayList<SocketAddress> endpoints=new ArrayList<SocketAddress>();
+	/** Active endpoints attached to this hub, in order of attachment */
+	LinkedHashSet<SocketAddress> endpoints=new LinkedHashSet<SocketAddress>();
+
+	/** Whether working as learning switch */
+	boolean learning;
+
+	/** Aging time of learned MAC addresses, in milliseconds */
+	long aging_time=DEFAULT_AGING_TIME;
+
+	/** MAC table, with the endpoint of each learned MAC address */
+	HashMap<Long,MacEntry> mac_table=new HashMap<Long,MacEntry>();
+
+	/** Time of the last removal of expired MAC addresses */
+	long purge_time=0;
+
+	/** Number of received frames */
+	volatile long rx_count=0;
+
+	/** Number of sent datagrams */
+	volatile long tx_count=0;
 
 	
 	/** Creates a new hub. 
@@ -89,50 +119,111 @@ public class EthTunnelHub {
 	 * @param max_endpoints maximum number of connected endpoints
 	 * @throws SocketException */
 	public EthTunnelHub(int port, int max_endpoints) throws SocketException {
-		System.out.println("Virtual switch on UDP port "+port+", maximum number of virtual PH ports: "+max_endpoints);
+		this(port,max_endpoints,false);
+	}
+	
+	/** Creates a new hub. 
+	 * @param port the local UDP port 
+	 * @param max_endpoints maximum number of connected endpoints
+	 * @param learning whether working as learning switch
+	 * @throws SocketException */
+	public EthTunnelHub(int port, int max_endpoints, boolean learning) throws SocketException {
+		System.out.println("Virtual "+(learning? "switch" : "hub")+" on UDP port "+port+", maximum number of virtual PH ports: "+max_endpoints);
 		this.sock=new DatagramSocket(port);
 		this.max_endpoints=max_endpoints;		
+		this.learning=learning;
 		run();
 	}
 	
+	/** Sets the aging time of learned MAC addresses.
+	 * @param aging_time the aging time, in milliseconds */
+	public void setAgingTime(long aging_time) {
+		this.aging_time=aging_time;
+	}
+	
+	/** Gets the number of received frames.
+	 * Ping frames and discarded frames are not counted.
+	 * @return the number of frames */
+	public long getReceivedCount() {
+		return rx_count;
+	}
+	
+	/** Gets the number of sent datagrams.
+	 * @return the number of datagrams sent to the endpoints */
+	public long getSentCount() {
+		return tx_count;
+	}
+	
 	/** Runs the hub. */
 	private void run() {
 		final int max_endpoints1=max_endpoints;
 		new Thread() {
 			public void run() {
-				DatagramPacket datagram=new DatagramPacket(new byte[BUFFER_SIZE],BUFFER_SIZE);
+				byte[] buf=new byte[BUFFER_SIZE];
+				DatagramPacket datagram=new DatagramPacket(buf,BUFFER_SIZE);
+				ByteBuffer byte_buffer=ByteBuffer.wrap(buf);
+				Ip4PacketView ip4_view=new Ip4PacketView();
+				Ip6PacketView ip6_view=new Ip6PacketView();
 				int index=0; // virtual index of the next end-point
 				try {
 					while (true) {
 						sock.receive(datagram);
-						EthPacket eth_pkt=EthPacket.parseEthPacket(datagram.getData(),datagram.getOffset(),datagram.getLength());
-						if (DEBUG) debug("packet received: "+eth_pkt);
-						int proto=eth_pkt.getType();
+						int off=datagram.getOffset();
+						int len=datagram.getLength();
+						if (len<14) {
+							if (DEBUG) debug("invalid packet length ("+len+"): packet discarded");
+							continue;
+						}
+						// else
+						if (DEBUG) debug("packet received: "+EthPacket.parseEthPacket(buf,off,len));
+						int proto=((buf[off+12]&0xff)<<8) | (buf[off+13]&0xff);
 						SocketAddress src_soaddr=new SocketAddress(new Ip4Address(datagram.getAddress()),datagram.getPort());
 						if (!endpoints.contains(src_soaddr)) {
 							System.out.println("new endpoint ["+index+"]: "+src_soaddr);							
 							if (max_endpoints1>0 && max_endpoints1==endpoints.size()) {
 								//if (DEBUG) debug("too much endpoints already connected ("+max_endpoints1+"): packet discarded");
 								//continue;
-								System.out.println("there are already "+max_endpoints1+" end-points connected: disconnecting "+endpoints.get(0));
-								endpoints.remove(0);
+								Iterator<SocketAddress> i=endpoints.iterator();
+								System.out.println("there are already "+max_endpoints1+" end-points connected: disconnecting "+i.next());
+								i.remove();
 							}
 							// else
 							endpoints.add(src_soaddr);
 							index=(index+1)%max_endpoints;
 						}
-						Packet pkt;
 						if (proto==EthTunnelInterface.PING_TYPE) {
 							if (DEBUG) debug("it's a ping");
 							continue;
 						}
-						if (proto==EthPacket.ETH_IP4) pkt=Ip4Packet.parseIp4Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength());
+						boolean valid;
+						if (proto==EthPacket.ETH_IP4) valid=ip4_view.wrap(byte_buffer,off+14).getVersion()==4;
 						else
-						if (proto==EthPacket.ETH_IP6) pkt=Ip6Packet.parseIp6Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength());
+						if (proto==EthPacket.ETH_IP6) valid=ip6_view.wrap(byte_buffer,off+14).getVersion()==6;
 						else {
 							if (DEBUG) debug("protocol "+proto+" not supported: packet discarded");
 							continue;
 						}
+						if (!valid) {
+							if (DEBUG) debug("wrong IP version: packet discarded");
+							continue;
+						}
+						rx_count++;
+						if (learning) {
+							SocketAddress dst_soaddr=learn(buf,off,src_soaddr);
+							if (dst_soaddr!=null) {
+								if (!dst_soaddr.equals(src_soaddr)) {
+									if (DEBUG) debug("packet sent to "+dst_soaddr);
+									datagram.setAddress(dst_soaddr.getIpAddress().toInetAddress());
+									datagram.setPort(dst_soaddr.getPort());
+									sock.send(datagram);
+									tx_count++;
+								}
+								else {
+									if (DEBUG) debug("destination on the same endpoint: packet discarded");
+								}
+								continue;
+							}
+						}
 						// broadcast to all endpoints
 						for (SocketAddress dst_soaddr : endpoints) {
 							if (!dst_soaddr.equals(src_soaddr)) {
@@ -140,6 +231,7 @@ public class EthTunnelHub {
 								datagram.setAddress(dst_soaddr.getIpAddress().toInetAddress());
 								datagram.setPort(dst_soaddr.getPort());
 								sock.send(datagram);
+								tx_count++;
 							}
 						}		
 					}
@@ -151,11 +243,86 @@ public class EthTunnelHub {
 		}.start();
 	}
 	
+	/** Learns the endpoint of the source MAC address of a frame, and looks up the endpoint of the destination MAC address.
+	 * @param buf the buffer containing the frame
+	 * @param off the offset of the frame within the buffer
+	 * @param src_soaddr the endpoint the frame has been received from
+	 * @return the endpoint of the destination, or <i>null</i> if the frame has to be flooded */
+	private SocketAddress learn(byte[] buf, int off, SocketAddress src_soaddr) {
+		// wall-clock time, since the hub relays real datagrams even when the default clock is virtual
+		long now=System.currentTimeMillis();
+		if (now-purge_time>aging_time) {
+			for (Iterator<MacEntry> i=mac_table.values().iterator(); i.hasNext(); ) if (now-i.next().time>aging_time) i.remove();
+			purge_time=now;
+		}
+		long src_mac=macToLong(buf,off+6);
+		if (!isGroupAddress(src_mac)) {
+			MacEntry entry=mac_table.get(src_mac);
+			if (entry==null) {
+				mac_table.put(src_mac,new MacEntry(src_soaddr,now));
+				if (DEBUG) debug("learned MAC address "+Long.toHexString(src_mac)+" on "+src_soaddr);
+			}
+			else {
+				entry.endpoint=src_soaddr;
+				entry.time=now;
+			}
+		}
+		long dst_mac=macToLong(buf,off);
+		if (isGroupAddress(dst_mac)) return null;
+		// else
+		MacEntry entry=mac_table.get(dst_mac);
+		if (entry==null) return null;
+		// else
+		if (now-entry.time>aging_time || !endpoints.contains(entry.endpoint)) {
+			mac_table.remove(dst_mac);
+			return null;
+		}
+		// else
+		return entry.endpoint;
+	}
+	
+	/** Gets a MAC address as integer.
+	 * @param buf the buffer containing the address
+	 * @param off the offset within the buffer
+	 * @return the 48-bit address */
+	private static long macToLong(byte[] buf, int off) {
+		long mac=0;
+		for (int i=0; i<6; i++) mac=(mac<<8) | (buf[off+i]&0xff);
+		return mac;
+	}
+	
+	/** Whether a MAC address is a group (broadcast or multicast) address.
+	 * @param mac the 48-bit address
+	 * @return <i>true</i> if the I/G bit is set */
+	private static boolean isGroupAddress(long mac) {
+		return ((mac>>>40)&0x01)!=0;
+	}
+	
 	@Override
 	public String toString() {
 		return getClass().getSimpleName()+"["+sock.getLocalPort()+"]";
 	}
 
+
+	/** Entry of the MAC table.
+	 */
+	static class MacEntry {
+		
+		/** Endpoint */
+		SocketAddress endpoint;
+		
+		/** Time of the last frame received from this address, in milliseconds */
+		long time;
+		
+		/** Creates a new entry.
+		 * @param endpoint the endpoint
+		 * @param time the current time, in milliseconds */
+		MacEntry(SocketAddress endpoint, long time) {
+			this.endpoint=endpoint;
+			this.time=time;
+		}
+	}
+
 	
 	/** Main method for running a stand-alone hub. 
 	 * @throws SocketException */
@@ -163,6 +330,8 @@ public class EthTunnelHub {
 		Flags flags=new Flags(args);
 		int port=flags.getInteger("-p","<port>",DEFAULT_PORT,"local UDP port (default "+DEFAULT_PORT+")");
 		int max_endpoints=flags.getInteger("-n","<num>",DEFAULT_SWITCH_SIZE,"maximum number of endpoints (default "+DEFAULT_SWITCH_SIZE+")");
+		boolean learning=flags.getBoolean("-l","learning switch mode (unicast frames are sent only to the endpoint of the destination)");
+		long aging_time=flags.getLong("-a","<millisecs>",DEFAULT_AGING_TIME,"aging time of learned MAC addresses, in learning mode (default "+DEFAULT_AGING_TIME+")");
 		boolean verbose=flags.getBoolean("-v","verbose mode");
 		boolean help=flags.getBoolean("-h","prints this help");
 		if (help) {
@@ -174,7 +343,7 @@ public class EthTunnelHub {
 			SystemUtils.setDefaultLogger(new LoggerWriter(System.out,LoggerLevel.DEBUG));
 			EthTunnelHub.DEBUG=true;
 		}
-		new EthTunnelHub(port,max_endpoints);
+		new EthTunnelHub(port,max_endpoints,learning).setAgingTime(aging_time);
 	}
 
 }
@@ -23,8 +23,12 @@ package it.unipr.netsec.ipstack.link;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
+import org.zoolu.util.ByteArrayPool;
 import org.zoolu.util.LoggerLevel;
 import org.zoolu.util.SystemUtils;
 
@@ -40,9 +44,17 @@ import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.NetInterface;
 import it.unipr.netsec.ipstack.net.NetInterfaceListener;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
 
 
 /** Ethernet over UDP tunnel toward a selected end-point.
+ * <p>
+ * If the rawsocket UDP implementation is not available, frames are sent and received through a NIO {@link DatagramChannel}
+ * (or through a standard {@link java.net.DatagramSocket} if {@link #USE_CHANNEL} is <i>false</i>).
+ * With the channel, the Ethernet header and the IP packet are written directly into a reused direct buffer.
+ * <p>
+ * Incoming frames are filtered by destination MAC address before the IP packet is decoded;
+ * with the channel, frames are filtered within the direct receiver buffer, and only accepted frames are copied out of it.
  */
 public class EthTunnelInterface extends NetInterface {
 
@@ -55,12 +67,18 @@ public class EthTunnelInterface extends NetInterface {
 	}
 
 
+	/** Whether the NIO datagram channel is used in place of the standard datagram socket */
+	public static boolean USE_CHANNEL=true;
+
 	/** Ping protocol type */
 	public static final int PING_TYPE=0;
 
 	/** Ping packet */
 	private static final byte[] PING=new EthPacket(EthAddress.BROADCAST_ADDRESS,EthAddress.BROADCAST_ADDRESS,PING_TYPE,null,0,0).getBytes();
 
+	/** Minimum frame length, without FCS */
+	private static final int MIN_FRAME_LEN=60;
+
 	/** Receiver buffer size */
 	private static final int BUFFER_SIZE=8000;
 	
@@ -69,10 +87,25 @@ public class EthTunnelInterface extends NetInterface {
 	
 	/** Local UDP from rawsocket package */
 	it.unipr.netsec.rawsocket.udp.DatagramSocket datagram_socket_raw=null;
+	
+	/** Local UDP from NIO package */
+	DatagramChannel datagram_channel=null;
+	
+	/** Direct buffer for outgoing frames, when using the datagram channel */
+	ByteBuffer send_buffer=null;
 
 	/** Remote UDP end-point */
 	SocketAddress remote_soaddr;
 
+	/** Remote UDP end-point, as Java socket address */
+	InetSocketAddress remote_inetsoaddr=null;
+
+	/** Local MAC address, used as source address of the outgoing frames */
+	EthAddress local_eth_addr;
+
+	/** Local MAC address, as array of bytes */
+	byte[] local_eth_bytes;
+
 	/** Reverse UDP */
 	//boolean reverse_udp=false;
 
@@ -99,11 +132,26 @@ public class EthTunnelInterface extends NetInterface {
 			if (DEBUG) debug("DatagramSocket impl: "+provider.get(null).toString());
 		}
 		catch (Exception e) {
-			if (local_port>0) datagram_socket_std=new java.net.DatagramSocket(local_port);
-			else datagram_socket_std=new java.net.DatagramSocket();
-			if (DEBUG) debug("DatagramSocket impl: standard");
+			if (USE_CHANNEL) {
+				try {
+					datagram_channel=DatagramChannel.open();
+					datagram_channel.bind(new InetSocketAddress(local_port>0? local_port : 0));
+				}
+				catch (IOException e2) {
+					throw new SocketException(e2.getMessage());
+				}
+				send_buffer=ByteBuffer.allocateDirect(BUFFER_SIZE);
+				if (DEBUG) debug("DatagramSocket impl: channel");
+			}
+			else {
+				if (local_port>0) datagram_socket_std=new java.net.DatagramSocket(local_port);
+				else datagram_socket_std=new java.net.DatagramSocket();
+				if (DEBUG) debug("DatagramSocket impl: standard");
+			}
 		}		
-		this.remote_soaddr=remote_soaddr;
+		setRemoteSocketAddress(remote_soaddr);
+		local_eth_addr=addr instanceof IpAddress? ipToMac((IpAddress)addr) : EthAddress.BROADCAST_ADDRESS;
+		local_eth_bytes=local_eth_addr.getBytes();
 		start();
 	}
 
@@ -111,38 +159,57 @@ public class EthTunnelInterface extends NetInterface {
 	private void start() {
 		new Thread() {
 			public void run() {
-				DatagramPacket datagram=new DatagramPacket(new byte[BUFFER_SIZE],BUFFER_SIZE);
+				byte[] buf=new byte[BUFFER_SIZE];
+				DatagramPacket datagram=new DatagramPacket(buf,BUFFER_SIZE);
+				ByteBuffer rcv_buffer=datagram_channel!=null? ByteBuffer.allocateDirect(BUFFER_SIZE) : null;
 				try {
 					while (true) {
-						if (datagram_socket_std!=null) datagram_socket_std.receive(datagram);
-						else datagram_socket_raw.receive(datagram);
-						EthPacket eth_pkt=EthPacket.parseEthPacket(datagram.getData(),datagram.getOffset(),datagram.getLength());
-						if (DEBUG) debug("run(): packet received: "+eth_pkt);
-						int proto=eth_pkt.getType();
-						if (remote_soaddr==null) {
-							remote_soaddr=new SocketAddress(new Ip4Address(datagram.getAddress()),datagram.getPort());
-							if (DEBUG) debug("run(): remote-soaddr="+remote_soaddr);
+						int off, len;
+						if (datagram_channel!=null) {
+							rcv_buffer.clear();
+							InetSocketAddress src_inetsoaddr=(InetSocketAddress)datagram_channel.receive(rcv_buffer);
+							rcv_buffer.flip();
+							off=0;
+							len=rcv_buffer.remaining();
+							if (remote_soaddr==null) setRemoteSocketAddress(new SocketAddress(new Ip4Address(src_inetsoaddr.getAddress()),src_inetsoaddr.getPort()));
+							if (len>=14 && !isBroadcastOrLocal(rcv_buffer)) continue;
+							// else
+							rcv_buffer.get(buf,0,len);
 						}
-						Packet pkt;
+						else {
+							if (datagram_socket_std!=null) datagram_socket_std.receive(datagram);
+							else datagram_socket_raw.receive(datagram);
+							off=datagram.getOffset();
+							len=datagram.getLength();
+							if (remote_soaddr==null) setRemoteSocketAddress(new SocketAddress(new Ip4Address(datagram.getAddress()),datagram.getPort()));
+							if (len>=14 && !isBroadcastOrLocal(buf,off)) continue;
+						}
+						if (len<14) {
+							if (DEBUG) debug("run(): invalid frame length ("+len+"): discarded");
+							continue;
+						}
+						// else
+						if (DEBUG) debug("run(): packet received: "+EthPacket.parseEthPacket(buf,off,len));
+						int proto=((buf[off+12]&0xff)<<8) | (buf[off+13]&0xff);
 						if (proto==PING_TYPE) {
 							if (DEBUG) debug("run(): ping received");
 							continue;
 						}
-						if (proto==EthPacket.ETH_IP4) pkt=Ip4Packet.parseIp4Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength());
+						// else
+						Packet pkt;
+						if (proto==EthPacket.ETH_IP4) pkt=Ip4Packet.parseIp4Packet(buf,off+14,len-14);
 						else
-						if (proto==EthPacket.ETH_IP6) pkt=Ip6Packet.parseIp6Packet(eth_pkt.getPayloadBuffer(),eth_pkt.getPayloadOffset(),eth_pkt.getPayloadLength());
+						if (proto==EthPacket.ETH_IP6) pkt=Ip6Packet.parseIp6Packet(buf,off+14,len-14);
 						else {
 							if (DEBUG) debug("run(): protocol "+proto+" not supported: discarded");
 							continue;
 						}
-						EthAddress eth_dest_addr=(EthAddress)eth_pkt.getDestAddress();
-						if (eth_dest_addr.equals(EthAddress.BROADCAST_ADDRESS) || eth_dest_addr.equals(ipToMac((IpAddress)EthTunnelInterface.this.getAddresses()[0]))) {
-							for (NetInterfaceListener li : getListeners()) {
-								try { li.onIncomingPacket(EthTunnelInterface.this,pkt); } catch (Exception e) {
-									e.printStackTrace();
-								}
-							}									
-						}
+						if (TrafficCounters.ENABLED) counters.received(pkt.getPacketLength());
+						for (NetInterfaceListener li : getListeners()) {
+							try { li.onIncomingPacket(EthTunnelInterface.this,pkt); } catch (Exception e) {
+								e.printStackTrace();
+							}
+						}									
 					}
 				}
 				catch (IOException e1) {
@@ -154,13 +221,53 @@ public class EthTunnelInterface extends NetInterface {
 		if (remote_soaddr!=null) ping();
 	}
 	
+	/** Sets the remote end-point.
+	 * @param remote_soaddr the remote tunnel end-point */
+	private void setRemoteSocketAddress(SocketAddress remote_soaddr) {
+		if (remote_soaddr!=null) remote_inetsoaddr=new InetSocketAddress(remote_soaddr.getIpAddress().toInetAddress(),remote_soaddr.getPort());
+		this.remote_soaddr=remote_soaddr;
+		if (DEBUG) debug("remote-soaddr="+remote_soaddr);
+	}
+	
+	/** Whether the destination address of a frame is the broadcast address or the local address.
+	 * @param buf the buffer containing the frame
+	 * @param off the offset of the frame within the buffer
+	 * @return <i>true</i> if the frame has to be processed */
+	private boolean isBroadcastOrLocal(byte[] buf, int off) {
+		boolean broadcast=true, local=true;
+		for (int i=0; i<6; i++) {
+			byte b=buf[off+i];
+			if (b!=(byte)0xff) broadcast=false;
+			if (b!=local_eth_bytes[i]) local=false;
+		}
+		return broadcast || local;
+	}
+	
+	/** Whether the destination address of a frame within a byte buffer is the broadcast address or the local address.
+	 * The frame is read with absolute gets, starting from the current position of the buffer.
+	 * @param buf the buffer containing the frame
+	 * @return <i>true</i> if the frame has to be processed */
+	private boolean isBroadcastOrLocal(ByteBuffer buf) {
+		int off=buf.position();
+		boolean broadcast=true, local=true;
+		for (int i=0; i<6; i++) {
+			byte b=buf.get(off+i);
+			if (b!=(byte)0xff) broadcast=false;
+			if (b!=local_eth_bytes[i]) local=false;
+		}
+		return broadcast || local;
+	}
+	
 	/** Sends a ping packet to a remote end-point (typically for create an association). */
 	public void ping() {
 		if (DEBUG) debug("ping(): "+remote_soaddr);
-		DatagramPacket datagram=new DatagramPacket(PING,PING.length,remote_soaddr.getIpAddress().toInetAddress(),remote_soaddr.getPort());
 		try {
-			if (datagram_socket_std!=null) datagram_socket_std.send(datagram);
-			else datagram_socket_raw.send(datagram);
+			if (datagram_channel!=null) datagram_channel.send(ByteBuffer.wrap(PING),remote_inetsoaddr);
+			else {
+				DatagramPacket datagram=new DatagramPacket(PING,PING.length,remote_inetsoaddr);
+				if (datagram_socket_std!=null) datagram_socket_std.send(datagram);
+				else datagram_socket_raw.send(datagram);
+			}
 		}
 		catch (IOException e) {
 			e.printStackTrace();
@@ -172,6 +279,7 @@ public class EthTunnelInterface extends NetInterface {
 		//if (DEBUG) debug("send(): "+pkt);
 		if (remote_soaddr==null){
 			if (DEBUG) debug("send(): no remote end-point address: packet discarded");
+			if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
 			return;
 		}
 		int proto;
@@ -180,12 +288,25 @@ public class EthTunnelInterface extends NetInterface {
 		if (pkt instanceof Ip6Packet) proto=EthPacket.ETH_IP6;
 		else {
 			if (DEBUG) debug("send(): packet protocol not supported: discarded");
+			if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
+			return;
+		}
+		int pkt_len=pkt.getPacketLength();
+		if (datagram_channel!=null) {
+			sendThroughChannel(pkt,pkt_len,(IpAddress)dest_addr,proto);
 			return;
 		}
-		EthPacket eth_pkt=new EthPacket(EthAddress.BROADCAST_ADDRESS,ipToMac((IpAddress)dest_addr),proto,pkt.getBytes());
+		// else
+		if (TrafficCounters.ENABLED) counters.sent(pkt_len);
+		EthPacket eth_pkt=new EthPacket(local_eth_addr,ipToMac((IpAddress)dest_addr),proto,null,0,0);
 		if (DEBUG) debug("send(): "+eth_pkt);
-		byte[] data=eth_pkt.getBytes();
-		DatagramPacket datagram=new DatagramPacket(data,data.length,remote_soaddr.getIpAddress().toInetAddress(),remote_soaddr.getPort());
+		// the Ethernet frame is directly built into a pooled buffer, that is released once the datagram has been sent
+		ByteArrayPool pool=ByteArrayPool.getDefaultPool();
+		int len=Math.max(14+pkt_len,eth_pkt.getPacketLength());
+		byte[] data=pool.get(len);
+		eth_pkt.getBytes(data,0);
+		pkt.getBytes(data,14);
+		DatagramPacket datagram=new DatagramPacket(data,len,remote_inetsoaddr);
 		try {
 			if (datagram_socket_std!=null) datagram_socket_std.send(datagram);
 			else datagram_socket_raw.send(datagram);
@@ -193,6 +314,41 @@ public class EthTunnelInterface extends NetInterface {
 		catch (IOException e) {
 			e.printStackTrace();
 		}
+		finally {
+			pool.release(data);
+		}
+	}
+	
+	/** Sends a packet through the datagram channel.
+	 * The Ethernet header is written directly into the send buffer, followed by the IP packet and the possible padding.
+	 * @param pkt the IP packet
+	 * @param pkt_len the packet length
+	 * @param dest_addr the IP address of the next hop
+	 * @param proto the Ethernet type */
+	private void sendThroughChannel(Packet pkt, int pkt_len, IpAddress dest_addr, int proto) {
+		if (14+pkt_len>send_buffer.capacity()) {
+			if (DEBUG) debug("send(): packet too long ("+pkt_len+"B): discarded");
+			if (TrafficCounters.ENABLED) counters.dropped(pkt_len);
+			return;
+		}
+		// else
+		if (TrafficCounters.ENABLED) counters.sent(pkt_len);
+		synchronized (send_buffer) {
+			send_buffer.clear();
+			putMac(send_buffer,dest_addr);
+			send_buffer.put(local_eth_bytes).putShort((short)proto);
+			if (pkt instanceof Ip4Packet) ((Ip4Packet)pkt).getBytes(send_buffer);
+			else ((Ip6Packet)pkt).getBytes(send_buffer);
+			while (send_buffer.position()<MIN_FRAME_LEN) send_buffer.put((byte)0);
+			send_buffer.flip();
+			if (DEBUG) debug("send(): frame of "+send_buffer.remaining()+"B");
+			try {
+				datagram_channel.send(send_buffer,remote_inetsoaddr);
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 	
 	/** Maps IP address to MAC address. */
@@ -209,9 +365,20 @@ public class EthTunnelInterface extends NetInterface {
 		return new EthAddress(eth_addr);
 	}
 	
+	/** Writes the MAC address mapped to an IP address into a byte buffer, as done by {@link #ipToMac(IpAddress)}.
+	 * @param buf the buffer where the MAC address is written, at its current position
+	 * @param addr the IP address */
+	private static void putMac(ByteBuffer buf, IpAddress addr) {
+		buf.put((byte)2).put((byte)0);
+		if (addr instanceof Ip4Address) buf.putInt(((Ip4Address)addr).toInt());
+		else
+		if (addr instanceof Ip6Address) buf.putInt((int)((Ip6Address)addr).getLowBits());
+		else buf.putInt(0);
+	}
+	
 	@Override
 	public String toString() {
-		int port=datagram_socket_std!=null? datagram_socket_std.getLocalPort() : datagram_socket_raw.getLocalPort();
+		int port=datagram_socket_std!=null? datagram_socket_std.getLocalPort() : datagram_socket_raw!=null? datagram_socket_raw.getLocalPort() : datagram_channel.socket().getLocalPort();
 		return getClass().getSimpleName()+"["+port+","+remote_soaddr+"]";
 	}
 	
@@ -25,13 +25,21 @@ import org.zoolu.util.SystemUtils;
 
 import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /** A generic link providing one-to-many delivery service.
  * It may connect any number of attached {@link LinkInterface link interfaces}.
+ * <p>
+ * The link maintains an index from interface addresses to the interfaces that own them, kept up to date when addresses
+ * are added to or removed from the attached interfaces. Packets are then delivered without scanning all interfaces.
+ * Packets with no destination address are delivered to all interfaces, while
+ * {@link LinkInterface#isPromiscuous() promiscuous} interfaces receive all packets.
  */
 public class Link {
 
@@ -45,23 +53,115 @@ public class Link {
 
 	
 	/** Active interfaces attached to this link */
-	Set<LinkInterface> link_interfaces=new HashSet<LinkInterface>();
+	protected Set<LinkInterface> link_interfaces=new HashSet<LinkInterface>();
+
+	/** Attached interfaces, in order of attachment, used for broadcast fan-out */
+	private volatile LinkInterface[] all_interfaces=new LinkInterface[0];
+
+	/** Attached interfaces in promiscuous mode */
+	private volatile LinkInterface[] promiscuous_interfaces=new LinkInterface[0];
+
+	/** Index of the target interfaces for each address; each entry includes also the promiscuous interfaces */
+	private Map<Address,LinkInterface[]> address_index=new ConcurrentHashMap<Address,LinkInterface[]>();
+
+	/** Version of the target interfaces, incremented each time interfaces or addresses are added or removed */
+	private volatile int targets_version=0;
+
+	/** Traffic counters */
+	protected TrafficCounters counters=new TrafficCounters();
 
 	
 	/** Creates a new link. */
 	public Link() {
 	}
 	
+	/** Gets the traffic counters.
+	 * Traffic is counted only when {@link TrafficCounters#ENABLED} is set.
+	 * @return the counters of the packets transmitted over this link (sent), delivered to the attached interfaces (received),
+	 * and lost or without any destination interface (dropped) */
+	public TrafficCounters getCounters() {
+		return counters;
+	}
+	
 	/** Adds a link interface.
 	 * @param ni the interface to be added */
 	public void addLinkInterface(LinkInterface ni) {
-		link_interfaces.add(ni);
+		synchronized (address_index) {
+			if (!link_interfaces.add(ni)) return;
+			// else
+			all_interfaces=append(all_interfaces,ni);
+			targets_version++;
+			if (ni.isPromiscuous()) {
+				promiscuous_interfaces=append(promiscuous_interfaces,ni);
+				for (Map.Entry<Address,LinkInterface[]> entry : address_index.entrySet()) entry.setValue(append(entry.getValue(),ni));
+			}
+			else {
+				for (Address addr : ni.getAddresses()) addInterfaceAddress(ni,addr);
+			}
+		}
 	}
 	
 	/** Removes an interface.
 	 * @param ni the interface to be removed */
 	public void removeLinkInterface(LinkInterface ni) {
-		link_interfaces.remove(ni);
+		synchronized (address_index) {
+			if (!link_interfaces.remove(ni)) return;
+			// else
+			all_interfaces=remove(all_interfaces,ni);
+			targets_version++;
+			promiscuous_interfaces=remove(promiscuous_interfaces,ni);
+			for (Address addr : address_index.keySet().toArray(new Address[0])) removeInterfaceAddress(ni,addr);
+		}
+	}
+	
+	/** Adds an address of an attached interface to the address index.
+	 * It is called by the interface when a new address is added.
+	 * @param ni the interface
+	 * @param addr the new address */
+	protected void addInterfaceAddress(LinkInterface ni, Address addr) {
+		synchronized (address_index) {
+			if (!link_interfaces.contains(ni) || ni.isPromiscuous()) return;
+			// else
+			LinkInterface[] targets=address_index.get(addr);
+			if (targets==null) address_index.put(addr,append(promiscuous_interfaces,ni));
+			else
+			if (indexOf(targets,ni)<0) address_index.put(addr,append(targets,ni));
+			targets_version++;
+		}
+	}
+	
+	/** Removes an address of an attached interface from the address index.
+	 * It is called by the interface when an address is removed.
+	 * @param ni the interface
+	 * @param addr the removed address */
+	protected void removeInterfaceAddress(LinkInterface ni, Address addr) {
+		synchronized (address_index) {
+			LinkInterface[] targets=address_index.get(addr);
+			if (targets==null || indexOf(targets,ni)<0) return;
+			// else
+			targets=remove(targets,ni);
+			if (targets.length==promiscuous_interfaces.length) address_index.remove(addr);
+			else address_index.put(addr,targets);
+			targets_version++;
+		}
+	}
+	
+	/** Gets the interfaces that a packet has to be delivered to.
+	 * @param dst_ni_addr the address of the destination link interface, or <i>null</i> for all interfaces
+	 * @return array of target interfaces, possibly including the source interface */
+	protected LinkInterface[] getTargetInterfaces(Address dst_ni_addr) {
+		if (dst_ni_addr==null) return all_interfaces;
+		// else
+		LinkInterface[] targets=address_index.get(dst_ni_addr);
+		return targets!=null? targets : promiscuous_interfaces;
+	}
+	
+	/** Gets the version of the target interfaces.
+	 * It changes each time interfaces or addresses are added or removed, so that target interfaces
+	 * obtained through {@link #getTargetInterfaces(Address)} can be reused while the version does not change.
+	 * @return the version */
+	protected int getTargetsVersion() {
+		return targets_version;
 	}
 	
 	/** Gets the number of attached interfaces.
@@ -70,14 +170,17 @@ public class Link {
 		return link_interfaces.size();
 	}
 	
+	/** Gets all attached interfaces.
+	 * @return array of interfaces */
+	public LinkInterface[] getLinkInterfaces() {
+		return link_interfaces.toArray(new LinkInterface[0]);
+	}
+	
 	/** Whether a given address is present on this link.
 	 * @param addr the target address
 	 * @return <i>true</i> if the address is present */
 	public boolean findAddress(Address addr) {
-		for (LinkInterface ni : link_interfaces) {
-			if (ni.hasAddress(addr)) return true;
-		}
-		return false;
+		return address_index.containsKey(addr) || promiscuous_interfaces.length>0;
 	}
 	
 	/** Transmits a packet to a target interface.
@@ -86,24 +189,65 @@ public class Link {
 	 * @param dst_ni_addr the address of the destination link interface */
 	public void transmit(Packet pkt, final LinkInterface src_ni, final Address dst_ni_addr) {
 		//if (DEBUG) debug("transmit(): attached interfaces: "+link_interfaces.size());
+		deliver(pkt,src_ni,getTargetInterfaces(dst_ni_addr));
+	}
+	
+	/** Delivers a packet to given target interfaces.
+	 * @param pkt the packet to be delivered
+	 * @param src_ni the source link interface, that is skipped
+	 * @param targets the target interfaces (see {@link #getTargetInterfaces(Address)}) */
+	protected void deliver(Packet pkt, LinkInterface src_ni, LinkInterface[] targets) {
 		boolean success=false;
-		for (LinkInterface ni : link_interfaces) {
+		int len=TrafficCounters.ENABLED? pkt.getPacketLength() : 0;
+		if (TrafficCounters.ENABLED) counters.sent(len);
+		for (LinkInterface ni : targets) {
 			if (ni!=src_ni) {
-				if (dst_ni_addr==null || ni.hasAddress(dst_ni_addr)) {
-					if (DEBUG) debug("transmit(): packet passed to "+ni);
-					ni.processIncomingPacket(this,pkt);
-					success=true;
-				}
-				else {
-					if (DEBUG) debug("transmit(): packet NOT passed to "+ni);
-				}
+				if (DEBUG) debug("transmit(): packet passed to "+ni);
+				if (TrafficCounters.ENABLED) counters.received(len);
+				ni.processIncomingPacket(this,pkt);
+				success=true;
 			}
 		}
 		if (!success) {
 			if (DEBUG) debug("transmit(): no destination interface found");
+			if (TrafficCounters.ENABLED) counters.dropped(len);
 		}
 	}
 	
+	/** Appends an interface to an array.
+	 * @param array the array
+	 * @param ni the interface
+	 * @return a new array */
+	private static LinkInterface[] append(LinkInterface[] array, LinkInterface ni) {
+		LinkInterface[] new_array=new LinkInterface[array.length+1];
+		System.arraycopy(array,0,new_array,0,array.length);
+		new_array[array.length]=ni;
+		return new_array;
+	}
+
+	/** Removes an interface from an array.
+	 * @param array the array
+	 * @param ni the interface
+	 * @return a new array without the interface, or the same array if the interface is not present */
+	private static LinkInterface[] remove(LinkInterface[] array, LinkInterface ni) {
+		int i=indexOf(array,ni);
+		if (i<0) return array;
+		// else
+		LinkInterface[] new_array=new LinkInterface[array.length-1];
+		System.arraycopy(array,0,new_array,0,i);
+		System.arraycopy(array,i+1,new_array,i,array.length-i-1);
+		return new_array;
+	}
+
+	/** Gets the position of an interface within an array.
+	 * @param array the array
+	 * @param ni the interface
+	 * @return the index of the interface, or -1 if not present */
+	private static int indexOf(LinkInterface[] array, LinkInterface ni) {
+		for (int i=0; i<array.length; i++) if (array[i]==ni) return i;
+		return -1;
+	}
+	
 	/*@Override
 	public String toString() {
 		return id;
@@ -28,6 +28,7 @@ import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.NetInterface;
 import it.unipr.netsec.ipstack.net.NetInterfaceListener;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
 
 
 /** A generic link interface.
@@ -97,10 +98,30 @@ public class LinkInterface extends NetInterface {
 		return link;
 	}
 	
+	/** Whether the interface is in promiscuous mode, that is it receives all packets transmitted over the link.
+	 * It is evaluated when the interface is attached to the link.
+	 * @return <i>false</i> by default */
+	public boolean isPromiscuous() {
+		return false;
+	}
+	
+	@Override
+	public void addAddress(Address addr) {
+		super.addAddress(addr);
+		if (link!=null) link.addInterfaceAddress(this,addr);
+	}
+	
+	@Override
+	public void removeAddress(Address addr) {
+		super.removeAddress(addr);
+		if (link!=null && !hasAddress(addr)) link.removeInterfaceAddress(this,addr);
+	}
+	
 	@Override
 	public void send(Packet pkt, Address dest_addr) {
 		//if (DEBUG) debug("send(): sending "+pkt.getPacketLength()+" bytes to "+dest_addr);
 		if (DEBUG) debug("send(): to "+dest_addr+": "+ProtocolAnalyzer.exploreInner(pkt));
+		if (TrafficCounters.ENABLED) counters.sent(pkt.getPacketLength());
 		link.transmit(pkt,this,dest_addr);
 	}
 		
@@ -112,6 +133,7 @@ public class LinkInterface extends NetInterface {
 		// else
 		//if (DEBUG) debug("processIncomingPacket(): received "+pkt.getPacketLength()+" bytes");
 		if (DEBUG) debug("processIncomingPacket(): "+ProtocolAnalyzer.exploreInner(pkt));
+		if (TrafficCounters.ENABLED) counters.received(pkt.getPacketLength());
 		for (NetInterfaceListener li : getListeners())  li.onIncomingPacket(this,pkt);
 	}
 	
@@ -21,16 +21,16 @@ package it.unipr.netsec.ipstack.link;
 
 
 import it.unipr.netsec.ipstack.ip4.Ip4Address;
-import it.unipr.netsec.ipstack.ip4.Ip4Packet;
+import it.unipr.netsec.ipstack.ip4.Ip4PacketView;
 import it.unipr.netsec.ipstack.ip4.SocketAddress;
-import it.unipr.netsec.ipstack.ip6.Ip6Packet;
-import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.ip6.Ip6PacketView;
 import it.unipr.netsec.ipstack.ppp.PppEncapsulation;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import org.zoolu.util.Flags;
@@ -105,14 +105,24 @@ public class PppTunnelHub {
 		final int max_endpoints1=max_endpoints;
 		new Thread() {
 			public void run() {
-				DatagramPacket datagram=new DatagramPacket(new byte[BUFFER_SIZE],BUFFER_SIZE);
+				byte[] buf=new byte[BUFFER_SIZE];
+				DatagramPacket datagram=new DatagramPacket(buf,BUFFER_SIZE);
+				ByteBuffer byte_buffer=ByteBuffer.wrap(buf);
+				Ip4PacketView ip4_view=new Ip4PacketView();
+				Ip6PacketView ip6_view=new Ip6PacketView();
 				int index=0; // virtual index of the next end-point
 				try {
 					while (true) {
 						sock.receive(datagram);
-						PppEncapsulation ppp_pkt=PppEncapsulation.parsePppEncapsulation(datagram.getData(),datagram.getOffset(),datagram.getLength());						
-						if (DEBUG) debug("packet received: "+ppp_pkt);
-						int proto=ppp_pkt.getProtocol();
+						int off=datagram.getOffset();
+						int len=datagram.getLength();
+						if (len<2) {
+							if (DEBUG) debug("invalid packet length ("+len+"): packet discarded");
+							continue;
+						}
+						// else
+						if (DEBUG) debug("packet received: "+PppEncapsulation.parsePppEncapsulation(buf,off,len));
+						int proto=((buf[off]&0xff)<<8) | (buf[off+1]&0xff);
 						SocketAddress src_soaddr=new SocketAddress(new Ip4Address(datagram.getAddress()),datagram.getPort());
 						if (!endpoints.contains(src_soaddr)) {
 							System.out.println("new endpoint ["+index+"]: "+src_soaddr);							
@@ -126,18 +136,22 @@ public class PppTunnelHub {
 							endpoints.add(src_soaddr);
 							index=(index+1)%max_endpoints;
 						}
-						Packet pkt;
 						if (proto==PppTunnelInterface.PING_TYPE) {
 							if (DEBUG) debug("it's a ping");
 							continue;
 						}
-						if (proto==PppEncapsulation.TYPE_IP4) pkt=Ip4Packet.parseIp4Packet(ppp_pkt.getPayloadBuffer(),ppp_pkt.getPayloadOffset(),ppp_pkt.getPayloadLength());
+						boolean valid;
+						if (proto==PppEncapsulation.TYPE_IP4) valid=ip4_view.wrap(byte_buffer,off+2).getVersion()==4;
 						else
-						if (proto==PppEncapsulation.TYPE_IP6) pkt=Ip6Packet.parseIp6Packet(ppp_pkt.getPayloadBuffer(),ppp_pkt.getPayloadOffset(),ppp_pkt.getPayloadLength());
+						if (proto==PppEncapsulation.TYPE_IP6) valid=ip6_view.wrap(byte_buffer,off+2).getVersion()==6;
 						else {
 							if (DEBUG) debug("protocol "+proto+" not supported: packet discarded");
 							continue;
 						}
+						if (!valid) {
+							if (DEBUG) debug("wrong IP version: packet discarded");
+							continue;
+						}
 						for (SocketAddress dst_soaddr : endpoints) {
 							if (!dst_soaddr.equals(src_soaddr)) {
 								if (DEBUG) debug("packet sent to "+dst_soaddr);
@@ -25,6 +25,7 @@ import java.net.DatagramPacket;
 import it.unipr.netsec.rawsocket.udp.DatagramSocket;
 import java.net.SocketException;
 
+import org.zoolu.util.ByteArrayPool;
 import org.zoolu.util.LoggerLevel;
 import org.zoolu.util.SystemUtils;
 
@@ -36,6 +37,7 @@ import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.NetInterface;
 import it.unipr.netsec.ipstack.net.NetInterfaceListener;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
 import it.unipr.netsec.ipstack.ppp.PppEncapsulation;
 
 
@@ -113,6 +115,7 @@ public class PppTunnelInterface extends NetInterface {
 							if (DEBUG) debug("run(): protocol "+proto+" not supported: discarded");
 							continue;
 						}
+						if (TrafficCounters.ENABLED) counters.received(pkt.getPacketLength());
 						for (NetInterfaceListener li : getListeners()) {
 							try { li.onIncomingPacket(PppTunnelInterface.this,pkt); } catch (Exception e) {
 								e.printStackTrace();
@@ -146,6 +149,7 @@ public class PppTunnelInterface extends NetInterface {
 		//if (DEBUG) debug("send(): "+pkt);
 		if (remote_soaddr==null){
 			if (DEBUG) debug("send(): no remote end-point address: packet discarded");
+			if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
 			return;
 		}
 		int proto;
@@ -154,18 +158,28 @@ public class PppTunnelInterface extends NetInterface {
 		if (pkt instanceof Ip6Packet) proto=PppEncapsulation.TYPE_IP6;
 		else {
 			if (DEBUG) debug("send(): packet protocol not supported: discarded");
+			if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
 			return;
 		}
-		PppEncapsulation ppp_pkt=new PppEncapsulation(proto,pkt.getBytes());
+		PppEncapsulation ppp_pkt=new PppEncapsulation(proto,null,0,0);
 		if (DEBUG) debug("send(): "+ppp_pkt);
-		byte[] data=ppp_pkt.getBytes();
-		DatagramPacket datagram=new DatagramPacket(data,data.length,remote_soaddr.getIpAddress().toInetAddress(),remote_soaddr.getPort());
+		// the PPP encapsulation is directly built into a pooled buffer, that is released once the datagram has been sent
+		int pkt_len=pkt.getPacketLength();
+		if (TrafficCounters.ENABLED) counters.sent(pkt_len);
+		ByteArrayPool pool=ByteArrayPool.getDefaultPool();
+		byte[] data=pool.get(2+pkt_len);
+		ppp_pkt.getBytes(data,0);
+		pkt.getBytes(data,2);
+		DatagramPacket datagram=new DatagramPacket(data,2+pkt_len,remote_soaddr.getIpAddress().toInetAddress(),remote_soaddr.getPort());
 		try {
 			datagram_socket.send(datagram);
 		}
 		catch (IOException e) {
 			e.printStackTrace();
 		}
+		finally {
+			pool.release(data);
+		}
 	}
 	
 	@Override
@@ -20,14 +20,32 @@
 package it.unipr.netsec.ipstack.net;
 
 
+import java.util.concurrent.atomic.AtomicLong;
+
 
 /** Generic packet with data payload.
+  * <p>
+  * The payload buffer is never modified in place once it has been passed to a packet:
+  * changing the payload means setting a new buffer through {@link #setPayload(byte[], int, int)}.
+  * For this reason the payload buffer can be safely shared among different packets, and a {@link #clone() clone}
+  * of a packet copies only the header fields, while the payload buffer is shared with the original packet.
+  * <p>
+  * For performance analysis, the number of payload bytes that are copied can be counted (see {@link #COUNT_COPIED_BYTES}).
   */
 public abstract class DataPacket implements Packet {
 	
 	/** Whether using a direct reference to the data buffer passed to the constructor, or making a copy */
 	public static boolean DIRECT_DATA=false;
 
+	/** Whether a clone has its own copy of the payload buffer, instead of sharing it with the original packet */
+	public static boolean CLONE_PAYLOAD=false;
+
+	/** Whether counting the number of bytes copied when packets are created, cloned, or serialized */
+	public static boolean COUNT_COPIED_BYTES=false;
+
+	/** Number of copied bytes */
+	private static final AtomicLong copied_bytes=new AtomicLong(0);
+
 	/** Source address */
 	protected Address src_addr=null;
 
@@ -64,6 +82,7 @@ public abstract class DataPacket implements Packet {
 			if (data_len>0) {
 				this.data_buf=new byte[data_len];
 				System.arraycopy(data_buf,data_off,this.data_buf,0,data_len);
+				if (COUNT_COPIED_BYTES) copied_bytes.addAndGet(data_len);
 			}
 		}
 	}
@@ -152,6 +171,7 @@ public abstract class DataPacket implements Packet {
 	public byte[] getPayload() {
 		byte[] data=new byte[data_len];
 		for (int i=0; i<data_len; i++) data[i]=data_buf[data_off+i];
+		if (COUNT_COPIED_BYTES) copied_bytes.addAndGet(data_len);
 		return data;
 	}
 	
@@ -168,16 +188,23 @@ public abstract class DataPacket implements Packet {
 		int len=getPacketLength();
 		byte[] data=new byte[len];
 		getBytes(data,0);
+		if (COUNT_COPIED_BYTES) copied_bytes.addAndGet(len);
 		return data;
 	}
 
+	/** Gets a copy of this packet.
+	 * Header fields are copied, while the payload buffer is shared with this packet, unless {@link #CLONE_PAYLOAD} is set.
+	 * @return the new packet */
 	@Override
 	public Object clone() {
 		try {
 			DataPacket pkt=(DataPacket)super.clone();
-			pkt.data_buf=new byte[data_len];
-			pkt.data_off=0;
-			System.arraycopy(data_buf,data_off,pkt.data_buf,0,data_len);
+			if (CLONE_PAYLOAD && data_buf!=null) {
+				pkt.data_buf=new byte[data_len];
+				pkt.data_off=0;
+				System.arraycopy(data_buf,data_off,pkt.data_buf,0,data_len);
+				if (COUNT_COPIED_BYTES) copied_bytes.addAndGet(data_len);
+			}
 			return pkt;
 		}
 		catch (CloneNotSupportedException e) {
@@ -185,6 +212,18 @@ public abstract class DataPacket implements Packet {
 		}
 	}
 
+	/** Gets the number of copied bytes.
+	 * Bytes are counted only if {@link #COUNT_COPIED_BYTES} is set.
+	 * @return the number of bytes copied when creating, cloning, or serializing packets */
+	public static long getCopiedBytes() {
+		return copied_bytes.get();
+	}
+
+	/** Resets the counter of copied bytes. */
+	public static void resetCopiedBytes() {
+		copied_bytes.set(0);
+	}
+
 	@Override
 	public String toString() {
 		return getClass().getSimpleName()+" "+src_addr+" > "+dst_addr+" datalen="+getPayloadLength();
@@ -44,6 +44,11 @@ public class LoopbackInterface extends NetInterface {
 	/** Sends a packet.
 	 * @param dest_addr the address of the destination interface */
 	public void send(Packet pkt, Address dest_addr) {
+		if (TrafficCounters.ENABLED) {
+			int len=pkt.getPacketLength();
+			counters.sent(len);
+			counters.received(len);
+		}
 		for (NetInterfaceListener li : getListeners()) {
 			try { li.onIncomingPacket(this,pkt); } catch (Exception e) {
 				e.printStackTrace();
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.ipstack.net;
+
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/** Registry of {@link TrafficCounters traffic counters}.
+ * <p>
+ * Counters are registered with a unique name, and can be read all together ({@link #snapshot()}),
+ * exported as CSV ({@link #toCsv()}) or JSON ({@link #toJson()}), or exposed as MBeans over JMX ({@link #registerMBeans(String)}).
+ * <p>
+ * Note that traffic is counted only when {@link TrafficCounters#ENABLED} is set.
+ */
+public class MetricsRegistry {
+
+	/** Registered counters, in order of registration */
+	Map<String,TrafficCounters> counters=new LinkedHashMap<String,TrafficCounters>();
+	
+	/** Names of the registered MBeans */
+	ArrayList<ObjectName> mbean_names=new ArrayList<ObjectName>();
+	
+
+	/** Creates a new registry. */
+	public MetricsRegistry() {
+	}
+	
+	/** Registers some counters.
+	 * If the name is already in use, a suffix "#n" is appended.
+	 * @param name the name
+	 * @param c the counters
+	 * @return the name that has been actually used */
+	public synchronized String register(String name, TrafficCounters c) {
+		String unique_name=name;
+		for (int i=2; counters.containsKey(unique_name); i++) unique_name=name+"#"+i;
+		counters.put(unique_name,c);
+		return unique_name;
+	}
+	
+	/** Registers the counters of a network interface.
+	 * @param ni the network interface
+	 * @return the name that has been actually used */
+	public String register(NetInterface ni) {
+		return register(ni.toString(),ni.getCounters());
+	}
+	
+	/** Registers the counters of a node and of all its network interfaces.
+	 * @param node the node
+	 * @return the name that has been actually used for the node */
+	public String register(Node node) {
+		String name=register(node.toString(),node.getCounters());
+		for (NetInterface ni : node.getNetInterfaces()) register(name+"/"+ni.toString(),ni.getCounters());
+		return name;
+	}
+	
+	/** Unregisters some counters.
+	 * @param name the name */
+	public synchronized void unregister(String name) {
+		counters.remove(name);
+	}
+	
+	/** Gets the names of all registered counters.
+	 * @return the names, in order of registration */
+	public synchronized String[] getNames() {
+		return counters.keySet().toArray(new String[0]);
+	}
+	
+	/** Gets some registered counters.
+	 * @param name the name
+	 * @return the counters, or <i>null</i> */
+	public synchronized TrafficCounters getCounters(String name) {
+		return counters.get(name);
+	}
+	
+	/** Gets the current values of all registered counters.
+	 * @return a map from names to counter values (see {@link TrafficCounters#getValues()}), in order of registration */
+	public synchronized Map<String,long[]> snapshot() {
+		Map<String,long[]> values=new LinkedHashMap<String,long[]>();
+		for (Map.Entry<String,TrafficCounters> e : counters.entrySet()) values.put(e.getKey(),e.getValue().getValues());
+		return values;
+	}
+	
+	/** Resets all registered counters. */
+	public synchronized void reset() {
+		for (TrafficCounters c : counters.values()) c.reset();
+	}
+	
+	/** Gets the current values of all registered counters in CSV format.
+	 * The first line contains the column names.
+	 * @return the CSV lines */
+	public String toCsv() {
+		StringBuffer sb=new StringBuffer();
+		sb.append("name");
+		for (String n : TrafficCounters.NAMES) sb.append(',').append(n);
+		sb.append('\n');
+		for (Map.Entry<String,long[]> e : snapshot().entrySet()) {
+			String name=e.getKey();
+			if (name.indexOf(',')>=0 || name.indexOf('"')>=0) name='"'+name.replace("\"","\"\"")+'"';
+			sb.append(name);
+			for (long v : e.getValue()) sb.append(',').append(v);
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+	
+	/** Gets the current values of all registered counters in JSON format.
+	 * @return a JSON object with one member for each registered name */
+	public String toJson() {
+		StringBuffer sb=new StringBuffer();
+		sb.append('{');
+		boolean first=true;
+		for (Map.Entry<String,long[]> e : snapshot().entrySet()) {
+			if (!first) sb.append(',');
+			first=false;
+			sb.append("\n\"").append(e.getKey().replace("\\","\\\\").replace("\"","\\\"")).append("\":{");
+			long[] values=e.getValue();
+			for (int i=0; i<values.length; i++) {
+				if (i>0) sb.append(',');
+				sb.append('"').append(TrafficCounters.NAMES[i]).append("\":").append(values[i]);
+			}
+			sb.append('}');
+		}
+		sb.append("\n}");
+		return sb.toString();
+	}
+	
+	/** Registers all counters as MBeans to the platform MBean server.
+	 * Each MBean is named <i>domain</i>:type=TrafficCounters,name=<i>name</i>.
+	 * Counters registered afterwards are not exposed, unless this method is called again.
+	 * @param domain the JMX domain
+	 * @throws JMException */
+	public synchronized void registerMBeans(String domain) throws JMException {
+		unregisterMBeans();
+		MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+		for (Map.Entry<String,TrafficCounters> e : counters.entrySet()) {
+			ObjectName name=new ObjectName(domain+":type="+TrafficCounters.class.getSimpleName()+",name="+ObjectName.quote(e.getKey()));
+			server.registerMBean(e.getValue(),name);
+			mbean_names.add(name);
+		}
+	}
+	
+	/** Unregisters all MBeans registered through {@link #registerMBeans(String)}.
+	 * @throws JMException */
+	public synchronized void unregisterMBeans() throws JMException {
+		MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : mbean_names) {
+			if (server.isRegistered(name)) server.unregisterMBean(name);
+		}
+		mbean_names.clear();
+	}
+
+}
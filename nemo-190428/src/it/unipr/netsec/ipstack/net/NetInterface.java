@@ -46,6 +46,9 @@ public abstract class NetInterface {
 	/** Interface listeners */
 	protected ArrayList<NetInterfaceListener> listeners=new ArrayList<NetInterfaceListener>();
 	
+	/** Traffic counters */
+	protected TrafficCounters counters=new TrafficCounters();
+	
 
 	
 	/** Creates a new interface.
@@ -147,6 +150,13 @@ public abstract class NetInterface {
 		else return getId();
 	}
 
+	/** Gets the traffic counters.
+	 * Traffic is counted only when {@link TrafficCounters#ENABLED} is set.
+	 * @return the counters of the packets sent, received, and dropped by this interface */
+	public TrafficCounters getCounters() {
+		return counters;
+	}
+
 	/** Gets all interface addresses.
 	 * @return the addresses */
 	public Address[] getAddresses() {
@@ -26,6 +26,7 @@ import org.zoolu.util.LoggerLevel;
 import org.zoolu.util.SystemUtils;
 
 import it.unipr.netsec.ipstack.routing.Route;
+import it.unipr.netsec.ipstack.routing.RouteCache;
 import it.unipr.netsec.ipstack.routing.RoutingFunction;
 
 
@@ -55,12 +56,18 @@ public class Node {
 	/** Routing function */
 	protected RoutingFunction routing_function;
 	
+	/** Route cache, if any */
+	protected RouteCache route_cache=null;
+	
 	/** Packet forwarding */
 	protected boolean forwarding;
 
 	/** Network interface listener */
 	protected NetInterfaceListener this_ni_listener;
 	
+	/** Traffic counters */
+	protected TrafficCounters counters=new TrafficCounters();
+	
 
 	
 	/** Creates a new node. */
@@ -77,6 +84,7 @@ public class Node {
 		this.forwarding=forwarding;
 		this_ni_listener=new NetInterfaceListener() {
 			public void onIncomingPacket(NetInterface ni, Packet pkt) {
+				if (TrafficCounters.ENABLED) counters.received(pkt.getPacketLength());
 				processReceivedPacket(ni,pkt);
 			}
 		};
@@ -112,6 +120,19 @@ public class Node {
 		return routing_function;
 	}
 	
+	/** Sets the route cache.
+	 * If set, the routes toward recently used destinations are taken from the cache, as long as the routing table does not change.
+	 * @param route_cache the route cache, or <i>null</i> for looking up the routing function for each packet */
+	public void setRouteCache(RouteCache route_cache) {
+		this.route_cache=route_cache;
+	}
+	
+	/** Gets the route cache.
+	 * @return the route cache, or <i>null</i> */
+	public RouteCache getRouteCache() {
+		return route_cache;
+	}
+	
 	/** Sets forwarding mode.
 	 * @param forwarding whether acting as relay node; <i>true</i> for relay node, <i>false</i> for terminal node. */
 	public void setForwarding(boolean forwarding) {
@@ -124,6 +145,13 @@ public class Node {
 		return net_interfaces.toArray(new NetInterface[]{});
 	}
 	
+	/** Gets the traffic counters.
+	 * Traffic is counted only when {@link TrafficCounters#ENABLED} is set.
+	 * @return the counters of the packets received, sent (i.e. originated by this node), forwarded, and dropped (e.g. for missing route) by this node */
+	public TrafficCounters getCounters() {
+		return counters;
+	}
+	
 	/** Whether a given address targets this node.
 	 * @param addr the address
 	 * @return <i>true</i> if the address targets this node; <i>false</i> otherwise */
@@ -133,13 +161,21 @@ public class Node {
 		return false;
 	}
 	
-	/** Sends a packet.
+	/** Sends a packet originated by this node.
 	 * @param pkt the packet to be sent */
 	public void sendPacket(Packet pkt) {
+		sendPacket(pkt,false);
+	}
+	
+	/** Sends a packet.
+	 * The packet is counted as sent if it is originated by this node, or as forwarded otherwise.
+	 * @param pkt the packet to be sent
+	 * @param forwarded whether the packet is forwarded on behalf of another node */
+	protected void sendPacket(Packet pkt, boolean forwarded) {
 		//if (DEBUG) debug("sendPacket(): "+ByteUtils.bytesToHexString(pkt.getBytes()));
 		if (DEBUG) debug("sendPacket(): "+pkt);
 		if (routing_function==null) throw new RuntimeException("No routing function as been set for this node.");
-		Route route=routing_function.getRoute(pkt.getDestAddress());
+		Route route=route_cache!=null? route_cache.getRoute(routing_function,pkt.getDestAddress()) : routing_function.getRoute(pkt.getDestAddress());
 		if (route!=null) {
 			Address next_hop=route.getNextHop();
 			if (next_hop==null) next_hop=pkt.getDestAddress();
@@ -148,10 +184,20 @@ public class Node {
 				for (NetInterface ni : link_interfaces)
 					if (ni.getLink().findAddress(next_hop)) { out_interface=ni; break; }*/
 			if (DEBUG) debug("sendPacket(): forwarding packet through interface "+out_interface+" to next node "+next_hop);
-			if (out_interface!=null) out_interface.send(pkt,next_hop);
+			if (out_interface!=null) {
+				if (TrafficCounters.ENABLED) {
+					if (forwarded) counters.forwarded(pkt.getPacketLength());
+					else counters.sent(pkt.getPacketLength());
+				}
+				out_interface.send(pkt,next_hop);
+			}
+			else {
+				if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
+			}
 		}
 		else {
 			if (DEBUG) debug("sendPacket(): WARNING: no route to "+pkt.getDestAddress());
+			if (TrafficCounters.ENABLED) counters.dropped(pkt.getPacketLength());
 		}
 	}
 	
@@ -173,7 +219,7 @@ public class Node {
 	/** Processes a packet that has to be forwarded.
 	 * @param pkt the packet to be forwarded */
 	protected void processForwardingPacket(Packet pkt) {
-		sendPacket(pkt);
+		sendPacket(pkt,true);
 	}
 
 	@Override
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package it.unipr.netsec.ipstack.net;
+
+
+import java.nio.ByteBuffer;
+
+
+/** Flyweight view of a packet stored in a {@link ByteBuffer} (either heap or direct).
+ * <p>
+ * Header fields are decoded only when they are read, and modified fields are written back in place,
+ * without creating a {@link Packet} object and the related object graph (addresses, headers, etc.).
+ * The same view can be reused for different packets through the method {@link #wrap(ByteBuffer, int)}.
+ * <p>
+ * The position, limit and byte order of the buffer are not used nor changed.
+ */
+public abstract class PacketView {
+
+	/** Buffer containing the packet */
+	protected ByteBuffer buf;
+
+	/** Offset of the packet within the buffer */
+	protected int off;
+
+	
+	/** Creates an empty view. */
+	protected PacketView() {
+	}
+
+	/** Creates a new view.
+	 * @param buf the buffer containing the packet
+	 * @param off the offset of the packet within the buffer */
+	protected PacketView(ByteBuffer buf, int off) {
+		wrap(buf,off);
+	}
+
+	/** Sets the packet this view refers to.
+	 * @param buf the buffer containing the packet
+	 * @param off the offset of the packet within the buffer
+	 * @return this view */
+	public PacketView wrap(ByteBuffer buf, int off) {
+		this.buf=buf;
+		this.off=off;
+		return this;
+	}
+
+	/** Gets the buffer.
+	 * @return the buffer containing the packet */
+	public ByteBuffer getBuffer() {
+		return buf;
+	}
+
+	/** Gets the offset.
+	 * @return the offset of the packet within the buffer */
+	public int getOffset() {
+		return off;
+	}
+
+	/** Gets the packet length.
+	 * @return the total packet length */
+	public abstract int getPacketLength();
+
+	/** Decodes the entire packet.
+	 * @return a new packet */
+	public abstract Packet toPacket();
+
+	/** Copies the packet into a byte array.
+	 * @param dst the array where the packet has to be written
+	 * @param dst_off the offset within the array
+	 * @return the packet length */
+	public int getBytes(byte[] dst, int dst_off) {
+		int len=getPacketLength();
+		if (buf.hasArray()) System.arraycopy(buf.array(),buf.arrayOffset()+off,dst,dst_off,len);
+		else for (int i=0; i<len; i++) dst[dst_off+i]=buf.get(off+i);
+		return len;
+	}
+
+	/** Copies the packet into a new byte array.
+	 * @return the packet bytes */
+	public byte[] getBytes() {
+		byte[] data=new byte[getPacketLength()];
+		getBytes(data,0);
+		return data;
+	}
+
+	/** Gets one byte.
+	 * @param i the position within the packet
+	 * @return the unsigned value of the byte */
+	protected int getByte(int i) {
+		return buf.get(off+i)&0xff;
+	}
+
+	/** Sets one byte.
+	 * @param i the position within the packet
+	 * @param value the new value */
+	protected void setByte(int i, int value) {
+		buf.put(off+i,(byte)value);
+	}
+
+	/** Gets a 16-bit word in network byte order.
+	 * @param i the position within the packet
+	 * @return the unsigned value of the word */
+	protected int getWord(int i) {
+		return ((buf.get(off+i)&0xff)<<8) | (buf.get(off+i+1)&0xff);
+	}
+
+	/** Sets a 16-bit word in network byte order.
+	 * @param i the position within the packet
+	 * @param value the new value */
+	protected void setWord(int i, int value) {
+		buf.put(off+i,(byte)(value>>8));
+		buf.put(off+i+1,(byte)value);
+	}
+
+	/** Whether a sequence of bytes of the packet is equal to a given array.
+	 * @param i the position within the packet
+	 * @param value the array to compare to
+	 * @return <i>true</i> if equal */
+	protected boolean equalBytes(int i, byte[] value) {
+		for (int k=0; k<value.length; k++) if (buf.get(off+i+k)!=value[k]) return false;
+		return true;
+	}
+
+	/** Copies a sequence of bytes of the packet to a given array.
+	 * @param i the position within the packet
+	 * @param dst the destination array
+	 * @param dst_off the offset within the array
+	 * @param len the number of bytes */
+	protected void getBytes(int i, byte[] dst, int dst_off, int len) {
+		for (int k=0; k<len; k++) dst[dst_off+k]=buf.get(off+i+k);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName()+"["+off+","+getPacketLength()+"]";
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.ipstack.net;
+
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/** Counters of packets and bytes that are sent, received, forwarded, and dropped by a network element
+ * (e.g. a {@link NetInterface network interface}, a {@link it.unipr.netsec.ipstack.link.Link link}, or a {@link Node node}).
+ * <p>
+ * Counters can be updated concurrently by many threads with low contention.
+ * Traffic is counted only when {@link #ENABLED} is set; callers are expected to test it before updating the counters,
+ * so that disabled counters cost just a test of a static field.
+ * <p>
+ * The meaning of each counter depends on the network element; for example, a link counts as sent the packets
+ * that are transmitted over the link, and as received the packets that are delivered to the attached interfaces.
+ */
+public class TrafficCounters implements TrafficCountersMBean {
+	
+	/** Whether traffic is counted */
+	public static boolean ENABLED=false;
+
+	/** Names of the counters, in the same order of the values returned by {@link #getValues()} */
+	public static final String[] NAMES={ "tx_pkts", "tx_bytes", "rx_pkts", "rx_bytes", "fwd_pkts", "fwd_bytes", "drop_pkts", "drop_bytes" };
+	
+	/** Sent packets */
+	LongAdder sent_packets=new LongAdder();
+
+	/** Sent bytes */
+	LongAdder sent_bytes=new LongAdder();
+
+	/** Received packets */
+	LongAdder received_packets=new LongAdder();
+
+	/** Received bytes */
+	LongAdder received_bytes=new LongAdder();
+
+	/** Forwarded packets */
+	LongAdder forwarded_packets=new LongAdder();
+
+	/** Forwarded bytes */
+	LongAdder forwarded_bytes=new LongAdder();
+
+	/** Dropped packets */
+	LongAdder dropped_packets=new LongAdder();
+
+	/** Dropped bytes */
+	LongAdder dropped_bytes=new LongAdder();
+
+	
+	/** Counts a sent packet.
+	 * @param len the packet length */
+	public void sent(int len) {
+		sent_packets.increment();
+		sent_bytes.add(len);
+	}
+
+	/** Counts a received packet.
+	 * @param len the packet length */
+	public void received(int len) {
+		received_packets.increment();
+		received_bytes.add(len);
+	}
+
+	/** Counts a forwarded packet.
+	 * @param len the packet length */
+	public void forwarded(int len) {
+		forwarded_packets.increment();
+		forwarded_bytes.add(len);
+	}
+
+	/** Counts a dropped packet.
+	 * @param len the packet length */
+	public void dropped(int len) {
+		dropped_packets.increment();
+		dropped_bytes.add(len);
+	}
+
+	@Override
+	public long getSentPackets() {
+		return sent_packets.sum();
+	}
+
+	@Override
+	public long getSentBytes() {
+		return sent_bytes.sum();
+	}
+
+	@Override
+	public long getReceivedPackets() {
+		return received_packets.sum();
+	}
+
+	@Override
+	public long getReceivedBytes() {
+		return received_bytes.sum();
+	}
+
+	@Override
+	public long getForwardedPackets() {
+		return forwarded_packets.sum();
+	}
+
+	@Override
+	public long getForwardedBytes() {
+		return forwarded_bytes.sum();
+	}
+
+	@Override
+	public long getDroppedPackets() {
+		return dropped_packets.sum();
+	}
+
+	@Override
+	public long getDroppedBytes() {
+		return dropped_bytes.sum();
+	}
+
+	/** Gets all counter values.
+	 * Counters are read one after the other, so the values are consistent only if there is no traffic.
+	 * @return the values, in the same order of {@link #NAMES} */
+	public long[] getValues() {
+		return new long[]{ getSentPackets(), getSentBytes(), getReceivedPackets(), getReceivedBytes(), getForwardedPackets(), getForwardedBytes(), getDroppedPackets(), getDroppedBytes() };
+	}
+
+	@Override
+	public void reset() {
+		sent_packets.reset();
+		sent_bytes.reset();
+		received_packets.reset();
+		received_bytes.reset();
+		forwarded_packets.reset();
+		forwarded_bytes.reset();
+		dropped_packets.reset();
+		dropped_bytes.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "tx="+getSentPackets()+"/"+getSentBytes()+"B, rx="+getReceivedPackets()+"/"+getReceivedBytes()+"B, fwd="+getForwardedPackets()+"/"+getForwardedBytes()+"B, drop="+getDroppedPackets()+"/"+getDroppedBytes()+"B";
+	}
+
+}
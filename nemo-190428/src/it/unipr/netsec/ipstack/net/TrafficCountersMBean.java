@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.ipstack.net;
+
+
+
+/** Management interface of {@link TrafficCounters}, for exposing traffic counters over JMX.
+ */
+public interface TrafficCountersMBean {
+
+	/** Gets the number of sent packets.
+	 * @return the number of packets */
+	public long getSentPackets();
+
+	/** Gets the number of sent bytes.
+	 * @return the number of bytes */
+	public long getSentBytes();
+
+	/** Gets the number of received packets.
+	 * @return the number of packets */
+	public long getReceivedPackets();
+
+	/** Gets the number of received bytes.
+	 * @return the number of bytes */
+	public long getReceivedBytes();
+
+	/** Gets the number of forwarded packets.
+	 * @return the number of packets */
+	public long getForwardedPackets();
+
+	/** Gets the number of forwarded bytes.
+	 * @return the number of bytes */
+	public long getForwardedBytes();
+
+	/** Gets the number of dropped packets.
+	 * @return the number of packets */
+	public long getDroppedPackets();
+
+	/** Gets the number of dropped bytes.
+	 * @return the number of bytes */
+	public long getDroppedBytes();
+
+	/** Resets all counters. */
+	public void reset();
+
+}
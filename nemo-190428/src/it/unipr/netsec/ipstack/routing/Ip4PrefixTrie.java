@@ -0,0 +1,265 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package it.unipr.netsec.ipstack.routing;
+
+
+/** Path-compressed binary trie of IPv4 prefixes, for longest prefix match.
+ * <p>
+ * Prefixes and addresses are represented as 32-bit integers (most significant byte first).
+ * Each node covers a prefix and it may have a value; nodes without value are only used for branching.
+ * Since chains of single-child nodes are collapsed, the trie has at most 2*<i>n</i>-1 nodes for <i>n</i> prefixes,
+ * and a lookup visits at most 33 nodes without allocating any object.
+ * @param <T> the type of the values associated to the prefixes
+ */
+public class Ip4PrefixTrie<T> {
+
+	/** Root node */
+	Node<T> root=null;
+	
+	/** Number of prefixes */
+	int size=0;
+	
+
+	
+	/** Creates a new empty trie. */
+	public Ip4PrefixTrie() {
+	}
+	
+	
+	/** Gets the number of prefixes.
+	 * @return the number of prefixes with a value */
+	public int size() {
+		return size;
+	}
+
+	
+	/** Gets the value of the longest prefix that contains a given address.
+	 * @param addr the address
+	 * @return the value, or <i>null</i> if no prefix contains the address */
+	public T lookup(int addr) {
+		T value=null;
+		Node<T> node=root;
+		while (node!=null && (addr&mask(node.len))==node.key) {
+			if (node.value!=null) value=node.value;
+			if (node.len==32) break;
+			// else
+			node=bit(addr,node.len)==0? node.left : node.right;
+		}
+		return value;
+	}
+
+	
+	/** Gets the value of a given prefix.
+	 * @param prefix the prefix
+	 * @param len the prefix length
+	 * @return the value, or <i>null</i> if the prefix is not present */
+	public T get(int prefix, int len) {
+		Node<T> node=find(prefix&mask(len),len);
+		return node!=null? node.value : null;
+	}
+
+	
+	/** Adds a prefix or replaces its value.
+	 * @param prefix the prefix
+	 * @param len the prefix length
+	 * @param value the value
+	 * @return the previous value of the prefix, or <i>null</i> */
+	public T put(int prefix, int len, T value) {
+		if (len<0 || len>32) throw new RuntimeException("Invalid prefix length: "+len);
+		if (value==null) throw new RuntimeException("Null value for prefix "+prefix+"/"+len);
+		// else
+		int key=prefix&mask(len);
+		Node<T> parent=null;
+		Node<T> node=root;
+		while (node!=null) {
+			int common=commonLength(node.key,node.len,key,len);
+			if (common==node.len && common==len) {
+				// same prefix
+				T old_value=node.value;
+				node.value=value;
+				if (old_value==null) size++;
+				return old_value;
+			}
+			if (common==node.len) {
+				// the node covers the new prefix
+				parent=node;
+				node=bit(key,node.len)==0? node.left : node.right;
+				continue;
+			}
+			// else
+			Node<T> new_node=new Node<T>(key,len,value);
+			if (common==len) {
+				// the new prefix covers the node
+				new_node.setChild(node);
+				replace(parent,node,new_node);
+			}
+			else {
+				// the two prefixes diverge
+				Node<T> fork=new Node<T>(key&mask(common),common,null);
+				fork.setChild(node);
+				fork.setChild(new_node);
+				replace(parent,node,fork);
+			}
+			size++;
+			return null;
+		}
+		// else
+		Node<T> new_node=new Node<T>(key,len,value);
+		if (parent==null) root=new_node;
+		else parent.setChild(new_node);
+		size++;
+		return null;
+	}
+
+	
+	/** Removes a prefix.
+	 * @param prefix the prefix
+	 * @param len the prefix length
+	 * @return the removed value, or <i>null</i> if the prefix was not present */
+	public T remove(int prefix, int len) {
+		int key=prefix&mask(len);
+		Node<T> grandparent=null;
+		Node<T> parent=null;
+		Node<T> node=root;
+		while (node!=null && node.len<=len && (key&mask(node.len))==node.key) {
+			if (node.len==len) break;
+			// else
+			grandparent=parent;
+			parent=node;
+			node=bit(key,node.len)==0? node.left : node.right;
+		}
+		if (node==null || node.len!=len || node.key!=key || node.value==null) return null;
+		// else
+		T old_value=node.value;
+		node.value=null;
+		size--;
+		if (node.left!=null && node.right!=null) return old_value;
+		// else
+		Node<T> child=node.left!=null? node.left : node.right;
+		replace(parent,node,child);
+		if (child==null && parent!=null && parent.value==null) {
+			// the parent is no longer needed for branching
+			replace(grandparent,parent,parent.left!=null? parent.left : parent.right);
+		}
+		return old_value;
+	}
+
+	
+	/** Removes all prefixes. */
+	public void clear() {
+		root=null;
+		size=0;
+	}
+
+	
+	/** Finds the node of a given prefix.
+	 * @param key the prefix, with all non-prefix bits set to zero
+	 * @param len the prefix length
+	 * @return the node, or <i>null</i> */
+	private Node<T> find(int key, int len) {
+		Node<T> node=root;
+		while (node!=null && node.len<=len && (key&mask(node.len))==node.key) {
+			if (node.len==len) return node;
+			// else
+			node=bit(key,node.len)==0? node.left : node.right;
+		}
+		return null;
+	}
+
+	
+	/** Replaces a child of a given node.
+	 * @param parent the parent node, or <i>null</i> for the root
+	 * @param old_child the current child
+	 * @param new_child the new child, or <i>null</i> */
+	private void replace(Node<T> parent, Node<T> old_child, Node<T> new_child) {
+		if (parent==null) root=new_child;
+		else
+		if (parent.left==old_child) parent.left=new_child;
+		else parent.right=new_child;
+	}
+
+	
+	/** Gets the mask of a given prefix length.
+	 * @param len the prefix length
+	 * @return the mask */
+	private static int mask(int len) {
+		return len==0? 0 : -1<<(32-len);
+	}
+
+	
+	/** Gets a bit of an address.
+	 * @param addr the address
+	 * @param i the bit position, starting from the most significant bit
+	 * @return the bit value */
+	private static int bit(int addr, int i) {
+		return (addr>>>(31-i))&1;
+	}
+
+	
+	/** Gets the length of the longest common prefix of two prefixes.
+	 * @param key1 the first prefix
+	 * @param len1 the length of the first prefix
+	 * @param key2 the second prefix
+	 * @param len2 the length of the second prefix
+	 * @return the common length */
+	private static int commonLength(int key1, int len1, int key2, int len2) {
+		int len=Integer.numberOfLeadingZeros(key1^key2);
+		if (len1<len) len=len1;
+		if (len2<len) len=len2;
+		return len;
+	}
+
+	
+	/** Node of the trie.
+	 */
+	static class Node<T> {
+		
+		/** Prefix, with all non-prefix bits set to zero */
+		int key;
+		
+		/** Prefix length */
+		int len;
+		
+		/** Value, or <i>null</i> for branching nodes */
+		T value;
+		
+		/** Child with next bit equal to 0 */
+		Node<T> left=null;
+
+		/** Child with next bit equal to 1 */
+		Node<T> right=null;
+
+		/** Creates a new node. */
+		Node(int key, int len, T value) {
+			this.key=key;
+			this.len=len;
+			this.value=value;
+		}
+		
+		/** Sets a child, according to the bit of the child's prefix that follows this prefix.
+		 * @param child the child node */
+		void setChild(Node<T> child) {
+			if (bit(child.key,len)==0) left=child;
+			else right=child;
+		}
+	}
+
+}
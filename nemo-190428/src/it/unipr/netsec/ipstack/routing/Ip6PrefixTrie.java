@@ -0,0 +1,285 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package it.unipr.netsec.ipstack.routing;
+
+
+/** Path-compressed binary trie of IPv6 prefixes, for longest prefix match.
+ * <p>
+ * Prefixes and addresses are represented as two 64-bit integers, with the most significant half first.
+ * As in {@link Ip4PrefixTrie}, chains of single-child nodes are collapsed, so that the trie has at most 2*<i>n</i>-1 nodes
+ * for <i>n</i> prefixes. Insertion and removal of a prefix only change a few nodes along its path,
+ * and a lookup visits at most 129 nodes without allocating any object.
+ * @param <T> the type of the values associated to the prefixes
+ */
+public class Ip6PrefixTrie<T> {
+
+	/** Root node */
+	Node<T> root=null;
+	
+	/** Number of prefixes */
+	int size=0;
+	
+
+	
+	/** Creates a new empty trie. */
+	public Ip6PrefixTrie() {
+	}
+	
+	
+	/** Gets the number of prefixes.
+	 * @return the number of prefixes with a value */
+	public int size() {
+		return size;
+	}
+
+	
+	/** Gets the value of the longest prefix that contains a given address.
+	 * @param hi the most significant 64 bits of the address
+	 * @param lo the least significant 64 bits of the address
+	 * @return the value, or <i>null</i> if no prefix contains the address */
+	public T lookup(long hi, long lo) {
+		T value=null;
+		Node<T> node=root;
+		while (node!=null && node.matches(hi,lo)) {
+			if (node.value!=null) value=node.value;
+			if (node.len==128) break;
+			// else
+			node=bit(hi,lo,node.len)==0? node.left : node.right;
+		}
+		return value;
+	}
+
+	
+	/** Gets the value of a given prefix.
+	 * @param hi the most significant 64 bits of the prefix
+	 * @param lo the least significant 64 bits of the prefix
+	 * @param len the prefix length
+	 * @return the value, or <i>null</i> if the prefix is not present */
+	public T get(long hi, long lo, int len) {
+		hi&=maskHi(len);
+		lo&=maskLo(len);
+		Node<T> node=root;
+		while (node!=null && node.len<=len && node.matches(hi,lo)) {
+			if (node.len==len) return node.value;
+			// else
+			node=bit(hi,lo,node.len)==0? node.left : node.right;
+		}
+		return null;
+	}
+
+	
+	/** Adds a prefix or replaces its value.
+	 * @param hi the most significant 64 bits of the prefix
+	 * @param lo the least significant 64 bits of the prefix
+	 * @param len the prefix length
+	 * @param value the value
+	 * @return the previous value of the prefix, or <i>null</i> */
+	public T put(long hi, long lo, int len, T value) {
+		if (len<0 || len>128) throw new RuntimeException("Invalid prefix length: "+len);
+		if (value==null) throw new RuntimeException("Null value for prefix of length "+len);
+		// else
+		hi&=maskHi(len);
+		lo&=maskLo(len);
+		Node<T> parent=null;
+		Node<T> node=root;
+		while (node!=null) {
+			int common=commonLength(node.hi,node.lo,hi,lo);
+			if (node.len<common) common=node.len;
+			if (len<common) common=len;
+			if (common==node.len && common==len) {
+				// same prefix
+				T old_value=node.value;
+				node.value=value;
+				if (old_value==null) size++;
+				return old_value;
+			}
+			if (common==node.len) {
+				// the node covers the new prefix
+				parent=node;
+				node=bit(hi,lo,node.len)==0? node.left : node.right;
+				continue;
+			}
+			// else
+			Node<T> new_node=new Node<T>(hi,lo,len,value);
+			if (common==len) {
+				// the new prefix covers the node
+				new_node.setChild(node);
+				replace(parent,node,new_node);
+			}
+			else {
+				// the two prefixes diverge
+				Node<T> fork=new Node<T>(hi&maskHi(common),lo&maskLo(common),common,null);
+				fork.setChild(node);
+				fork.setChild(new_node);
+				replace(parent,node,fork);
+			}
+			size++;
+			return null;
+		}
+		// else
+		Node<T> new_node=new Node<T>(hi,lo,len,value);
+		if (parent==null) root=new_node;
+		else parent.setChild(new_node);
+		size++;
+		return null;
+	}
+
+	
+	/** Removes a prefix.
+	 * @param hi the most significant 64 bits of the prefix
+	 * @param lo the least significant 64 bits of the prefix
+	 * @param len the prefix length
+	 * @return the removed value, or <i>null</i> if the prefix was not present */
+	public T remove(long hi, long lo, int len) {
+		hi&=maskHi(len);
+		lo&=maskLo(len);
+		Node<T> grandparent=null;
+		Node<T> parent=null;
+		Node<T> node=root;
+		while (node!=null && node.len<=len && node.matches(hi,lo)) {
+			if (node.len==len) break;
+			// else
+			grandparent=parent;
+			parent=node;
+			node=bit(hi,lo,node.len)==0? node.left : node.right;
+		}
+		if (node==null || node.len!=len || node.hi!=hi || node.lo!=lo || node.value==null) return null;
+		// else
+		T old_value=node.value;
+		node.value=null;
+		size--;
+		if (node.left!=null && node.right!=null) return old_value;
+		// else
+		Node<T> child=node.left!=null? node.left : node.right;
+		replace(parent,node,child);
+		if (child==null && parent!=null && parent.value==null) {
+			// the parent is no longer needed for branching
+			replace(grandparent,parent,parent.left!=null? parent.left : parent.right);
+		}
+		return old_value;
+	}
+
+	
+	/** Removes all prefixes. */
+	public void clear() {
+		root=null;
+		size=0;
+	}
+
+	
+	/** Replaces a child of a given node.
+	 * @param parent the parent node, or <i>null</i> for the root
+	 * @param old_child the current child
+	 * @param new_child the new child, or <i>null</i> */
+	private void replace(Node<T> parent, Node<T> old_child, Node<T> new_child) {
+		if (parent==null) root=new_child;
+		else
+		if (parent.left==old_child) parent.left=new_child;
+		else parent.right=new_child;
+	}
+
+	
+	/** Gets the most significant half of the mask of a given prefix length.
+	 * @param len the prefix length
+	 * @return the mask */
+	private static long maskHi(int len) {
+		return len==0? 0 : len>=64? -1L : -1L<<(64-len);
+	}
+
+	
+	/** Gets the least significant half of the mask of a given prefix length.
+	 * @param len the prefix length
+	 * @return the mask */
+	private static long maskLo(int len) {
+		return len<=64? 0 : -1L<<(128-len);
+	}
+
+	
+	/** Gets a bit of an address.
+	 * @param hi the most significant 64 bits of the address
+	 * @param lo the least significant 64 bits of the address
+	 * @param i the bit position, starting from the most significant bit
+	 * @return the bit value */
+	private static int bit(long hi, long lo, int i) {
+		return (int)(i<64? (hi>>>(63-i))&1 : (lo>>>(127-i))&1);
+	}
+
+	
+	/** Gets the number of leading bits that two addresses have in common.
+	 * @param hi1 the most significant 64 bits of the first address
+	 * @param lo1 the least significant 64 bits of the first address
+	 * @param hi2 the most significant 64 bits of the second address
+	 * @param lo2 the least significant 64 bits of the second address
+	 * @return the number of common bits */
+	private static int commonLength(long hi1, long lo1, long hi2, long lo2) {
+		if (hi1!=hi2) return Long.numberOfLeadingZeros(hi1^hi2);
+		// else
+		return 64+Long.numberOfLeadingZeros(lo1^lo2);
+	}
+
+	
+	/** Node of the trie.
+	 */
+	static class Node<T> {
+		
+		/** Most significant 64 bits of the prefix, with all non-prefix bits set to zero */
+		long hi;
+		
+		/** Least significant 64 bits of the prefix, with all non-prefix bits set to zero */
+		long lo;
+		
+		/** Prefix length */
+		int len;
+		
+		/** Value, or <i>null</i> for branching nodes */
+		T value;
+		
+		/** Child with next bit equal to 0 */
+		Node<T> left=null;
+
+		/** Child with next bit equal to 1 */
+		Node<T> right=null;
+
+		/** Creates a new node. */
+		Node(long hi, long lo, int len, T value) {
+			this.hi=hi;
+			this.lo=lo;
+			this.len=len;
+			this.value=value;
+		}
+		
+		/** Whether an address belongs to the prefix of this node.
+		 * @param hi the most significant 64 bits of the address
+		 * @param lo the least significant 64 bits of the address
+		 * @return <i>true</i> if the address matches the prefix */
+		boolean matches(long hi, long lo) {
+			return (hi&maskHi(len))==this.hi && (lo&maskLo(len))==this.lo;
+		}
+		
+		/** Sets a child, according to the bit of the child's prefix that follows this prefix.
+		 * @param child the child node */
+		void setChild(Node<T> child) {
+			if (bit(child.hi,child.lo,len)==0) left=child;
+			else right=child;
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package it.unipr.netsec.ipstack.routing;
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import it.unipr.netsec.ipstack.net.Address;
+
+
+/** Bounded cache of the routes toward recently used destinations.
+ * <p>
+ * Only routes obtained from a {@link RoutingTable} are cached. All entries are discarded at once as soon as
+ * the version of the routing table changes, that is whenever a route is added or removed.
+ * When the cache is full, the oldest entry is replaced.
+ * <p>
+ * The numbers of hits and misses are counted.
+ */
+public class RouteCache {
+
+	/** Default maximum number of entries */
+	public static int DEFAULT_SIZE=1024;
+	
+	/** Cached routes */
+	LinkedHashMap<Address,Route> routes;
+
+	/** Routing table of the cached routes */
+	RoutingTable routing_table=null;
+
+	/** Version of the routing table of the cached routes */
+	int version;
+
+	/** Number of hits */
+	long hits=0;
+
+	/** Number of misses */
+	long misses=0;
+	
+	
+	/** Creates a new cache. */
+	public RouteCache() {
+		this(DEFAULT_SIZE);
+	}
+	
+	/** Creates a new cache.
+	 * @param max_size maximum number of entries */
+	public RouteCache(final int max_size) {
+		routes=new LinkedHashMap<Address,Route>() {
+			private static final long serialVersionUID=1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Address,Route> eldest) {
+				return size()>max_size;
+			}
+		};
+	}
+	
+	/** Gets the route for a given destination address, using the cache if possible.
+	 * @param routing_function the routing function that the route is taken from in case of miss
+	 * @param dest_addr the destination address
+	 * @return the route */
+	public synchronized Route getRoute(RoutingFunction routing_function, Address dest_addr) {
+		if (!(routing_function instanceof RoutingTable)) return routing_function.getRoute(dest_addr);
+		// else
+		RoutingTable rt=(RoutingTable)routing_function;
+		int rt_version=rt.getVersion();
+		if (rt!=routing_table || rt_version!=version) {
+			routes.clear();
+			routing_table=rt;
+			version=rt_version;
+		}
+		Route route=routes.get(dest_addr);
+		if (route!=null) {
+			hits++;
+			return route;
+		}
+		// else
+		misses++;
+		route=rt.getRoute(dest_addr);
+		if (route!=null) routes.put(dest_addr,route);
+		return route;
+	}
+	
+	/** Removes all entries. */
+	public synchronized void clear() {
+		routes.clear();
+		routing_table=null;
+	}
+	
+	/** Gets the current number of entries.
+	 * @return the number of cached routes */
+	public synchronized int size() {
+		return routes.size();
+	}
+	
+	/** Gets the number of hits.
+	 * @return the number of lookups resolved by the cache */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/** Gets the number of misses.
+	 * @return the number of lookups resolved by the routing table */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/** Gets the hit ratio.
+	 * @return the ratio between hits and lookups, or 0 if no lookup has been done */
+	public synchronized double getHitRatio() {
+		long lookups=hits+misses;
+		return lookups>0? (double)hits/lookups : 0;
+	}
+	
+	/** Resets the hit and miss counters. */
+	public synchronized void resetStatistics() {
+		hits=0;
+		misses=0;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName()+"[size="+routes.size()+",hits="+hits+",misses="+misses+"]";
+	}
+
+}
@@ -22,17 +22,37 @@ package it.unipr.netsec.ipstack.routing;
 
 import java.util.ArrayList;
 
+import it.unipr.netsec.ipstack.ip4.Ip4Address;
+import it.unipr.netsec.ipstack.ip4.Ip4Prefix;
+import it.unipr.netsec.ipstack.ip6.Ip6Address;
+import it.unipr.netsec.ipstack.ip6.Ip6Prefix;
 import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.NetAddress;
 
 
 /** Routing Table.
+ * <p>
+ * Routes toward IPv4 and IPv6 prefixes are also kept in a {@link Ip4PrefixTrie} and in a {@link Ip6PrefixTrie},
+ * and IPv4 and IPv6 destinations are resolved through longest prefix match. If more routes have the same prefix, the one that comes first in the table is used.
+ * Other routes are resolved by scanning the table in order, and the first matching route is used.
  */
 public class RoutingTable implements RoutingFunction {
 
 	/** Table */
 	ArrayList<Route> rt=new ArrayList<Route>();
 
+	/** Index of the routes toward IPv4 prefixes */
+	Ip4PrefixTrie<Route> ip4_index=new Ip4PrefixTrie<Route>();
+
+	/** Index of the routes toward IPv6 prefixes */
+	Ip6PrefixTrie<Route> ip6_index=new Ip6PrefixTrie<Route>();
+
+	/** Number of routes that are not indexed */
+	int unindexed=0;
+
+	/** Version of the table, incremented at each change */
+	volatile int version=0;
+
 	/** Default route */
 	Route default_route=null;
 
@@ -50,11 +70,19 @@ public class RoutingTable implements RoutingFunction {
 	}
 
 	
+	/** Gets the version of the routing table.
+	 * The version changes whenever a route is added or removed, or the default route is changed.
+	 * @return the version */
+	public int getVersion() {
+		return version;
+	}
+
+	
 	/** Adds a new route.
 	 * @param dest_naddr the destination network address
 	 * @param next_hop the next-hop router */
 	public void add(NetAddress dest_naddr, Address next_hop) {
-		rt.add(new Route(dest_naddr,next_hop,getRoute(next_hop).getOutputInterface()));
+		add(new Route(dest_naddr,next_hop,getRoute(next_hop).getOutputInterface()));
 	}
 	
 	
@@ -62,6 +90,21 @@ public class RoutingTable implements RoutingFunction {
 	 * @param route the new route */
 	public void add(Route route) {
 		rt.add(route);
+		version++;
+		NetAddress dest_naddr=route.getDestNetAddress();
+		if (dest_naddr instanceof Ip4Prefix) {
+			Ip4Prefix prefix=(Ip4Prefix)dest_naddr;
+			int key=prefix.prefixAddress().toInt();
+			if (ip4_index.get(key,prefix.prefixLength())==null) ip4_index.put(key,prefix.prefixLength(),route);
+		}
+		else
+		if (dest_naddr instanceof Ip6Prefix) {
+			Ip6Prefix prefix=(Ip6Prefix)dest_naddr;
+			Ip6Address addr=prefix.prefixAddress();
+			long hi=addr.getHighBits(), lo=addr.getLowBits();
+			if (ip6_index.get(hi,lo,prefix.prefixLength())==null) ip6_index.put(hi,lo,prefix.prefixLength(),route);
+		}
+		else unindexed++;
 	}
 	
 	
@@ -70,6 +113,8 @@ public class RoutingTable implements RoutingFunction {
 	 * @param route the new route */
 	public void insert(int i, Route route) {
 		rt.add(i,route);
+		version++;
+		if (!reindex(route.getDestNetAddress())) unindexed++;
 	}
 	
 	
@@ -79,7 +124,7 @@ public class RoutingTable implements RoutingFunction {
 		for (int i=0; i<rt.size(); i++) {
 			Route route_i=rt.get(i);
 			if (route_i.getDestNetAddress().equals(dest_naddr)) {
-				rt.remove(i);
+				remove(i);
 				return;
 			}
 		}
@@ -89,15 +134,62 @@ public class RoutingTable implements RoutingFunction {
 	/** Removes all routes. */
 	public void removeAll() {
 		rt.clear();
+		version++;
+		ip4_index.clear();
+		ip6_index.clear();
+		unindexed=0;
 	}
 	
 	
 	/** Removes a route.
 	 * @param i the index of the route within the routing table */
 	public void remove(int i) {
-		rt.remove(i);
+		if (!reindex(rt.remove(i).getDestNetAddress())) unindexed--;
+		version++;
 	}
-
+	
+	
+	/** Updates the index entry of a given prefix, with the first route toward this prefix.
+	 * @param dest_naddr the prefix
+	 * @return <i>true</i> if the prefix is indexed, <i>false</i> if it is neither an IPv4 nor an IPv6 prefix */
+	private boolean reindex(NetAddress dest_naddr) {
+		if (dest_naddr instanceof Ip4Prefix) {
+			int key=((Ip4Prefix)dest_naddr).prefixAddress().toInt();
+			int len=((Ip4Prefix)dest_naddr).prefixLength();
+			for (Route route : rt) {
+				NetAddress route_naddr=route.getDestNetAddress();
+				if (route_naddr instanceof Ip4Prefix && ((Ip4Prefix)route_naddr).prefixLength()==len && ((Ip4Prefix)route_naddr).prefixAddress().toInt()==key) {
+					ip4_index.put(key,len,route);
+					return true;
+				}
+			}
+			// else
+			ip4_index.remove(key,len);
+			return true;
+		}
+		// else
+		if (dest_naddr instanceof Ip6Prefix) {
+			Ip6Address addr=((Ip6Prefix)dest_naddr).prefixAddress();
+			long hi=addr.getHighBits(), lo=addr.getLowBits();
+			int len=((Ip6Prefix)dest_naddr).prefixLength();
+			for (Route route : rt) {
+				NetAddress route_naddr=route.getDestNetAddress();
+				if (route_naddr instanceof Ip6Prefix && ((Ip6Prefix)route_naddr).prefixLength()==len) {
+					Ip6Address route_addr=((Ip6Prefix)route_naddr).prefixAddress();
+					if (route_addr.getHighBits()==hi && route_addr.getLowBits()==lo) {
+						ip6_index.put(hi,lo,len,route);
+						return true;
+					}
+				}
+			}
+			// else
+			ip6_index.remove(hi,lo,len);
+			return true;
+		}
+		// else
+		return false;
+	}
+	
 	
 	/** Gets all routes in the routing table.
 	 * @return list of routes */
@@ -117,6 +209,7 @@ public class RoutingTable implements RoutingFunction {
 	 * @param default_route the default route or <i>null</i> */
 	public void setDefaultRoute(Route default_route) {
 		this.default_route=default_route;
+		version++;
 	}
 	
 	
@@ -129,6 +222,20 @@ public class RoutingTable implements RoutingFunction {
 	
 	@Override
 	public Route getRoute(Address dest_addr) {
+		if (dest_addr instanceof Ip4Address) {
+			Route route=ip4_index.lookup(((Ip4Address)dest_addr).toInt());
+			if (route!=null) return route;
+			// else
+			if (unindexed==0) return default_route;
+		}
+		else
+		if (dest_addr instanceof Ip6Address) {
+			Ip6Address addr=(Ip6Address)dest_addr;
+			Route route=ip6_index.lookup(addr.getHighBits(),addr.getLowBits());
+			if (route!=null) return route;
+			// else
+			if (unindexed==0) return default_route;
+		}
 		for (Route route : rt) {
 			if (route.getDestNetAddress().contains(dest_addr)) return route;
 		}
@@ -127,6 +127,7 @@ public class ChunkBuffer {
 	}
 
 	/** Reads all bytes that are currently available in order from the head-of-line. 
+	 * A new array is allocated; in order to avoid the allocation, use {@link #read(byte[], int)} with a buffer of at least {@link #available()} bytes.
 	 * @return the bytes */
 	public synchronized byte[] read() {
 		int len=available();
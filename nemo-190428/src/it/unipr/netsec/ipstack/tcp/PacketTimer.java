@@ -26,15 +26,29 @@ import org.zoolu.util.TimerListener;
 
 
 /** A packet and transmission timer.
+ * <p>
+ * The inner timer is never accessed while holding the lock of this object, since timeouts are processed
+ * while holding the lock of the inner timer. Each start or stop of this timer is a new generation;
+ * timeouts of an earlier generation (e.g. when this timer has been stopped or reused for a new packet meanwhile) are ignored.
  */
 public class PacketTimer {
 
 	TcpPacket packet;
 	int counter=0;
 	PacketTimerListener listener;
-	Timer timer;
+	Timer timer=null;
+	boolean is_active=false;
 	TimerListener this_timer_listener;
 	
+	/** Origin of the inner timer (e.g. the TCP connection), used only for profiling */
+	Object origin=null;
+	
+	/** Current generation, incremented each time this timer is started or stopped */
+	long generation=0;
+	
+	/** Generation the inner timer has been started for */
+	long timer_generation=-1;
+	
 	public PacketTimer(TcpPacket packet, PacketTimerListener listener) {
 		this.packet=packet;
 		this.listener=listener;
@@ -46,22 +60,71 @@ public class PacketTimer {
 		};				
 	}
 	
-	public synchronized void start(long retransmission_to) {
-		timer=Clock.getDefaultClock().newTimer(retransmission_to,0,this_timer_listener);
-		timer.start();	
-		counter++;
+	/** Sets the origin of this timer, reported by profilers for the retransmission timeouts.
+	 * @param origin the object that created this timer (e.g. the TCP connection) */
+	public synchronized void setOrigin(Object origin) {
+		this.origin=origin;
+		if (timer!=null) timer.setOrigin(origin,"retransmission");
+	}
+	
+	/** Reuses this packet timer for a new packet. */
+	public void reset(TcpPacket packet) {
+		done();
+		synchronized (this) {
+			this.packet=packet;
+			counter=0;
+		}
 	}
 	
+	public void start(long retransmission_to) {
+		Timer t;
+		long gen;
+		synchronized (this) {
+			if (timer==null) {
+				timer=Clock.getDefaultClock().newTimer(retransmission_to,0,this_timer_listener);
+				timer.setOrigin(origin,"retransmission");
+			}
+			t=timer;
+			gen=++generation;
+			is_active=true;
+			counter++;
+		}
+		synchronized (t) {
+			synchronized (this) {
+				// started or stopped again meanwhile
+				if (gen!=generation) return;
+				// else
+				timer_generation=gen;
+			}
+			t.restart(retransmission_to,0);
+		}
+	}
+	
+	/** When the inner timer expires.
+	 * It is called while holding the lock of the inner timer. */
 	private void processTimeout(Timer t) {
-		if (timer!=null) {
-			if (listener!=null) listener.onTimeout(this);
+		synchronized (this) {
+			if (!is_active || timer_generation!=generation) return;
 		}
+		if (listener!=null) listener.onTimeout(this);
 	}			
 	
 	public void done() {
-		if (timer!=null) {
-			timer.halt();
-			timer=null;
+		Timer t;
+		long gen;
+		synchronized (this) {
+			if (!is_active) return;
+			// else
+			is_active=false;
+			gen=++generation;
+			t=timer;
+		}
+		synchronized (t) {
+			synchronized (this) {
+				// started again meanwhile
+				if (gen!=generation) return;
+			}
+			t.halt();
 		}
 	}
 
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Random;
 
+import org.zoolu.util.ByteArrayPool;
 import org.zoolu.util.Clock;
 import org.zoolu.util.LoggerLevel;
 import org.zoolu.util.SystemUtils;
@@ -145,6 +146,9 @@ public class TcpConnection {
 	/** Sender buffer with unacknowledged segments */
 	ArrayList<PacketTimer> snd_buffer=new ArrayList<PacketTimer>();
 
+	/** Acknowledged packet timers, that can be reused for new segments */
+	ArrayList<PacketTimer> free_timers=new ArrayList<PacketTimer>();
+
 	/** Receiver buffer with out-of-line segments*/
 	ChunkBuffer rcv_buffer;
 
@@ -271,7 +275,15 @@ public class TcpConnection {
 	/** Sends a segment with transmission time-out. */
 	void transmit(TcpPacket tcp_pkt) {
 		synchronized (snd_buffer) {
-			PacketTimer t=new PacketTimer(tcp_pkt,transmission_listener);
+			PacketTimer t;
+			if (free_timers.size()>0) {
+				t=free_timers.remove(free_timers.size()-1);
+				t.reset(tcp_pkt);
+			}
+			else {
+				t=new PacketTimer(tcp_pkt,transmission_listener);
+				t.setOrigin(this);
+			}
 			snd_buffer.add(t);			
 			transmit(t);
 		}
@@ -370,6 +382,7 @@ public class TcpConnection {
 						if (lastSequenceNumber(t.getPacket())<ack) {
 							t.done();
 							snd_buffer.remove(i);
+							free_timers.add(t);
 							i--;
 						}
 					}
@@ -463,17 +476,22 @@ public class TcpConnection {
 					Chunk c=new Chunk(tcp_pkt.getSqn()+(tcp_pkt.hasSyn()?1:0),tcp_pkt.getPayloadBuffer(),tcp_pkt.getPayloadOffset(),tcp_pkt.getPayloadLength());
 					rcv_buffer.write(c);
 					if (DEBUG) debug("processIncomingPacket(): rcv_buffer: "+rcv_buffer.toString());
+					// in-order data are read into a pooled buffer, that is released once passed to the listener
+					ByteArrayPool pool=ByteArrayPool.getDefaultPool();
 					byte[] data=null;
-					if (rcv_buffer.available()>0) {
-						data=rcv_buffer.read();
-						rcv_nxt+=data.length;
-						if (DEBUG) debug("processIncomingPacket(): data len: "+data.length);
+					int data_len=rcv_buffer.available();
+					if (data_len>0) {
+						data=pool.get(data_len);
+						data_len=rcv_buffer.read(data,0);
+						rcv_nxt+=data_len;
+						if (DEBUG) debug("processIncomingPacket(): data len: "+data_len);
 					}
 					else {
 						if (DEBUG) debug("processIncomingPacket(): out-of-sequence data: "+(sqn-rcv_isn)+"["+len+"]");
 					}
 					sendAck();
-					if (state==State.ESTABLISHED && data!=null) listener.onReceivedData(this,data,0,data.length);
+					if (state==State.ESTABLISHED && data!=null) listener.onReceivedData(this,data,0,data_len);
+					pool.release(data);
 					
 					/*if (sqn==rcv_nxt) {
 						rcv_nxt+=len;
@@ -577,6 +595,7 @@ public class TcpConnection {
 						changeState(State.CLOSED);
 					}	
 				});
+				t.setOrigin(this,"time-wait");
 				t.start();
 			}
 		}
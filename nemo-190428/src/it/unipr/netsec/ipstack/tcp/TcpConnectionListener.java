@@ -30,6 +30,7 @@ public interface TcpConnectionListener {
 	public void onConnected(TcpConnection tcp_conn);
 
 	/** When a new data is received.
+	 * The buffer may be reused after this method returns, so data that are needed afterwards have to be copied.
 	 * @param tcp_conn the TCP connection
 	 * @param buf buffer containing the received data
 	 * @param off offset within the buffer
@@ -21,6 +21,10 @@ package it.unipr.netsec.ipstack.util;
 
 
 
+import java.nio.ByteBuffer;
+
+
+
 /** IP, ICMP, UDP, TCP checksum.
  */
 public class Checksum {
@@ -39,6 +43,32 @@ public class Checksum {
 	}
 
 	
+	/** Checksum calculation.
+	 * It computes the Internet checksum of data within a byte buffer, using absolute gets (the buffer position is not changed).
+	 * @param buf the buffer containing the data for computing the checksum
+	 * @param off the offset of the data within the buffer
+	 * @param len the data length */
+	public static int checksum(ByteBuffer buf, int off, int len) {
+		int sum=0;
+		for (int i=0; i<len; i++) sum+=(i&0x1)==0x0? (buf.get(off+i)&0xff)<<8 : buf.get(off+i)&0xff;
+		while ((sum>>16)!=0) sum=(sum&0xffff)+(sum>>16);
+		return ~sum;
+	}
+
+	
+	/** Incremental checksum update, as defined in RFC 1624.
+	 * It computes the new checksum when a 16-bit word of the checksummed data changes.
+	 * @param checksum the old checksum
+	 * @param old_word the old value of the 16-bit word
+	 * @param new_word the new value of the 16-bit word
+	 * @return the new checksum */
+	public static int updateChecksum(int checksum, int old_word, int new_word) {
+		int sum=(~checksum&0xffff)+(~old_word&0xffff)+(new_word&0xffff);
+		while ((sum>>16)!=0) sum=(sum&0xffff)+(sum>>16);
+		return ~sum&0xffff;
+	}
+
+	
 	/** Upper-layer checksum calculation including IPv4 pseudo-header as defined in RFC 768.
 	 * @param src_addr source address
 	 * @param dst_addr destination address
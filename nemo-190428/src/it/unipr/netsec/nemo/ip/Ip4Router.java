@@ -155,9 +155,9 @@ public class Ip4Router extends Ip4Node {
 	}
 
 	@Override
-	public void sendPacket(Packet pkt) {
+	protected void sendPacket(Packet pkt, boolean forwarded) {
 		if (!paused) {
-			super.sendPacket(pkt);			
+			super.sendPacket(pkt,forwarded);			
 		}
 	}
 
@@ -154,9 +154,9 @@ public class Ip6Router extends Ip6Node {
 	}
 
 	@Override
-	public void sendPacket(Packet pkt) {
+	protected void sendPacket(Packet pkt, boolean forwarded) {
 		if (!paused) {
-			super.sendPacket(pkt);			
+			super.sendPacket(pkt,forwarded);			
 		}
 	}
 
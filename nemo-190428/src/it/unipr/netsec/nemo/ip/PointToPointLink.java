@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.nemo.ip;
+
+
+import it.unipr.netsec.ipstack.ip4.IpPrefix;
+import it.unipr.netsec.ipstack.link.LinkInterface;
+import it.unipr.netsec.ipstack.net.Address;
+import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
+import it.unipr.netsec.nemo.link.DataLinkDelay;
+import it.unipr.netsec.nemo.link.DataLinkError;
+import it.unipr.netsec.simulator.scheduler.ParallelClock;
+import it.unipr.netsec.simulator.scheduler.SchedulerTask;
+
+import org.zoolu.util.Clock;
+import org.zoolu.util.LoggerLevel;
+import org.zoolu.util.SystemUtils;
+import org.zoolu.util.Timer;
+import org.zoolu.util.TimerListener;
+
+
+/** Full-duplex IP link between exactly two interfaces.
+ * <p>
+ * Each direction has its own bit-rate, delay function, and error function,
+ * while each end-point has its own transmit queue (see {@link it.unipr.netsec.nemo.link.DataLinkInterface}).
+ * Direction 0 is from the first attached interface toward the second one, direction 1 is the reverse.
+ * <p>
+ * Packets are passed directly to the peer interface, regardless of the destination address and without any address lookup.
+ * <p>
+ * Methods inherited from {@link it.unipr.netsec.nemo.link.DataLink} (e.g. {@link #setMediumDelay(long)} or {@link #setLinkError(DataLinkError)})
+ * apply to both directions.
+ */
+public class PointToPointLink extends IpLink {
+
+	/** Prints a debug message. */
+	private void debug(String str) {
+		SystemUtils.log(LoggerLevel.DEBUG,PointToPointLink.class,str);
+	}
+
+	
+	/** End-points */
+	LinkInterface[] end_points=new LinkInterface[2];
+	
+	/** Bit rate of each direction */
+	long[] bit_rates=new long[2];
+
+	/** Delay function of each direction */
+	DataLinkDelay[] link_delays=new DataLinkDelay[2];
+
+	/** Minimum packet delay of each direction [nanosecs] */
+	long[] min_delays=new long[2];
+
+	/** Error function of each direction */
+	DataLinkError[] link_errors=new DataLinkError[2];
+
+	
+	/** Creates a new link.
+	 * @param prefix network prefix */
+	public PointToPointLink(IpPrefix prefix) {
+		this(0,prefix);
+	}
+	
+	/** Creates a new link.
+	 * @param bit_rate bit rate of both directions
+	 * @param prefix network prefix */
+	public PointToPointLink(long bit_rate, IpPrefix prefix) {
+		this(bit_rate,0,prefix);
+	}
+	
+	/** Creates a new link.
+	 * @param bit_rate bit rate of both directions
+	 * @param medium_delay fixed medium delay of both directions, in nanosecs
+	 * @param prefix network prefix */
+	public PointToPointLink(long bit_rate, long medium_delay, IpPrefix prefix) {
+		super(prefix);
+		bit_rates[0]=bit_rates[1]=bit_rate;
+		setMediumDelay(medium_delay);
+	}
+	
+	/** Gets the link bit rate.
+	 * @return the highest bit rate of the two directions */
+	@Override
+	public long getBitRate() {
+		return Math.max(bit_rates[0],bit_rates[1]);
+	}
+	
+	@Override
+	public long getBitRate(LinkInterface src_ni) {
+		int dir=getDirection(src_ni);
+		return dir>=0? bit_rates[dir] : 0;
+	}
+	
+	/** Gets the bit rate of a given direction.
+	 * @param dir the direction (0 or 1)
+	 * @return the bit rate */
+	public long getBitRate(int dir) {
+		return bit_rates[dir];
+	}
+	
+	/** Sets the bit rate of a given direction.
+	 * @param dir the direction (0 or 1)
+	 * @param bit_rate the bit rate */
+	public void setBitRate(int dir, long bit_rate) {
+		bit_rates[dir]=bit_rate;
+	}
+	
+	@Override
+	public void setLinkDelay(DataLinkDelay link_delay, long min_delay) {
+		super.setLinkDelay(link_delay,min_delay);
+		setLinkDelay(0,link_delay,min_delay);
+		setLinkDelay(1,link_delay,min_delay);
+	}
+	
+	/** Sets the link delay of a given direction.
+	 * @param dir the direction (0 or 1)
+	 * @param link_delay the delay function
+	 * @param min_delay the minimum delay returned by the delay function, in nanoseconds */
+	public void setLinkDelay(int dir, DataLinkDelay link_delay, long min_delay) {
+		link_delays[dir]=link_delay;
+		min_delays[dir]=min_delay;
+	}
+	
+	/** Sets a fixed medium delay of a given direction.
+	 * @param dir the direction (0 or 1)
+	 * @param medium_delay the medium delay in nanoseconds */
+	public void setMediumDelay(int dir, final long medium_delay) {
+		setLinkDelay(dir,new DataLinkDelay() {
+			@Override
+			public long getPacketDelay(Packet pkt) {
+				return medium_delay;
+			}
+		},medium_delay);
+	}
+	
+	/** Gets the minimum packet delay.
+	 * @return the minimum delay of the two directions, in nanoseconds */
+	@Override
+	public long getMinimumDelay() {
+		return Math.min(min_delays[0],min_delays[1]);
+	}
+	
+	/** Gets the minimum packet delay of a given direction.
+	 * @param dir the direction (0 or 1)
+	 * @return the minimum delay in nanoseconds */
+	public long getMinimumDelay(int dir) {
+		return min_delays[dir];
+	}
+	
+	@Override
+	public void setLinkError(DataLinkError link_error) {
+		super.setLinkError(link_error);
+		setLinkError(0,link_error);
+		setLinkError(1,link_error);
+	}
+	
+	/** Sets the link error of a given direction.
+	 * @param dir the direction (0 or 1)
+	 * @param link_error the error function */
+	public void setLinkError(int dir, DataLinkError link_error) {
+		link_errors[dir]=link_error;
+	}
+	
+	/** Gets the two end-points.
+	 * @return the interfaces attached to this link (an element is <i>null</i> if the corresponding end-point is not attached yet) */
+	public LinkInterface[] getEndPoints() {
+		return new LinkInterface[]{ end_points[0], end_points[1] };
+	}
+	
+	/** Gets the direction of the packets sent by a given interface.
+	 * @param src_ni the sending interface
+	 * @return the direction (0 or 1), or -1 if the interface is not attached to this link */
+	private int getDirection(LinkInterface src_ni) {
+		if (src_ni==end_points[0]) return 0;
+		if (src_ni==end_points[1]) return 1;
+		// else
+		return -1;
+	}
+	
+	@Override
+	public void addLinkInterface(LinkInterface ni) {
+		synchronized (end_points) {
+			if (end_points[0]!=null && end_points[1]!=null) throw new RuntimeException("At most two interfaces can be attached to a "+PointToPointLink.class.getSimpleName());
+			// else
+			super.addLinkInterface(ni);
+			if (end_points[0]==null) end_points[0]=ni;
+			else end_points[1]=ni;
+		}
+	}
+	
+	@Override
+	public void removeLinkInterface(LinkInterface ni) {
+		synchronized (end_points) {
+			super.removeLinkInterface(ni);
+			int dir=getDirection(ni);
+			if (dir>=0) end_points[dir]=null;
+		}
+	}
+	
+	@Override
+	public void transmit(Packet pkt, LinkInterface src_ni, Address dst_ni_addr) {
+		int dir=getDirection(src_ni);
+		final LinkInterface peer=dir>=0? end_points[1-dir] : null;
+		int len=TrafficCounters.ENABLED? pkt.getPacketLength() : 0;
+		if (TrafficCounters.ENABLED) counters.sent(len);
+		if (peer==null) {
+			if (DEBUG) debug("transmit(): no peer interface: packet discarded");
+			if (TrafficCounters.ENABLED) counters.dropped(len);
+			return;
+		}
+		// else
+		if (link_errors[dir]!=null) pkt=link_errors[dir].getPacketError(pkt);
+		if (pkt==null) {
+			if (DEBUG) debug("transmit(): link erorr: packet discarded");
+			if (TrafficCounters.ENABLED) counters.dropped(len);
+			return;
+		}
+		// else
+		if (TrafficCounters.ENABLED) counters.received(len);
+		long medium_delay=link_delays[dir]!=null? link_delays[dir].getPacketDelay(pkt) : 0;
+		Clock clock=getClock();
+		if (clock instanceof ParallelClock) {
+			ParallelClock parallel_clock=(ParallelClock)clock;
+			int current_lp=parallel_clock.currentLogicalProcess();
+			int lp=parallel_clock.getLogicalProcess(peer);
+			if (lp<0) lp=current_lp;
+			if (medium_delay>0 || lp!=current_lp) {
+				final Packet pkt_copy=(Packet)pkt.clone();
+				SchedulerTask task=new SchedulerTask() {
+					public void action() {
+						peer.processIncomingPacket(PointToPointLink.this,pkt_copy);
+					}
+				};
+				task.setOrigin(this,"delivery");
+				parallel_clock.post(lp,task,medium_delay);
+			}
+			else peer.processIncomingPacket(this,pkt);
+		}
+		else
+		if (medium_delay>0) {
+			final Packet pkt_copy=(Packet)pkt.clone();
+			TimerListener timer_listener=new TimerListener() {
+				public void onTimeout(Timer t) {
+					peer.processIncomingPacket(PointToPointLink.this,pkt_copy);
+				}
+			};
+			Timer timer=clock.newTimer(medium_delay/1000000,(int)(medium_delay%1000000),timer_listener);
+			timer.setOrigin(this,"delivery");
+			timer.start();
+		}
+		else {
+			peer.processIncomingPacket(this,pkt);
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package it.unipr.netsec.nemo.link;
+
+
+/** Controlled Delay (CoDel) queue discipline, as specified in RFC 8289.
+ * <p>
+ * Packets are dropped at the head of the queue when their sojourn time has stayed above the target for at least an interval.
+ * While in the dropping state, the next drop is scheduled at <i>interval/sqrt(count)</i> after the previous one.
+ */
+public class CoDelQueueDiscipline implements QueueDiscipline {
+
+	/** Default target sojourn time, in nanoseconds */
+	public static long DEFAULT_TARGET=5000000L;
+
+	/** Default interval, in nanoseconds */
+	public static long DEFAULT_INTERVAL=100000000L;
+
+	/** Target sojourn time, in nanoseconds */
+	long target;
+
+	/** Interval, in nanoseconds */
+	long interval;
+
+	/** Maximum packet size; the queue is never dropped below this number of bytes */
+	int max_packet;
+
+	/** Time when the sojourn time will have been above the target for an interval, or 0 */
+	long first_above_time=0;
+
+	/** Time of the next drop, when dropping */
+	long drop_next=0;
+
+	/** Number of drops since entering the dropping state */
+	int count=0;
+
+	/** Value of count at the end of the last dropping state */
+	int last_count=0;
+
+	/** Whether it is in dropping state */
+	boolean dropping=false;
+
+	/** Total number of drops */
+	long drops=0;
+
+	
+	/** Creates a new CoDel discipline, with default target and interval. */
+	public CoDelQueueDiscipline() {
+		this(DEFAULT_TARGET,DEFAULT_INTERVAL);
+	}
+
+	/** Creates a new CoDel discipline.
+	 * @param target the target sojourn time, in nanoseconds
+	 * @param interval the interval, in nanoseconds */
+	public CoDelQueueDiscipline(long target, long interval) {
+		this(target,interval,DataLinkInterface.DEFAULT_MTU);
+	}
+
+	/** Creates a new CoDel discipline.
+	 * @param target the target sojourn time, in nanoseconds
+	 * @param interval the interval, in nanoseconds
+	 * @param max_packet the maximum packet size, in bytes */
+	public CoDelQueueDiscipline(long target, long interval, int max_packet) {
+		this.target=target;
+		this.interval=interval;
+		this.max_packet=max_packet;
+	}
+
+	@Override
+	public boolean dropOnEnqueue(int queue_size, long queue_bytes, int pkt_len, long now) {
+		return false;
+	}
+
+	@Override
+	public synchronized boolean dropOnDequeue(long sojourn_time, int queue_size, long queue_bytes, long now) {
+		boolean ok_to_drop=false;
+		if (sojourn_time<target || queue_bytes<=max_packet) first_above_time=0;
+		else
+		if (first_above_time==0) first_above_time=now+interval;
+		else
+		if (now>=first_above_time) ok_to_drop=true;
+		
+		if (dropping) {
+			if (!ok_to_drop) {
+				dropping=false;
+				return false;
+			}
+			// else
+			if (now>=drop_next) {
+				count++;
+				drop_next=controlLaw(drop_next);
+				drops++;
+				return true;
+			}
+			// else
+			return false;
+		}
+		// else
+		if (ok_to_drop) {
+			dropping=true;
+			int delta=count-last_count;
+			count=(delta>1 && now-drop_next<16*interval)? delta : 1;
+			drop_next=controlLaw(now);
+			last_count=count;
+			drops++;
+			return true;
+		}
+		// else
+		return false;
+	}
+	
+	/** Gets the time of the next drop.
+	 * @param t the time of the previous drop
+	 * @return the time of the next drop */
+	private long controlLaw(long t) {
+		return t+(long)(interval/Math.sqrt(count));
+	}
+	
+	/** Whether it is in dropping state.
+	 * @return <i>true</i> if dropping */
+	public synchronized boolean isDropping() {
+		return dropping;
+	}
+	
+	/** Gets the number of drops.
+	 * @return the total number of packets dropped by this discipline */
+	public synchronized long getDropCount() {
+		return drops;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName()+"["+target+","+interval+"]";
+	}
+
+}
@@ -20,6 +20,8 @@
 package it.unipr.netsec.nemo.link;
 
 
+import java.util.List;
+
 import org.zoolu.util.Clock;
 import org.zoolu.util.LoggerLevel;
 import org.zoolu.util.SystemUtils;
@@ -29,6 +31,11 @@ import org.zoolu.util.TimerListener;
 import it.unipr.netsec.ipstack.link.LinkInterface;
 import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
+import it.unipr.netsec.simulator.scheduler.BatchListener;
+import it.unipr.netsec.simulator.scheduler.ParallelClock;
+import it.unipr.netsec.simulator.scheduler.SchedulerTask;
+import it.unipr.netsec.simulator.scheduler.VirtualClock;
 
 
 /** A generic link providing one-to-many delivery service.
@@ -37,6 +44,14 @@ import it.unipr.netsec.ipstack.net.Packet;
  * The finite bit-rate must be taken into account before sending the packet.
  * <p>
  * If the propagation delay is greater than zero, the packet is delayed accordingly, before being passed to the target interface.
+ * <p>
+ * The link uses the clock that is the default clock (see {@link Clock#getDefaultClock()}) when the link is created,
+ * unless it is explicitly set through {@link #setClock(Clock)}.
+ * <p>
+ * When the clock is a {@link ParallelClock}, packets are delivered to each target interface within the logical process the interface is assigned to.
+ * <p>
+ * When the clock is a {@link VirtualClock}, delayed packets are scheduled as tasks of the clock scheduler,
+ * and packets delivered by the same link at the same time are processed as one batch (see {@link BatchListener}).
  */
 public class DataLink extends it.unipr.netsec.ipstack.link.Link {
 
@@ -58,6 +73,33 @@ public class DataLink extends it.unipr.netsec.ipstack.link.Link {
 	/** Link error function */
 	DataLinkError link_error;
 
+	/** Minimum packet delay [nanosecs] */
+	long min_delay=0;
+
+	/** Clock */
+	Clock clock=Clock.getDefaultClock();
+
+	/** Listener that delivers batches of delayed packets with the same time.
+	 * Target interfaces are looked up once for consecutive packets with the same destination. */
+	BatchListener delivery_listener=new BatchListener() {
+		@Override
+		public void onBatch(List<SchedulerTask> batch) {
+			Address dst_ni_addr=null;
+			LinkInterface[] targets=null;
+			int version=0;
+			for (int i=0; i<batch.size(); i++) {
+				Delivery delivery=(Delivery)batch.get(i);
+				if (targets==null || version!=getTargetsVersion() || (delivery.dst_ni_addr!=dst_ni_addr && (delivery.dst_ni_addr==null || !delivery.dst_ni_addr.equals(dst_ni_addr)))) {
+					version=getTargetsVersion();
+					dst_ni_addr=delivery.dst_ni_addr;
+					targets=getTargetInterfaces(dst_ni_addr);
+				}
+				if (DEBUG) debug("transmit(): onBatch(): transmission completed");
+				deliver(delivery.pkt,delivery.src_ni,targets);
+			}
+		}
+	};
+
 	/** Creates a new link. */
 	public DataLink() {
 	}
@@ -74,12 +116,7 @@ public class DataLink extends it.unipr.netsec.ipstack.link.Link {
 	public DataLink(long bit_rate, final long medium_delay) {
 		this.bit_rate=bit_rate;
 		//this.medium_delay=medium_delay;
-		link_delay=new DataLinkDelay() {
-			@Override
-			public long getPacketDelay(Packet pkt) {
-				return medium_delay;
-			}
-		};
+		setMediumDelay(medium_delay);
 	}
 	
 	/** Gets the link bit rate.
@@ -88,10 +125,54 @@ public class DataLink extends it.unipr.netsec.ipstack.link.Link {
 		return bit_rate;
 	}
 	
+	/** Gets the bit rate for the packets sent by a given interface.
+	 * @param src_ni the sending interface
+	 * @return the bit rate */
+	public long getBitRate(LinkInterface src_ni) {
+		return bit_rate;
+	}
+	
 	/** Sets link delay.
 	 * @param link_delay the delay function */
 	public void setLinkDelay(DataLinkDelay link_delay) {
+		setLinkDelay(link_delay,0);
+	}
+	
+	/** Sets link delay.
+	 * @param link_delay the delay function
+	 * @param min_delay the minimum delay returned by the delay function, in nanoseconds */
+	public void setLinkDelay(DataLinkDelay link_delay, long min_delay) {
 		this.link_delay=link_delay;
+		this.min_delay=min_delay;
+	}
+	
+	/** Sets a fixed medium delay.
+	 * @param medium_delay the medium delay in nanoseconds */
+	public void setMediumDelay(final long medium_delay) {
+		setLinkDelay(new DataLinkDelay() {
+			@Override
+			public long getPacketDelay(Packet pkt) {
+				return medium_delay;
+			}
+		},medium_delay);
+	}
+	
+	/** Gets the minimum packet delay.
+	 * @return the minimum delay in nanoseconds */
+	public long getMinimumDelay() {
+		return min_delay;
+	}
+	
+	/** Sets the clock.
+	 * @param clock the clock used for delaying packets */
+	public void setClock(Clock clock) {
+		this.clock=clock;
+	}
+	
+	/** Gets the clock.
+	 * @return the clock used by this link and by the attached interfaces */
+	public Clock getClock() {
+		return clock;
 	}
 	
 	/** Sets link error.
@@ -109,12 +190,25 @@ public class DataLink extends it.unipr.netsec.ipstack.link.Link {
 	
 	@Override
 	public void transmit(Packet pkt, final LinkInterface src_ni, final Address dst_ni_addr) {
+		int len=TrafficCounters.ENABLED? pkt.getPacketLength() : 0;
 		if (link_error!=null) pkt=link_error.getPacketError(pkt);
 		if (pkt==null) {
 			if (DEBUG) debug("transmit(): link erorr: packet discarded");
+			if (TrafficCounters.ENABLED) {
+				counters.sent(len);
+				counters.dropped(len);
+			}
 		}
 		else {
 			long medium_delay=link_delay!=null? link_delay.getPacketDelay(pkt) : 0;
+			if (clock instanceof ParallelClock) {
+				transmit((ParallelClock)clock,pkt,src_ni,dst_ni_addr,medium_delay);
+			}
+			else
+			if (medium_delay>0 && clock instanceof VirtualClock) {
+				((VirtualClock)clock).getScheduler().add(new Delivery((Packet)pkt.clone(),src_ni,dst_ni_addr),medium_delay);
+			}
+			else
 			if (medium_delay>0) {
 				final Packet pkt_copy=(Packet)pkt.clone();
 				TimerListener timer_listener=new TimerListener() {
@@ -123,7 +217,8 @@ public class DataLink extends it.unipr.netsec.ipstack.link.Link {
 						DataLink.super.transmit(pkt_copy,src_ni,dst_ni_addr);
 					}
 				};
-				Timer timer=Clock.getDefaultClock().newTimer(medium_delay/1000000,(int)(medium_delay%1000000),timer_listener);
+				Timer timer=clock.newTimer(medium_delay/1000000,(int)(medium_delay%1000000),timer_listener);
+				timer.setOrigin(this,"delivery");
 				timer.start();		
 			}
 			else {
@@ -132,4 +227,97 @@ public class DataLink extends it.unipr.netsec.ipstack.link.Link {
 		}
 	}
 
+	/** Transmits a packet in parallel simulation.
+	 * Target interfaces assigned to the current logical process are processed as usual,
+	 * while packets for the other target interfaces are posted to the corresponding logical processes.
+	 * @param clock the parallel clock
+	 * @param pkt the packet to be sent
+	 * @param src_ni the source link interface
+	 * @param dst_ni_addr the address of the destination link interface
+	 * @param medium_delay the packet delay */
+	private void transmit(final ParallelClock clock, Packet pkt, final LinkInterface src_ni, final Address dst_ni_addr, long medium_delay) {
+		final int current_lp=clock.currentLogicalProcess();
+		final LinkInterface[] targets=getTargetInterfaces(dst_ni_addr);
+		if (TrafficCounters.ENABLED) {
+			int len=pkt.getPacketLength();
+			counters.sent(len);
+			int count=0;
+			for (LinkInterface ni : targets) if (ni!=src_ni) { counters.received(len); count++; }
+			if (count==0) counters.dropped(len);
+		}
+		boolean local=false;
+		for (final LinkInterface ni : targets) {
+			if (ni==src_ni) continue;
+			// else
+			int lp=clock.getLogicalProcess(ni);
+			if (lp<0 || lp==current_lp) {
+				local=true;
+				continue;
+			}
+			// else
+			final Packet pkt_copy=(Packet)pkt.clone();
+			SchedulerTask task=new SchedulerTask() {
+				public void action() {
+					if (DEBUG) debug("transmit(): packet passed to "+ni);
+					ni.processIncomingPacket(DataLink.this,pkt_copy);
+				}
+			};
+			task.setOrigin(this,"delivery");
+			clock.post(lp,task,medium_delay);
+		}
+		if (!local) return;
+		// else
+		final Packet pkt_copy=medium_delay>0? (Packet)pkt.clone() : pkt;
+		SchedulerTask task=new SchedulerTask() {
+			public void action() {
+				for (LinkInterface ni : targets) {
+					if (ni==src_ni) continue;
+					// else
+					int lp=clock.getLogicalProcess(ni);
+					if (lp<0 || lp==current_lp) ni.processIncomingPacket(DataLink.this,pkt_copy);
+				}
+			}
+		};
+		task.setOrigin(this,"delivery");
+		if (medium_delay>0) clock.post(current_lp,task,medium_delay);
+		else task.action();
+	}
+
+	
+	/** Delivery of a delayed packet.
+	 * Deliveries with the same time are executed in batch by {@link DataLink#delivery_listener}. */
+	class Delivery extends SchedulerTask {
+		
+		/** The packet */
+		Packet pkt;
+		
+		/** The source interface */
+		LinkInterface src_ni;
+		
+		/** The address of the destination interface */
+		Address dst_ni_addr;
+		
+		/** Creates a new delivery.
+		 * @param pkt the packet
+		 * @param src_ni the source interface
+		 * @param dst_ni_addr the address of the destination interface */
+		Delivery(Packet pkt, LinkInterface src_ni, Address dst_ni_addr) {
+			this.pkt=pkt;
+			this.src_ni=src_ni;
+			this.dst_ni_addr=dst_ni_addr;
+			setOrigin(DataLink.this,"delivery");
+		}
+		
+		@Override
+		public void action() {
+			if (DEBUG) debug("transmit(): action(): transmission completed");
+			DataLink.super.transmit(pkt,src_ni,dst_ni_addr);
+		}
+		
+		@Override
+		public BatchListener getBatchListener() {
+			return delivery_listener;
+		}
+	}
+
 }
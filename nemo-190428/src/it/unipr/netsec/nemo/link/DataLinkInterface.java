@@ -20,10 +20,12 @@
 package it.unipr.netsec.nemo.link;
 
 
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.zoolu.util.Clock;
 import org.zoolu.util.LoggerLevel;
+import org.zoolu.util.MpscRingBuffer;
 import org.zoolu.util.SystemUtils;
 import org.zoolu.util.Timer;
 import org.zoolu.util.TimerListener;
@@ -33,9 +35,18 @@ import it.unipr.netsec.ipstack.link.LinkInterface;
 import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.NetInterfaceListener;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
 
 
 /** Generic {@link it.unipr.netsec.ipstack.link.LinkInterface link interface} attached to a {@link DataLink link} with with a finite bit-rate.
+ * <p>
+ * Packets are queued in a bounded transmit queue. Packets can be sent concurrently by many threads without locking,
+ * while the queue is drained by the transmission timer only.
+ * <p>
+ * The queue can be limited both in packets and in bytes; when a limit is reached, new packets are dropped (drop-tail).
+ * An active queue management can be added by setting a {@link QueueDiscipline queue discipline}, e.g. {@link RedQueueDiscipline RED}
+ * or {@link CoDelQueueDiscipline CoDel}.
+ * The number of dropped packets and the time spent by packets in the queue (sojourn time) are also collected.
  */
 public class DataLinkInterface extends LinkInterface {
 
@@ -45,11 +56,58 @@ public class DataLinkInterface extends LinkInterface {
 	}
 
 	
+	/** Default capacity of the transmit queue, in packets */
+	public static int DEFAULT_QUEUE_CAPACITY=65536;
+
+	/** Default MTU, in bytes */
+	public static int DEFAULT_MTU=1500;
+
 	/** Sender buffer */
-	ArrayList<LinkPacket> buffer=new ArrayList<LinkPacket>();
+	MpscRingBuffer<LinkPacket> buffer=new MpscRingBuffer<LinkPacket>(DEFAULT_QUEUE_CAPACITY);
+
+	/** Maximum number of packets in the sender buffer */
+	int queue_limit=DEFAULT_QUEUE_CAPACITY;
+
+	/** Maximum number of bytes in the sender buffer (0 for no limit) */
+	long queue_byte_limit=0;
+
+	/** Queue discipline, or <i>null</i> for drop-tail */
+	QueueDiscipline discipline=null;
+
+	/** Number of packets in the sender buffer, including the packet that is being transmitted */
+	AtomicInteger queue_size=new AtomicInteger(0);
+
+	/** Maximum number of packets in the sender buffer */
+	AtomicInteger max_queue_size=new AtomicInteger(0);
+
+	/** Number of bytes in the sender buffer, including the packet that is being transmitted */
+	AtomicLong queue_bytes=new AtomicLong(0);
+
+	/** Number of packets dropped because the sender buffer was full */
+	AtomicLong drop_count=new AtomicLong(0);
+
+	/** Number of packets dropped by the queue discipline */
+	AtomicLong aqm_drop_count=new AtomicLong(0);
+
+	/** Number of packets that left the sender buffer for being transmitted */
+	long sojourn_count=0;
+
+	/** Sum of the sojourn times of the transmitted packets, in nanoseconds */
+	long sojourn_sum=0;
+
+	/** Maximum sojourn time, in nanoseconds */
+	long sojourn_max=0;
+
+	/** Transmission timer */
+	Timer timer=null;
 
-	/** Whether the interface is transmitting a packet */
-	boolean transmitting=false;
+	/** Transmission timer listener */
+	TimerListener timer_listener=new TimerListener() {
+		@Override
+		public void onTimeout(Timer t) {
+			processTransmissionCompleted();
+		}
+	};
 	
 	
 	/** Creates a new interface.
@@ -79,46 +137,182 @@ public class DataLinkInterface extends LinkInterface {
 		super(link,addresses);
 	}
 	
+	/** Gets the clock.
+	 * @return the clock of the attached link */
+	public Clock getClock() {
+		return ((DataLink)link).getClock();
+	}
+	
+	/** Sets the limits of the transmit queue.
+	 * The limit in packets cannot be changed to a value greater than the current capacity while packets are queued.
+	 * @param max_packets the maximum number of packets
+	 * @param max_bytes the maximum number of bytes (0 for no limit) */
+	public void setQueueLimits(int max_packets, long max_bytes) {
+		if (max_packets<=0) throw new RuntimeException("Invalid queue limit: "+max_packets);
+		if (max_packets>buffer.capacity()) {
+			if (queue_size.get()>0) throw new RuntimeException("Queue limit cannot be increased to "+max_packets+" while the queue is not empty");
+			// else
+			buffer=new MpscRingBuffer<LinkPacket>(max_packets);
+		}
+		queue_limit=max_packets;
+		queue_byte_limit=max_bytes;
+	}
+	
+	/** Gets the maximum number of packets of the transmit queue.
+	 * @return the limit in packets */
+	public int getQueueLimit() {
+		return queue_limit;
+	}
+	
+	/** Gets the maximum number of bytes of the transmit queue.
+	 * @return the limit in bytes, or 0 if there is no limit */
+	public long getQueueByteLimit() {
+		return queue_byte_limit;
+	}
+	
+	/** Sets the queue discipline.
+	 * @param discipline the queue discipline, or <i>null</i> for a plain drop-tail queue */
+	public void setQueueDiscipline(QueueDiscipline discipline) {
+		this.discipline=discipline;
+	}
+	
+	/** Gets the queue discipline.
+	 * @return the queue discipline, or <i>null</i> for a plain drop-tail queue */
+	public QueueDiscipline getQueueDiscipline() {
+		return discipline;
+	}
+	
 	@Override
 	public void send(Packet pkt, Address dest_addr) {
 		if (DEBUG) debug("send(): sending "+pkt.getPacketLength()+" bytes to "+dest_addr);
-		if (((DataLink)link).getBitRate()<=0) {
+		if (((DataLink)link).getBitRate(this)<=0) {
+			if (TrafficCounters.ENABLED) counters.sent(pkt.getPacketLength());
 			link.transmit(pkt,this,dest_addr);
 		}
 		else {
-			synchronized (buffer) {
-				buffer.add(new LinkPacket((Packet)pkt.clone(),dest_addr));
-				if (DEBUG) debug("send(): queued packet "+buffer.size());
-				if (!transmitting) {
-					if (buffer.size()>1) new RuntimeException("Bug found: link with a queued-packet is not in 'transmit' state");
-					transmitHOL();
-				}
+			int len=pkt.getPacketLength();
+			long now=getClock().nanoTime();
+			QueueDiscipline discipline=this.discipline;
+			if (discipline!=null && discipline.dropOnEnqueue(queue_size.get(),queue_bytes.get(),len,now)) {
+				aqm_drop_count.incrementAndGet();
+				if (TrafficCounters.ENABLED) counters.dropped(len);
+				if (DEBUG) debug("send(): packet dropped by "+discipline);
+				return;
+			}
+			// else
+			if (queue_size.get()>=queue_limit || (queue_byte_limit>0 && queue_bytes.get()+len>queue_byte_limit) || !buffer.offer(new LinkPacket((Packet)pkt.clone(),dest_addr,len,now))) {
+				drop_count.incrementAndGet();
+				if (TrafficCounters.ENABLED) counters.dropped(len);
+				if (DEBUG) debug("send(): queue full: packet dropped");
+				return;
 			}
+			// else
+			queue_bytes.addAndGet(len);
+			int size=queue_size.incrementAndGet();
+			int max_size;
+			while (size>(max_size=max_queue_size.get()) && !max_queue_size.compareAndSet(max_size,size));
+			if (DEBUG) debug("send(): queued packet "+size);
+			// the sender that finds the queue empty starts the transmission
+			if (size==1) transmitHOL();
 		}
 	}
 	
 	/** Transmits the packet head of line of the output buffer.
 	 * It waits the time for transmitting the entire packet (TX time = (packet_length * 8 bit) / bit_rate)
-	 * and passes it to the link for being delivered to the destination interfaces. */
+	 * and passes it to the link for being delivered to the destination interfaces.
+	 * <p>
+	 * Before the transmission, the queue discipline may drop the packet, and in that case the next packet is considered. */
 	private void transmitHOL() {
-		long transmit_nanosecs=Math.round(buffer.get(0).getPacket().getPacketLength()*8*1000000000.0D/((DataLink)link).getBitRate());
-		transmitting=true;
+		LinkPacket link_pkt=buffer.peek();
+		long now=getClock().nanoTime();
+		long sojourn_time=now-link_pkt.getTime();
+		QueueDiscipline discipline=this.discipline;
+		while (discipline!=null && discipline.dropOnDequeue(sojourn_time,queue_size.get(),queue_bytes.get(),now)) {
+			buffer.poll();
+			queue_bytes.addAndGet(-link_pkt.getLength());
+			aqm_drop_count.incrementAndGet();
+			if (TrafficCounters.ENABLED) counters.dropped(link_pkt.getLength());
+			if (DEBUG) debug("transmitHOL(): packet dropped by "+discipline);
+			if (queue_size.decrementAndGet()==0) return;
+			// else
+			link_pkt=buffer.peek();
+			sojourn_time=now-link_pkt.getTime();
+		}
+		sojourn_count++;
+		sojourn_sum+=sojourn_time;
+		if (sojourn_time>sojourn_max) sojourn_max=sojourn_time;
+		long transmit_nanosecs=Math.round(link_pkt.getLength()*8*1000000000.0D/((DataLink)link).getBitRate(this));
 		if (DEBUG) debug("transmitHOL(): transmit_time: "+transmit_nanosecs);
-		TimerListener timer_listener=new TimerListener() {
-			@Override
-			public void onTimeout(Timer t) {
-				if (DEBUG) debug("onTimeout(): transmission completed");
-				synchronized (buffer) {
-					LinkPacket link_pkt=buffer.get(0);
-					buffer.remove(0);
-					link.transmit(link_pkt.getPacket(),DataLinkInterface.this,link_pkt.getDestAddress());
-					if (buffer.size()>0) transmitHOL();
-					else transmitting=false;
-				}				
-			}
-		};
-		Timer timer=Clock.getDefaultClock().newTimer(transmit_nanosecs/1000000,(int)(transmit_nanosecs%1000000),timer_listener);
-		timer.start();		
+		if (timer==null) {
+			timer=getClock().newTimer(transmit_nanosecs/1000000,(int)(transmit_nanosecs%1000000),timer_listener);
+			timer.setOrigin(this,"transmission");
+			timer.start();
+		}
+		else timer.restart(transmit_nanosecs/1000000,(int)(transmit_nanosecs%1000000));
+	}
+	
+	/** When the transmission of the packet head of line is completed. */
+	private void processTransmissionCompleted() {
+		if (DEBUG) debug("onTimeout(): transmission completed");
+		LinkPacket link_pkt=buffer.poll();
+		queue_bytes.addAndGet(-link_pkt.getLength());
+		if (TrafficCounters.ENABLED) counters.sent(link_pkt.getLength());
+		link.transmit(link_pkt.getPacket(),DataLinkInterface.this,link_pkt.getDestAddress());
+		if (queue_size.decrementAndGet()>0) transmitHOL();
+	}
+	
+	/** Gets the current number of queued packets.
+	 * @return the number of packets in the transmit queue, including the packet that is being transmitted */
+	public int getQueueSize() {
+		return queue_size.get();
+	}
+	
+	/** Gets the current number of queued bytes.
+	 * @return the number of bytes in the transmit queue, including the packet that is being transmitted */
+	public long getQueueBytes() {
+		return queue_bytes.get();
+	}
+	
+	/** Gets the maximum number of queued packets.
+	 * @return the maximum number of packets in the transmit queue */
+	public int getMaximumQueueSize() {
+		return max_queue_size.get();
+	}
+	
+	/** Gets the number of dropped packets.
+	 * @return the number of packets dropped because the transmit queue was full or by the queue discipline */
+	public long getDropCount() {
+		return drop_count.get()+aqm_drop_count.get();
+	}
+	
+	/** Gets the number of packets dropped because the queue was full.
+	 * @return the number of tail drops */
+	public long getTailDropCount() {
+		return drop_count.get();
+	}
+	
+	/** Gets the number of packets dropped by the queue discipline.
+	 * @return the number of drops decided by the queue discipline */
+	public long getDisciplineDropCount() {
+		return aqm_drop_count.get();
+	}
+	
+	/** Gets the number of packets that left the queue for being transmitted.
+	 * @return the number of sojourn time samples */
+	public long getSojournCount() {
+		return sojourn_count;
+	}
+	
+	/** Gets the average sojourn time.
+	 * @return the average time spent in the queue by transmitted packets, in nanoseconds */
+	public long getAverageSojournTime() {
+		return sojourn_count>0? sojourn_sum/sojourn_count : 0;
+	}
+	
+	/** Gets the maximum sojourn time.
+	 * @return the maximum time spent in the queue by a transmitted packet, in nanoseconds */
+	public long getMaximumSojournTime() {
+		return sojourn_max;
 	}
 	
 	/** Processes an incoming packet.
@@ -128,6 +322,7 @@ public class DataLinkInterface extends LinkInterface {
 		if (!running) return;
 		// else
 		if (DEBUG) debug("processIncomingPacket(): received "+pkt.getPacketLength()+" bytes");
+		if (TrafficCounters.ENABLED) counters.received(pkt.getPacketLength());
 		for (NetInterfaceListener li : getListeners())  li.onIncomingPacket(this,pkt);
 	}
 	
@@ -143,10 +338,20 @@ public class DataLinkInterface extends LinkInterface {
 	class LinkPacket {
 		Packet pkt;
 		Address dst_addr;
+		int len;
+		long time;
 		
-		public LinkPacket(Packet pkt,Address dst_addr) {
+		public LinkPacket(Packet pkt,Address dst_addr, int len, long time) {
 			this.pkt=pkt;
 			this.dst_addr=dst_addr;
+			this.len=len;
+			this.time=time;
+		}
+		public int getLength() {
+			return len;
+		}
+		public long getTime() {
+			return time;
 		}
 		public Packet getPacket() {
 			return pkt;
@@ -21,13 +21,21 @@ package it.unipr.netsec.nemo.link;
 
 import java.util.Arrays;
 
+import org.zoolu.util.Clock;
+
 import it.unipr.netsec.ipstack.link.Link;
 import it.unipr.netsec.ipstack.net.Address;
+import it.unipr.netsec.ipstack.net.MetricsRegistry;
 import it.unipr.netsec.ipstack.net.NetInterface;
 import it.unipr.netsec.ipstack.net.Node;
+import it.unipr.netsec.nemo.ip.IpLink;
 
 
 /** It is a set of nodes connected through links. 
+ * <p>
+ * A network has its own clock, that is the default clock (see {@link Clock#getDefaultClock()}) when the network is created.
+ * Different networks with different clocks can be run concurrently in the same JVM
+ * (see {@link Clock#setContextClock(Clock)}).
  */
 public class Network {
 
@@ -43,6 +51,9 @@ public class Network {
 	/** Network nodes */
 	Node[] nodes;
 
+	/** Clock */
+	Clock clock=Clock.getDefaultClock();
+
 	
 	/** Creates a new network.
 	 * @param nodes network nodes
@@ -61,6 +72,21 @@ public class Network {
 		this.nodes=nodes;
 	}
 
+	/** Gets the clock.
+	 * @return the clock of this network */
+	public Clock getClock() {
+		return clock;
+	}
+	
+	/** Sets the clock.
+	 * The clock is set also to all network links.
+	 * @param clock the new clock */
+	public void setClock(Clock clock) {
+		this.clock=clock;
+		if (access_links!=null) for (Link link : access_links) if (link instanceof DataLink) ((DataLink)link).setClock(clock);
+		if (core_links!=null) for (Link link : core_links) if (link instanceof DataLink) ((DataLink)link).setClock(clock);
+	}
+	
 	/** Returns the network name. */
 	/*public String getName() {
 		return name;
@@ -81,6 +107,26 @@ public class Network {
 		return nodes;
 	}
 	
+	/** Registers the traffic counters of all nodes, node interfaces, and links.
+	 * Links are registered with a name that is stable across runs (see {@link #getLinkName(Link, String, int)}).
+	 * @param registry the registry where counters are registered */
+	public void registerCounters(MetricsRegistry registry) {
+		for (Node node : nodes) registry.register(node);
+		if (access_links!=null) for (int i=0; i<access_links.length; i++) registry.register(getLinkName(access_links[i],"access",i),access_links[i].getCounters());
+		if (core_links!=null) for (int i=0; i<core_links.length; i++) registry.register(getLinkName(core_links[i],"core",i),core_links[i].getCounters());
+	}
+	
+	/** Gets a name of a link that is stable across runs.
+	 * @param link the link
+	 * @param kind the kind of link ("access" or "core")
+	 * @param i the index of the link
+	 * @return the string representation of the link for IP links, that contains the link prefix; otherwise the kind and the index of the link */
+	private static String getLinkName(Link link, String kind, int i) {
+		if (link instanceof IpLink) return link.toString();
+		// else
+		return kind+"-link-"+i;
+	}
+	
 	@Override
 	public String toString() {
 		StringBuffer sb=new StringBuffer();
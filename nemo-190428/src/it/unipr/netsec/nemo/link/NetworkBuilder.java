@@ -42,6 +42,7 @@ import it.unipr.netsec.nemo.ip.Ip4Router;
 import it.unipr.netsec.nemo.ip.Ip6Router;
 import it.unipr.netsec.nemo.ip.IpLink;
 import it.unipr.netsec.nemo.ip.IpLinkInterface;
+import it.unipr.netsec.nemo.ip.PointToPointLink;
 import it.unipr.netsec.nemo.routing.ShortestPathAlgorithm;
 import it.unipr.netsec.nemo.routing.sdn.SdnRouting;
 import it.unipr.netsec.simulator.scheduler.VirtualClock;
@@ -53,6 +54,8 @@ import it.unipr.netsec.simulator.scheduler.VirtualClock;
  * <p>
  * IP addresses and routing-tables of all nodes are properly set-up.
  * For the loopback addresses, a pre-configured {@link #CORE_LOCAL_LINK_PREFIX4 private address block (IPv4)} or {@link #CORE_LOCAL_LINK_PREFIX6 ULA addresses (IPv6)} are used.
+ * <p>
+ * Core links, that connect exactly two routers, are {@link PointToPointLink full-duplex point-to-point links}, unless {@link #POINT_TO_POINT_CORE_LINKS} is reset.
  */
 public class NetworkBuilder {
 
@@ -62,6 +65,9 @@ public class NetworkBuilder {
 	/** IPv6 prefix used for configuring core IPv6 router addresses (by default it uses a ULA prefix). */
 	public static IpPrefix CORE_LOCAL_LINK_PREFIX6=new Ip6Prefix("fd::",16);
 
+	/** Whether core links are point-to-point links, instead of shared links */
+	public static boolean POINT_TO_POINT_CORE_LINKS=true;
+
 	
 	/** reates a linear topology with N routers, and N+1 links.
 	 * @param n the number of routers
@@ -350,7 +356,7 @@ public class NetworkBuilder {
 		if (more_layers>0) {
 			for (int i=0; i<num_leaves; i++) {
 				subnet_prefixes[i]=IpAddressUtils.subnet(net_prefix,net_prefix.prefixLength()+subnet_bits,i);
-				subnet_links[i]=new IpLink(bit_rate,core_addresses.getPrefix());
+				subnet_links[i]=POINT_TO_POINT_CORE_LINKS? new PointToPointLink(bit_rate,core_addresses.getPrefix()) : new IpLink(bit_rate,core_addresses.getPrefix());
 				IpAddress addr_i=core_addresses.nextAddressPrefix();
 				leaf_addrs[i]=core_addresses.nextAddressPrefix();
 				link_interfaces[i]=new IpLinkInterface(subnet_links[i],addr_i);
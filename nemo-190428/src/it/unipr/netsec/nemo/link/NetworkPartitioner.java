@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.nemo.link;
+
+
+import java.util.ArrayList;
+
+import it.unipr.netsec.ipstack.link.Link;
+import it.unipr.netsec.ipstack.link.LinkInterface;
+import it.unipr.netsec.ipstack.net.NetInterface;
+import it.unipr.netsec.ipstack.net.Node;
+import it.unipr.netsec.simulator.scheduler.ParallelClock;
+
+
+/** Partitions a {@link Network} into the logical processes of a {@link ParallelClock}.
+ * <p>
+ * Nodes are assigned to logical processes in contiguous blocks, following the order of {@link Network#getNodes()};
+ * all interfaces of a node are assigned to the logical process of the node.
+ * Interfaces that do not belong to any node of the network (e.g. hosts or packet generators attached to a network link)
+ * are assigned to the logical process of the other interfaces of the same link.
+ * <p>
+ * Links that connect interfaces of different logical processes must be {@link DataLink data links} with a non-zero
+ * {@link DataLink#getMinimumDelay() minimum delay}; the lookahead of the clock is set to the minimum delay of such links.
+ */
+public class NetworkPartitioner {
+
+	/** Partitions a network.
+	 * It must be called after all nodes, hosts, and interfaces have been attached to the network links.
+	 * @param network the network
+	 * @param clock the parallel clock
+	 * @return the number of links that connect different logical processes */
+	public static int partition(Network network, ParallelClock clock) {
+		int n=clock.size();
+		Node[] nodes=network.getNodes();
+		for (int i=0; i<nodes.length; i++) {
+			int lp=(int)((long)i*n/nodes.length);
+			clock.setLogicalProcess(nodes[i],lp);
+			for (NetInterface ni : nodes[i].getNetInterfaces()) clock.setLogicalProcess(ni,lp);
+		}
+		ArrayList<Link> links=new ArrayList<Link>();
+		if (network.getAccessLinks()!=null) for (Link link : network.getAccessLinks()) links.add(link);
+		if (network.getCoreLinks()!=null) for (Link link : network.getCoreLinks()) links.add(link);
+		int cut_links=0;
+		long lookahead=Long.MAX_VALUE;
+		for (Link link : links) {
+			LinkInterface[] link_interfaces=link.getLinkInterfaces();
+			int link_lp=-1;
+			for (LinkInterface ni : link_interfaces) {
+				int lp=clock.getLogicalProcess(ni);
+				if (lp>=0) { link_lp=lp; break; }
+			}
+			if (link_lp<0) link_lp=0;
+			boolean cut=false;
+			for (LinkInterface ni : link_interfaces) {
+				int lp=clock.getLogicalProcess(ni);
+				if (lp<0) clock.setLogicalProcess(ni,link_lp);
+				else
+				if (lp!=link_lp) cut=true;
+			}
+			if (cut) {
+				cut_links++;
+				long min_delay=link instanceof DataLink? ((DataLink)link).getMinimumDelay() : 0;
+				if (min_delay<=0) throw new RuntimeException("Link "+link+" connects different logical processes but has no minimum delay");
+				// else
+				if (min_delay<lookahead) lookahead=min_delay;
+			}
+		}
+		if (cut_links>0) clock.setLookahead(lookahead);
+		return cut_links;
+	}
+
+}
@@ -33,6 +33,8 @@ import it.unipr.netsec.ipstack.net.Address;
 import it.unipr.netsec.ipstack.net.NetInterface;
 import it.unipr.netsec.ipstack.net.NetInterfaceListener;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.simulator.scheduler.ParallelClock;
+import it.unipr.netsec.simulator.scheduler.VirtualClock;
 
 
 /** A pair of IP nodes attached to two links.
@@ -120,7 +122,7 @@ public class PacketGenerator extends DataLinkInterface {
 			@Override
 			public void onIncomingPacket(NetInterface ni, Packet pkt) {
 				rx_count++;				
-				virtual_time=(Clock.getDefaultClock().nanoTime()-virtual_start_time)/1000;
+				virtual_time=(getClock().nanoTime()-virtual_start_time)/1000;
 				real_time=(System.nanoTime()-start_time)/1000;
 				hop_num=hop_limit+1-(pkt instanceof Ip6Packet? ((Ip6Packet)pkt).getHopLimit() : ((Ip4Packet)pkt).getTTL()); 
 				if (listener!=null) {
@@ -164,15 +166,27 @@ public class PacketGenerator extends DataLinkInterface {
 		rx_count=0;
 		hop_limit=pkt instanceof Ip6Packet? ((Ip6Packet)pkt).getHopLimit() : ((Ip4Packet)pkt).getTTL(); 
 		start_time=System.nanoTime();
-		virtual_start_time=Clock.getDefaultClock().nanoTime();
+		virtual_start_time=getClock().nanoTime();
 		if (pkt_time+inter_time>0) {
 			transmitPackets(true);
-			try {
-					synchronized (lock) {
-						lock.wait();
-					}
+			Clock clock=getClock();
+			if (clock instanceof VirtualClock && ((VirtualClock)clock).isSingleThread()) {
+				// run all events in this thread
+				((VirtualClock)clock).runUntilIdle();
+			}
+			else
+			if (clock instanceof ParallelClock) {
+				// run all logical processes
+				((ParallelClock)clock).run();
+			}
+			else {
+				try {
+						synchronized (lock) {
+							lock.wait();
+						}
+				}
+				catch (Exception e) {}
 			}
-			catch (Exception e) {}
 		}
 		else {
 			for ( ; tx_count<num; tx_count++) {
@@ -193,7 +207,8 @@ public class PacketGenerator extends DataLinkInterface {
 				}				
 			}
 		};
-		Timer timer=Clock.getDefaultClock().newTimer(transmit_time_nanosecs/1000000,(int)(transmit_time_nanosecs%1000000),timer_listener);
+		Timer timer=getClock().newTimer(transmit_time_nanosecs/1000000,(int)(transmit_time_nanosecs%1000000),timer_listener);
+		timer.setOrigin(this,"generation");
 		timer.start();		
 	}
 	
@@ -47,6 +47,11 @@ public class PromiscuousLinkInterface extends DataLinkInterface {
 		super(link,name);
 	}
 
+	@Override
+	public boolean isPromiscuous() {
+		return true;
+	}
+
 	@Override
 	public boolean hasAddress(Address addr) {
 		return true;
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package it.unipr.netsec.nemo.link;
+
+
+/** Discipline of the transmit queue of a {@link DataLinkInterface}.
+ * <p>
+ * A queue discipline may drop a packet when it arrives at the queue (e.g. RED) or when it reaches the head of the queue
+ * and is about to be transmitted (e.g. CoDel).
+ * The hard limits of the queue (in packets and bytes) are enforced by the interface itself, that is, without any
+ * discipline the queue behaves as a plain drop-tail queue.
+ * <p>
+ * Methods are invoked with the time of the clock of the link, in nanoseconds.
+ */
+public interface QueueDiscipline {
+
+	/** Whether an incoming packet has to be dropped.
+	 * @param queue_size the current number of packets in the queue
+	 * @param queue_bytes the current number of bytes in the queue
+	 * @param pkt_len the length of the incoming packet
+	 * @param now the current time in nanoseconds
+	 * @return <i>true</i> if the packet has to be dropped */
+	public boolean dropOnEnqueue(int queue_size, long queue_bytes, int pkt_len, long now);
+
+	/** Whether the packet head of line has to be dropped, instead of being transmitted.
+	 * @param sojourn_time the time that the packet spent in the queue, in nanoseconds
+	 * @param queue_size the current number of packets in the queue, including this packet
+	 * @param queue_bytes the current number of bytes in the queue, including this packet
+	 * @param now the current time in nanoseconds
+	 * @return <i>true</i> if the packet has to be dropped */
+	public boolean dropOnDequeue(long sojourn_time, int queue_size, long queue_bytes, long now);
+
+}
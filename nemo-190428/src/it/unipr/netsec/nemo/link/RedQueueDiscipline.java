@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package it.unipr.netsec.nemo.link;
+
+
+import java.util.Random;
+
+
+/** Random Early Detection (RED) queue discipline.
+ * <p>
+ * The average queue size is estimated through an exponential weighted moving average updated at each packet arrival.
+ * If the average is below the minimum threshold the packet is enqueued; if it is above the maximum threshold the packet is dropped;
+ * otherwise the packet is dropped with a probability that grows linearly from 0 to <i>max_p</i>, spread uniformly
+ * over the packets since the last drop (S. Floyd and V. Jacobson, "Random Early Detection Gateways for Congestion Avoidance", 1993).
+ * <p>
+ * Thresholds are expressed in packets, or in bytes if the byte mode is selected.
+ * Random drops are taken from a seeded generator, so that simulations are repeatable.
+ */
+public class RedQueueDiscipline implements QueueDiscipline {
+
+	/** Default queue weight */
+	public static double DEFAULT_WEIGHT=0.002;
+
+	/** Default maximum drop probability */
+	public static double DEFAULT_MAX_P=0.1;
+
+	/** Minimum threshold */
+	double min_th;
+
+	/** Maximum threshold */
+	double max_th;
+
+	/** Maximum drop probability */
+	double max_p;
+
+	/** Queue weight */
+	double weight;
+
+	/** Whether thresholds are in bytes */
+	boolean byte_mode=false;
+
+	/** Average queue size */
+	double avg=0;
+
+	/** Number of packets enqueued since the last drop, or -1 if the average is below the minimum threshold */
+	int count=-1;
+
+	/** Random generator */
+	Random random;
+	
+	/** Number of early (random) drops */
+	long early_drops=0;
+
+	/** Number of forced drops (average above the maximum threshold) */
+	long forced_drops=0;
+
+	
+	/** Creates a new RED discipline, with default weight and maximum drop probability.
+	 * @param min_th the minimum threshold, in packets
+	 * @param max_th the maximum threshold, in packets */
+	public RedQueueDiscipline(double min_th, double max_th) {
+		this(min_th,max_th,DEFAULT_MAX_P,DEFAULT_WEIGHT,false,0);
+	}
+
+	/** Creates a new RED discipline.
+	 * @param min_th the minimum threshold
+	 * @param max_th the maximum threshold
+	 * @param max_p the maximum drop probability
+	 * @param weight the queue weight used for computing the average queue size
+	 * @param byte_mode whether thresholds are in bytes instead of packets
+	 * @param seed the seed of the random generator */
+	public RedQueueDiscipline(double min_th, double max_th, double max_p, double weight, boolean byte_mode, long seed) {
+		if (min_th<0 || max_th<=min_th) throw new RuntimeException("Invalid RED thresholds: "+min_th+", "+max_th);
+		this.min_th=min_th;
+		this.max_th=max_th;
+		this.max_p=max_p;
+		this.weight=weight;
+		this.byte_mode=byte_mode;
+		random=new Random(seed);
+	}
+	
+	@Override
+	public synchronized boolean dropOnEnqueue(int queue_size, long queue_bytes, int pkt_len, long now) {
+		avg+=weight*((byte_mode? queue_bytes : queue_size)-avg);
+		if (avg<min_th) {
+			count=-1;
+			return false;
+		}
+		// else
+		if (avg>=max_th) {
+			count=0;
+			forced_drops++;
+			return true;
+		}
+		// else
+		count++;
+		double pb=max_p*(avg-min_th)/(max_th-min_th);
+		if (byte_mode) pb*=(double)pkt_len/DataLinkInterface.DEFAULT_MTU;
+		double pa=count*pb<1? pb/(1-count*pb) : 1;
+		if (random.nextDouble()<pa) {
+			count=0;
+			early_drops++;
+			return true;
+		}
+		// else
+		return false;
+	}
+
+	@Override
+	public boolean dropOnDequeue(long sojourn_time, int queue_size, long queue_bytes, long now) {
+		return false;
+	}
+	
+	/** Gets the average queue size.
+	 * @return the current average, in packets or bytes */
+	public synchronized double getAverageQueueSize() {
+		return avg;
+	}
+	
+	/** Gets the number of early drops.
+	 * @return the number of packets randomly dropped while the average was between the two thresholds */
+	public synchronized long getEarlyDropCount() {
+		return early_drops;
+	}
+	
+	/** Gets the number of forced drops.
+	 * @return the number of packets dropped while the average was above the maximum threshold */
+	public synchronized long getForcedDropCount() {
+		return forced_drops;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName()+"["+min_th+","+max_th+","+max_p+"]";
+	}
+
+}
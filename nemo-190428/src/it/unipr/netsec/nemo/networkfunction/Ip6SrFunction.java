@@ -23,9 +23,10 @@ package it.unipr.netsec.nemo.networkfunction;
 
 import it.unipr.netsec.ipstack.ip6.Ip6Address;
 import it.unipr.netsec.ipstack.ip6.Ip6Packet;
+import it.unipr.netsec.ipstack.ip6.Ip6PacketView;
 import it.unipr.netsec.ipstack.ip6.exthdr.ExtensionHeader;
-import it.unipr.netsec.ipstack.ip6.exthdr.RoutingHeader;
-import it.unipr.netsec.ipstack.ip6.exthdr.SegmentRoutingHeader;
+
+import java.nio.ByteBuffer;
 
 import org.zoolu.util.ByteUtils;
 import org.zoolu.util.LoggerLevel;
@@ -34,6 +35,9 @@ import org.zoolu.util.SystemUtils;
 
 
 /** IPv6 Segment-Routing (SR) function.
+ * <p>
+ * Packets are processed in place through an {@link Ip6PacketView}; the packet is decoded and re-encoded
+ * only when the SRH has to be removed (clean-up).
  * */
 public class Ip6SrFunction extends NetworkFunction {
 
@@ -52,6 +56,12 @@ public class Ip6SrFunction extends NetworkFunction {
 
 	/** Temporary packet buffer */
 	byte[] temp_buffer=new byte[BUFFER_SIZE];
+
+	/** Buffer wrapping the last processed packet buffer */
+	ByteBuffer byte_buffer=null;
+
+	/** Packet view */
+	Ip6PacketView ip6_view=new Ip6PacketView();
 	
 	
 	/** Segment ID of this node */
@@ -69,43 +79,39 @@ public class Ip6SrFunction extends NetworkFunction {
 		int version=(buf[0]&0xf0)>>4;
 		if (version==6) {
 			// IPv6 packet
-			Ip6Packet ip6_pkt=Ip6Packet.parseIp6Packet(buf,0,len);
-			debug("input packet:\n"+ByteUtils.asHex(ip6_pkt.getBytes()));
-			Ip6Address dest_addr=(Ip6Address)ip6_pkt.getDestAddress();
-			if (dest_addr.equals(local_sid)) {
-				if (ip6_pkt.hasExtHdr(ExtensionHeader.ROUTING_HDR)) {
-					//debug(local_addrs[0]+": packet has RH");
-					RoutingHeader rh=new RoutingHeader(ip6_pkt.getExtHdr(ExtensionHeader.ROUTING_HDR));
-					if (rh.getRoutingType()==RoutingHeader.TYPE_SRH) {
-						debug("packet has SRH");
-						SegmentRoutingHeader srh=new SegmentRoutingHeader(rh);
-						int segment_left=srh.getSegmentLeft();
-						if (segment_left>0) {
-							debug("there are more segments");
-							srh.setSegmentLeft(--segment_left);
-							dest_addr=srh.getSegmentAt(segment_left);
-							ip6_pkt.setDestAddress(dest_addr);
-							if (segment_left==0) {
-								// IF Clean-up bit is set THEN remove the SRH
-								debug("last segment");
-								if (srh.getCleanupFlag()) {
-									debug("clean-up");
-									ip6_pkt.removeExtHdr(ExtensionHeader.ROUTING_HDR);
-								}
+			if (byte_buffer==null || byte_buffer.array()!=buf) byte_buffer=ByteBuffer.wrap(buf);
+			ip6_view.wrap(byte_buffer,0);
+			if (DEBUG) debug("input packet:\n"+ByteUtils.asHex(buf,0,len));
+			if (ip6_view.hasDestAddress(local_sid)) {
+				int srh_off=ip6_view.getSrhOffset();
+				if (srh_off>=0) {
+					debug("packet has SRH");
+					int segment_left=ip6_view.getSegmentLeft(srh_off);
+					if (segment_left>0) {
+						debug("there are more segments");
+						ip6_view.setSegmentLeft(srh_off,--segment_left);
+						ip6_view.setDestAddressToSegment(srh_off,segment_left);
+						if (segment_left==0) {
+							// IF Clean-up bit is set THEN remove the SRH
+							debug("last segment");
+							if (ip6_view.getCleanupFlag(srh_off)) {
+								debug("clean-up");
+								Ip6Packet ip6_pkt=ip6_view.toPacket();
+								ip6_pkt.removeExtHdr(ExtensionHeader.ROUTING_HDR);
+								// return the new packet
+								len=ip6_pkt.getBytes(temp_buffer,0);
+								System.arraycopy(temp_buffer,0,buf,0,len);
 							}
-							// return the new packet
-							len=ip6_pkt.getBytes(temp_buffer,0);
-							System.arraycopy(temp_buffer,0,buf,0,len);				
-							debug("output packet:\n"+ByteUtils.asHex(buf,0,len));
-							//return len;
-							
-							// process the new packet in case of spiral routing
-							//len=processPacket(buf,len);
-						}
-						else {
-							// give the packet to the next PID (application)
-							debug("end of segments");
 						}
+						if (DEBUG) debug("output packet:\n"+ByteUtils.asHex(buf,0,len));
+						//return len;
+						
+						// process the new packet in case of spiral routing
+						//len=processPacket(buf,len);
+					}
+					else {
+						// give the packet to the next PID (application)
+						debug("end of segments");
 					}
 				}
 			}
@@ -23,12 +23,15 @@ package it.unipr.netsec.nemo.networkfunction;
 
 import it.unipr.netsec.ipstack.ip6.Ip6Address;
 import it.unipr.netsec.ipstack.ip6.Ip6Packet;
+import it.unipr.netsec.ipstack.ip6.Ip6PacketView;
 import it.unipr.netsec.ipstack.ip6.exthdr.DestinationOptionsHeader;
 import it.unipr.netsec.ipstack.ip6.exthdr.ExtensionHeader;
 import it.unipr.netsec.ipstack.ip6.exthdr.ExtensionHeaderOption;
 import it.unipr.netsec.ipstack.ip6.exthdr.RoutingHeader;
 import it.unipr.netsec.ipstack.ip6.exthdr.SegmentRoutingHeader;
 
+import java.nio.ByteBuffer;
+
 import org.zoolu.util.ByteUtils;
 import org.zoolu.util.LoggerLevel;
 import org.zoolu.util.SystemUtils;
@@ -65,6 +68,12 @@ public class Ip6SrMangleFunction extends NetworkFunction {
 
 	/** SRH processing function */
 	Ip6SrFunction srf=null;
+
+	/** Buffer wrapping the last processed packet buffer */
+	ByteBuffer byte_buffer=null;
+
+	/** Packet view, used for selecting the packets to be mangled */
+	Ip6PacketView ip6_view=new Ip6PacketView();
 	
 
 	
@@ -84,12 +93,13 @@ public class Ip6SrMangleFunction extends NetworkFunction {
 		int version=(buf[0]&0xf0)>>4;
 		if (version==6) {
 			// IPv6 packet
-			debug("input packet:\n"+ByteUtils.asHex(buf,0,len));
-			Ip6Packet ip6_pkt=Ip6Packet.parseIp6Packet(buf,0,len);
-			if (srf!=null && ip6_pkt.hasExtHdr(ExtensionHeader.ROUTING_HDR)) {
+			if (DEBUG) debug("input packet:\n"+ByteUtils.asHex(buf,0,len));
+			if (byte_buffer==null || byte_buffer.array()!=buf) byte_buffer=ByteBuffer.wrap(buf);
+			ip6_view.wrap(byte_buffer,0);
+			if (srf!=null && ip6_view.hasExtHdr(ExtensionHeader.ROUTING_HDR)) {
 				// process SRH
 				len=srf.processPacket(buf,len);
-				ip6_pkt=Ip6Packet.parseIp6Packet(buf,0,len);
+				Ip6Packet ip6_pkt=Ip6Packet.parseIp6Packet(buf,0,len);
 				// mangle the SRH
 				RoutingHeader rh=(RoutingHeader)ip6_pkt.getExtHdr(ExtensionHeader.ROUTING_HDR);
 				if (rh.getRoutingType()==RoutingHeader.TYPE_SRH) {
@@ -104,8 +114,9 @@ public class Ip6SrMangleFunction extends NetworkFunction {
 				}
 			}
 			else
-			if (srf==null && ip6_pkt.hasExtHdr(ExtensionHeader.DST_OPTIONS_HDR)) {
+			if (srf==null && ip6_view.hasExtHdr(ExtensionHeader.DST_OPTIONS_HDR)) {
 				// unmangle the SRH
+				Ip6Packet ip6_pkt=Ip6Packet.parseIp6Packet(buf,0,len);
 				DestinationOptionsHeader doh=(DestinationOptionsHeader)ip6_pkt.getExtHdr(ExtensionHeader.DST_OPTIONS_HDR);
 				debug("Destination Options header: "+ByteUtils.asHex(doh.getBytes()));
 				//debug("Option: "+ByteUtils.asHex(doh.getOptions()[0].getBytes()));
@@ -90,6 +90,9 @@ public class OspfRouting implements DynamicRouting {
 	
 	/** Times of the last LSs (node address -> time) */
 	Hashtable<Ip4Address,Long> node_to_time=new Hashtable<>();
+
+	/** Clock */
+	Clock clock=Clock.getDefaultClock();
 	
 	
 	/** Creates a new dynamic routing. */ 
@@ -134,17 +137,17 @@ public class OspfRouting implements DynamicRouting {
 				OspfPacket ospf_pkt=new OspfLSUPacket(OspfRouting.this.node_addr,Ip4Address.ADDR_BROADCAST,(Ip4Address)node_addr,Ip4Address.ADDR_UNSPECIFIED,new LSA[]{lsa});
 				if (DEBUG) debug("onTimeout(): sending the LS update: "+ospf_pkt);
 				sendPacket(ospf_pkt);
-				if (UPDATE_TIME>0) Clock.getDefaultClock().newTimer(UPDATE_TIME,0,this).start();
+				if (UPDATE_TIME>0) clock.newTimer(UPDATE_TIME,0,this).start();
 			}
 		};
-		Clock.getDefaultClock().newTimer(START_TIME,0,send_update_listener).start();
+		clock.newTimer(START_TIME,0,send_update_listener).start();
 
 		// periodically refresh the network map
 		TimerListener network_refresh_listener=new TimerListener() {
 			@Override
 			public void onTimeout(Timer t) {
 				if (DEBUG) debug("onTimeout(): refresh the network map");
-				long now=Clock.getDefaultClock().currentTimeMillis();
+				long now=clock.currentTimeMillis();
 				network_map.clear();
 				synchronized (node_to_lsa) {
 					for (Ip4Address node: node_to_lsa.keySet()) {
@@ -158,11 +161,11 @@ public class OspfRouting implements DynamicRouting {
 					}						
 				}
 				OspfRouting.this.routing_interface.updateRouting(network_map.getRoutes(OspfRouting.this.node_addr));							
-				if (REFRESH_TIME>0) Clock.getDefaultClock().newTimer(REFRESH_TIME,0,this).start();					
+				if (REFRESH_TIME>0) clock.newTimer(REFRESH_TIME,0,this).start();					
 			}
 		};
 		// first refresh
-		Clock.getDefaultClock().newTimer(2*START_TIME+UPDATE_TIME,0,network_refresh_listener).start();
+		clock.newTimer(2*START_TIME+UPDATE_TIME,0,network_refresh_listener).start();
 	}
 		
 	private void sendPacket(OspfPacket ospf_pkt) {
@@ -197,7 +200,7 @@ public class OspfRouting implements DynamicRouting {
 						long sqn=rlsa.getSequenceNumber();
 						synchronized (node_to_lsa) {
 							long prev_sqn=node_to_lsa.containsKey(router)? node_to_lsa.get(router).getSequenceNumber():-1;
-							if (sqn>=prev_sqn) node_to_time.put(router,new Long(Clock.getDefaultClock().currentTimeMillis()));
+							if (sqn>=prev_sqn) node_to_time.put(router,new Long(clock.currentTimeMillis()));
 							if (sqn>prev_sqn) {
 								if (prev_sqn>=0) node_to_lsa.remove(router);
 								node_to_lsa.put(router,rlsa);
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+import java.util.List;
+
+
+/** Listener that executes batches of tasks.
+ * <p>
+ * The {@link Scheduler} executes all tasks with the same time as one batch, in the same order they have been added.
+ * Consecutive tasks of a batch that have the same batch listener (see {@link SchedulerTask#getBatchListener()})
+ * are passed to the listener all together, instead of being executed one by one,
+ * so that the listener may amortize locking and dispatching over the whole batch.
+ */
+public interface BatchListener {
+
+	/** Executes a batch of tasks.
+	 * The listener is responsible for executing all tasks (e.g. by calling the method {@link SchedulerTask#action()} of each task), in the given order.
+	 * The list must not be modified, and it is valid only during this call.
+	 * @param batch the tasks, all with the same time */
+	public void onBatch(List<SchedulerTask> batch);
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+/** Task queue based on an array-backed d-ary heap (4-ary by default).
+ * <p>
+ * Adding and removing a task take O(log n) time, while getting the first task takes O(1).
+ * Each task stores its own position within the heap, so that a given task can be removed without searching for it.
+ */
+public class HeapTaskQueue implements TaskQueue {
+
+	/** Default heap arity */
+	public static int DEFAULT_ARITY=4;
+
+	/** Initial capacity */
+	static final int INITIAL_CAPACITY=64;
+	
+	/** Heap arity */
+	int arity;
+
+	/** Heap array */
+	SchedulerTask[] heap;
+
+	/** Number of tasks */
+	int size=0;
+
+
+	/** Creates a new queue. */
+	public HeapTaskQueue() {
+		this(DEFAULT_ARITY);
+	}
+
+	/** Creates a new queue.
+	 * @param arity heap arity (e.g. 2 for a binary heap, 4 for a 4-ary heap) */
+	public HeapTaskQueue(int arity) {
+		if (arity<2) throw new IllegalArgumentException("Invalid heap arity: "+arity);
+		// else
+		this.arity=arity;
+		heap=new SchedulerTask[INITIAL_CAPACITY];
+	}
+
+	@Override
+	public void add(SchedulerTask task) {
+		if (task.heap_index>=0) throw new RuntimeException("HeapTaskQueue: task already queued");
+		// else
+		if (size==heap.length) {
+			SchedulerTask[] new_heap=new SchedulerTask[heap.length*2];
+			System.arraycopy(heap,0,new_heap,0,size);
+			heap=new_heap;
+		}
+		siftUp(size++,task);
+	}
+
+	@Override
+	public SchedulerTask peek() {
+		return size>0? heap[0] : null;
+	}
+
+	@Override
+	public SchedulerTask poll() {
+		if (size==0) return null;
+		// else
+		SchedulerTask first=heap[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	public boolean remove(SchedulerTask task) {
+		int i=task.heap_index;
+		if (i<0 || i>=size || heap[i]!=task) return false;
+		// else
+		removeAt(i);
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for (int i=0; i<size; i++) {
+			heap[i].heap_index=-1;
+			heap[i]=null;
+		}
+		size=0;
+	}
+	
+	/** Removes the task at a given position.
+	 * @param i the task position */
+	private void removeAt(int i) {
+		heap[i].heap_index=-1;
+		SchedulerTask last=heap[--size];
+		heap[size]=null;
+		if (i==size) return;
+		// else
+		siftDown(i,last);
+		if (heap[i]==last) siftUp(i,last);
+	}
+	
+	/** Moves a task up, starting from a given position.
+	 * @param i the starting position
+	 * @param task the task */
+	private void siftUp(int i, SchedulerTask task) {
+		while (i>0) {
+			int parent=(i-1)/arity;
+			SchedulerTask p=heap[parent];
+			if (!task.isBefore(p)) break;
+			// else
+			heap[i]=p;
+			p.heap_index=i;
+			i=parent;
+		}
+		heap[i]=task;
+		task.heap_index=i;
+	}
+
+	/** Moves a task down, starting from a given position.
+	 * @param i the starting position
+	 * @param task the task */
+	private void siftDown(int i, SchedulerTask task) {
+		while (true) {
+			int first_child=i*arity+1;
+			if (first_child>=size) break;
+			// else
+			int last_child=Math.min(first_child+arity,size);
+			int min=first_child;
+			for (int c=first_child+1; c<last_child; c++) {
+				if (heap[c].isBefore(heap[min])) min=c;
+			}
+			if (!heap[min].isBefore(task)) break;
+			// else
+			heap[i]=heap[min];
+			heap[i].heap_index=i;
+			i=min;
+		}
+		heap[i]=task;
+		task.heap_index=i;
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+import java.util.IdentityHashMap;
+
+import org.zoolu.util.Clock;
+import org.zoolu.util.Timer;
+import org.zoolu.util.TimerListener;
+
+
+
+/** A virtual clock for conservative parallel simulation.
+ * <p>
+ * It is based on a {@link ParallelScheduler}, with one scheduler for each logical process.
+ * The current time and the new timers refer to the logical process executed by the current thread;
+ * when the current thread is not executing any logical process (e.g. during the network set-up),
+ * the first logical process is used.
+ * <p>
+ * Simulated objects (e.g. network interfaces) can be assigned to logical processes through the method {@link #setLogicalProcess(Object, int)}.
+ * The assignment must be completed before the method {@link #run()} is called.
+ */
+public class ParallelClock extends Clock {
+	
+	/** Parallel scheduler */
+	ParallelScheduler parallel_scheduler;
+
+	/** Logical process of each assigned object */
+	IdentityHashMap<Object,Integer> owners=new IdentityHashMap<Object,Integer>();
+
+
+	/** Creates a new parallel clock.
+	 * The lookahead must be set through {@link #setLookahead(long)} before running the simulation.
+	 * @param n the number of logical processes */
+	public ParallelClock(int n) {
+		parallel_scheduler=new ParallelScheduler(n,0);
+	}
+
+	/** Gets the parallel scheduler.
+	 * @return the scheduler */
+	public ParallelScheduler getParallelScheduler() {
+		return parallel_scheduler;
+	}
+
+	/** Gets the number of logical processes.
+	 * @return the number of logical processes */
+	public int size() {
+		return parallel_scheduler.size();
+	}
+
+	/** Sets the lookahead.
+	 * @param lookahead the lookahead in nanoseconds */
+	public void setLookahead(long lookahead) {
+		parallel_scheduler.setLookahead(lookahead);
+	}
+
+	/** Assigns an object to a logical process.
+	 * @param obj the object
+	 * @param lp the logical process */
+	public void setLogicalProcess(Object obj, int lp) {
+		owners.put(obj,Integer.valueOf(lp));
+	}
+
+	/** Gets the logical process of a given object.
+	 * @param obj the object
+	 * @return the logical process, or -1 if the object has not been assigned */
+	public int getLogicalProcess(Object obj) {
+		Integer lp=owners.get(obj);
+		return lp!=null? lp.intValue() : -1;
+	}
+
+	/** Gets the logical process executed by the current thread.
+	 * @return the logical process; if the current thread is not executing any logical process, the first logical process is returned */
+	public int currentLogicalProcess() {
+		int lp=ParallelScheduler.currentLogicalProcess();
+		return lp>=0? lp : 0;
+	}
+
+	/** Schedules a task to a given logical process.
+	 * @param lp the target logical process
+	 * @param task the task
+	 * @param delay_nanosecs the delay from the current time, in nanoseconds; if the target is not the current logical process, it must not be lower than the lookahead */
+	public void post(int lp, SchedulerTask task, long delay_nanosecs) {
+		parallel_scheduler.post(lp,task,nanoTime()+delay_nanosecs);
+	}
+
+	/** Runs the simulation until there are no more timers. */
+	public void run() {
+		parallel_scheduler.run();
+	}
+	
+	@Override
+	public Timer newTimer(long millisecs, int nanosecs, TimerListener listener) {
+		return new VirtualTimer(parallel_scheduler.getScheduler(currentLogicalProcess()),millisecs,nanosecs,listener);
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return nanoTime()/1000000;
+	}
+
+	@Override
+	public long nanoTime() {
+		return parallel_scheduler.getScheduler(currentLogicalProcess()).currentTime();
+	}
+
+	@Override
+	public void sleep(long millisecs, int nanosecs) {
+		throw new RuntimeException("ParallelClock: sleep() is not supported");
+	}
+
+	@Override
+	public void waitUntil(Object lock, Condition condition) throws InterruptedException {
+		throw new RuntimeException("ParallelClock: waitUntil() is not supported");
+	}
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+
+
+/** Conservative parallel scheduler.
+ * It executes a set of logical processes, each with its own {@link Scheduler} (in single-thread mode),
+ * on parallel threads.
+ * <p>
+ * Logical processes are synchronized through time windows: all logical processes execute the tasks
+ * with time within the window [T, T+lookahead), where T is the minimum time of all pending tasks,
+ * and then wait for each other at a barrier.
+ * A logical process may schedule tasks to other logical processes only through the method {@link #post(int, SchedulerTask, long)},
+ * with a time not lower than the current time plus the lookahead; such tasks are delivered at the end of the window.
+ * <p>
+ * Tasks posted to the same logical process during the same window are delivered in order of time, source logical process,
+ * and posting order; the execution is therefore deterministic and does not depend on thread interleaving.
+ */
+public class ParallelScheduler {
+	
+	/** Debug mode */
+	public static boolean DEBUG=false;
+
+	
+	/** Schedulers of the logical processes */
+	Scheduler[] schedulers;
+
+	/** Tasks posted to each logical process during the current window */
+	ArrayList<PostedTask>[] mailboxes;
+
+	/** Number of tasks posted by each logical process */
+	long[] post_counters;
+
+	/** Lookahead */
+	long lookahead;
+
+	/** End of the current window (the window does not include this time) */
+	volatile long window_end;
+
+	/** Whether the execution has ended */
+	volatile boolean finished;
+
+	/** Maximum time */
+	long max_time=Long.MAX_VALUE;
+
+	/** Number of executed windows */
+	long window_count=0;
+
+	/** First failure of a logical process during the current run, if any */
+	volatile RuntimeException failure=null;
+
+	/** Logical process executed by the current thread */
+	static ThreadLocal<Integer> CURRENT_LP=new ThreadLocal<Integer>();
+
+	
+	/** Comparator of posted tasks */
+	static final Comparator<PostedTask> POSTED_TASK_COMPARATOR=new Comparator<PostedTask>() {
+		public int compare(PostedTask t1, PostedTask t2) {
+			if (t1.time!=t2.time) return t1.time<t2.time? -1 : 1;
+			if (t1.src_lp!=t2.src_lp) return t1.src_lp<t2.src_lp? -1 : 1;
+			if (t1.src_sqn!=t2.src_sqn) return t1.src_sqn<t2.src_sqn? -1 : 1;
+			return 0;
+		}
+	};
+	
+	
+	/** Creates a new parallel scheduler.
+	 * @param n the number of logical processes
+	 * @param lookahead the lookahead, that is the minimum time between the time a logical process
+	 * posts a task to another logical process, and the time of the posted task; if 0, logical processes are supposed to be independent */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	public ParallelScheduler(int n, long lookahead) {
+		if (n<1) throw new IllegalArgumentException("Invalid number of logical processes: "+n);
+		// else
+		schedulers=new Scheduler[n];
+		mailboxes=new ArrayList[n];
+		post_counters=new long[n];
+		for (int i=0; i<n; i++) {
+			schedulers[i]=new Scheduler();
+			schedulers[i].setSingleThread(true);
+			mailboxes[i]=new ArrayList<PostedTask>();
+		}
+		setLookahead(lookahead);
+	}
+
+	
+	/** Sets the lookahead.
+	 * @param lookahead the new lookahead; if 0, logical processes are supposed to be independent (they cannot post tasks to each other) */
+	public void setLookahead(long lookahead) {
+		this.lookahead=lookahead>0? lookahead : Long.MAX_VALUE/2;
+	}
+
+	
+	/** Gets the lookahead.
+	 * @return the lookahead */
+	public long getLookahead() {
+		return lookahead;
+	}
+
+	
+	/** Sets maximum time.
+	 * Tasks after this time are not executed.
+	 * @param max_time the maximum time */
+	public void setMaximumTime(long max_time) {
+		this.max_time=max_time>0? max_time : Long.MAX_VALUE;
+	}
+
+	
+	/** Gets the number of logical processes.
+	 * @return the number of logical processes */
+	public int size() {
+		return schedulers.length;
+	}
+
+	
+	/** Gets the scheduler of a logical process.
+	 * @param lp the logical process
+	 * @return the scheduler */
+	public Scheduler getScheduler(int lp) {
+		return schedulers[lp];
+	}
+
+	
+	/** Gets the number of executed windows.
+	 * @return the number of windows */
+	public long getWindowCount() {
+		return window_count;
+	}
+
+	
+	/** Gets the logical process executed by the current thread.
+	 * @return the logical process, or -1 if the current thread is not executing any logical process */
+	public static int currentLogicalProcess() {
+		Integer lp=CURRENT_LP.get();
+		return lp!=null? lp.intValue() : -1;
+	}
+
+	
+	/** Schedules a task to a logical process.
+	 * If called by a thread that is executing a different logical process, the task time must not be lower
+	 * than the end of the current window.
+	 * If called by a thread that is not executing any logical process, the task is immediately added to the target scheduler,
+	 * and the method must not be called while the scheduler is running.
+	 * @param lp the target logical process
+	 * @param task the task
+	 * @param time the task time */
+	public void post(int lp, SchedulerTask task, long time) {
+		task.setTime(time);
+		int src_lp=currentLogicalProcess();
+		if (src_lp<0 || src_lp==lp) {
+			schedulers[lp].add(task);
+			return;
+		}
+		// else
+		if (time<window_end) throw new RuntimeException("ParallelScheduler: lookahead violation: task time "+time+" is before the end of the current window "+window_end);
+		// else
+		PostedTask posted=new PostedTask(task,time,src_lp,post_counters[src_lp]++);
+		ArrayList<PostedTask> mailbox=mailboxes[lp];
+		synchronized (mailbox) {
+			mailbox.add(posted);
+		}
+	}
+
+
+	/** Runs all logical processes until there are no more tasks.
+	 * It returns when all tasks have been executed.
+	 * If a logical process fails, it still waits for the other logical processes at the end of the current window,
+	 * then all logical processes are stopped, and the failure is thrown once they have terminated.
+	 * @throws RuntimeException if a logical process has failed */
+	public void run() {
+		failure=null;
+		finished=!nextWindow();
+		if (finished) return;
+		// else
+		final CyclicBarrier barrier=new CyclicBarrier(schedulers.length,new Runnable() {
+			public void run() {
+				if (failure!=null) {
+					finished=true;
+					return;
+				}
+				// else
+				deliverPostedTasks();
+				finished=!nextWindow();
+			}
+		});
+		Thread[] threads=new Thread[schedulers.length];
+		for (int i=0; i<schedulers.length; i++) {
+			final int lp=i;
+			threads[i]=new Thread() {
+				public void run() {
+					CURRENT_LP.set(lp);
+					Scheduler scheduler=schedulers[lp];
+					try {
+						while (!finished) {
+							try {
+								scheduler.runUntil(window_end-1);
+							}
+							catch (RuntimeException e) {
+								// still reach the barrier, so that all logical processes leave it in the same window
+								setFailure(lp,e);
+							}
+							barrier.await();
+						}
+					}
+					catch (InterruptedException e) {}
+					catch (BrokenBarrierException e) {}
+					catch (RuntimeException e) {
+						// failure of the barrier action: the barrier is broken, and the other logical processes leave it
+						setFailure(lp,e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			try { t.join(); } catch (InterruptedException e) {}
+		}
+		if (failure!=null) throw failure;
+	}
+
+	
+	/** Records the failure of a logical process, unless an other failure has been already recorded.
+	 * @param lp the logical process
+	 * @param e the exception thrown by the logical process */
+	private synchronized void setFailure(int lp, RuntimeException e) {
+		if (failure==null) failure=new RuntimeException("ParallelScheduler: logical process "+lp+" failed: "+e.getMessage(),e);
+	}
+
+	
+	/** Moves to the next window.
+	 * @return <i>true</i> if there are more tasks to be executed, <i>false</i> otherwise */
+	private boolean nextWindow() {
+		long min_time=Long.MAX_VALUE;
+		for (Scheduler s : schedulers) {
+			SchedulerTask task=s.task_schedule.peek();
+			if (task!=null && task.getTime()<min_time) min_time=task.getTime();
+		}
+		if (min_time==Long.MAX_VALUE || min_time>=max_time) return false;
+		// else
+		window_end=min_time+lookahead;
+		if (window_end<min_time || window_end>max_time) window_end=max_time;
+		window_count++;
+		return true;
+	}
+
+	
+	/** Delivers the tasks posted during the last window. */
+	private void deliverPostedTasks() {
+		for (int i=0; i<schedulers.length; i++) {
+			ArrayList<PostedTask> mailbox=mailboxes[i];
+			if (mailbox.size()==0) continue;
+			// else
+			Collections.sort(mailbox,POSTED_TASK_COMPARATOR);
+			for (PostedTask posted : mailbox) schedulers[i].add(posted.task);
+			mailbox.clear();
+		}
+	}
+
+	
+	/** A task posted by a logical process to another logical process. */
+	static class PostedTask {
+		SchedulerTask task;
+		long time;
+		int src_lp;
+		long src_sqn;
+		
+		PostedTask(SchedulerTask task, long time, int src_lp, long src_sqn) {
+			this.task=task;
+			this.time=time;
+			this.src_lp=src_lp;
+			this.src_sqn=src_sqn;
+		}
+	}
+
+}
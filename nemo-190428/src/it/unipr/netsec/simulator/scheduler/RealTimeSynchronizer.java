@@ -0,0 +1,218 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+/** Synchronizes the {@link Scheduler} time with the real time, at a given ratio.
+ * <p>
+ * When active, the scheduler time advances as <i>ratio</i> times the real time (e.g. 0.1 for running ten times slower than the real time).
+ * When not active (i.e. no external entity is attached, see {@link #attach()}), the scheduler runs as fast as possible.
+ * <p>
+ * The real time corresponding to a given scheduler time is always computed with respect to an origin,
+ * so that small delays in waking up the scheduler thread do not accumulate.
+ * If the scheduler falls behind the real time by more than the maximum lag (e.g. because the host is overloaded),
+ * the origin is moved (drift correction), i.e. the scheduler time slips with respect to the real time,
+ * instead of executing a burst of late tasks.
+ */
+public class RealTimeSynchronizer implements TimeSynchronizer {
+	
+	/** Default maximum lag, in nanoseconds */
+	public static long DEFAULT_MAX_LAG=100000000L;
+
+	
+	/** Ratio between scheduler time and real time */
+	double ratio;
+
+	/** Maximum lag, in nanoseconds */
+	long max_lag=DEFAULT_MAX_LAG;
+
+	/** Number of attached external entities */
+	int attached=0;
+
+	/** Scheduler time of the origin, or -1 if the origin has to be set */
+	long origin_time=-1;
+
+	/** Real time of the origin */
+	long origin_real_time;
+
+	/** Number of tasks executed while active */
+	long task_count=0;
+
+	/** Sum of the lags of the executed tasks */
+	long lag_sum=0;
+
+	/** Maximum lag of the executed tasks */
+	long lag_max=0;
+
+	/** Number of drift corrections */
+	long slip_count=0;
+
+	/** Total time slipped with drift corrections */
+	long slip_time=0;
+
+	
+	
+	/** Creates a new synchronizer.
+	 * @param ratio the ratio between scheduler time and real time */
+	public RealTimeSynchronizer(double ratio) {
+		setRatio(ratio);
+	}
+
+
+	/** Sets the ratio between scheduler time and real time.
+	 * @param ratio the new ratio */
+	public synchronized void setRatio(double ratio) {
+		if (ratio<=0) throw new RuntimeException("RealTimeSynchronizer: invalid ratio: "+ratio);
+		// else
+		this.ratio=ratio;
+		origin_time=-1;
+	}
+
+
+	/** Gets the ratio between scheduler time and real time.
+	 * @return the ratio */
+	public synchronized double getRatio() {
+		return ratio;
+	}
+
+
+	/** Sets the maximum lag.
+	 * @param max_lag the maximum lag in nanoseconds; if 0, no drift correction is performed */
+	public synchronized void setMaximumLag(long max_lag) {
+		this.max_lag=max_lag;
+	}
+
+
+	/** Attaches an external entity (e.g. a real network interface).
+	 * While at least one entity is attached, the scheduler time is synchronized with the real time. */
+	public synchronized void attach() {
+		if (attached++==0) origin_time=-1;
+	}
+
+
+	/** Detaches an external entity.
+	 * When no more entities are attached, the scheduler runs as fast as possible. */
+	public synchronized void detach() {
+		if (attached>0) attached--;
+	}
+
+
+	/** Whether the synchronization is active.
+	 * @return <i>true</i> if at least one external entity is attached */
+	public synchronized boolean isActive() {
+		return attached>0;
+	}
+
+
+	@Override
+	public synchronized long currentTime(long current_time) {
+		if (attached==0) return current_time;
+		// else
+		long real_time=System.nanoTime();
+		if (origin_time<0) setOrigin(current_time,real_time);
+		long time=origin_time+(long)((real_time-origin_real_time)*ratio);
+		return time>current_time? time : current_time;
+	}
+
+
+	@Override
+	public synchronized long waitTime(long current_time, long task_time) {
+		if (attached==0) return 0;
+		// else
+		long real_time=System.nanoTime();
+		if (origin_time<0) setOrigin(current_time,real_time);
+		long wait_time=origin_real_time+(long)((task_time-origin_time)/ratio)-real_time;
+		if (wait_time>0) return wait_time;
+		// else
+		long lag=-wait_time;
+		task_count++;
+		lag_sum+=lag;
+		if (lag>lag_max) lag_max=lag;
+		if (max_lag>0 && lag>max_lag) {
+			// drift correction
+			slip_count++;
+			slip_time+=lag;
+			setOrigin(task_time,real_time);
+		}
+		return 0;
+	}
+
+
+	/** Sets the origin.
+	 * @param time the scheduler time
+	 * @param real_time the corresponding real time */
+	private void setOrigin(long time, long real_time) {
+		origin_time=time;
+		origin_real_time=real_time;
+	}
+
+
+	/** Gets the number of tasks executed while the synchronization was active.
+	 * @return the number of tasks */
+	public synchronized long getTaskCount() {
+		return task_count;
+	}
+
+
+	/** Gets the average lag of the executed tasks, that is the average delay in real time between the instant a task should be executed and the instant it is actually executed.
+	 * @return the average lag in nanoseconds */
+	public synchronized long getAverageLag() {
+		return task_count>0? lag_sum/task_count : 0;
+	}
+
+
+	/** Gets the maximum lag of the executed tasks.
+	 * @return the maximum lag in nanoseconds */
+	public synchronized long getMaximumMeasuredLag() {
+		return lag_max;
+	}
+
+
+	/** Gets the number of drift corrections, that is the number of times the scheduler time has been moved back with respect to the real time.
+	 * @return the number of drift corrections */
+	public synchronized long getSlipCount() {
+		return slip_count;
+	}
+
+
+	/** Gets the total real time the scheduler time has slipped because of drift corrections.
+	 * @return the total slipped time in nanoseconds */
+	public synchronized long getSlipTime() {
+		return slip_time;
+	}
+
+
+	/** Resets the lag statistics. */
+	public synchronized void resetStatistics() {
+		task_count=0;
+		lag_sum=0;
+		lag_max=0;
+		slip_count=0;
+		slip_time=0;
+	}
+
+
+	@Override
+	public synchronized String toString() {
+		return "ratio="+ratio+", attached="+attached+", tasks="+task_count+", avg-lag="+getAverageLag()/1000+"us, max-lag="+lag_max/1000+"us, slips="+slip_count+", slip-time="+slip_time/1000+"us";
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+/** A virtual clock that tracks the real time at a given ratio.
+ * <p>
+ * It can be used for emulating networks that are attached to real hosts (e.g. through TUN or raw Ethernet interfaces).
+ * While no real interface is attached, it runs as fast as possible, like a {@link VirtualClock};
+ * when at least one real interface is attached (see {@link #attach()}), the virtual time advances as <i>ratio</i> times the real time.
+ * For example, a ratio of 0.1 slows down the emulated network ten times, so that large topologies can still interact
+ * consistently with real protocol stacks, without missing timers.
+ * <p>
+ * Lag statistics and drift correction are provided by the underlying {@link RealTimeSynchronizer}.
+ */
+public class ScaledClock extends VirtualClock {
+	
+	/** Synchronizer with the real time */
+	RealTimeSynchronizer synchronizer;
+
+
+	/** Creates a new clock.
+	 * @param ratio the ratio between virtual time and real time */
+	public ScaledClock(double ratio) {
+		super(new Scheduler());
+		synchronizer=new RealTimeSynchronizer(ratio);
+		scheduler.setTimeSynchronizer(synchronizer);
+	}
+
+	/** Gets the synchronizer with the real time.
+	 * @return the synchronizer, that provides also lag statistics */
+	public RealTimeSynchronizer getSynchronizer() {
+		return synchronizer;
+	}
+
+	/** Sets the ratio between virtual time and real time.
+	 * @param ratio the new ratio */
+	public void setRatio(double ratio) {
+		synchronizer.setRatio(ratio);
+		scheduler.wakeUp();
+	}
+
+	/** Attaches a real interface.
+	 * While at least one real interface is attached, the virtual time tracks the real time. */
+	public void attach() {
+		synchronizer.attach();
+		scheduler.wakeUp();
+	}
+
+	/** Detaches a real interface.
+	 * When no more real interfaces are attached, the clock runs as fast as possible. */
+	public void detach() {
+		synchronizer.detach();
+		scheduler.wakeUp();
+	}
+
+	/** Whether the virtual time is tracking the real time.
+	 * @return <i>true</i> if at least one real interface is attached */
+	public boolean isAttached() {
+		return synchronizer.isActive();
+	}
+
+}
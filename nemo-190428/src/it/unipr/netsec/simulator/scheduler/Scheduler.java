@@ -20,9 +20,7 @@
 package it.unipr.netsec.simulator.scheduler;
 
 
-
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.ArrayList;
 
 import org.zoolu.util.Clock;
 import org.zoolu.util.DateFormat;
@@ -33,9 +31,25 @@ import org.zoolu.util.SystemUtils;
 
 /** A scheduler.
  * It schedules and sequentially executes events, here called tasks ({@link SchedulerTask}).
- * Tasks are ordered based on the task attribute ({@link SchedulerTask#time time}). 
+ * Tasks are ordered based on the task attribute ({@link SchedulerTask#time time}).
+ * Tasks with the same time are executed in the same order they have been added.
+ * All tasks with the same time are removed from the schedule at once, and executed as one batch
+ * (consecutive tasks of the batch with the same {@link BatchListener} are passed to the listener all together).
  * The attribute <code>time</code> is just used by tasks and scheduler as a virtual time;
  * it doesn't have (and does not need to have) any reference to the real system time.
+ * <p>
+ * By default tasks are executed by an inner thread, started as soon as there are tasks to be executed.
+ * In alternative, in <i>single-thread</i> mode (see {@link #setSingleThread(boolean)}) tasks are executed
+ * only by the thread that calls the methods {@link #runUntil(long)} or {@link #runUntilIdle()};
+ * in this mode no thread is created and no lock is taken, and therefore tasks must be added only by
+ * the same thread (or by the tasks themselves).
+ * <p>
+ * A running task that needs to wait for a future time or event must not block the thread that is executing it,
+ * since no other task could be executed meanwhile. It can instead execute the next tasks in place,
+ * through the methods {@link #runUntil(long)} and {@link #runUntil(Clock.Condition)}.
+ * Since the waiting task is resumed only when the in-place run returns, in-place runs must be properly nested:
+ * a task executed in place cannot wait beyond the time awaited by the outer task
+ * (in this case {@link #runUntil(long)} throws an exception, and {@link #runUntil(Clock.Condition)} returns at the time awaited by the outer task).
  */
 public class Scheduler {
 	
@@ -52,10 +66,16 @@ public class Scheduler {
 	long current_time=0;
 
 	/** Event schedule */
-	SortedSet<SchedulerTask> task_schedule=new TreeSet<SchedulerTask>();
+	TaskQueue task_schedule;
+
+	/** Sequence number of the next added task */
+	long next_sqn=0;
 
 	/** Whether a task is running */
 	boolean is_running=false;
+
+	/** Thread that is currently executing the tasks */
+	volatile Thread task_thread=null;
 	
 	/** Whether is paused */
 	boolean pause=false;
@@ -63,16 +83,48 @@ public class Scheduler {
 	/** Maximum time */
 	long max_time=0;
 
+	/** Whether tasks are executed by the caller thread */
+	boolean single_thread=false;
+
+	/** Synchronizer with an external time, if any */
+	TimeSynchronizer synchronizer=null;
+
+	/** Batch of tasks that is currently executed, if any */
+	ArrayList<SchedulerTask> running_batch=null;
+
+	/** Index of the next task of the running batch */
+	int running_index=0;
+
+	/** End of the running batch; tasks from this index on have been put back in the schedule */
+	int running_end=0;
+
+	/** Time awaited by the innermost in-place run, if any */
+	long run_limit=Long.MAX_VALUE;
+
+	/** Profiler, if any */
+	SchedulerProfiler profiler=null;
+
 	
 	
 	/** Creates a new Scheduler. */
 	public Scheduler() {
+		this(new HeapTaskQueue());
+	}
+
+
+	/** Creates a new Scheduler.
+	 * @param task_schedule the queue used for storing the scheduled tasks */
+	public Scheduler(TaskQueue task_schedule) {
+		this.task_schedule=task_schedule;
 	}
 
 
 	/** Gets current time.
+	 * If a time synchronizer is set and the caller is not running a task, the current time is first
+	 * moved forward to the time given by the synchronizer, but not beyond the time of the next task.
 	 * @return the current scheduler time corresponding to the last task */
 	public long currentTime() {
+		if (synchronizer!=null && !isTaskThread()) synchronizeTime();
 		return current_time;
 	}
 
@@ -84,10 +136,67 @@ public class Scheduler {
 		this.max_time=max_time;
 	}
 
+	/** Sets single-thread mode.
+	 * In single-thread mode tasks are executed only when the methods {@link #runUntil(long)} or {@link #runUntilIdle()} are called,
+	 * in the caller thread.
+	 * It should be set before adding any task.
+	 * @param single_thread whether tasks are executed by the caller thread */
+	public void setSingleThread(boolean single_thread) {
+		this.single_thread=single_thread;
+	}
+
+
+	/** Whether it is in single-thread mode.
+	 * @return <i>true</i> if tasks are executed by the caller thread */
+	public boolean isSingleThread() {
+		return single_thread;
+	}
+
+
+	/** Sets a time synchronizer.
+	 * The synchronizer is used for pacing the execution of the tasks with respect to an external time (e.g. the real time).
+	 * It is not used in single-thread mode.
+	 * @param synchronizer the time synchronizer, or <i>null</i> for executing tasks as fast as possible */
+	public synchronized void setTimeSynchronizer(TimeSynchronizer synchronizer) {
+		this.synchronizer=synchronizer;
+		notifyAll();
+	}
+
+
+	/** Gets the time synchronizer.
+	 * @return the time synchronizer, or <i>null</i> */
+	public TimeSynchronizer getTimeSynchronizer() {
+		return synchronizer;
+	}
+
+
+	/** Sets a profiler.
+	 * It should be set before running any task.
+	 * @param profiler the profiler, or <i>null</i> for disabling profiling */
+	public void setProfiler(SchedulerProfiler profiler) {
+		this.profiler=profiler;
+	}
+
+
+	/** Gets the profiler.
+	 * @return the profiler, or <i>null</i> */
+	public SchedulerProfiler getProfiler() {
+		return profiler;
+	}
+
+
+	/** Wakes up the thread that is waiting for the time of the next task.
+	 * It should be called when the state of the time synchronizer changes. */
+	public synchronized void wakeUp() {
+		notifyAll();
+	}
+
+
 	/** Schedules a new task.
 	 * @param task the new task
 	 * @param delta_time the task relative time from now */
 	public void add(SchedulerTask task, long delta_time) {
+		if (synchronizer!=null && !isTaskThread()) synchronizeTime();
 		task.setTime(current_time+delta_time);
 		add(task);
 	}
@@ -95,17 +204,246 @@ public class Scheduler {
 
 	/** Schedules a new task.
 	 * @param task the new task */
-	public synchronized void add(SchedulerTask task) {
+	public void add(SchedulerTask task) {
+		if (single_thread) {
+			enqueue(task);
+		}
+		else synchronized (this) {
+			if (enqueue(task)) {
+				runNext();
+				if (synchronizer!=null) notifyAll();
+			}
+		}
+	}
+
+
+	/** Removes a scheduled task.
+	 * @param task the task to be removed
+	 * @return <i>true</i> if the task has been removed, <i>false</i> if it was not scheduled (e.g. it has been already executed) */
+	public boolean remove(SchedulerTask task) {
+		if (single_thread) return task_schedule.remove(task);
+		// else
+		synchronized (this) {
+			return task_schedule.remove(task);
+		}
+	}
+
+
+	/** Adds a task to the event schedule.
+	 * @param task the new task
+	 * @return <i>true</i> if the task has been added, <i>false</i> if discarded */
+	private boolean enqueue(SchedulerTask task) {
 		if (DEBUG) debug("add("+task+","+task.getTime()+") at "+DateFormat.formatHHmmssSSS(Clock.getDefaultClock().currentTimeMillis()));
 		if (max_time==0 || task.getTime()<max_time) {
-			int size=task_schedule.size();
+			task.sqn=next_sqn++;
 			task_schedule.add(task);
-			if (task_schedule.size()!=(size+1)) throw new RuntimeException("Scheduler: failed in adding a new task");
-			runNext();	
+			return true;
 		}
 		else {
 			if (DEBUG) debug("add(): task time is after the meximim time: discarded");
+			return false;
+		}
+	}
+
+
+	/** Runs, in the caller thread, all tasks with time not greater than a given time.
+	 * At the end, the current time is moved to the given time (if not already beyond it).
+	 * <p>
+	 * It can be used in single-thread mode, or by a task that needs to wait for a given time
+	 * without blocking the thread that is executing the tasks.
+	 * If called by a task that is executed in place by an outer run, the given time must not be greater than the time awaited by the outer run,
+	 * otherwise the outer task would be resumed late.
+	 * @param time the time to be reached
+	 * @return the number of executed tasks */
+	public long runUntil(long time) {
+		if (time>run_limit) throw new RuntimeException("Scheduler: runUntil("+time+") would overtake the time "+run_limit+" awaited by an outer task");
+		// else
+		Thread caller=beginRun("runUntil()");
+		long outer_limit=run_limit;
+		run_limit=time;
+		long count=0;
+		try {
+			ArrayList<SchedulerTask> batch=new ArrayList<SchedulerTask>();
+			while (nextBatch(time,batch)) count+=runBatch(batch);
+			if (!pause && current_time<time) current_time=time;
+		}
+		finally {
+			run_limit=outer_limit;
+			task_thread=caller;
+		}
+		return count;
+	}
+
+
+	/** Runs, in the caller thread, all tasks until there are no more tasks.
+	 * It can be used only in single-thread mode.
+	 * @return the number of executed tasks */
+	public long runUntilIdle() {
+		if (!single_thread) throw new RuntimeException("Scheduler: runUntilIdle() can be used only in single-thread mode");
+		// else
+		if (run_limit!=Long.MAX_VALUE) throw new RuntimeException("Scheduler: runUntilIdle() would overtake the time "+run_limit+" awaited by an outer task");
+		// else
+		Thread caller=beginRun("runUntilIdle()");
+		long count=0;
+		ArrayList<SchedulerTask> batch=new ArrayList<SchedulerTask>();
+		while (nextBatch(Long.MAX_VALUE,batch)) count+=runBatch(batch);
+		task_thread=caller;
+		return count;
+	}
+
+
+	/** Runs, in the caller thread, the next tasks until a given condition is satisfied or there are no more tasks.
+	 * <p>
+	 * It can be used in single-thread mode, or by a task that needs to wait for a given condition
+	 * without blocking the thread that is executing the tasks.
+	 * If called by a task that is executed in place by an outer run, it also returns when the time awaited by the outer run is reached.
+	 * @param condition the condition
+	 * @return <i>true</i> if the condition has been satisfied, <i>false</i> if there are no more tasks (before the time awaited by the outer run, if any) */
+	public boolean runUntil(Clock.Condition condition) {
+		Thread caller=beginRun("runUntil()");
+		boolean satisfied;
+		try {
+			SchedulerTask task;
+			while (!(satisfied=condition.isSatisfied()) && (task=nextBefore(run_limit))!=null) {
+				execute(task);
+			}
 		}
+		finally {
+			task_thread=caller;
+		}
+		return satisfied;
+	}
+
+
+	/** Whether the current thread is the thread that is executing the tasks.
+	 * @return <i>true</i> if the current thread is executing the tasks */
+	public boolean isTaskThread() {
+		return task_thread==Thread.currentThread();
+	}
+
+
+	/** Starts executing tasks in the caller thread.
+	 * If the caller is a task of a running batch, the remaining tasks of the batch are put back in the schedule,
+	 * so that they are executed before the following tasks.
+	 * @param method the name of the calling method, used in case of error
+	 * @return the thread that was executing tasks before, if any */
+	private Thread beginRun(String method) {
+		if (!single_thread && !isTaskThread()) throw new RuntimeException("Scheduler: "+method+" can be used only in single-thread mode or by a running task");
+		// else
+		if (running_batch!=null) requeueBatch();
+		Thread caller=task_thread;
+		task_thread=Thread.currentThread();
+		return caller;
+	}
+
+
+	/** Gets the next task, if its time is not greater than a given time.
+	 * The scheduler time is moved to the time of this task. The task is removed from the scheduler.
+	 * @param time the maximum time
+	 * @return the next task, or <i>null</i> if there are no tasks within the given time or the scheduler is paused */
+	private SchedulerTask nextBefore(long time) {
+		if (single_thread) {
+			SchedulerTask task=task_schedule.peek();
+			if (pause || task==null || task.getTime()>time) return null;
+			// else
+			task_schedule.poll();
+			current_time=task.getTime();
+			return task;
+		}
+		else synchronized (this) {
+			SchedulerTask task=task_schedule.peek();
+			if (pause || task==null || task.getTime()>time) return null;
+			// else
+			return next();
+		}
+	}
+
+
+	/** Gets the next batch of tasks, that is all tasks with the same time of the next task, if this time is not greater than a given time.
+	 * The scheduler time is moved to the time of the batch. The tasks are removed from the scheduler.
+	 * @param time the maximum time
+	 * @param batch the list where the tasks are added, in order
+	 * @return <i>true</i> if there is a new batch, <i>false</i> if there are no tasks within the given time or the scheduler is paused */
+	private boolean nextBatch(long time, ArrayList<SchedulerTask> batch) {
+		if (single_thread) return pollBatch(time,batch);
+		// else
+		synchronized (this) {
+			return pollBatch(time,batch);
+		}
+	}
+
+
+	/** Removes the next batch of tasks from the task schedule.
+	 * @param time the maximum time
+	 * @param batch the list where the tasks are added, in order
+	 * @return <i>true</i> if there is a new batch */
+	private boolean pollBatch(long time, ArrayList<SchedulerTask> batch) {
+		SchedulerTask task=task_schedule.peek();
+		if (pause || task==null || task.getTime()>time) return false;
+		// else
+		current_time=task.getTime();
+		do {
+			batch.add(task_schedule.poll());
+		}
+		while ((task=task_schedule.peek())!=null && task.getTime()==current_time);
+		if (DEBUG) debug("pollBatch(): "+batch.size()+" tasks at "+current_time);
+		return true;
+	}
+
+
+	/** Executes a batch of tasks, in order.
+	 * Consecutive tasks with the same {@link BatchListener batch listener} are passed to the listener all together.
+	 * At the end the batch is cleared.
+	 * @param batch the tasks
+	 * @return the number of executed tasks */
+	private int runBatch(ArrayList<SchedulerTask> batch) {
+		ArrayList<SchedulerTask> outer_batch=running_batch;
+		int outer_index=running_index;
+		int outer_end=running_end;
+		running_batch=batch;
+		running_end=batch.size();
+		for (int i=0; i<running_end; ) {
+			SchedulerTask task=batch.get(i);
+			BatchListener listener=task.getBatchListener();
+			int j=i+1;
+			if (listener!=null) while (j<running_end && batch.get(j).getBatchListener()==listener) j++;
+			running_index=j;
+			if (listener!=null) {
+				if (profiler!=null) profiler.execute(listener,batch.subList(i,j),current_time,task_schedule.size());
+				else listener.onBatch(batch.subList(i,j));
+			}
+			else execute(task);
+			i=j;
+		}
+		int count=running_end;
+		batch.clear();
+		running_batch=outer_batch;
+		running_index=outer_index;
+		running_end=outer_end;
+		return count;
+	}
+
+
+	/** Executes a task.
+	 * @param task the task */
+	private void execute(SchedulerTask task) {
+		if (profiler!=null) profiler.execute(task,current_time,task_schedule.size());
+		else task.action();
+	}
+
+
+	/** Puts back in the schedule the tasks of the running batch that have not been executed yet.
+	 * The tasks maintain their sequence numbers, and therefore their order.
+	 * The batch is not modified, since a batch listener may be iterating over a part of it; its end is moved instead. */
+	private void requeueBatch() {
+		ArrayList<SchedulerTask> batch=running_batch;
+		if (single_thread) {
+			for (int i=running_index; i<running_end; i++) task_schedule.add(batch.get(i));
+		}
+		else synchronized (this) {
+			for (int i=running_index; i<running_end; i++) task_schedule.add(batch.get(i));
+		}
+		running_end=running_index;
 	}
 
 
@@ -116,10 +454,17 @@ public class Scheduler {
 			new Thread() {
 				public void run() {
 					if (DEBUG) debug("runNext(): new thread "+this); 
+					task_thread=this;
+					ArrayList<SchedulerTask> batch=new ArrayList<SchedulerTask>();
 					while (!pause && is_running && hasMore()) {
-						SchedulerTask task=next();
-						if (task!=null) task.action();
+						if (synchronizer!=null) {
+							SchedulerTask task=nextSynchronized();
+							if (task!=null) execute(task);
+						}
+						else
+						if (nextBatch(Long.MAX_VALUE,batch)) runBatch(batch);
 					}	
+					task_thread=null;
 					is_running=false;
 					if (DEBUG) debug("runNext(): end of thread "+this); 
 				}
@@ -131,7 +476,7 @@ public class Scheduler {
 	/** Pauses/restarts the scheduler. */
 	public void pause(boolean pause) {
 		this.pause=pause;
-		if (!pause) runNext();
+		if (!pause && !single_thread) runNext();
 	}
 
 	
@@ -146,16 +491,48 @@ public class Scheduler {
 	 * @return the next task, if any; otherwise <i>null</i> is returned */
 	private synchronized SchedulerTask next() {
 		if (DEBUG) debug("next() at "+DateFormat.formatHHmmssSSS(Clock.getDefaultClock().currentTimeMillis())); 
-		if (task_schedule.size()==0) return null;
+		SchedulerTask task=task_schedule.poll();
+		if (task==null) return null;
 		// else
-		SchedulerTask task=task_schedule.iterator().next();
-		task_schedule.remove(task);
 		current_time=task.getTime();
 		if (DEBUG) debug("next() new current_time: "+DateFormat.formatHHmmssSSS(Clock.getDefaultClock().currentTimeMillis())); 
 		return task;
 	}
 
 
+	/** Gets the next task, waiting until the time synchronizer allows its execution.
+	 * While waiting, the scheduler time is moved forward according to the synchronizer.
+	 * Tasks that are added meanwhile are taken into account.
+	 * @return the next task, if any; otherwise <i>null</i> is returned */
+	private synchronized SchedulerTask nextSynchronized() {
+		SchedulerTask task;
+		while (!pause && (task=task_schedule.peek())!=null) {
+			TimeSynchronizer synchronizer=this.synchronizer;
+			if (synchronizer==null) return next();
+			// else
+			long wait_time=synchronizer.waitTime(current_time,task.getTime());
+			if (wait_time<=0) return next();
+			// else
+			long time=Math.min(synchronizer.currentTime(current_time),task.getTime());
+			if (time>current_time) current_time=time;
+			try { wait(wait_time/1000000,(int)(wait_time%1000000)); } catch (InterruptedException e) {}
+		}
+		return null;
+	}
+
+
+	/** Moves the current time forward according to the time synchronizer, but not beyond the time of the next task. */
+	private synchronized void synchronizeTime() {
+		TimeSynchronizer synchronizer=this.synchronizer;
+		if (synchronizer==null || single_thread) return;
+		// else
+		long time=synchronizer.currentTime(current_time);
+		SchedulerTask task=task_schedule.peek();
+		if (task!=null && task.getTime()<time) time=task.getTime();
+		if (time>current_time) current_time=time;
+	}
+
+
 	/** Whether there are some more tasks.
 	 * @return <i>true</i> if the are more tasks */
 	public synchronized boolean hasMore() {
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/** Profiler of the tasks executed by a {@link Scheduler}.
+ * <p>
+ * For each executed task it records the task type and origin, and the wall-clock time spent for executing it.
+ * The time spent by tasks that are executed in place by other tasks (see {@link Scheduler#runUntil(long)}) is not counted twice.
+ * It also samples the number of pending tasks (queue depth) over the time.
+ * <p>
+ * The type and origin of a task are the ones set through {@link SchedulerTask#setOrigin(Object, String)}
+ * (or {@link org.zoolu.util.Timer#setOrigin(Object, String)} for the task of a {@link VirtualTimer}) where the task or timer is created.
+ * If the type is not set, the class name (without package) of the origin, or of the task itself, is used instead.
+ * <p>
+ * The profiler is opt-in (see {@link Scheduler#setProfiler(SchedulerProfiler)}), and it must not be shared by schedulers running concurrently.
+ */
+public class SchedulerProfiler {
+	
+	/** Default number of executed tasks between two samples of the queue depth */
+	public static int DEFAULT_SAMPLE_INTERVAL=1000;
+	
+	/** Number of executed tasks between two samples of the queue depth */
+	int sample_interval;
+
+	/** Statistics per task type */
+	HashMap<String,Entry> types=new HashMap<String,Entry>();
+
+	/** Statistics per task origin */
+	IdentityHashMap<Object,Entry> origins=new IdentityHashMap<Object,Entry>();
+
+	/** Names of the classes of task origins, without package */
+	IdentityHashMap<Class<?>,String> class_names=new IdentityHashMap<Class<?>,String>();
+
+	/** Total number of executed tasks */
+	long task_count=0;
+
+	/** Total time spent for executing tasks, in nanoseconds */
+	long task_time=0;
+
+	/** Time spent by tasks executed in place by the current task */
+	long inner_time=0;
+
+	/** Maximum queue depth */
+	int max_queue_size=0;
+
+	/** Sampled scheduler times */
+	long[] sample_times=new long[1024];
+
+	/** Sampled queue depths */
+	int[] sample_sizes=new int[1024];
+
+	/** Number of samples */
+	int sample_count=0;
+
+
+
+	/** Creates a new profiler. */
+	public SchedulerProfiler() {
+		this(DEFAULT_SAMPLE_INTERVAL);
+	}
+
+	/** Creates a new profiler.
+	 * @param sample_interval number of executed tasks between two samples of the queue depth */
+	public SchedulerProfiler(int sample_interval) {
+		this.sample_interval=sample_interval;
+	}
+
+	/** Executes a task and records its statistics.
+	 * @param task the task
+	 * @param time the current scheduler time
+	 * @param queue_size the current number of pending tasks */
+	void execute(SchedulerTask task, long time, int queue_size) {
+		long outer_inner_time=inner_time;
+		inner_time=0;
+		long start=System.nanoTime();
+		task.action();
+		long elapsed=System.nanoTime()-start;
+		record(task,elapsed-inner_time,1,time,queue_size);
+		inner_time=outer_inner_time+elapsed;
+	}
+
+	/** Executes a group of tasks through a batch listener and records its statistics.
+	 * The group is accounted to the first task.
+	 * @param listener the batch listener
+	 * @param batch the tasks
+	 * @param time the current scheduler time
+	 * @param queue_size the current number of pending tasks */
+	void execute(BatchListener listener, List<SchedulerTask> batch, long time, int queue_size) {
+		long outer_inner_time=inner_time;
+		inner_time=0;
+		long start=System.nanoTime();
+		listener.onBatch(batch);
+		long elapsed=System.nanoTime()-start;
+		record(batch.get(0),elapsed-inner_time,batch.size(),time,queue_size);
+		inner_time=outer_inner_time+elapsed;
+	}
+
+	/** Records the execution of some tasks.
+	 * @param task the task
+	 * @param elapsed the wall-clock time spent, in nanoseconds
+	 * @param count the number of tasks
+	 * @param time the current scheduler time
+	 * @param queue_size the current number of pending tasks */
+	private void record(SchedulerTask task, long elapsed, int count, long time, int queue_size) {
+		Object origin=task.getOrigin();
+		String type=task.getType();
+		if (type==null) type=getClassName((origin!=null? origin : task).getClass());
+		getEntry(types,type).add(count,elapsed);
+		if (origin!=null) getEntry(origins,origin).add(count,elapsed);
+		long prev_count=task_count;
+		task_count+=count;
+		task_time+=elapsed;
+		if (queue_size>max_queue_size) max_queue_size=queue_size;
+		if (task_count/sample_interval!=prev_count/sample_interval) {
+			if (sample_count==sample_times.length) {
+				long[] times=new long[sample_count*2];
+				System.arraycopy(sample_times,0,times,0,sample_count);
+				sample_times=times;
+				int[] sizes=new int[sample_count*2];
+				System.arraycopy(sample_sizes,0,sizes,0,sample_count);
+				sample_sizes=sizes;
+			}
+			sample_times[sample_count]=time;
+			sample_sizes[sample_count]=queue_size;
+			sample_count++;
+		}
+	}
+
+	/** Gets the statistics entry for a given key.
+	 * @param map the map of entries
+	 * @param key the key
+	 * @return the entry, possibly new */
+	private static <K> Entry getEntry(Map<K,Entry> map, K key) {
+		Entry entry=map.get(key);
+		if (entry==null) {
+			entry=new Entry(key);
+			map.put(key,entry);
+		}
+		return entry;
+	}
+
+	/** Gets the name of a given class, without package.
+	 * @param c the class
+	 * @return the class name */
+	private String getClassName(Class<?> c) {
+		String name=class_names.get(c);
+		if (name==null) {
+			name=c.getName();
+			if (c.getPackage()!=null) name=name.substring(c.getPackage().getName().length()+1);
+			class_names.put(c,name);
+		}
+		return name;
+	}
+
+	/** Gets the total number of executed tasks.
+	 * @return the number of tasks */
+	public long getTaskCount() {
+		return task_count;
+	}
+
+	/** Gets the total time spent for executing tasks.
+	 * @return the time in nanoseconds */
+	public long getTaskTime() {
+		return task_time;
+	}
+
+	/** Gets the maximum queue depth.
+	 * @return the maximum number of pending tasks */
+	public int getMaximumQueueSize() {
+		return max_queue_size;
+	}
+
+	/** Clears all statistics. */
+	public void reset() {
+		types.clear();
+		origins.clear();
+		task_count=0;
+		task_time=0;
+		max_queue_size=0;
+		sample_count=0;
+	}
+
+	/** Gets a report with the hottest task types and origins.
+	 * @param top the maximum number of types and origins
+	 * @return the report */
+	public String getReport(int top) {
+		StringBuffer sb=new StringBuffer();
+		sb.append("tasks: ").append(task_count).append(", time: ").append(task_time/1000000).append(" ms, max queue size: ").append(max_queue_size).append('\n');
+		appendReport(sb,"type",types.values(),top);
+		appendReport(sb,"origin",origins.values(),top);
+		return sb.toString();
+	}
+
+	/** Appends the hottest entries to a report.
+	 * @param sb the report
+	 * @param kind the kind of entries
+	 * @param entries the entries
+	 * @param top the maximum number of entries */
+	private void appendReport(StringBuffer sb, String kind, Collection<Entry> entries, int top) {
+		List<Entry> list=sort(entries);
+		sb.append("\ntasks\ttime[ms]\t%\tavg[us]\t").append(kind).append('\n');
+		for (int i=0; i<list.size() && i<top; i++) {
+			Entry e=list.get(i);
+			sb.append(e.count).append('\t').append(e.time/1000000).append('\t');
+			sb.append(task_time>0? Math.round(e.time*1000.0/task_time)/10.0 : 0).append('\t');
+			sb.append(e.time/e.count/1000).append('\t').append(e.getName()).append('\n');
+		}
+	}
+
+	/** Writes all statistics in CSV format.
+	 * Each line contains: kind (type or origin), name, number of tasks, total time in nanoseconds.
+	 * @param out the output stream */
+	public void writeCsv(PrintStream out) {
+		out.println("kind,name,tasks,time_ns");
+		for (Entry e : sort(types.values())) out.println("type,"+csv(e.getName())+","+e.count+","+e.time);
+		for (Entry e : sort(origins.values())) out.println("origin,"+csv(e.getName())+","+e.count+","+e.time);
+	}
+
+	/** Writes the sampled queue depths in CSV format.
+	 * Each line contains: scheduler time, number of pending tasks.
+	 * @param out the output stream */
+	public void writeQueueSizeCsv(PrintStream out) {
+		out.println("time_ns,queue_size");
+		for (int i=0; i<sample_count; i++) out.println(""+sample_times[i]+","+sample_sizes[i]);
+	}
+
+	/** Sorts entries by decreasing time.
+	 * @param entries the entries
+	 * @return the sorted list */
+	private static List<Entry> sort(Collection<Entry> entries) {
+		ArrayList<Entry> list=new ArrayList<Entry>(entries);
+		Collections.sort(list,new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				return e1.time<e2.time? 1 : e1.time>e2.time? -1 : 0;
+			}
+		});
+		return list;
+	}
+
+	/** Quotes a CSV value.
+	 * @param str the value
+	 * @return the quoted value */
+	private static String csv(String str) {
+		return "\""+str.replace("\"","\"\"")+"\"";
+	}
+
+	
+	/** Statistics of a task type or origin. */
+	static class Entry {
+		Object key;
+		long count=0;
+		long time=0;
+		
+		Entry(Object key) {
+			this.key=key;
+		}
+		void add(int count, long time) {
+			this.count+=count;
+			this.time+=time;
+		}
+		String getName() {
+			if (key instanceof String) return (String)key;
+			// else
+			String str=String.valueOf(key);
+			String class_name=key.getClass().getSimpleName();
+			return str.startsWith(class_name)? str : class_name+"["+str+"]";
+		}
+	}
+
+}
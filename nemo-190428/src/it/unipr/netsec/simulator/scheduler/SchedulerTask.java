@@ -20,18 +20,27 @@
 package it.unipr.netsec.simulator.scheduler;
 
 
-import java.util.Random;
-
 
 /** A task scheduled at a given time.
+ * <p>
+ * Tasks with the same time are executed in the same order they have been added to the {@link Scheduler}.
  */
 public abstract class SchedulerTask implements Comparable<SchedulerTask> {
 	
 	/** Time */ 
 	protected long time=0;
 
-	/** Random generator */ 
-	static private Random RAND=null;
+	/** Sequence number, assigned by the scheduler when the task is added */ 
+	long sqn=-1;
+
+	/** Position within a {@link HeapTaskQueue}, or -1 if not queued */ 
+	int heap_index=-1;
+
+	/** Origin of the task (e.g. the node, link, or protocol layer), used for profiling */ 
+	Object origin=null;
+
+	/** Type of the task, used for profiling */ 
+	String type=null;
 
 
 
@@ -62,13 +71,55 @@ public abstract class SchedulerTask implements Comparable<SchedulerTask> {
 	}
 
 
+	/** Gets the sequence number.
+	 * @return the sequence number assigned by the scheduler, or -1 if the task has not been scheduled yet */
+	public long getSequenceNumber() {
+		return sqn;
+	}
+
+
+	/** Sets the origin and type of this task.
+	 * They are used only for profiling (see {@link SchedulerProfiler}).
+	 * @param origin the object that originated the task (e.g. a node, link, or protocol layer)
+	 * @param type the type of the task, or <i>null</i> */
+	public void setOrigin(Object origin, String type) {
+		this.origin=origin;
+		this.type=type;
+	}
+
+
+	/** Gets the origin of this task.
+	 * @return the object that originated the task, or <i>null</i> if not set */
+	public Object getOrigin() {
+		return origin;
+	}
+
+
+	/** Gets the type of this task.
+	 * @return the type of the task, or <i>null</i> if not set */
+	public String getType() {
+		return type;
+	}
+
+
+	/** Gets the listener that executes this task within a batch of tasks with the same time.
+	 * By default there is no batch listener, and the task is executed by calling the method {@link #action()}.
+	 * @return the batch listener, or <i>null</i> */
+	public BatchListener getBatchListener() {
+		return null;
+	}
+
+
 	/** The action associate to this task. */
 	public abstract void action();
 
 
-
-	/** Task id used by method {@link #compareTo(Object)} in case of identical task time and hash */
-	private long id=-1;
+	/** Whether this task precedes a given task.
+	 * @param task the other task
+	 * @return <i>true</i> if this task has a lower time, or the same time and a lower sequence number */
+	final boolean isBefore(SchedulerTask task) {
+		return time<task.time || (time==task.time && sqn<task.sqn);
+	}
 
 
 	@Override
@@ -76,28 +127,11 @@ public abstract class SchedulerTask implements Comparable<SchedulerTask> {
 		// compare the two objects
 		if (this==task) return 0;
 		// else compare the task time (long)
-		long long_diff=time-task.time;
-		if (long_diff<0) return -1;
-		if (long_diff>0) return 1;
-		// else try to compare the object hash value (int)
-		int int_diff=hashCode()-task.hashCode();
-		if (int_diff!=0) return int_diff;
-		// else assign an id to the two tasks
-		synchronized (this) {
-			if (id==-1) {
-				if (RAND==null) RAND=new Random();
-				id=RAND.nextLong();
-			}
-		}
-		synchronized (task) {
-			if (task.id==-1) {
-				if (RAND==null) RAND=new Random();
-				task.id=RAND.nextLong();
-			}
-		}
-		long_diff=id-task.id;
-		if (long_diff<0) return -1;
-		if (long_diff>0) return 1;
+		if (time<task.time) return -1;
+		if (time>task.time) return 1;
+		// else compare the sequence numbers
+		if (sqn<task.sqn) return -1;
+		if (sqn>task.sqn) return 1;
 		// else
 		return 0;
 	}
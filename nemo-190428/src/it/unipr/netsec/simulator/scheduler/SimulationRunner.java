@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.zoolu.util.Clock;
+
+
+
+/** Runs independent simulations concurrently on a shared pool of threads.
+ * <p>
+ * Each simulation is executed with its own clock, set as context clock (see {@link Clock#setContextClock(Clock)}),
+ * so that all nodes, links, and layers created by the simulation use that clock.
+ * It can be used for running parameter sweeps within the same JVM.
+ */
+public class SimulationRunner {
+	
+	/** Thread pool */
+	ExecutorService executor;
+
+
+	/** Creates a new runner.
+	 * @param threads number of threads, that is the maximum number of simulations running at the same time */
+	public SimulationRunner(int threads) {
+		executor=Executors.newFixedThreadPool(threads);
+	}
+
+	/** Submits a new simulation.
+	 * @param clock the clock of the simulation (e.g. a single-thread {@link VirtualClock})
+	 * @param simulation the simulation, that creates the network and runs it
+	 * @return the result of the simulation, available when the simulation ends */
+	public <T> Future<T> submit(final Clock clock, final Callable<T> simulation) {
+		return executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				Clock.setContextClock(clock);
+				try {
+					return simulation.call();
+				}
+				finally {
+					Clock.setContextClock(null);
+				}
+			}
+		});
+	}
+
+	/** Stops the runner.
+	 * Simulations that have been already submitted are completed. */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+/** Queue of scheduled tasks, ordered by task time.
+ * Tasks with the same time are ordered by their sequence number, that is in the same order they have been added to the {@link Scheduler}.
+ * <p>
+ * Implementations are not required to be thread-safe; the {@link Scheduler} provides the needed synchronization.
+ */
+public interface TaskQueue {
+
+	/** Adds a task.
+	 * @param task the task to be added */
+	public void add(SchedulerTask task);
+
+	/** Gets the first task, without removing it.
+	 * @return the task with the lowest time, or <i>null</i> if the queue is empty */
+	public SchedulerTask peek();
+
+	/** Gets and removes the first task.
+	 * @return the task with the lowest time, or <i>null</i> if the queue is empty */
+	public SchedulerTask poll();
+
+	/** Removes a given task.
+	 * @param task the task to be removed
+	 * @return <i>true</i> if the task was in the queue */
+	public boolean remove(SchedulerTask task);
+
+	/** Gets the number of queued tasks.
+	 * @return the number of tasks */
+	public int size();
+
+	/** Removes all tasks. */
+	public void clear();
+
+}
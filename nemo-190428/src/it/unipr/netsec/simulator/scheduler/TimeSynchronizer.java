@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+/** Synchronizes the {@link Scheduler} time with an external time (e.g. the real time).
+ * <p>
+ * It is used by the scheduler for pacing the execution of the tasks.
+ * All times are in nanoseconds.
+ */
+public interface TimeSynchronizer {
+
+	/** Gets the scheduler time that corresponds to the current external time.
+	 * @param current_time the current scheduler time
+	 * @return the current time, not less than <i>current_time</i> */
+	public long currentTime(long current_time);
+
+	/** Gets how long the scheduler has to wait before executing a task.
+	 * @param current_time the current scheduler time
+	 * @param task_time the time of the task
+	 * @return the external time to be waited, in nanoseconds; zero or negative value if the task can be executed now */
+	public long waitTime(long current_time, long task_time);
+
+}
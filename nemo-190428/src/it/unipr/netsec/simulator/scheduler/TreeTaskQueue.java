@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package it.unipr.netsec.simulator.scheduler;
+
+
+
+import java.util.TreeSet;
+
+
+
+/** Task queue based on a {@link TreeSet}.
+ * <p>
+ * This was the original implementation used by the {@link Scheduler}; it is kept for comparison.
+ */
+public class TreeTaskQueue implements TaskQueue {
+
+	/** Tasks */
+	TreeSet<SchedulerTask> tasks=new TreeSet<SchedulerTask>();
+
+
+	/** Creates a new queue. */
+	public TreeTaskQueue() {
+	}
+
+	@Override
+	public void add(SchedulerTask task) {
+		if (!tasks.add(task)) throw new RuntimeException("TreeTaskQueue: failed in adding a new task");
+	}
+
+	@Override
+	public SchedulerTask peek() {
+		return tasks.isEmpty()? null : tasks.first();
+	}
+
+	@Override
+	public SchedulerTask poll() {
+		return tasks.pollFirst();
+	}
+
+	@Override
+	public boolean remove(SchedulerTask task) {
+		return tasks.remove(task);
+	}
+
+	@Override
+	public int size() {
+		return tasks.size();
+	}
+
+	@Override
+	public void clear() {
+		tasks.clear();
+	}
+
+}
@@ -29,6 +29,16 @@ import org.zoolu.util.TimerListener;
 
 /** A virtual clock.
  * It provides methods for getting the current time and for creating timers.
+ * <p>
+ * If the underlying scheduler is in single-thread mode, timers fire only when the
+ * virtual time is explicitly advanced through {@link #runUntil(long)} or {@link #runUntilIdle()}
+ * (or through {@link #sleep(long, int)}), in the caller thread.
+ * <p>
+ * When {@link #sleep(long, int)} or {@link #waitUntil(Object, Clock.Condition)} are called by a timer callback,
+ * the following timers are executed in place, so that the thread executing the timers is never blocked.
+ * The timer callback is resumed only when the in-place execution returns, hence waits must be properly nested:
+ * a timer callback that sleeps while another callback is sleeping cannot sleep beyond the wake-up time of the latter
+ * (in this case {@link #sleep(long, int)} throws an exception), and a wait for a condition returns, at the latest, at that wake-up time.
  */
 public class VirtualClock extends Clock {
 	
@@ -54,6 +64,38 @@ public class VirtualClock extends Clock {
 		this.scheduler=scheduler;
 	}
 
+	/** Creates a new virtual clock.
+	 * @param single_thread whether timers are executed by the caller thread (see {@link Scheduler#setSingleThread(boolean)}) */
+	public VirtualClock(boolean single_thread) {
+		scheduler=new Scheduler();
+		scheduler.setSingleThread(single_thread);
+	}
+
+	/** Gets the scheduler.
+	 * @return the scheduler of this virtual clock */
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+
+	/** Whether it is in single-thread mode.
+	 * @return <i>true</i> if timers are executed by the caller thread */
+	public boolean isSingleThread() {
+		return scheduler.isSingleThread();
+	}
+
+	/** Runs, in the caller thread, all timers that expire before a given time.
+	 * It can be used only in single-thread mode.
+	 * @param nanotime the virtual time to be reached, in nanoseconds */
+	public void runUntil(long nanotime) {
+		scheduler.runUntil(nanotime);
+	}
+
+	/** Runs, in the caller thread, all timers until there are no more timers.
+	 * It can be used only in single-thread mode. */
+	public void runUntilIdle() {
+		scheduler.runUntilIdle();
+	}
+
 	/** Pauses/restarts the clock. */
 	public void pause(boolean pause) {
 		scheduler.pause(pause);
@@ -78,18 +120,38 @@ public class VirtualClock extends Clock {
 	public void sleep(long millisecs, int nanosecs) {
 		if (millisecs*1000000+nanosecs<=0 || nanosecs<0) return;
 		// else
+		if (scheduler.isSingleThread() || scheduler.isTaskThread()) {
+			// advance the virtual time, executing the timers in this thread
+			scheduler.runUntil(scheduler.currentTime()+millisecs*1000000+nanosecs);
+			return;
+		}
+		// else
+		final boolean[] expired=new boolean[]{false};
 		TimerListener timer_listener=new TimerListener() {
 			@Override
 			public void onTimeout(Timer t) {
+				expired[0]=true;
 				t.notifyAll();
 			}		
 		};
 		Timer t=newTimer(millisecs,nanosecs,timer_listener);
-		t.start();
 		synchronized (t) {
-			try { t.wait(); } catch (InterruptedException e) {}
+			t.start();
+			try { while (!expired[0]) t.wait(); } catch (InterruptedException e) {}
 		}
-		
+	}
+
+	/** Waits until a given condition is satisfied.
+	 * If the caller is the thread that executes the timers (or the scheduler is in single-thread mode),
+	 * the timers are executed in place while waiting, instead of blocking the thread;
+	 * in this case the method returns also when there are no more timers, even if the condition is not satisfied.
+	 * @param lock the object used for waiting
+	 * @param condition the condition
+	 * @throws InterruptedException if the thread is interrupted while waiting */
+	@Override
+	public void waitUntil(Object lock, Condition condition) throws InterruptedException {
+		if (scheduler.isSingleThread() || scheduler.isTaskThread()) scheduler.runUntil(condition);
+		else super.waitUntil(lock,condition);
 	}
 
 }
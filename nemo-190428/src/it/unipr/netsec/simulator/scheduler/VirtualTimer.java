@@ -29,6 +29,9 @@ import org.zoolu.util.TimerListener;
 /** Timer that refers to a virtual time according to a given scheduler.
  * <p>
  * The scheduler is supposed to work in nanoseconds.
+ * <p>
+ * When the timer is halted, the corresponding task is removed from the scheduler.
+ * The same scheduler task is reused when the timer is restarted.
  */
 public class VirtualTimer extends Timer {
 	
@@ -38,6 +41,12 @@ public class VirtualTimer extends Timer {
 	/** Start time */
 	long start_time=0;
 
+	/** Scheduler task */
+	SchedulerTask task=null;
+
+	/** Whether the task has been added to the scheduler and has not been executed yet */
+	boolean task_pending=false;
+
 
 
 	/** Creates a new timer.
@@ -65,22 +74,51 @@ public class VirtualTimer extends Timer {
 	/** Starts the timer. */
 	@Override
 	public synchronized void start() {
-		if (time_nanosecs<0) return;
+		if (time_nanosecs<0 || is_running) return;
 		// else
 		start_time=scheduler.currentTime();
 		is_running=true;
-		SchedulerTask task=new SchedulerTask() {
-			public void action() { timeout(); }
+		if (task==null) task=new SchedulerTask() {
+			public void action() { timeout(this); }
+			public Object getOrigin() { return VirtualTimer.this.origin!=null? VirtualTimer.this.origin : listener; }
+			public String getType() { return VirtualTimer.this.type; }
 		};
+		task_pending=true;
 		scheduler.add(task,time_nanosecs);
 	}
 
 	
-	/** When the timer expires. */
-	private synchronized void timeout() {
-		if (is_running && listener!=null) listener.onTimeout(this);
-		is_running=false;
-		listener=null;
+	/** Starts the timer.
+	 * The daemon mode is ignored. */
+	@Override
+	public void start(boolean daemon_mode) {
+		start();
+	}
+
+	
+	@Override
+	public synchronized void halt() {
+		if (is_running) {
+			is_running=false;
+			if (task_pending) {
+				task_pending=false;
+				// if the task is not in the scheduler, it is going to be executed: use a new task the next time
+				if (!scheduler.remove(task)) task=null;
+			}
+		}
+	}
+
+	
+	/** When the timer expires.
+	 * @param t the expired task; if it is not the current task (the timer has been halted or restarted meanwhile), it is ignored */
+	private synchronized void timeout(SchedulerTask t) {
+		if (t!=task || !task_pending) return;
+		// else
+		task_pending=false;
+		if (is_running) {
+			is_running=false;
+			if (listener!=null) listener.onTimeout(this);
+		}
 	}
 
 }
@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2018 Luca Veltri, University of Parma
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND. IN NO EVENT
+ * SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.zoolu.util;
+
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/** Pool of byte arrays, organized in size classes.
+  * <p>
+  * Arrays are borrowed through {@link #get(int)} and returned through {@link #release(byte[])}.
+  * The size of a pooled array is the smallest power of two (not less than the minimum size) that is not smaller
+  * than the requested length, so the returned array may be longer than requested.
+  * Requests larger than the maximum size are served with new arrays that are not pooled.
+  * <p>
+  * Each thread has a small cache per size class that is accessed without locking;
+  * when a cache is empty it is refilled from a global pool, and when it is full half of it is moved to the global pool.
+  * Arrays that exceed the capacity of the global pool are left to the garbage collector.
+  * <p>
+  * An array must not be used after it has been released, and must be released at most once.
+  * In {@link #DEBUG debug mode} the pool keeps track of all borrowed arrays, and reports arrays that are
+  * garbage collected without having been released (leaks), together with the stack trace of the corresponding {@link #get(int)}.
+  */
+public class ByteArrayPool {
+	
+	/** Debug mode, for detecting leaks */
+	public static boolean DEBUG=false;
+
+	/** Prints a warning message. */
+	private void warning(String str) {
+		SystemUtils.log(LoggerLevel.WARNING,getClass(),str);
+	}
+
+	/** Default minimum array size */
+	public static int DEFAULT_MIN_SIZE=64;
+
+	/** Default maximum array size */
+	public static int DEFAULT_MAX_SIZE=65536;
+
+	/** Default number of arrays per size class in each thread cache */
+	public static int DEFAULT_LOCAL_CACHE_SIZE=32;
+
+	/** Default number of arrays per size class in the global pool */
+	public static int DEFAULT_GLOBAL_POOL_SIZE=1024;
+
+	/** Default pool */
+	private static ByteArrayPool DEFAULT_POOL=null;
+
+	/** Gets the default pool.
+	 * @return the pool shared by the whole JVM */
+	public static synchronized ByteArrayPool getDefaultPool() {
+		if (DEFAULT_POOL==null) DEFAULT_POOL=new ByteArrayPool(DEFAULT_MIN_SIZE,DEFAULT_MAX_SIZE,DEFAULT_LOCAL_CACHE_SIZE,DEFAULT_GLOBAL_POOL_SIZE);
+		return DEFAULT_POOL;
+	}
+
+	/** Sets the default pool.
+	 * @param pool the new default pool */
+	public static synchronized void setDefaultPool(ByteArrayPool pool) {
+		DEFAULT_POOL=pool;
+	}
+
+	
+	/** Minimum array size, as power of two */
+	final int min_shift;
+
+	/** Number of size classes */
+	final int num_classes;
+
+	/** Number of arrays per size class in each thread cache */
+	final int local_cache_size;
+
+	/** Global pool, one stack per size class */
+	final Stack[] global_pool;
+
+	/** Thread caches, one stack per size class */
+	final ThreadLocal<Stack[]> local_caches=new ThreadLocal<Stack[]>() {
+		@Override
+		protected Stack[] initialValue() {
+			Stack[] local_cache=new Stack[num_classes];
+			for (int i=0; i<num_classes; i++) local_cache[i]=new Stack(local_cache_size);
+			return local_cache;
+		}
+	};
+
+	/** Number of arrays taken from a thread cache */
+	LongAdder local_hit_count=new LongAdder();
+
+	/** Number of arrays taken from the global pool */
+	LongAdder global_hit_count=new LongAdder();
+
+	/** Number of arrays that have been allocated */
+	LongAdder miss_count=new LongAdder();
+
+	/** Number of released arrays */
+	LongAdder release_count=new LongAdder();
+
+	/** Number of released arrays that have been discarded, since not poolable or since the global pool was full */
+	LongAdder discard_count=new LongAdder();
+
+	/** Borrowed arrays and the corresponding leases (debug mode) */
+	final Map<byte[],Lease> leases=new WeakHashMap<byte[],Lease>();
+
+	/** Leases that are still pending (debug mode) */
+	final Set<Lease> pending_leases=new HashSet<Lease>();
+
+	/** Queue of leases whose arrays have been garbage collected (debug mode) */
+	final ReferenceQueue<byte[]> lease_queue=new ReferenceQueue<byte[]>();
+
+	/** Number of detected leaks */
+	long leak_count=0;
+
+	
+	/** Creates a new pool.
+	  * @param min_size minimum array size; it is rounded up to a power of two
+	  * @param max_size maximum array size; it is rounded up to a power of two
+	  * @param local_cache_size number of arrays per size class in each thread cache
+	  * @param global_pool_size number of arrays per size class in the global pool */
+	public ByteArrayPool(int min_size, int max_size, int local_cache_size, int global_pool_size) {
+		if (min_size<=0 || max_size<min_size || max_size>(1<<30)) throw new RuntimeException("ByteArrayPool: invalid size range: "+min_size+"-"+max_size);
+		if (local_cache_size<=0 || global_pool_size<0) throw new RuntimeException("ByteArrayPool: invalid capacity: "+local_cache_size+"/"+global_pool_size);
+		// else
+		min_shift=shiftOf(min_size);
+		num_classes=shiftOf(max_size)-min_shift+1;
+		this.local_cache_size=local_cache_size;
+		global_pool=new Stack[num_classes];
+		for (int i=0; i<num_classes; i++) global_pool[i]=new Stack(global_pool_size);
+	}
+
+	
+	/** Gets the size of the arrays of a given size class.
+	  * @param size_class the size class
+	  * @return the array size */
+	private int sizeOf(int size_class) {
+		return 1<<(min_shift+size_class);
+	}
+
+	/** Gets the size class for a given length.
+	  * @param len the requested length
+	  * @return the size class, or -1 if the length exceeds the maximum size */
+	private int sizeClassOf(int len) {
+		int size_class=shiftOf(len)-min_shift;
+		if (size_class<0) return 0;
+		if (size_class>=num_classes) return -1;
+		// else
+		return size_class;
+	}
+
+	/** Gets the smallest power of two not smaller than a given value.
+	  * @param n the value
+	  * @return the exponent */
+	private static int shiftOf(int n) {
+		return n<=1? 0 : 32-Integer.numberOfLeadingZeros(n-1);
+	}
+
+	
+	/** Borrows an array.
+	  * @param len the minimum length of the array
+	  * @return an array of at least <i>len</i> bytes; its content is undefined */
+	public byte[] get(int len) {
+		if (len<0) throw new RuntimeException("ByteArrayPool: invalid length: "+len);
+		// else
+		int size_class=sizeClassOf(len);
+		byte[] buf;
+		if (size_class<0) {
+			miss_count.increment();
+			buf=new byte[len];
+		}
+		else {
+			buf=local_caches.get()[size_class].pop();
+			if (buf!=null) local_hit_count.increment();
+			else {
+				buf=refill(size_class);
+				if (buf!=null) global_hit_count.increment();
+				else {
+					miss_count.increment();
+					buf=new byte[sizeOf(size_class)];
+				}
+			}
+		}
+		if (DEBUG) lease(buf);
+		return buf;
+	}
+
+	/** Returns an array to the pool.
+	  * The array must not be used afterwards.
+	  * @param buf the array, previously obtained through {@link #get(int)}; if <i>null</i>, nothing is done */
+	public void release(byte[] buf) {
+		if (buf==null) return;
+		// else
+		release_count.increment();
+		if (DEBUG && !unlease(buf)) {
+			discard_count.increment();
+			return;
+		}
+		// else
+		int size_class=sizeClassOf(buf.length);
+		if (size_class<0 || buf.length!=sizeOf(size_class)) {
+			discard_count.increment();
+			return;
+		}
+		// else
+		Stack local_cache=local_caches.get()[size_class];
+		if (!local_cache.push(buf)) {
+			if (!spill(size_class,local_cache,buf)) discard_count.increment();
+		}
+	}
+
+	/** Moves some arrays from the global pool to the cache of the current thread.
+	  * @param size_class the size class
+	  * @return an array, or <i>null</i> if the global pool is empty */
+	private byte[] refill(int size_class) {
+		Stack global_stack=global_pool[size_class];
+		Stack local_cache=local_caches.get()[size_class];
+		synchronized (global_stack) {
+			byte[] buf=global_stack.pop();
+			if (buf!=null) {
+				for (int n=local_cache_size/2; n>0 && global_stack.size()>0; n--) local_cache.push(global_stack.pop());
+			}
+			return buf;
+		}
+	}
+
+	/** Moves half of the cache of the current thread to the global pool.
+	  * @param size_class the size class
+	  * @param local_cache the (full) cache of the current thread
+	  * @param buf the array being released
+	  * @return <i>true</i> if the released array has been pooled */
+	private boolean spill(int size_class, Stack local_cache, byte[] buf) {
+		Stack global_stack=global_pool[size_class];
+		synchronized (global_stack) {
+			for (int n=local_cache_size/2; n>0 && global_stack.size()<global_stack.capacity(); n--) global_stack.push(local_cache.pop());
+		}
+		return local_cache.push(buf);
+	}
+
+	
+	/** Takes note of a borrowed array (debug mode).
+	  * @param buf the array */
+	private void lease(byte[] buf) {
+		Lease lease=new Lease(buf,lease_queue);
+		synchronized (leases) {
+			checkLeaks();
+			leases.put(buf,lease);
+			pending_leases.add(lease);
+		}
+	}
+
+	/** Takes note of a released array (debug mode).
+	  * @param buf the array
+	  * @return <i>true</i> if the array was borrowed from this pool and not yet released */
+	private boolean unlease(byte[] buf) {
+		synchronized (leases) {
+			Lease lease=leases.remove(buf);
+			if (lease==null) {
+				warning("release(): array of "+buf.length+"B not borrowed from this pool or already released: discarded");
+				return false;
+			}
+			// else
+			pending_leases.remove(lease);
+			lease.clear();
+			return true;
+		}
+	}
+
+	/** Checks for borrowed arrays that have been garbage collected without being released.
+	  * A warning is logged for each leak that is found. It works only in debug mode.
+	  * @return the total number of leaks detected so far */
+	public long checkLeaks() {
+		synchronized (leases) {
+			Lease lease;
+			while ((lease=(Lease)lease_queue.poll())!=null) {
+				if (pending_leases.remove(lease)) {
+					leak_count++;
+					StringBuffer sb=new StringBuffer();
+					sb.append("leak: array of ").append(lease.size).append("B garbage collected without being released; borrowed at:");
+					for (StackTraceElement e : lease.trace.getStackTrace()) sb.append("\n\tat ").append(e);
+					warning(sb.toString());
+				}
+			}
+			return leak_count;
+		}
+	}
+
+	/** Gets the number of arrays that are currently borrowed. It works only in debug mode.
+	  * @return the number of arrays that have been borrowed and not yet released */
+	public int getBorrowedCount() {
+		synchronized (leases) {
+			return leases.size();
+		}
+	}
+
+	
+	/** Gets the number of requests served from the cache of the requesting thread.
+	  * @return the number of local hits */
+	public long getLocalHitCount() {
+		return local_hit_count.sum();
+	}
+
+	/** Gets the number of requests served from the global pool.
+	  * @return the number of global hits */
+	public long getGlobalHitCount() {
+		return global_hit_count.sum();
+	}
+
+	/** Gets the number of requests served from the pool.
+	  * @return the number of hits (local and global) */
+	public long getHitCount() {
+		return local_hit_count.sum()+global_hit_count.sum();
+	}
+
+	/** Gets the number of requests served by allocating a new array.
+	  * @return the number of misses */
+	public long getMissCount() {
+		return miss_count.sum();
+	}
+
+	/** Gets the number of released arrays.
+	  * @return the number of releases */
+	public long getReleaseCount() {
+		return release_count.sum();
+	}
+
+	/** Gets the number of released arrays that have not been pooled.
+	  * @return the number of discarded arrays */
+	public long getDiscardCount() {
+		return discard_count.sum();
+	}
+
+	/** Gets the hit ratio.
+	  * @return the fraction of requests served from the pool */
+	public double getHitRatio() {
+		long hits=getHitCount();
+		long total=hits+getMissCount();
+		return total>0? (double)hits/total : 0;
+	}
+
+	/** Resets all statistics. */
+	public void resetStatistics() {
+		local_hit_count.reset();
+		global_hit_count.reset();
+		miss_count.reset();
+		release_count.reset();
+		discard_count.reset();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName()+"["+sizeOf(0)+"-"+sizeOf(num_classes-1)+"B: local-hits="+getLocalHitCount()+", global-hits="+getGlobalHitCount()+", misses="+getMissCount()+", releases="+getReleaseCount()+", discarded="+getDiscardCount()+"]";
+	}
+
+
+	/** Bounded stack of arrays.
+	  */
+	static class Stack {
+		
+		/** Arrays */
+		byte[][] arrays;
+		
+		/** Number of arrays */
+		int count=0;
+		
+		/** Creates a new stack.
+		  * @param capacity maximum number of arrays */
+		Stack(int capacity) {
+			arrays=new byte[capacity][];
+		}
+		
+		/** Gets the maximum number of arrays.
+		  * @return the capacity */
+		int capacity() {
+			return arrays.length;
+		}
+		
+		/** Gets the number of arrays.
+		  * @return the size */
+		int size() {
+			return count;
+		}
+		
+		/** Adds an array.
+		  * @param buf the array
+		  * @return <i>true</i> if added, <i>false</i> if the stack is full */
+		boolean push(byte[] buf) {
+			if (count==arrays.length) return false;
+			// else
+			arrays[count++]=buf;
+			return true;
+		}
+		
+		/** Removes the last added array.
+		  * @return the array, or <i>null</i> if the stack is empty */
+		byte[] pop() {
+			if (count==0) return null;
+			// else
+			byte[] buf=arrays[--count];
+			arrays[count]=null;
+			return buf;
+		}
+	}
+
+
+	/** Weak reference to a borrowed array, with the stack trace of the corresponding request (debug mode).
+	  */
+	static class Lease extends WeakReference<byte[]> {
+		
+		/** Array size */
+		int size;
+		
+		/** Stack trace of the request */
+		Throwable trace=new Throwable();
+		
+		/** Creates a new lease.
+		  * @param buf the borrowed array
+		  * @param queue the queue where the lease is put when the array is garbage collected */
+		Lease(byte[] buf, ReferenceQueue<byte[]> queue) {
+			super(buf,queue);
+			size=buf.length;
+		}
+	}
+
+}
@@ -30,12 +30,19 @@ import org.zoolu.util.TimerListener;
  * <p>
  * This class has also a default clock that can be handled through the corresponding
  * two <i>static</i> methods {@link #setDefaultClock(Clock)} and {@link #getDefaultClock()}.
+ * <p>
+ * The default clock can be also overridden within a given context through the method {@link #setContextClock(Clock)}.
+ * The context clock is seen by the current thread and by all threads it creates afterwards (e.g. the threads of a virtual clock),
+ * so that independent simulations, each with its own clock, can run concurrently in the same JVM.
  */
 public class Clock {
 	
 	/** Default clock */
 	private static Clock DEFAULT_CLOCK=new Clock();
 
+	/** Clock of the current context, if any */
+	private static final InheritableThreadLocal<Clock> CONTEXT_CLOCK=new InheritableThreadLocal<Clock>();
+
 	/** Sets the default clock.
 	 * @param clock the new default clock */
 	public static void setDefaultClock(Clock clock)  {
@@ -43,9 +50,18 @@ public class Clock {
 	}
 
 	/** Gets the default clock.
-	 * @return the default clock */
+	 * @return the clock of the current context, if set; otherwise the default clock */
 	public static Clock getDefaultClock()  {
-		return DEFAULT_CLOCK;
+		Clock clock=CONTEXT_CLOCK.get();
+		return clock!=null? clock : DEFAULT_CLOCK;
+	}
+
+	/** Sets the clock of the current context.
+	 * It is used in place of the default clock by the current thread and by all threads that it creates afterwards.
+	 * @param clock the clock of the current context; if <i>null</i>, the default clock is used again */
+	public static void setContextClock(Clock clock)  {
+		if (clock!=null) CONTEXT_CLOCK.set(clock);
+		else CONTEXT_CLOCK.remove();
 	}
 
 	
@@ -83,5 +99,28 @@ public class Clock {
 		try { Thread.sleep(millisecs,0); } catch (Exception e) {};
 	}
 
+	/** Waits until a given condition is satisfied.
+	  * The caller must own the monitor of the given lock, and any change of the condition must be
+	  * followed by a call to <code>lock.notifyAll()</code>.
+	  * <p>
+	  * This implementation simply waits on the lock. Clocks that execute timers within their own threads
+	  * may override this method in order to keep on executing timers, instead of blocking the caller, when the caller is one of such threads.
+	  * @param lock the object used for waiting
+	  * @param condition the condition
+	  * @throws InterruptedException if the thread is interrupted while waiting */
+	public void waitUntil(Object lock, Condition condition) throws InterruptedException {
+		while (!condition.isSatisfied()) lock.wait();
+	}
+	
+	
+	/** Condition a thread may wait for.
+	  */
+	public static interface Condition {
+		
+		/** Whether the condition is satisfied.
+		  * @return <i>true</i> if satisfied */
+		public boolean isSatisfied();
+	}
+
 
 }
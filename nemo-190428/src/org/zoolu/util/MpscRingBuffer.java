@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018 Luca Veltri, University of Parma
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND. IN NO EVENT
+ * SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.zoolu.util;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/** Bounded multi-producer single-consumer (MPSC) queue, based on a ring buffer.
+  * <p>
+  * Elements can be added concurrently by many threads without locking ({@link #offer(Object)}),
+  * while they must be removed by only one thread at a time ({@link #poll()}).
+  * Both operations are O(1).
+  */
+public class MpscRingBuffer<E> {
+	
+	/** Slots */
+	final AtomicReferenceArray<E> slots;
+
+	/** Mask for obtaining the slot index from a position */
+	final int mask;
+
+	/** Position of the next element to be added */
+	final AtomicLong tail=new AtomicLong(0);
+
+	/** Position of the next element to be removed */
+	volatile long head=0;
+
+
+	/** Creates a new queue.
+	  * @param capacity the maximum number of elements; it is rounded up to a power of two */
+	public MpscRingBuffer(int capacity) {
+		if (capacity<=0 || capacity>(1<<30)) throw new RuntimeException("MpscRingBuffer: invalid capacity: "+capacity);
+		// else
+		int size=1;
+		while (size<capacity) size<<=1;
+		slots=new AtomicReferenceArray<E>(size);
+		mask=size-1;
+	}
+
+	
+	/** Gets the capacity.
+	  * @return the maximum number of elements */
+	public int capacity() {
+		return slots.length();
+	}
+
+	
+	/** Gets the number of elements.
+	  * @return the current number of elements */
+	public int size() {
+		return (int)(tail.get()-head);
+	}
+
+	
+	/** Adds an element.
+	  * It can be called concurrently by many threads.
+	  * @param e the element, not <i>null</i>
+	  * @return <i>true</i> if the element has been added, <i>false</i> if the queue is full */
+	public boolean offer(E e) {
+		if (e==null) throw new NullPointerException();
+		// else
+		long t;
+		do {
+			t=tail.get();
+			if (t-head>=slots.length()) return false;
+		}
+		while (!tail.compareAndSet(t,t+1));
+		slots.lazySet((int)t&mask,e);
+		return true;
+	}
+
+	
+	/** Gets the first element, without removing it.
+	  * It must be called only by the consumer thread.
+	  * @return the first element, or <i>null</i> if the queue is empty */
+	public E peek() {
+		long h=head;
+		if (h==tail.get()) return null;
+		// else
+		return waitForSlot((int)h&mask);
+	}
+
+	
+	/** Gets and removes the first element.
+	  * It must be called only by the consumer thread.
+	  * @return the first element, or <i>null</i> if the queue is empty */
+	public E poll() {
+		long h=head;
+		if (h==tail.get()) return null;
+		// else
+		int i=(int)h&mask;
+		E e=waitForSlot(i);
+		slots.lazySet(i,null);
+		head=h+1;
+		return e;
+	}
+
+	
+	/** Waits until a slot that has been already reserved by a producer is filled.
+	  * @param i the slot index
+	  * @return the element */
+	private E waitForSlot(int i) {
+		E e;
+		while ((e=slots.get(i))==null) Thread.yield();
+		return e;
+	}
+
+}
@@ -27,6 +27,10 @@ import java.util.TimerTask;
 /** A Timer is a simple object that fires the {@link TimerListener#onTimeout(Timer)}
   * method when the time expires.
   * Timer has to be explicitly started, and can be halted before it expires.
+  * A timer can be also restarted (see {@link #restart(long, int)}), so that the same timer object can be reused many times.
+  * <p>
+  * The timeout callback is fired while holding the lock of the timer object; a timeout of an earlier start is never fired
+  * after the timer has been halted or restarted. Subclasses must preserve this behavior.
   * <p>
   * A timer may run is 'daemon' mode or 'non-daemon' mode.
   * <br>
@@ -43,6 +47,12 @@ public class Timer {
 
 	/** Maximum number of attempts to schedule the task */
 	static final int MAX_ATTEPTS=2;
+
+	/** Number of canceled tasks after which the inner schedulers are purged */
+	public static int PURGE_THRESHOLD=1000;
+
+	/** Number of canceled tasks since the last purge */
+	static int canceled_tasks=0;
 	
 	// Non-daemon scheduled tasks:
 
@@ -63,7 +73,7 @@ public class Timer {
 
 	
 	/** Whether running in 'daemon' mode */
-	boolean daemon_mode;
+	protected boolean daemon_mode=DEFAULT_DAEMON_MODE;
 
 	/** Start time in time_nanosecs */
 	long start_time=0;
@@ -76,6 +86,15 @@ public class Timer {
 
 	/** Timer listener */
 	protected TimerListener listener;
+
+	/** Inner task currently scheduled */
+	TimerTask inner_task=null;
+
+	/** Origin of this timer (the object that created it), used only for profiling */
+	protected Object origin=null;
+
+	/** Type of this timer, used only for profiling */
+	protected String type=null;
 	  
 
 	/** Creates a new timer.
@@ -90,6 +109,30 @@ public class Timer {
 	}  
 
 	
+	/** Sets the origin and type of this timer.
+	  * They don't affect the timer behavior, and are only reported by profilers (e.g. the one of a virtual time scheduler).
+	  * @param origin the object that created this timer (e.g. a link, an interface, or a protocol layer)
+	  * @param type the type of this timer (e.g. "transmission", or "retransmission"), or <i>null</i> */
+	public void setOrigin(Object origin, String type) {
+		this.origin=origin;
+		this.type=type;
+	}
+
+	
+	/** Gets the origin of this timer.
+	  * @return the object that created this timer, if set; otherwise <i>null</i> */
+	public Object getOrigin() {
+		return origin;
+	}
+
+	
+	/** Gets the type of this timer.
+	  * @return the type, if set; otherwise <i>null</i> */
+	public String getType() {
+		return type;
+	}
+
+	
 	/** Gets the initial expiration time in milliseconds.
 	  * @return the expiration time in milliseconds */
 	public long getTimeMillisecs() {
@@ -141,18 +184,31 @@ public class Timer {
 		start_time=System.nanoTime();
 		is_running=true;
 		if (time_nanosecs>0) {
-			TimerTask task=new TimerTask() {
-				public void run() { processInnerTimeout(); }   
+			inner_task=new TimerTask() {
+				public void run() { processInnerTimeout(this); }   
 			};
-			scheduleTask(task,time_nanosecs,daemon_mode);
+			scheduleTask(inner_task,time_nanosecs,daemon_mode);
 		}
 		else {
 			// fire now!			
-			processInnerTimeout();  
+			processInnerTimeout(null);  
 		}
 	}
 	
 	
+	/** Restarts the timer with a new expiration time.
+	 * If the timer is running, it is first halted. The timer listener is maintained.
+	 * <p>
+	 * It allows the reuse of the same timer object, e.g. for retransmission timers.
+	 * @param millisecs expiration time in milliseconds
+	 * @param nanosecs 0-999999 additional nanoseconds before the timer expires */
+	public synchronized void restart(long millisecs, int nanosecs) {
+		halt();
+		time_nanosecs=millisecs*1000000+nanosecs;
+		start(daemon_mode);
+	}
+	
+	
 	/** Schedule a new task.
 	 * @param task the task to be scheduled
 	 * @param time_nanosecs the time in nanoseconds
@@ -197,16 +253,21 @@ public class Timer {
 
 
 	/** Stops the Timer.
-	  * The method {@link TimerListener#onTimeout(Timer)} of the timer listener will not be fired. */
+	  * The method {@link TimerListener#onTimeout(Timer)} of the timer listener will not be fired.
+	  * The inner task is canceled, and it is removed from the inner scheduler at the next purge. */
 	public void halt() {
 		terminate();
 	}
 
 	
-	/** When the InnerTimer expires. */
-	private synchronized void processInnerTimeout() {
+	/** When the InnerTimer expires.
+	  * @param task the expired inner task; if it is not the current task (the timer has been halted or restarted meanwhile), it is ignored */
+	private synchronized void processInnerTimeout(TimerTask task) {
+		if (task!=inner_task) return;
+		// else
+		inner_task=null;
 		if (is_running && listener!=null) listener.onTimeout(this);  
-		terminate();
+		if (inner_task==null) terminate();
 	}
 
 	
@@ -214,7 +275,10 @@ public class Timer {
 	private synchronized void terminate() {
 		if (is_running) {
 			is_running=false;
-			listener=null;
+			if (inner_task!=null) {
+				if (inner_task.cancel()) purgeCanceledTasks();
+				inner_task=null;
+			}
 			if (!daemon_mode && time_nanosecs>0) {
 				// the timer has been scheduled in 'non-daemon' mode
 				synchronized (scheduler_lock) {
@@ -227,5 +291,17 @@ public class Timer {
 			}		
 		}
 	}
+
+	
+	/** Counts a canceled task, and purges the inner schedulers when the number of canceled tasks reaches {@link #PURGE_THRESHOLD}. */
+	private synchronized static void purgeCanceledTasks() {
+		if (++canceled_tasks<PURGE_THRESHOLD) return;
+		// else
+		canceled_tasks=0;
+		if (daemon_scheduler!=null) daemon_scheduler.purge();
+		synchronized (scheduler_lock) {
+			if (scheduler!=null) scheduler.purge();
+		}
+	}
 	
 }
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2018 Luca Veltri, University of Parma
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND. IN NO EVENT
+ * SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.zoolu.util;
+
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+
+/** Hashed timing wheel.
+  * It schedules tasks that have to be executed after a given delay.
+  * <p>
+  * Time is divided in ticks of fixed duration; a task is placed in the wheel slot
+  * corresponding to its expiration tick, together with the number of complete wheel rounds
+  * that have to pass before it expires.
+  * Both scheduling and canceling a task take O(1) time.
+  * <p>
+  * The wheel is driven by an inner thread that waits for the next non-empty tick using {@link System#nanoTime()},
+  * parking the thread and (on multi-processor systems) spinning just before the tick deadline, providing sub-millisecond resolution.
+  * The thread is started when the first task is scheduled, and it terminates after a while when there are no more tasks.
+  * <p>
+  * Expired tasks are executed by the inner thread, or by a given {@link Executor} (e.g. a pool of worker threads).
+  */
+public class TimingWheel {
+	
+	/** Default tick duration in nanoseconds */
+	public static long DEFAULT_TICK_NANOSECS=20000; // 20us
+
+	/** Default number of slots */
+	public static int DEFAULT_WHEEL_SIZE=1024;
+	
+	/** Time before a tick deadline within which the inner thread spins instead of parking [nanosecs] */
+	public static long SPIN_NANOSECS=50000;
+
+	/** Whether spinning is used (only on multi-processor systems) */
+	static final boolean SPIN=Runtime.getRuntime().availableProcessors()>1;
+
+	/** Time the inner thread remains alive when there are no scheduled tasks [millisecs] */
+	public static long IDLE_MILLISECS=1000;
+
+
+	/** Tick duration in nanoseconds */
+	long tick_nanosecs;
+	
+	/** Wheel slots; each slot is the head of a circular list of entries */
+	Entry[] wheel;
+	
+	/** Mask used for mapping ticks to slots */
+	int mask;
+	
+	/** Time of tick 0 */
+	volatile long start_time;
+	
+	/** Last processed tick */
+	long tick=0;
+	
+	/** Tick the inner thread is waiting for */
+	volatile long wake_tick=Long.MAX_VALUE;
+	
+	/** Number of scheduled tasks */
+	int count=0;
+	
+	/** Whether the inner thread is a daemon thread */
+	boolean daemon;
+	
+	/** Inner thread */
+	Thread thread=null;
+	
+	/** Executor of the expired tasks, or <i>null</i> */
+	Executor executor=null;
+	
+	
+	/** Creates a new timing wheel.
+	  * @param daemon whether the inner thread is a daemon thread */
+	public TimingWheel(boolean daemon) {
+		this(DEFAULT_TICK_NANOSECS,DEFAULT_WHEEL_SIZE,daemon);
+	}
+
+	
+	/** Creates a new timing wheel.
+	  * @param tick_nanosecs tick duration in nanoseconds
+	  * @param wheel_size number of slots; it is rounded up to a power of two
+	  * @param daemon whether the inner thread is a daemon thread */
+	public TimingWheel(long tick_nanosecs, int wheel_size, boolean daemon) {
+		if (tick_nanosecs<=0) throw new IllegalArgumentException("Invalid tick duration: "+tick_nanosecs);
+		// else
+		this.tick_nanosecs=tick_nanosecs;
+		this.daemon=daemon;
+		int size=1;
+		while (size<wheel_size) size<<=1;
+		wheel=new Entry[size];
+		for (int i=0; i<size; i++) {
+			Entry head=new Entry() {
+				public void run() {}
+			};
+			head.prev=head.next=head;
+			wheel[i]=head;
+		}
+		mask=size-1;
+		start_time=System.nanoTime();
+	}
+
+	
+	/** Sets the executor of expired tasks.
+	  * @param executor the executor; if <i>null</i>, the tasks are executed by the inner thread of the wheel */
+	public void setExecutor(Executor executor) {
+		this.executor=executor;
+	}
+	
+	
+	/** Gets the tick duration.
+	  * @return the tick duration in nanoseconds */
+	public long getTickNanosecs() {
+		return tick_nanosecs;
+	}
+
+	
+	/** Gets the number of scheduled tasks.
+	  * @return the number of tasks */
+	public synchronized int size() {
+		return count;
+	}
+
+	
+	/** Schedules a task.
+	  * @param entry the task
+	  * @param delay_nanosecs the delay in nanoseconds */
+	public synchronized void schedule(Entry entry, long delay_nanosecs) {
+		if (entry.next!=null) throw new RuntimeException("TimingWheel: task already scheduled");
+		// else
+		long now=System.nanoTime();
+		if (count==0) {
+			// the wheel is empty: re-align ticks to the current time
+			start_time=now;
+			tick=0;
+			if (thread!=null) {
+				// the inner thread may be still parked until the tick of a canceled task:
+				// invalidate its wake tick, since ticks have been re-aligned
+				wake_tick=-1;
+				LockSupport.unpark(thread);
+			}
+		}
+		entry.deadline=now+delay_nanosecs;
+		long target_tick=(entry.deadline-start_time+tick_nanosecs-1)/tick_nanosecs;
+		if (target_tick<=tick) target_tick=tick+1;
+		entry.rounds=(target_tick-tick-1)/wheel.length;
+		Entry head=wheel[(int)(target_tick&mask)];
+		entry.prev=head.prev;
+		entry.next=head;
+		head.prev.next=entry;
+		head.prev=entry;
+		count++;
+		if (thread==null) {
+			thread=new Thread() {
+				public void run() { loop(); }
+			};
+			thread.setDaemon(daemon);
+			thread.start();
+		}
+		else
+		if (count==1) notifyAll();
+		else
+		if (target_tick<wake_tick) {
+			// wake up the inner thread earlier
+			wake_tick=target_tick;
+			LockSupport.unpark(thread);
+		}
+	}
+
+	
+	/** Cancels a task.
+	  * @param entry the task
+	  * @return <i>true</i> if the task was scheduled and has been canceled */
+	public synchronized boolean cancel(Entry entry) {
+		if (entry.next==null) return false;
+		// else
+		unlink(entry);
+		return true;
+	}
+
+	
+	/** Removes an entry from its slot.
+	  * @param entry the entry */
+	private void unlink(Entry entry) {
+		entry.prev.next=entry.next;
+		entry.next.prev=entry.prev;
+		entry.prev=entry.next=null;
+		count--;
+	}
+	
+
+	/** Inner thread loop. */
+	private void loop() {
+		ArrayList<Entry> expired=new ArrayList<Entry>();
+		while (true) {
+			synchronized (this) {
+				if (count==0) {
+					wake_tick=Long.MAX_VALUE;
+					try { wait(IDLE_MILLISECS); } catch (InterruptedException e) {}
+					if (count==0) {
+						thread=null;
+						return;
+					}
+				}
+				wake_tick=nextTick();
+			}
+			waitForWakeTick();
+			synchronized (this) {
+				// process all ticks that have been passed
+				long now=System.nanoTime();
+				while (count>0 && start_time+(tick+1)*tick_nanosecs<=now) {
+					tick++;
+					Entry head=wheel[(int)(tick&mask)];
+					for (Entry e=head.next; e!=head; ) {
+						Entry next=e.next;
+						if (e.rounds==0) {
+							unlink(e);
+							expired.add(e);
+						}
+						else e.rounds--;
+						e=next;
+					}
+				}
+			}
+			for (int i=0; i<expired.size(); i++) {
+				Entry e=expired.get(i);
+				if (executor!=null) executor.execute(e);
+				else {
+					try { e.run(); } catch (Exception ex) { ex.printStackTrace(); }
+				}
+			}
+			expired.clear();
+		}
+	}
+	
+	
+	/** Gets the next tick whose slot is not empty.
+	  * It must be called only if there is at least one scheduled task.
+	  * @return the tick */
+	private long nextTick() {
+		for (long t=tick+1; t<=tick+wheel.length; t++) {
+			Entry head=wheel[(int)(t&mask)];
+			if (head.next!=head) return t;
+		}
+		// should not happen
+		return tick+1;
+	}
+	
+	
+	/** Waits until the end of the tick {@link #wake_tick}.
+	  * It returns earlier if {@link #wake_tick} is changed meanwhile. */
+	private void waitForWakeTick() {
+		long t=wake_tick;
+		long remaining;
+		while ((remaining=start_time+t*tick_nanosecs-System.nanoTime())>0) {
+			if (!SPIN) LockSupport.parkNanos(remaining);
+			else
+			if (remaining>SPIN_NANOSECS) LockSupport.parkNanos(remaining-SPIN_NANOSECS);
+			else Thread.yield();
+			if (wake_tick!=t) return;
+		}
+	}
+
+	
+	/** A task scheduled in the wheel.
+	 */
+	public static abstract class Entry implements Runnable {
+		
+		/** Previous entry in the same slot */
+		Entry prev=null;
+
+		/** Next entry in the same slot */
+		Entry next=null;
+
+		/** Expiration time, as returned by {@link System#nanoTime()} */
+		long deadline;
+
+		/** Remaining wheel rounds */
+		long rounds;
+		
+		/** Whether the task is currently scheduled.
+		  * @return <i>true</i> if scheduled */
+		public boolean isScheduled() {
+			return next!=null;
+		}
+	}
+
+}
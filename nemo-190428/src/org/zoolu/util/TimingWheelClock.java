@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2018 Luca Veltri, University of Parma
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND. IN NO EVENT
+ * SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.zoolu.util;
+
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/** Real-time clock whose timers are scheduled on {@link TimingWheel timing wheels}.
+  * <p>
+  * Compared to the default {@link Clock}, timers have sub-millisecond resolution,
+  * and they can be started and halted in constant time.
+  * <p>
+  * Timer callbacks are executed by the thread of the timing wheel, or, optionally,
+  * by a pool of worker threads. In the latter case, callbacks of timers expiring at the same tick may run concurrently.
+  */
+public class TimingWheelClock extends Clock {
+	
+	/** Timing wheel for 'non-daemon' timers */
+	TimingWheel wheel;
+
+	/** Timing wheel for 'daemon' timers */
+	TimingWheel daemon_wheel;
+
+	
+	/** Creates a new clock. */
+	public TimingWheelClock() {
+		this(TimingWheel.DEFAULT_TICK_NANOSECS,TimingWheel.DEFAULT_WHEEL_SIZE,0);
+	}
+
+	
+	/** Creates a new clock.
+	  * @param tick_nanosecs tick duration in nanoseconds
+	  * @param wheel_size number of slots of the timing wheels
+	  * @param worker_threads number of worker threads used for executing timer callbacks; if 0, callbacks are executed by the timing wheel threads */
+	public TimingWheelClock(long tick_nanosecs, int wheel_size, int worker_threads) {
+		wheel=new TimingWheel(tick_nanosecs,wheel_size,false);
+		daemon_wheel=new TimingWheel(tick_nanosecs,wheel_size,true);
+		if (worker_threads>0) {
+			ThreadPoolExecutor executor=new ThreadPoolExecutor(worker_threads,worker_threads,TimingWheel.IDLE_MILLISECS,TimeUnit.MILLISECONDS,new LinkedBlockingQueue<Runnable>());
+			executor.allowCoreThreadTimeOut(true);
+			wheel.setExecutor(executor);
+			daemon_wheel.setExecutor(executor);
+		}
+	}
+
+	
+	/** Gets the timing wheel.
+	  * @param daemon_mode whether the wheel is used for 'daemon' timers
+	  * @return the timing wheel */
+	TimingWheel getTimingWheel(boolean daemon_mode) {
+		return daemon_mode? daemon_wheel : wheel;
+	}
+
+	
+	@Override
+	public Timer newTimer(long millisecs, int nanosecs, TimerListener listener) {
+		return new TimingWheelTimer(this,millisecs,nanosecs,listener);
+	}
+
+	
+	@Override
+	public void sleep(long millisecs, int nanosecs) {
+		if (millisecs<0 || nanosecs<0) return;
+		// else
+		try { Thread.sleep(millisecs,nanosecs); } catch (Exception e) {};
+	}
+
+}
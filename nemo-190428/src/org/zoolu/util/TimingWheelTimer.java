@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 Luca Veltri, University of Parma
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND. IN NO EVENT
+ * SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package org.zoolu.util;
+
+
+/** Timer scheduled on a {@link TimingWheel}.
+  * <p>
+  * Differently from {@link Timer}, it has a sub-millisecond resolution (depending on the wheel tick),
+  * and when halted it is immediately removed from the wheel.
+  */
+public class TimingWheelTimer extends Timer {
+	
+	/** Clock that provides the timing wheels */
+	TimingWheelClock clock;
+
+	/** Wheel where the timer has been scheduled */
+	TimingWheel wheel=null;
+
+	/** Wheel entry */
+	TimingWheel.Entry entry;
+	
+
+	/** Creates a new timer.
+	  * The timer is not automatically started. You need to call the {@link #start()} method.
+	  * @param clock the clock that provides the timing wheels
+	  * @param millisecs expiration time in milliseconds
+	  * @param nanosecs 0-999999 additional nanoseconds before the timer expires
+	  * @param listener timer listener */
+	public TimingWheelTimer(TimingWheelClock clock, long millisecs, int nanosecs, TimerListener listener) {
+		super(millisecs,nanosecs,listener);
+		this.clock=clock;
+		entry=newEntry();
+	}
+
+	
+	/** Creates a new wheel entry for this timer.
+	  * @return the entry */
+	private TimingWheel.Entry newEntry() {
+		return new TimingWheel.Entry() {
+			public void run() { processTimeout(this); }
+		};
+	}
+
+	
+	@Override
+	public synchronized void start(boolean daemon_mode) {
+		if (time_nanosecs<0 || is_running) return;
+		// else
+		this.daemon_mode=daemon_mode;
+		start_time=System.nanoTime();
+		is_running=true;
+		if (time_nanosecs>0) {
+			wheel=clock.getTimingWheel(daemon_mode);
+			wheel.schedule(entry,time_nanosecs);
+		}
+		else {
+			// fire now!			
+			processTimeout(entry);  
+		}
+	}
+
+	
+	@Override
+	public synchronized void halt() {
+		if (is_running) {
+			// if the entry has already been removed from the wheel, it is going to be run: use a new entry the next time
+			if (wheel!=null && !wheel.cancel(entry) && time_nanosecs>0) entry=newEntry();
+			is_running=false;
+		}
+	}
+
+	
+	/** When the timer expires.
+	  * @param e the expired entry; if it is not the current entry (the timer has been halted or restarted meanwhile), it is ignored */
+	private synchronized void processTimeout(TimingWheel.Entry e) {
+		if (e!=entry || !is_running) return;
+		// else
+		is_running=false;
+		if (listener!=null) listener.onTimeout(this);  
+	}
+	
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package test;
+
+
+import it.unipr.netsec.ipstack.ip4.Ip4Address;
+import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.udp.UdpPacket;
+
+import org.zoolu.util.ByteArrayPool;
+import org.zoolu.util.Flags;
+
+
+/** Measures the cost of serializing packets into new byte arrays and into arrays borrowed from a {@link ByteArrayPool}.
+ * <p>
+ * Each thread serializes the same packet a given number of times, and releases the array when pooling is used.
+ * The pool statistics (hits and misses) are printed at the end.
+ */
+public class BufferPoolBenchmark {
+
+	/** Sink, for preventing the elimination of unused serializations */
+	static volatile int SINK=0;
+
+	
+	/** Runs the benchmark.
+	 * @param threads number of threads
+	 * @param count number of packets per thread
+	 * @param pkt the packet to be serialized
+	 * @param pool the pool, or <i>null</i> for using new arrays
+	 * @return the elapsed time in milliseconds */
+	private static long run(int threads, final long count, final Packet pkt, final ByteArrayPool pool) throws InterruptedException {
+		Thread[] workers=new Thread[threads];
+		for (int i=0; i<threads; i++) {
+			workers[i]=new Thread() {
+				public void run() {
+					int sum=0;
+					for (long n=0; n<count; n++) {
+						if (pool==null) {
+							byte[] buf=pkt.getBytes();
+							sum+=buf[buf.length-1];
+						}
+						else {
+							byte[] buf=pool.get(pkt.getPacketLength());
+							int len=pkt.getBytes(buf,0);
+							sum+=buf[len-1];
+							pool.release(buf);
+						}
+					}
+					SINK+=sum;
+				}
+			};
+		}
+		long start=System.nanoTime();
+		for (Thread t : workers) t.start();
+		for (Thread t : workers) t.join();
+		return (System.nanoTime()-start)/1000000;
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) throws InterruptedException {
+		Flags flags=new Flags(args);
+		boolean help=flags.getBoolean("-h","prints this message");
+		int threads=flags.getInteger("-t","<num>",4,"number of threads (default is 4)");
+		long count=flags.getLong("-c","<num>",1000000,"number of packets per thread (default is 1000000)");
+		int pkt_size=flags.getInteger("-g","<size>",1000,"IP packet size (default is 1000)");
+		ByteArrayPool.DEBUG=flags.getBoolean("-d","pool debug mode (leak detection)");
+		
+		if (help) {
+			System.out.println(flags.toUsageString(BufferPoolBenchmark.class.getSimpleName()));
+			return;
+		}
+		Packet pkt=new UdpPacket(new Ip4Address("10.0.0.1"),4000,new Ip4Address("10.0.0.2"),4000,new byte[pkt_size-28]).toIp4Packet();
+		ByteArrayPool pool=new ByteArrayPool(ByteArrayPool.DEFAULT_MIN_SIZE,ByteArrayPool.DEFAULT_MAX_SIZE,ByteArrayPool.DEFAULT_LOCAL_CACHE_SIZE,ByteArrayPool.DEFAULT_GLOBAL_POOL_SIZE);
+		System.out.println("threads: "+threads+", packets: "+count+"/thread, packet size: "+pkt_size+"B");
+		// warm-up
+		run(threads,count/10,pkt,null);
+		run(threads,count/10,pkt,pool);
+		pool.resetStatistics();
+		System.out.println("buffers\trt[ms]\tns/pkt");
+		long elapsed=run(threads,count,pkt,null);
+		System.out.println("new\t"+elapsed+"\t"+(elapsed*1000000/(count*threads)));
+		elapsed=run(threads,count,pkt,pool);
+		System.out.println("pooled\t"+elapsed+"\t"+(elapsed*1000000/(count*threads)));
+		System.out.println(pool);
+		System.out.println("hit ratio: "+pool.getHitRatio());
+		if (ByteArrayPool.DEBUG) System.out.println("borrowed: "+pool.getBorrowedCount()+", leaks: "+pool.checkLeaks());
+	}
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package test;
+
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.unipr.netsec.ipstack.ethernet.EthPacket;
+import it.unipr.netsec.ipstack.link.EthTunnelHub;
+
+import org.zoolu.util.Flags;
+
+
+/** Compares the aggregate throughput of an {@link EthTunnelHub} working as hub (flooding) and as learning switch.
+ * <p>
+ * A given number of UDP endpoints are attached to the hub. Each endpoint has MAC address 02:00:00:00:00:<i>i</i>
+ * and sends unicast frames to the next endpoint. Before the measurement, each endpoint sends a broadcast frame,
+ * so that the switch can learn its address.
+ * <p>
+ * The throughput is the number of frames received by the endpoints they are addressed to, per second.
+ */
+public class EthTunnelHubBenchmark {
+
+	/** Time waited for pending frames, in milliseconds */
+	static long DRAIN_TIME=500;
+
+	
+	/** Builds an Ethernet frame containing a dummy IPv4 packet.
+	 * @param src source endpoint index
+	 * @param dst destination endpoint index, or -1 for broadcast
+	 * @param size frame size
+	 * @return the frame */
+	private static byte[] frame(int src, int dst, int size) {
+		byte[] buf=new byte[size];
+		for (int i=0; i<6; i++) buf[i]=(byte)(dst<0? 0xff : 0);
+		if (dst>=0) {
+			buf[0]=2;
+			buf[5]=(byte)dst;
+		}
+		buf[6]=2;
+		buf[11]=(byte)src;
+		buf[12]=(byte)(EthPacket.ETH_IP4>>8);
+		buf[13]=(byte)EthPacket.ETH_IP4;
+		buf[14]=0x45;
+		return buf;
+	}
+
+	/** Runs the benchmark.
+	 * @param port the hub port
+	 * @param learning whether the hub works as learning switch
+	 * @param n number of endpoints
+	 * @param count number of frames per endpoint
+	 * @param size frame size */
+	private static void run(int port, boolean learning, final int n, final long count, final int size) throws IOException, InterruptedException {
+		EthTunnelHub hub=new EthTunnelHub(port,n,learning);
+		final InetAddress hub_iaddr=InetAddress.getByName("127.0.0.1");
+		final int hub_port=port;
+		final DatagramSocket[] socks=new DatagramSocket[n];
+		final AtomicLong delivered=new AtomicLong();
+		final AtomicLong last_time=new AtomicLong();
+		final boolean[] stop=new boolean[]{false};
+		Thread[] receivers=new Thread[n];
+		for (int i=0; i<n; i++) {
+			socks[i]=new DatagramSocket();
+			socks[i].setSoTimeout(100);
+			final int index=i;
+			receivers[i]=new Thread() {
+				public void run() {
+					byte[] buf=new byte[size];
+					DatagramPacket datagram=new DatagramPacket(buf,size);
+					long num=0;
+					while (!stop[0]) {
+						try {
+							socks[index].receive(datagram);
+							if (buf[0]==2 && buf[5]==(byte)index) {
+								num++;
+								last_time.set(System.nanoTime());
+							}
+						}
+						catch (SocketTimeoutException e) {}
+						catch (IOException e) {
+							break;
+						}
+					}
+					delivered.addAndGet(num);
+				}
+			};
+			receivers[i].start();
+		}
+		// let the switch learn all addresses
+		for (int i=0; i<n; i++) {
+			byte[] buf=frame(i,-1,size);
+			socks[i].send(new DatagramPacket(buf,size,hub_iaddr,hub_port));
+		}
+		Thread.sleep(DRAIN_TIME);
+		delivered.set(0);
+		long rx_count=hub.getReceivedCount();
+		long tx_count=hub.getSentCount();
+		Thread[] senders=new Thread[n];
+		for (int i=0; i<n; i++) {
+			final int index=i;
+			senders[i]=new Thread() {
+				public void run() {
+					byte[] buf=frame(index,(index+1)%n,size);
+					DatagramPacket datagram=new DatagramPacket(buf,size,hub_iaddr,hub_port);
+					try {
+						for (long k=0; k<count; k++) socks[index].send(datagram);
+					}
+					catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			};
+		}
+		long start=System.nanoTime();
+		last_time.set(start);
+		for (Thread t : senders) t.start();
+		for (Thread t : senders) t.join();
+		Thread.sleep(DRAIN_TIME);
+		stop[0]=true;
+		for (Thread t : receivers) t.join();
+		for (DatagramSocket sock : socks) sock.close();
+		long elapsed=(last_time.get()-start)/1000;
+		rx_count=hub.getReceivedCount()-rx_count;
+		tx_count=hub.getSentCount()-tx_count;
+		System.out.println((learning? "switch" : "hub")+"\t"+rx_count+"\t"+tx_count+"\t"+delivered.get()+"\t"+(elapsed/1000)+"\t"+(elapsed>0? delivered.get()*1000000/elapsed : 0));
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Flags flags=new Flags(args);
+		boolean help=flags.getBoolean("-h","prints this message");
+		int port=flags.getInteger("-p","<port>",4100,"UDP port of the hub; the switch uses the next port (default is 4100)");
+		int n=flags.getInteger("-n","<num>",8,"number of endpoints (default is 8)");
+		long count=flags.getLong("-c","<num>",100000,"number of frames per endpoint (default is 100000)");
+		int size=flags.getInteger("-g","<size>",1000,"frame size (default is 1000)");
+		
+		if (help) {
+			System.out.println(flags.toUsageString(EthTunnelHubBenchmark.class.getSimpleName()));
+			return;
+		}
+		System.out.println("endpoints: "+n+", frames: "+count+"/endpoint, frame size: "+size+"B");
+		System.out.println("mode\trx\ttx\tdelivered\tt[ms]\tframes/s");
+		run(port,false,n,count,size);
+		run(port+1,true,n,count,size);
+		// hub threads are not stoppable
+		System.exit(0);
+	}
+
+}
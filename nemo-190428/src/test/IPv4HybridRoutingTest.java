@@ -47,6 +47,7 @@ import it.unipr.netsec.ipstack.udp.DatagramSocket;
 import it.unipr.netsec.ipstack.udp.UdpLayer;
 import it.unipr.netsec.ipstack.util.IpAddressUtils;
 import it.unipr.netsec.rawsocket.ethernet.RawEthInterface;
+import it.unipr.netsec.simulator.scheduler.ScaledClock;
 import it.unipr.netsec.simulator.scheduler.VirtualClock;
 import it.unipr.netsec.tuntap.Ip4TunInterface;
 import it.unipr.netsec.tuntap.Ip4TuntapInterface;
@@ -271,6 +272,7 @@ public class IPv4HybridRoutingTest {
 				Ip4Layer ip_layer=new Ip4Layer(new DataLinkInterface[]{link_interface});
 				ip_layer.getRoutingTable().setDefaultRoute(r0_ext_addr_prefix);
 				new PingClient(ip_layer,0,"0123456789".getBytes(),h2,ping_count,ping_time,System.out);
+				if (Clock.getDefaultClock() instanceof ScaledClock) System.out.println("Clock: "+((ScaledClock)Clock.getDefaultClock()).getSynchronizer());
 			}
 		}
 		catch (Exception e) {
@@ -341,6 +343,8 @@ public class IPv4HybridRoutingTest {
 						System.out.println("R0 external interface real address: "+r0_ext_2.toStringWithPrefixLength());
 					}				
 				}
+				// the virtual time has to track the real time
+				if (Clock.getDefaultClock() instanceof ScaledClock) ((ScaledClock)Clock.getDefaultClock()).attach();
 			}
 			else {
 				// virtual interface
@@ -470,6 +474,7 @@ public class IPv4HybridRoutingTest {
 		int ping_count=flags.getInteger("-c","<num>",3,"number of ping requests");
 		long ping_time=flags.getLong("-t","<time>",1000,"ping inter-time [millisec]");
 		String algo_name=flags.getString("-algo","<algo>","sim","shortest-path alorithm");
+		double time_ratio=flags.getDouble("-r","<ratio>",0,"uses a virtual clock that tracks the real time at the given ratio (e.g. 0.1) when a real interface is attached");
 		
 		if (help) {
 			System.out.println(flags.toUsageString(IPv4HybridRoutingTest.class.getName()));
@@ -506,6 +511,7 @@ public class IPv4HybridRoutingTest {
 		else throw new RuntimeException("Unsupported shortest-path algorithm: "+algo_name);
 
 		//Clock.setDefaultClock(new VirtualClock());
+		if (time_ratio>0) Clock.setDefaultClock(new ScaledClock(time_ratio));
 		//testHybridRoute(tcpdump);
 		
 		//if (linear) testLinearNetwork(n,ext_if,ext_addr_prefix,algo,udp_echo,tcpdump,ping_count,ping_time);
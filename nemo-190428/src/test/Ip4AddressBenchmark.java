@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package test;
+
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import it.unipr.netsec.ipstack.ip4.Ip4Address;
+import it.unipr.netsec.ipstack.ip4.Ip4Prefix;
+import it.unipr.netsec.ipstack.util.IpAddressUtils;
+
+import org.zoolu.util.Flags;
+
+
+/** Compares the int-backed {@link Ip4Address} and {@link Ip4Prefix} with the former byte-array implementation,
+ * reproduced by the inner class {@link ByteArrayIp4Address}.
+ * <p>
+ * Measured operations are: parsing an address from a buffer, equals, hash map lookup, prefix containment, and multicast test.
+ */
+public class Ip4AddressBenchmark {
+
+	/** Sink, for preventing the elimination of unused results */
+	static volatile int SINK=0;
+
+	/** Multicast prefix 224.0.0.0/4, as byte-array address */
+	static final ByteArrayIp4Address MULTICAST_ADDR=new ByteArrayIp4Address(new byte[]{(byte)224,0,0,0},0);
+
+	/** Broadcast address, as byte-array address */
+	static final ByteArrayIp4Address BROADCAST_ADDR=new ByteArrayIp4Address(new byte[]{(byte)255,(byte)255,(byte)255,(byte)255},0);
+
+	
+	/** IPv4 address stored as array of bytes, as in the former implementation of {@link Ip4Address}.
+	 */
+	static class ByteArrayIp4Address {
+		
+		/** The IP address */
+		byte[] addr;
+		
+		/** Creates a new address. */
+		ByteArrayIp4Address(byte[] buf, int off) {
+			addr=new byte[4];
+			System.arraycopy(buf,off,addr,0,4);
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof ByteArrayIp4Address)) return false;
+			// else
+			return Arrays.equals(addr,((ByteArrayIp4Address)o).addr);
+		}
+		
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(addr);
+		}
+		
+		/** Whether it belongs to a given prefix. */
+		boolean isIn(ByteArrayIp4Address prefix_addr, int prefix_len) {
+			byte[] prefix_mask=IpAddressUtils.prefixLengthToMask(prefix_len);
+			for (int i=0; i<4; i++) if ((addr[i]&prefix_mask[i])!=prefix_addr.addr[i]) return false;
+			// else
+			return true;
+		}
+		
+		/** Whether it is a multicast or broadcast address. */
+		boolean isMulticast() {
+			return BROADCAST_ADDR.equals(this) || isIn(MULTICAST_ADDR,4);
+		}
+	}
+	
+	
+	/** Prints the time per operation.
+	 * @param name the operation name
+	 * @param count number of operations
+	 * @param int_time time with int-backed addresses, in nanoseconds
+	 * @param bytes_time time with byte-array addresses, in nanoseconds */
+	private static void print(String name, long count, long int_time, long bytes_time) {
+		System.out.println(name+"\t"+String.format("%.2f",(double)int_time/count)+"\t"+String.format("%.2f",(double)bytes_time/count));
+	}
+	
+	/** Runs the benchmark.
+	 * @param n number of distinct addresses
+	 * @param rounds number of passes over all addresses
+	 * @param rand random generator
+	 * @param print whether printing the results */
+	private static void run(int n, int rounds, Random rand, boolean print) {
+		byte[] buf=new byte[n*4];
+		rand.nextBytes(buf);
+		Ip4Address[] addrs=new Ip4Address[n];
+		ByteArrayIp4Address[] byte_addrs=new ByteArrayIp4Address[n];
+		HashMap<Ip4Address,Integer> map=new HashMap<Ip4Address,Integer>();
+		HashMap<ByteArrayIp4Address,Integer> byte_map=new HashMap<ByteArrayIp4Address,Integer>();
+		for (int i=0; i<n; i++) {
+			addrs[i]=new Ip4Address(buf,i*4);
+			byte_addrs[i]=new ByteArrayIp4Address(buf,i*4);
+			map.put(addrs[i],i);
+			byte_map.put(byte_addrs[i],i);
+		}
+		Ip4Prefix prefix=new Ip4Prefix("10.0.0.0/8");
+		ByteArrayIp4Address byte_prefix=new ByteArrayIp4Address(prefix.getBytes(),0);
+		long count=(long)n*rounds;
+		int sum=0;
+		// parsing
+		long start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) sum+=new Ip4Address(buf,i*4).hashCode();
+		long int_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) sum+=new ByteArrayIp4Address(buf,i*4).addr[3];
+		long bytes_time=System.nanoTime()-start;
+		if (print) print("parse",count,int_time,bytes_time);
+		// equals
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (addrs[i].equals(addrs[(i+r)%n])) sum++;
+		int_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (byte_addrs[i].equals(byte_addrs[(i+r)%n])) sum++;
+		bytes_time=System.nanoTime()-start;
+		if (print) print("equals",count,int_time,bytes_time);
+		// hash map lookup
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) sum+=map.get(addrs[i]);
+		int_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) sum+=byte_map.get(byte_addrs[i]);
+		bytes_time=System.nanoTime()-start;
+		if (print) print("map.get",count,int_time,bytes_time);
+		// prefix containment
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (prefix.contains(addrs[i])) sum++;
+		int_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (byte_addrs[i].isIn(byte_prefix,8)) sum++;
+		bytes_time=System.nanoTime()-start;
+		if (print) print("contains",count,int_time,bytes_time);
+		// multicast
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (addrs[i].isMulticast()) sum++;
+		int_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (byte_addrs[i].isMulticast()) sum++;
+		bytes_time=System.nanoTime()-start;
+		if (print) print("multicast",count,int_time,bytes_time);
+		SINK+=sum;
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) {
+		Flags flags=new Flags(args);
+		boolean help=flags.getBoolean("-h","prints this message");
+		int n=flags.getInteger("-n","<num>",10000,"number of distinct addresses (default is 10000)");
+		int rounds=flags.getInteger("-c","<num>",1000,"number of passes over all addresses (default is 1000)");
+		
+		if (help) {
+			System.out.println(flags.toUsageString(Ip4AddressBenchmark.class.getSimpleName()));
+			return;
+		}
+		Random rand=new Random(1);
+		System.out.println("addresses: "+n+", passes: "+rounds);
+		// warm-up
+		run(n,rounds/10+1,rand,false);
+		System.out.println("op\tint[ns]\tbytes[ns]");
+		run(n,rounds,rand,true);
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package test;
+
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import it.unipr.netsec.ipstack.ip6.Ip6Address;
+import it.unipr.netsec.ipstack.ip6.Ip6Prefix;
+
+import org.zoolu.util.Flags;
+
+
+/** Compares the long-backed {@link Ip6Address} and {@link Ip6Prefix} with the former byte-array implementation,
+ * reproduced by the inner class {@link ByteArrayIp6Address}.
+ * <p>
+ * Measured operations are: parsing an address from a buffer, equals, hash map lookup, prefix containment, and multicast test.
+ */
+public class Ip6AddressBenchmark {
+
+	/** Sink, for preventing the elimination of unused results */
+	static volatile int SINK=0;
+
+	/** Multicast prefix ff00::/8, as byte-array address */
+	static final ByteArrayIp6Address MULTICAST_ADDR=new ByteArrayIp6Address(new Ip6Address("ff00::").getBytes(),0);
+
+	
+	/** IPv4 address stored as array of bytes, as in the former implementation of {@link Ip6Address}.
+	 */
+	static class ByteArrayIp6Address {
+		
+		/** The IP address */
+		byte[] addr;
+		
+		/** Creates a new address. */
+		ByteArrayIp6Address(byte[] buf, int off) {
+			addr=new byte[16];
+			System.arraycopy(buf,off,addr,0,16);
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof ByteArrayIp6Address)) return false;
+			// else
+			return Arrays.equals(addr,((ByteArrayIp6Address)o).addr);
+		}
+		
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(addr);
+		}
+		
+		/** Whether it belongs to a given prefix. */
+		boolean isIn(ByteArrayIp6Address prefix_addr, int prefix_len) {
+			byte[] prefix_mask=Ip6Prefix.prefixMask(prefix_len);
+			for (int i=0; i<16; i++) if ((addr[i]&prefix_mask[i])!=prefix_addr.addr[i]) return false;
+			// else
+			return true;
+		}
+		
+		/** Whether it is a multicast address. */
+		boolean isMulticast() {
+			return isIn(MULTICAST_ADDR,8);
+		}
+	}
+	
+	
+	/** Prints the time per operation.
+	 * @param name the operation name
+	 * @param count number of operations
+	 * @param long_time time with long-backed addresses, in nanoseconds
+	 * @param bytes_time time with byte-array addresses, in nanoseconds */
+	private static void print(String name, long count, long long_time, long bytes_time) {
+		System.out.println(name+"\t"+String.format("%.2f",(double)long_time/count)+"\t"+String.format("%.2f",(double)bytes_time/count));
+	}
+	
+	/** Runs the benchmark.
+	 * @param n number of distinct addresses
+	 * @param rounds number of passes over all addresses
+	 * @param rand random generator
+	 * @param print whether printing the results */
+	private static void run(int n, int rounds, Random rand, boolean print) {
+		byte[] buf=new byte[n*16];
+		rand.nextBytes(buf);
+		Ip6Address[] addrs=new Ip6Address[n];
+		ByteArrayIp6Address[] byte_addrs=new ByteArrayIp6Address[n];
+		HashMap<Ip6Address,Integer> map=new HashMap<Ip6Address,Integer>();
+		HashMap<ByteArrayIp6Address,Integer> byte_map=new HashMap<ByteArrayIp6Address,Integer>();
+		for (int i=0; i<n; i++) {
+			addrs[i]=new Ip6Address(buf,i*16);
+			byte_addrs[i]=new ByteArrayIp6Address(buf,i*16);
+			map.put(addrs[i],i);
+			byte_map.put(byte_addrs[i],i);
+		}
+		Ip6Prefix prefix=new Ip6Prefix("2001:db8::/32");
+		ByteArrayIp6Address byte_prefix=new ByteArrayIp6Address(prefix.getBytes(),0);
+		long count=(long)n*rounds;
+		int sum=0;
+		// parsing
+		long start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) sum+=(int)new Ip6Address(buf,i*16).getLowBits();
+		long long_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) sum+=new ByteArrayIp6Address(buf,i*16).addr[15];
+		long bytes_time=System.nanoTime()-start;
+		if (print) print("parse",count,long_time,bytes_time);
+		// equals
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (addrs[i].equals(addrs[(i+r)%n])) sum++;
+		long_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (byte_addrs[i].equals(byte_addrs[(i+r)%n])) sum++;
+		bytes_time=System.nanoTime()-start;
+		if (print) print("equals",count,long_time,bytes_time);
+		// hash map lookup
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) sum+=map.get(addrs[i]);
+		long_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) sum+=byte_map.get(byte_addrs[i]);
+		bytes_time=System.nanoTime()-start;
+		if (print) print("map.get",count,long_time,bytes_time);
+		// prefix containment
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (prefix.contains(addrs[i])) sum++;
+		long_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (byte_addrs[i].isIn(byte_prefix,32)) sum++;
+		bytes_time=System.nanoTime()-start;
+		if (print) print("contains",count,long_time,bytes_time);
+		// multicast
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (addrs[i].isMulticast()) sum++;
+		long_time=System.nanoTime()-start;
+		start=System.nanoTime();
+		for (int r=0; r<rounds; r++) for (int i=0; i<n; i++) if (byte_addrs[i].isMulticast()) sum++;
+		bytes_time=System.nanoTime()-start;
+		if (print) print("multicast",count,long_time,bytes_time);
+		SINK+=sum;
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) {
+		Flags flags=new Flags(args);
+		boolean help=flags.getBoolean("-h","prints this message");
+		int n=flags.getInteger("-n","<num>",10000,"number of distinct addresses (default is 10000)");
+		int rounds=flags.getInteger("-c","<num>",1000,"number of passes over all addresses (default is 1000)");
+		
+		if (help) {
+			System.out.println(flags.toUsageString(Ip6AddressBenchmark.class.getSimpleName()));
+			return;
+		}
+		Random rand=new Random(1);
+		System.out.println("addresses: "+n+", passes: "+rounds);
+		// warm-up
+		run(n,rounds/10+1,rand,false);
+		System.out.println("op\tlong[ns]\tbytes[ns]");
+		run(n,rounds,rand,true);
+	}
+
+}
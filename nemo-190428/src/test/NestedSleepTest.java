@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+
+package test;
+
+
+import java.util.ArrayList;
+
+import org.zoolu.util.Timer;
+import org.zoolu.util.TimerListener;
+
+import it.unipr.netsec.simulator.scheduler.VirtualClock;
+
+
+/** Checks sleeps of timer callbacks of a {@link VirtualClock}, which are executed in place.
+ * <p>
+ * Two timer callbacks sleep: callback A at time 0.001ms for 10ms, and callback B at time 5ms, during the sleep of A.
+ * If B sleeps for 3ms, both callbacks must wake up at the right time (B at 8ms, A at 10.001ms).
+ * If B sleeps for 10ms, i.e. beyond the wake-up time of A, the sleep of B must fail,
+ * and A must still wake up at the right time.
+ */
+public class NestedSleepTest {
+
+	/** Wake-up events, as "name@time" strings */
+	static ArrayList<String> events=new ArrayList<String>();
+
+	
+	/** Creates a timer whose callback sleeps.
+	 * @param clock the virtual clock
+	 * @param name the name of the callback
+	 * @param start_nanosecs time at which the callback is fired, in nanoseconds
+	 * @param sleep_millisecs sleep time, in milliseconds */
+	private static void sleeper(final VirtualClock clock, final String name, long start_nanosecs, final long sleep_millisecs) {
+		clock.newTimer(start_nanosecs/1000000,(int)(start_nanosecs%1000000),new TimerListener() {
+			@Override
+			public void onTimeout(Timer t) {
+				try {
+					clock.sleep(sleep_millisecs);
+					events.add(name+"@"+clock.nanoTime());
+				}
+				catch (RuntimeException e) {
+					events.add(name+"@failed");
+				}
+			}
+		}).start();
+	}
+
+	
+	/** Runs a case.
+	 * @param b_sleep_millisecs sleep time of callback B, in milliseconds
+	 * @param expected the expected wake-up events
+	 * @return <i>true</i> if the wake-up events are the expected ones */
+	private static boolean check(long b_sleep_millisecs, String expected) {
+		events.clear();
+		VirtualClock clock=new VirtualClock(true);
+		sleeper(clock,"A",1000,10);
+		sleeper(clock,"B",5000000,b_sleep_millisecs);
+		clock.runUntilIdle();
+		String result=events.toString();
+		boolean success=result.equals(expected);
+		System.out.println("B sleeps "+b_sleep_millisecs+"ms: "+result+(success? "" : ", expected "+expected));
+		return success;
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) {
+		boolean success=check(3,"[B@8000000, A@10001000]");
+		success&=check(10,"[B@failed, A@10001000]");
+		System.out.println(success? "OK" : "FAILED");
+		if (!success) System.exit(1);
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package test;
+
+
+import it.unipr.netsec.ipstack.ip4.Ip4Packet;
+import it.unipr.netsec.ipstack.ip4.Ip4Prefix;
+import it.unipr.netsec.ipstack.ip4.IpAddress;
+import it.unipr.netsec.ipstack.net.DataPacket;
+import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.udp.UdpPacket;
+import it.unipr.netsec.ipstack.util.IpAddressUtils;
+import it.unipr.netsec.nemo.ip.IpLink;
+import it.unipr.netsec.nemo.link.Network;
+import it.unipr.netsec.nemo.link.NetworkBuilder;
+import it.unipr.netsec.nemo.link.PacketGenerator;
+import it.unipr.netsec.simulator.scheduler.VirtualClock;
+
+import org.zoolu.util.Clock;
+import org.zoolu.util.Flags;
+
+
+/** Measures the number of payload bytes copied per forwarded packet.
+ * <p>
+ * Packets are sent by a {@link PacketGenerator} through a linear network of routers, in virtual time.
+ * The bytes copied by {@link DataPacket} are counted with packets that share their payload when cloned (the default),
+ * and with packets that copy their payload at each clone.
+ */
+public class PacketCopyBenchmark {
+
+	/** Runs the benchmark.
+	 * @param n number of routers
+	 * @param count number of packets
+	 * @param pkt_size packet size
+	 * @param bit_rate link bit-rate
+	 * @param clone_payload whether clones copy the payload
+	 * @return the number of bytes copied per packet, and the elapsed real time in milliseconds */
+	private static long[] run(int n, long count, int pkt_size, long bit_rate, boolean clone_payload) {
+		VirtualClock clock=new VirtualClock(true);
+		Clock.setDefaultClock(clock);
+		Network network=NetworkBuilder.linearIpNetwork(n,bit_rate,new Ip4Prefix("10.0.0.0/9"));
+		IpLink[] links=(IpLink[])network.getAccessLinks();
+		IpAddress r1_addr=links[0].getRouters()[0];
+		IpAddress h1_addr=IpAddressUtils.addressPrefix(links[0].getPrefix(),2);
+		IpAddress h2_addr=IpAddressUtils.addressPrefix(links[links.length-1].getPrefix(),2);
+		PacketGenerator pg=new PacketGenerator(links[0],h1_addr,links[links.length-1],h2_addr);
+		Packet pkt=new UdpPacket(h1_addr,4000,h2_addr,4000,new byte[pkt_size-28]).toIp4Packet();
+		DataPacket.CLONE_PAYLOAD=clone_payload;
+		DataPacket.COUNT_COPIED_BYTES=true;
+		DataPacket.resetCopiedBytes();
+		long start=System.nanoTime();
+		pg.send(pkt,r1_addr,count,0,null);
+		long elapsed=(System.nanoTime()-start)/1000000;
+		DataPacket.COUNT_COPIED_BYTES=false;
+		DataPacket.CLONE_PAYLOAD=false;
+		if (pg.getRxCount()!=count) throw new RuntimeException("Received "+pg.getRxCount()+" packets out of "+count);
+		return new long[]{ DataPacket.getCopiedBytes()/count, elapsed };
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) {
+		Flags flags=new Flags(args);
+		boolean help=flags.getBoolean("-h","prints this message");
+		int n=flags.getInteger("-n","<num>",8,"number of routers (default is 8)");
+		long count=flags.getLong("-c","<num>",10000,"number of packets (default is 10000)");
+		int pkt_size=flags.getInteger("-g","<size>",1000,"IP packet size (default is 1000)");
+		long bit_rate=flags.getLong("-b","<bit-rate>",100000000L,"link capacity [b/s] (default is 100000000)");
+		
+		if (help) {
+			System.out.println(flags.toUsageString(PacketCopyBenchmark.class.getSimpleName()));
+			return;
+		}
+		Ip4Packet.DEFAULT_TTL=255;
+		System.out.println("routers: "+n+", packets: "+count+", packet size: "+pkt_size+"B");
+		System.out.println("clone\tbytes/pkt\tbytes/pkt/hop\trt[ms]");
+		for (boolean clone_payload : new boolean[]{ true, false }) {
+			long[] result=run(n,count,pkt_size,bit_rate,clone_payload);
+			System.out.println((clone_payload? "copy" : "share")+'\t'+result[0]+"\t\t"+(result[0]/(n+1))+"\t\t"+result[1]);
+		}
+	}
+
+}
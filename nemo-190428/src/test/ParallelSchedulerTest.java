@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+
+package test;
+
+
+import it.unipr.netsec.simulator.scheduler.ParallelScheduler;
+import it.unipr.netsec.simulator.scheduler.SchedulerTask;
+
+
+/** Checks that a {@link ParallelScheduler} rethrows the failure of a logical process, and does not hang.
+ * <p>
+ * Two logical processes execute a task at time 0 in the same window: the task of LP 0 fails after a given wall-clock delay,
+ * while the task of LP 1 is still running for a longer delay, and LP 1 has a further task in the next window.
+ * The method {@link ParallelScheduler#run()} must throw the failure of LP 0 within a timeout.
+ */
+public class ParallelSchedulerTest {
+
+	/** Maximum time for the run to terminate, in milliseconds */
+	static long TIMEOUT=5000;
+
+	
+	/** Creates a task that sleeps for a given wall-clock time and possibly fails.
+	 * @param sleep_millisecs the sleep time, in milliseconds
+	 * @param fail whether the task fails after the sleep
+	 * @return the task */
+	private static SchedulerTask sleeper(final long sleep_millisecs, final boolean fail) {
+		return new SchedulerTask() {
+			public void action() {
+				try { Thread.sleep(sleep_millisecs); } catch (InterruptedException e) {}
+				if (fail) throw new RuntimeException("boom");
+			}
+		};
+	}
+
+	
+	/** Runs a case.
+	 * @param fail_millisecs time after which the task of LP 0 fails, in milliseconds
+	 * @param busy_millisecs time the task of LP 1 runs, in milliseconds
+	 * @return <i>true</i> if the failure has been thrown in time */
+	private static boolean check(long fail_millisecs, long busy_millisecs) {
+		final ParallelScheduler scheduler=new ParallelScheduler(2,1000);
+		scheduler.post(0,sleeper(fail_millisecs,true),0);
+		scheduler.post(1,sleeper(busy_millisecs,false),0);
+		scheduler.post(1,sleeper(0,false),5000);
+		final RuntimeException[] thrown=new RuntimeException[1];
+		Thread thread=new Thread() {
+			public void run() {
+				try {
+					scheduler.run();
+				}
+				catch (RuntimeException e) {
+					thrown[0]=e;
+				}
+			}
+		};
+		thread.setDaemon(true);
+		long start=System.currentTimeMillis();
+		thread.start();
+		try { thread.join(TIMEOUT); } catch (InterruptedException e) {}
+		long elapsed=System.currentTimeMillis()-start;
+		String result=thread.isAlive()? "hung" : thrown[0]!=null? thrown[0].getMessage() : "no failure";
+		boolean success=!thread.isAlive() && thrown[0]!=null && thrown[0].getMessage().endsWith("logical process 0 failed: boom");
+		System.out.println("LP 0 fails after "+fail_millisecs+"ms, LP 1 busy for "+busy_millisecs+"ms: "+result+" ("+elapsed+"ms)");
+		return success;
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) {
+		boolean success=check(100,300);
+		success&=check(300,100);
+		success&=check(0,0);
+		System.out.println(success? "OK" : "FAILED");
+		if (!success) System.exit(1);
+	}
+
+}
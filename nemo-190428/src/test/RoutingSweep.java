@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package test;
+
+
+import it.unipr.netsec.ipstack.ip4.Ip4Address;
+import it.unipr.netsec.ipstack.ip4.Ip4Packet;
+import it.unipr.netsec.ipstack.ip4.Ip4Prefix;
+import it.unipr.netsec.ipstack.ip4.IpAddress;
+import it.unipr.netsec.ipstack.ip4.IpPrefix;
+import it.unipr.netsec.ipstack.link.Link;
+import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.udp.UdpPacket;
+import it.unipr.netsec.ipstack.util.IpAddressUtils;
+import it.unipr.netsec.nemo.ip.IpLink;
+import it.unipr.netsec.nemo.link.DataLink;
+import it.unipr.netsec.nemo.link.Network;
+import it.unipr.netsec.nemo.link.NetworkBuilder;
+import it.unipr.netsec.nemo.link.PacketGenerator;
+import it.unipr.netsec.simulator.scheduler.SimulationRunner;
+import it.unipr.netsec.simulator.scheduler.VirtualClock;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.zoolu.util.DateFormat;
+import org.zoolu.util.Flags;
+
+
+/** Parameter sweep of packet transmission over Manhattan networks of different sizes.
+ * <p>
+ * Each simulation runs in virtual time with its own clock, and all simulations are executed concurrently
+ * on a shared pool of threads, within the same JVM (see {@link SimulationRunner}).
+ */
+public class RoutingSweep {
+
+	/** Default bit rate */
+	static long DEFAULT_BIT_RATE=100000000L; // 100Mb/s
+
+	/** Network prefix */
+	static IpPrefix NET_PREFIX4=new Ip4Prefix("10.0.0.0/9");
+
+	
+	/** Simulates the transmission of a given number of packets through a Manhattan network.
+	 * @param n network size (nxn routers)
+	 * @param bit_rate link bit-rate
+	 * @param link_delay link propagation delay in nanoseconds
+	 * @param count number of packets
+	 * @param pkt_size IP packet size
+	 * @return the result, as tab-separated values */
+	private static String simulate(int n, long bit_rate, long link_delay, long count, int pkt_size) {
+		Network network=NetworkBuilder.manhattanIpNetwork(n,n,bit_rate,NET_PREFIX4);
+		if (link_delay>0) {
+			for (Link link : network.getAccessLinks()) ((DataLink)link).setMediumDelay(link_delay);
+			if (network.getCoreLinks()!=null) for (Link link : network.getCoreLinks()) ((DataLink)link).setMediumDelay(link_delay);
+		}
+		IpLink[] links=(IpLink[])network.getAccessLinks();
+		IpLink link1=links[0];
+		IpAddress r1_addr=link1.getRouters()[0];
+		IpAddress h1_addr=IpAddressUtils.addressPrefix(link1.getPrefix(),2);
+		IpLink link2=links[links.length-1];
+		IpAddress h2_addr=IpAddressUtils.addressPrefix(link2.getPrefix(),2);
+		PacketGenerator pg=new PacketGenerator(link1,h1_addr,link2,h2_addr);
+		UdpPacket udp_pkt=new UdpPacket(h1_addr,4000,h2_addr,4000,new byte[pkt_size-8-20]);
+		Packet ip_pkt=udp_pkt.toIp4Packet();
+		pg.send(ip_pkt,r1_addr,count,0,null);
+		return ""+n
+				+'\t'+network.getNodes().length
+				+'\t'+pg.getHopNumber()
+				+'\t'+pg.getRxCount()
+				+'\t'+ip_pkt.getPacketLength()
+				+'\t'+pg.getVirtualTime()
+				+'\t'+pg.getRealTime()/1000;
+	}
+	
+
+	/** Main method. 
+	 * @throws Exception */
+	public static void main(String[] args) throws Exception {
+		Flags flags=new Flags(args);
+		boolean help=flags.getBoolean("-h","prints this message");
+		long bit_rate=DateFormat.parseLongKMG(flags.getString("-b","<bit-rate>",String.valueOf(DEFAULT_BIT_RATE),"link capacity [b/s] (default is "+DateFormat.formatBitRate(DEFAULT_BIT_RATE)+")"));
+		final long count=flags.getLong("-c","<count>",1000,"number of packets (default is 1000)");
+		int n=flags.getInteger("-n","<size>",2,"minimum network size n (Manhattan nxn)");
+		int N=flags.getInteger("-N","<size>",6,"maximum network size n");
+		int runs=flags.getInteger("-r","<num>",1,"number of runs for each network size");
+		final int pkt_size=flags.getInteger("-g","<size>",1000,"IP packet size");
+		final long link_delay=flags.getLong("-d","<nanosecs>",0,"link propagation delay in nanoseconds");
+		int threads=flags.getInteger("-j","<num>",Runtime.getRuntime().availableProcessors(),"number of simulations running at the same time (default is the number of processors)");
+		
+		if (help) {
+			System.out.println(flags.toUsageString(RoutingSweep.class.getSimpleName()));
+			return;
+		}
+		Ip4Packet.DEFAULT_TTL=255;
+		final long bit_rate_value=bit_rate;
+		
+		System.out.println("Manhattan networks, n="+n+".."+N+", runs="+runs+", threads="+threads+", bit-rate="+DateFormat.formatBitRate(bit_rate));
+		System.out.println("n\trouters\thops\tpkts\tplen[B]\tt[us]\trt[ms]");
+		long start_time=System.currentTimeMillis();
+		SimulationRunner runner=new SimulationRunner(threads);
+		ArrayList<Future<String>> results=new ArrayList<Future<String>>();
+		for (int i=n; i<=N; i++) {
+			for (int r=0; r<runs; r++) {
+				final int size=i;
+				results.add(runner.submit(new VirtualClock(true),new Callable<String>() {
+					@Override
+					public String call() {
+						return simulate(size,bit_rate_value,link_delay,count,pkt_size);
+					}
+				}));
+			}
+		}
+		for (Future<String> result : results) System.out.println(result.get());
+		runner.shutdown();
+		System.out.println("Total time: "+(System.currentTimeMillis()-start_time)+" ms");
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+package test;
+
+
+import java.util.Random;
+
+import it.unipr.netsec.ipstack.ip4.Ip4Address;
+import it.unipr.netsec.ipstack.ip4.Ip4Prefix;
+import it.unipr.netsec.ipstack.routing.Route;
+import it.unipr.netsec.ipstack.routing.RoutingTable;
+
+import org.zoolu.util.Flags;
+
+
+/** Measures the lookup time of a {@link RoutingTable} with a given number of random IPv4 prefixes,
+ * compared with a linear scan of the same routes (first match).
+ * <p>
+ * Prefix lengths are between 8 and 32, mostly /24. Half of the looked up addresses belong to one of the prefixes,
+ * the others are random.
+ * The results of the first lookups are checked against a brute-force longest prefix match.
+ */
+public class RoutingTableBenchmark {
+
+	/** Number of checked lookups */
+	static int CHECKED_LOOKUPS=1000;
+
+	/** Sink, for preventing the elimination of unused lookups */
+	static volatile int SINK=0;
+
+	
+	/** Gets a random prefix length. */
+	private static int randomPrefixLength(Random rand) {
+		int r=rand.nextInt(100);
+		if (r<60) return 24;
+		if (r<70) return 16;
+		if (r<75) return 32;
+		// else
+		return 8+rand.nextInt(25);
+	}
+	
+	/** Gets the longest matching route by scanning all routes. */
+	private static Route bruteForceLookup(Route[] routes, Ip4Address addr) {
+		Route best=null;
+		for (Route route : routes) {
+			Ip4Prefix prefix=(Ip4Prefix)route.getDestNetAddress();
+			if (prefix.contains(addr) && (best==null || prefix.prefixLength()>((Ip4Prefix)best.getDestNetAddress()).prefixLength())) best=route;
+		}
+		return best;
+	}
+	
+	/** Runs the benchmark.
+	 * @param size number of prefixes
+	 * @param count number of lookups
+	 * @param linear_max maximum number of prefixes for the linear scan
+	 * @param rand random generator */
+	private static void run(int size, int count, int linear_max, Random rand) {
+		RoutingTable rt=new RoutingTable();
+		Route[] routes=new Route[size];
+		long start=System.nanoTime();
+		for (int i=0; i<size; i++) {
+			int len=randomPrefixLength(rand);
+			int key=len==0? 0 : rand.nextInt()&(-1<<(32-len));
+			routes[i]=new Route(new Ip4Prefix(new Ip4Address(key),len),null,null);
+			rt.add(routes[i]);
+		}
+		long build_time=(System.nanoTime()-start)/1000000;
+		Ip4Address[] addrs=new Ip4Address[count];
+		for (int i=0; i<count; i++) {
+			int addr=rand.nextInt();
+			if ((i&1)==0) {
+				Ip4Prefix prefix=(Ip4Prefix)routes[rand.nextInt(size)].getDestNetAddress();
+				int len=prefix.prefixLength();
+				addr=prefix.prefixAddress().toInt() | (len==32? 0 : addr&(-1>>>len));
+			}
+			addrs[i]=new Ip4Address(addr);
+		}
+		// check
+		for (int i=0; i<CHECKED_LOOKUPS && i<count; i++) {
+			Route expected=bruteForceLookup(routes,addrs[i]);
+			Route route=rt.getRoute(addrs[i]);
+			if (route!=expected && (route==null || expected==null || !route.getDestNetAddress().equals(expected.getDestNetAddress()))) {
+				throw new RuntimeException("Wrong route for "+addrs[i]+": "+(route!=null? route.getDestNetAddress() : null)+" instead of "+(expected!=null? expected.getDestNetAddress() : null));
+			}
+		}
+		// warm-up
+		int sum=0;
+		for (int i=0; i<count; i++) if (rt.getRoute(addrs[i])!=null) sum++;
+		start=System.nanoTime();
+		for (int i=0; i<count; i++) if (rt.getRoute(addrs[i])!=null) sum++;
+		long trie_time=System.nanoTime()-start;
+		String linear="-";
+		if (size<=linear_max) {
+			int linear_count=(int)Math.min(count,100000000L/size+1);
+			start=System.nanoTime();
+			for (int i=0; i<linear_count; i++) {
+				for (Route route : routes) {
+					if (route.getDestNetAddress().contains(addrs[i])) {
+						sum++;
+						break;
+					}
+				}
+			}
+			linear=String.valueOf((System.nanoTime()-start)/linear_count);
+		}
+		SINK+=sum;
+		System.out.println(size+"\t"+build_time+"\t"+(trie_time/count)+"\t"+linear);
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) {
+		Flags flags=new Flags(args);
+		boolean help=flags.getBoolean("-h","prints this message");
+		String sizes=flags.getString("-n","<list>","1000,100000,1000000","comma-separated numbers of prefixes (default is 1000,100000,1000000)");
+		int count=flags.getInteger("-c","<num>",1000000,"number of lookups (default is 1000000)");
+		int linear_max=flags.getInteger("-l","<num>",100000,"maximum number of prefixes for the linear scan (default is 100000)");
+		long seed=flags.getLong("-s","<seed>",1,"random seed (default is 1)");
+		
+		if (help) {
+			System.out.println(flags.toUsageString(RoutingTableBenchmark.class.getSimpleName()));
+			return;
+		}
+		Random rand=new Random(seed);
+		System.out.println("lookups: "+count);
+		System.out.println("prefixes\tbuild[ms]\ttrie[ns]\tlinear[ns]");
+		for (String size : sizes.split(",")) run(Integer.parseInt(size.trim()),count,linear_max,rand);
+	}
+
+}
@@ -26,27 +26,38 @@ import it.unipr.netsec.nemo.ip.IpLink;
 import it.unipr.netsec.nemo.link.DataLink;
 import it.unipr.netsec.nemo.link.Network;
 import it.unipr.netsec.nemo.link.NetworkBuilder;
+import it.unipr.netsec.nemo.link.NetworkPartitioner;
 import it.unipr.netsec.nemo.link.PacketGenerator;
 import it.unipr.netsec.ipstack.ip4.Ip4Address;
+import it.unipr.netsec.ipstack.link.Link;
 import it.unipr.netsec.ipstack.ip4.Ip4Packet;
 import it.unipr.netsec.ipstack.ip4.Ip4Prefix;
 import it.unipr.netsec.ipstack.ip4.IpAddress;
 import it.unipr.netsec.ipstack.ip4.IpPrefix;
 import it.unipr.netsec.ipstack.ip6.Ip6Address;
 import it.unipr.netsec.ipstack.ip6.Ip6Prefix;
+import it.unipr.netsec.ipstack.net.MetricsRegistry;
 import it.unipr.netsec.ipstack.net.Node;
 import it.unipr.netsec.ipstack.net.Packet;
+import it.unipr.netsec.ipstack.net.TrafficCounters;
+import it.unipr.netsec.ipstack.routing.RouteCache;
 import it.unipr.netsec.ipstack.routing.RoutingTable;
 import it.unipr.netsec.ipstack.udp.UdpPacket;
 import it.unipr.netsec.ipstack.util.IpAddressUtils;
+import it.unipr.netsec.simulator.scheduler.ParallelClock;
+import it.unipr.netsec.simulator.scheduler.SchedulerProfiler;
 import it.unipr.netsec.simulator.scheduler.VirtualClock;
 
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+
 import org.zoolu.util.Clock;
 import org.zoolu.util.DateFormat;
 import org.zoolu.util.Flags;
 import org.zoolu.util.LoggerLevel;
 import org.zoolu.util.LoggerWriter;
 import org.zoolu.util.SystemUtils;
+import org.zoolu.util.TimingWheelClock;
 
 
 /** Routing in IPv4 or IPv6 network with different topologies (Manhattan, tree, etc.).
@@ -78,6 +89,15 @@ public class RoutingTest {
 	/** Whether pausing after each run */
 	static boolean PAUSE=false;
 
+	/** Link propagation delay [nanosecs] */
+	static long LINK_DELAY=0;
+
+	/** Prefix of the files where traffic counters are written, if any */
+	static String METRICS=null;
+
+	/** Size of the route cache of each node, or 0 for no cache */
+	static int ROUTE_CACHE=0;
+
 	
 	/** Test with a given network.
 	 * @param type network type (e.g. "linerar", "manhattan", "tree", "tree3", "tree4", etc.)
@@ -107,6 +127,13 @@ public class RoutingTest {
 			network=NetworkBuilder.treeIpCoreNetwork(degree,n,bit_rate,net_prefix);
 		}
 		else throw new RuntimeException("Unknown network type: "+type);
+		if (LINK_DELAY>0) {
+			for (Link link : network.getAccessLinks()) ((DataLink)link).setMediumDelay(LINK_DELAY);
+			if (network.getCoreLinks()!=null) for (Link link : network.getCoreLinks()) ((DataLink)link).setMediumDelay(LINK_DELAY);
+		}
+		if (ROUTE_CACHE>0) {
+			for (Node node : network.getNodes()) node.setRouteCache(new RouteCache(ROUTE_CACHE));
+		}
 		
 		if (VERBOSE) System.out.println("Network: "+network);
 		IpLink[] links=(IpLink[])network.getAccessLinks();
@@ -133,20 +160,27 @@ public class RoutingTest {
 			if (h1_addr instanceof Ip4Address) {
 				Ip4Host host1=new Ip4Host(link1,(Ip4Address)h1_addr,(Ip4Address)r1_addr);
 				Ip4Host host2=new Ip4Host(link2,(Ip4Address)h2_addr,(Ip4Address)r2_addr);
+				partition(network);
 				System.out.println("From "+host1.getAddress()+":");
 				host1.ping(host2.getAddress(),(int)count,System.out);				
 			} else {
 				Ip6Host host1=new Ip6Host(link1,(Ip6Address)h1_addr,(Ip6Address)r1_addr);
 				Ip6Host host2=new Ip6Host(link2,(Ip6Address)h2_addr,(Ip6Address)r2_addr);
+				partition(network);
 				System.out.println("From "+host1.getAddress()+":");
 				host1.ping(host2.getAddress(),(int)count,System.out);								
 			}
+			Clock clock=Clock.getDefaultClock();
+			if (clock instanceof VirtualClock && ((VirtualClock)clock).isSingleThread()) ((VirtualClock)clock).runUntilIdle();
+			else
+			if (clock instanceof ParallelClock) ((ParallelClock)clock).run();
 		}
 		else {
 			// PACKET GENERATOR TEST
 			PacketGenerator pg=new PacketGenerator(link1,h1_addr,link2,h2_addr);
 			UdpPacket udp_pkt=new UdpPacket(h1_addr,4000,h2_addr,4000,new byte[pg_size-8-(h1_addr instanceof Ip4Address?20:40)]);
 			Packet ip_pkt=h1_addr instanceof Ip4Address? udp_pkt.toIp4Packet() : udp_pkt.toIp6Packet();
+			partition(network);
 			pg.send(ip_pkt,r1_addr,count,0,null);
 			System.out.print(""+n
 					+'\t'+network.getNodes().length
@@ -160,9 +194,57 @@ public class RoutingTest {
 			// wait
 			if (PAUSE) SystemUtils.readLine();			
 		}
+		if (ROUTE_CACHE>0) printRouteCacheStatistics(network);
+		if (METRICS!=null) writeMetrics(network,METRICS+"-"+n);
+	}
+	
+
+	/** Prints the total hits and misses of the route caches of all network nodes.
+	 * @param network the network */
+	private static void printRouteCacheStatistics(Network network) {
+		long hits=0, misses=0;
+		for (Node node : network.getNodes()) {
+			RouteCache route_cache=node.getRouteCache();
+			if (route_cache!=null) {
+				hits+=route_cache.getHits();
+				misses+=route_cache.getMisses();
+			}
+		}
+		System.out.println("route cache: hits="+hits+", misses="+misses+", hit ratio="+(hits+misses>0? (double)hits/(hits+misses) : 0));
+	}
+	
+
+	/** Writes the traffic counters of all network nodes, interfaces, and links.
+	 * @param network the network
+	 * @param file_prefix prefix of the CSV and JSON files */
+	private static void writeMetrics(Network network, String file_prefix) {
+		MetricsRegistry registry=new MetricsRegistry();
+		network.registerCounters(registry);
+		try {
+			PrintStream out=new PrintStream(file_prefix+".csv");
+			out.print(registry.toCsv());
+			out.close();
+			out=new PrintStream(file_prefix+".json");
+			out.println(registry.toJson());
+			out.close();
+		}
+		catch (FileNotFoundException e) {
+			e.printStackTrace();
+		}
 	}
 		
 
+	/** Partitions the network, in case of parallel simulation.
+	 * @param network the network */
+	private static void partition(Network network) {
+		Clock clock=Clock.getDefaultClock();
+		if (clock instanceof ParallelClock) {
+			int cut_links=NetworkPartitioner.partition(network,(ParallelClock)clock);
+			if (VERBOSE) System.out.println("Partitions: "+((ParallelClock)clock).size()+", cut links: "+cut_links+", lookahead: "+((ParallelClock)clock).getParallelScheduler().getLookahead()+"ns");
+		}
+	}
+	
+
 	/** Main method. 
 	 * @throws InterruptedException */
 	public static void main(String[] args) throws InterruptedException {
@@ -178,7 +260,14 @@ public class RoutingTest {
 		boolean print_routing_table=flags.getBoolean("-r","prints the routing table of the first router");
 		int packet_generator=flags.getInteger("-g","<size>",-1,"uses a packet generator in place of ping, with the given packet size");
 		boolean virtual_time=flags.getBoolean("-z","uses virtual time");
+		boolean single_thread=flags.getBoolean("-s","uses virtual time in single-thread mode (events are executed by the main thread)");
+		boolean timing_wheel=flags.getBoolean("-w","uses real time with timers scheduled on a timing wheel");
+		int parallel=flags.getInteger("-p","<num>",0,"uses parallel virtual time with the given number of logical processes (it requires a link delay)");
+		LINK_DELAY=flags.getLong("-d","<nanosecs>",0,"link propagation delay in nanoseconds");
 		PAUSE=flags.getBoolean("-pause","pauses after each run");
+		String profile=flags.getString("-prof","<prefix>",null,"profiles the virtual-time run, printing a report and writing CSV files <prefix>-tasks.csv and <prefix>-queue.csv");
+		ROUTE_CACHE=flags.getInteger("-cache","<size>",0,"uses a route cache with the given maximum size in each node");
+		METRICS=flags.getString("-metrics","<prefix>",null,"counts traffic of all nodes, interfaces, and links, writing files <prefix>-<n>.csv and <prefix>-<n>.json");
 		
 		if (VERBOSE) {
 			SystemUtils.setDefaultLogger(new LoggerWriter(System.out,LoggerLevel.DEBUG));
@@ -193,7 +282,21 @@ public class RoutingTest {
 			return;
 		}
 
+		if (parallel>0) Clock.setDefaultClock(new ParallelClock(parallel));
+		else
+		if (single_thread) Clock.setDefaultClock(new VirtualClock(true));
+		else
 		if (virtual_time) Clock.setDefaultClock(new VirtualClock());
+		else
+		if (timing_wheel) Clock.setDefaultClock(new TimingWheelClock());
+		SchedulerProfiler profiler=null;
+		if (profile!=null) {
+			if (!(Clock.getDefaultClock() instanceof VirtualClock)) throw new RuntimeException("Profiling requires virtual time");
+			// else
+			profiler=new SchedulerProfiler();
+			((VirtualClock)Clock.getDefaultClock()).getScheduler().setProfiler(profiler);
+		}
+		TrafficCounters.ENABLED=METRICS!=null;
 		Ip4Packet.DEFAULT_TTL=255;
 		IpPrefix net_prefix=ipv6? NET_PREFIX6 : NET_PREFIX4;
 
@@ -223,6 +326,20 @@ public class RoutingTest {
 		for (; n<=N; n++) {
 			testNetwork(type,n,bit_rate,net_prefix,count,packet_generator,print_routing_table);
 		}
+		if (profiler!=null) {
+			System.out.println("\nProfile:\n"+profiler.getReport(10));
+			try {
+				PrintStream out=new PrintStream(profile+"-tasks.csv");
+				profiler.writeCsv(out);
+				out.close();
+				out=new PrintStream(profile+"-queue.csv");
+				profiler.writeQueueSizeCsv(out);
+				out.close();
+			}
+			catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
 		// sleep until the JVM is killed
 		//Thread.currentThread().join();
 	}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+package test;
+
+
+import it.unipr.netsec.simulator.scheduler.HeapTaskQueue;
+import it.unipr.netsec.simulator.scheduler.Scheduler;
+import it.unipr.netsec.simulator.scheduler.SchedulerTask;
+import it.unipr.netsec.simulator.scheduler.TaskQueue;
+import it.unipr.netsec.simulator.scheduler.TreeTaskQueue;
+
+import java.util.Random;
+
+import org.zoolu.util.Flags;
+
+
+/** Throughput benchmark of the {@link Scheduler} with different {@link TaskQueue task queues}.
+ * <p>
+ * It uses the classic 'hold' model: the scheduler is loaded with a given number of pending tasks,
+ * and each executed task schedules a new task at a random time in the future, until the total number of events is reached.
+ */
+public class SchedulerBenchmark {
+
+	/** Runs the benchmark with a given task queue.
+	 * @param task_queue the task queue
+	 * @param pending number of pending tasks
+	 * @param events total number of events
+	 * @param max_delta maximum time between the execution of a task and the task it schedules
+	 * @return the number of events per second */
+	private static double run(TaskQueue task_queue, int pending, final long events, final long max_delta) {
+		final Scheduler scheduler=new Scheduler(task_queue);
+		final Random rand=new Random(1234);
+		final long[] count=new long[1];
+		final Object lock=new Object();
+		final SchedulerTask[] tasks=new SchedulerTask[pending];
+		for (int i=0; i<pending; i++) {
+			tasks[i]=new SchedulerTask() {
+				public void action() {
+					if (++count[0]<events) scheduler.add(this,1+(long)(rand.nextDouble()*max_delta));
+					else
+					if (count[0]==events) synchronized (lock) { lock.notifyAll(); }
+				}
+			};
+		}
+		scheduler.pause(true);
+		for (SchedulerTask t : tasks) scheduler.add(t,1+(long)(rand.nextDouble()*max_delta));
+		long start=System.nanoTime();
+		synchronized (lock) {
+			scheduler.pause(false);
+			try { lock.wait(); } catch (InterruptedException e) {}
+		}
+		long elapsed=System.nanoTime()-start;
+		scheduler.clear();
+		return events*1000000000.0/elapsed;
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) {
+		Flags flags=new Flags(args);
+		boolean help=flags.getBoolean("-h","prints this message");
+		int pending=flags.getInteger("-n","<num>",100000,"number of pending tasks (default is 100000)");
+		long events=flags.getLong("-e","<num>",2000000,"total number of events (default is 2000000)");
+		long max_delta=flags.getLong("-d","<nanosecs>",1000000,"maximum task inter-time in nanoseconds (default is 1000000)");
+		int runs=flags.getInteger("-r","<num>",3,"number of runs for each queue (default is 3)");
+		
+		if (help) {
+			System.out.println(flags.toUsageString(SchedulerBenchmark.class.getSimpleName()));
+			return;
+		}
+		System.out.println("pending tasks: "+pending+", events: "+events);
+		System.out.println("queue\trun\tevents/s");
+		for (int r=0; r<runs; r++) {
+			System.out.println("tree\t"+r+"\t"+Math.round(run(new TreeTaskQueue(),pending,events,max_delta)));
+			System.out.println("heap2\t"+r+"\t"+Math.round(run(new HeapTaskQueue(2),pending,events,max_delta)));
+			System.out.println("heap4\t"+r+"\t"+Math.round(run(new HeapTaskQueue(4),pending,events,max_delta)));
+		}
+	}
+
+}
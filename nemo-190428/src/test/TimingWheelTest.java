@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 NetSec Lab - University of Parma
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Author(s):
+ * Luca Veltri (luca.veltri@unipr.it)
+ */
+
+
+
+package test;
+
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.zoolu.util.Flags;
+import org.zoolu.util.TimingWheel;
+
+
+/** Checks the timing accuracy of a {@link TimingWheel}.
+ * <p>
+ * It verifies that a task scheduled after the only pending task has been canceled
+ * expires in time, i.e. that the inner thread does not keep on waiting for the canceled task.
+ * It also measures the lateness of a number of tasks with random delays.
+ * <p>
+ * Lateness is measured in nanoseconds. A check fails if any task expires before its deadline,
+ * or if the median lateness is greater than two ticks plus a small slack.
+ * The tail of the lateness (99th percentile and maximum) is reported but not checked,
+ * since it mostly depends on the scheduling jitter of the machine rather than on the wheel.
+ */
+public class TimingWheelTest {
+
+	/** Maximum tolerated median lateness, in nanoseconds */
+	static long max_lateness;
+
+	
+	/** Task that records its expiration time. */
+	static class Task extends TimingWheel.Entry {
+		
+		/** Expected expiration time */
+		long expected;
+		
+		/** Actual expiration time */
+		volatile long expired=-1;
+		
+		/** Latch counted down at expiration */
+		CountDownLatch latch;
+		
+		/** Creates a new task.
+		 * It must be created just before being scheduled, so that the expected time is not later than the deadline of the task within the wheel. */
+		Task(long delay_nanosecs, CountDownLatch latch) {
+			this.expected=System.nanoTime()+delay_nanosecs;
+			this.latch=latch;
+		}
+		
+		@Override
+		public void run() {
+			expired=System.nanoTime();
+			latch.countDown();
+		}
+		
+		/** Gets the lateness in nanoseconds.
+		 * @return the lateness, that is negative if the task expired early */
+		long getLateness() {
+			return expired-expected;
+		}
+	}
+
+	
+	/** Checks a set of lateness values.
+	 * @param name the name of the check
+	 * @param lateness the lateness values, in nanoseconds
+	 * @return <i>true</i> if no task expired early, and the median lateness is not greater than the maximum tolerated lateness */
+	private static boolean checkLateness(String name, long[] lateness) {
+		Arrays.sort(lateness);
+		int n=lateness.length;
+		long min=lateness[0], median=lateness[n/2], p99=lateness[n*99/100], max=lateness[n-1];
+		boolean success=min>=0 && median<=max_lateness;
+		System.out.println(name+": lateness: min="+min/1000+"us, median="+median/1000+"us, p99="+p99/1000+"us, max="+max/1000+"us"+(min<0? ", EARLY" : "")+(median>max_lateness? ", LATE" : ""));
+		return success;
+	}
+
+	
+	/** Repeatedly schedules a long task, cancels it, and then schedules a short task.
+	 * @param wheel the timing wheel
+	 * @param n number of repetitions
+	 * @param long_delay delay of the canceled task, in milliseconds
+	 * @param cancel_time time after which the task is canceled, in milliseconds
+	 * @return <i>true</i> if the short tasks expired in time */
+	private static boolean checkCancelThenReschedule(TimingWheel wheel, int n, long long_delay, long cancel_time) throws InterruptedException {
+		long[] lateness=new long[n];
+		for (int i=0; i<n; i++) {
+			CountDownLatch latch=new CountDownLatch(1);
+			Task long_task=new Task(long_delay*1000000,latch);
+			wheel.schedule(long_task,long_delay*1000000);
+			Thread.sleep(cancel_time);
+			wheel.cancel(long_task);
+			Task short_task=new Task(1000000,latch);
+			wheel.schedule(short_task,1000000);
+			boolean expired=latch.await(long_delay,TimeUnit.MILLISECONDS);
+			if (long_task.expired>=0 || !expired) {
+				System.out.println("cancel-then-reschedule: "+(expired? "the canceled task expired" : "the short task did not expire"));
+				return false;
+			}
+			// else
+			lateness[i]=short_task.getLateness();
+		}
+		return checkLateness("cancel-then-reschedule ("+n+" times)",lateness);
+	}
+
+	
+	/** Schedules tasks with random delays.
+	 * @param wheel the timing wheel
+	 * @param n number of tasks
+	 * @param max_delay maximum delay, in milliseconds
+	 * @return <i>true</i> if all tasks expired in time */
+	private static boolean checkRandomDelays(TimingWheel wheel, int n, long max_delay) throws InterruptedException {
+		CountDownLatch latch=new CountDownLatch(n);
+		Task[] tasks=new Task[n];
+		Random rand=new Random(1);
+		for (int i=0; i<n; i++) {
+			long delay=(long)(rand.nextDouble()*max_delay*1000000);
+			tasks[i]=new Task(delay,latch);
+			wheel.schedule(tasks[i],delay);
+		}
+		if (!latch.await(max_delay+1000,TimeUnit.MILLISECONDS)) {
+			System.out.println("random delays: "+latch.getCount()+" tasks did not expire");
+			return false;
+		}
+		// else
+		long[] lateness=new long[n];
+		for (int i=0; i<n; i++) lateness[i]=tasks[i].getLateness();
+		return checkLateness("random delays ("+n+" tasks)",lateness);
+	}
+	
+
+	/** Main method. */
+	public static void main(String[] args) throws InterruptedException {
+		Flags flags=new Flags(args);
+		boolean help=flags.getBoolean("-h","prints this message");
+		long long_delay=flags.getLong("-d","<millisecs>",2000,"delay of the canceled task (default is 2000)");
+		long cancel_time=flags.getLong("-x","<millisecs>",300,"time after which the task is canceled (default is 300)");
+		int n=flags.getInteger("-n","<num>",1000,"number of tasks with random delays (default is 1000)");
+		long tick=flags.getLong("-k","<nanosecs>",TimingWheel.DEFAULT_TICK_NANOSECS,"tick duration (default is "+TimingWheel.DEFAULT_TICK_NANOSECS+")");
+		long slack=flags.getLong("-s","<microsecs>",200,"tolerated scheduling jitter, added to two ticks for the maximum median lateness (default is 200)");
+		
+		if (help) {
+			System.out.println(flags.toUsageString(TimingWheelTest.class.getSimpleName()));
+			return;
+		}
+		max_lateness=2*tick+slack*1000;
+		System.out.println("maximum median lateness: "+max_lateness/1000+"us");
+		TimingWheel wheel=new TimingWheel(tick,TimingWheel.DEFAULT_WHEEL_SIZE,true);
+		boolean success=checkCancelThenReschedule(wheel,5,long_delay,cancel_time);
+		success&=checkRandomDelays(wheel,n,500);
+		System.out.println(success? "OK" : "FAILED");
+		if (!success) System.exit(1);
+	}
+
+}